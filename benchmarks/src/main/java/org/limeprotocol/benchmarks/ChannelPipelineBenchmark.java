@@ -0,0 +1,135 @@
+package org.limeprotocol.benchmarks;
+
+import org.limeprotocol.*;
+import org.limeprotocol.client.ClientChannelImpl;
+import org.limeprotocol.network.MessageChannel;
+import org.limeprotocol.network.NotificationChannel;
+import org.limeprotocol.network.SessionChannel;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.network.TransportBase;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the send and receive paths of an established channel, through the modules registered by default
+ * (the envelope recipients filling and the ping reply), over a transport that discards the sent envelopes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChannelPipelineBenchmark {
+
+    private BenchmarkTransport transport;
+    private ClientChannelImpl channel;
+    private Message message;
+    private Notification notification;
+    private Command command;
+    private long receivedCount;
+
+    @Setup
+    public void setup() {
+        transport = new BenchmarkTransport();
+        channel = new EstablishedChannel(transport);
+        channel.addMessageListener(new MessageChannel.MessageChannelListener() {
+            @Override
+            public void onReceiveMessage(Message message) {
+                receivedCount++;
+            }
+        }, false);
+        channel.addNotificationListener(new NotificationChannel.NotificationChannelListener() {
+            @Override
+            public void onReceiveNotification(Notification notification) {
+                receivedCount++;
+            }
+        }, false);
+        message = new Message(EnvelopeId.newId());
+        message.setFrom(Node.parse("5511999990000@0mn.io/android"));
+        message.setContent(new PlainDocument("Hello, how can I help you?", MediaType.parse("text/plain")));
+        notification = new Notification(EnvelopeId.newId());
+        notification.setFrom(Node.parse("5511999990000@0mn.io/android"));
+        notification.setEvent(Notification.Event.CONSUMED);
+        command = new Command(EnvelopeId.newId());
+        command.setMethod(Command.CommandMethod.GET);
+        command.setUri(LimeUri.parse("/ping"));
+    }
+
+    @Benchmark
+    public void sendMessage() throws IOException {
+        message.setTo(null);
+        channel.sendMessage(message);
+    }
+
+    @Benchmark
+    public void sendNotification() throws IOException {
+        notification.setTo(null);
+        channel.sendNotification(notification);
+    }
+
+    @Benchmark
+    public void receiveMessage() {
+        message.setTo(null);
+        transport.receive(message);
+    }
+
+    @Benchmark
+    public void receiveNotification() {
+        notification.setTo(null);
+        transport.receive(notification);
+    }
+
+    /**
+     * Receives a ping request, which is replied by the channel.
+     */
+    @Benchmark
+    public void receivePing() {
+        transport.receive(command);
+    }
+
+    private static class EstablishedChannel extends ClientChannelImpl {
+        EstablishedChannel(Transport transport) {
+            super(transport, true, true);
+            setRemoteNode(Node.parse("postmaster@msging.net/instance"));
+            setLocalNode(Node.parse("bot@msging.net/instance"));
+            setSessionId(EnvelopeId.newId());
+            setState(Session.SessionState.ESTABLISHED);
+            // Sets the channel as the transport envelope listener
+            enqueueSessionListener(new SessionChannel.SessionChannelListener() {
+                @Override
+                public void onReceiveSession(Session session) {
+                }
+            });
+        }
+    }
+
+    private static class BenchmarkTransport extends TransportBase {
+        private long sentCount;
+
+        void receive(Envelope envelope) {
+            raiseOnReceive(envelope);
+        }
+
+        @Override
+        public void send(Envelope envelope) {
+            sentCount++;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        protected void performClose() {
+        }
+
+        @Override
+        protected void performOpen(URI uri) {
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.limeprotocol.benchmarks;
+
+import org.limeprotocol.EnvelopeId;
+import org.limeprotocol.EnvelopeIdGenerator;
+import org.limeprotocol.TimeOrderedEnvelopeIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the envelope id generators when many threads create envelopes at once.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class EnvelopeIdBenchmark {
+
+    private final EnvelopeIdGenerator random = EnvelopeId.RANDOM;
+    private final EnvelopeIdGenerator timeOrdered = new TimeOrderedEnvelopeIdGenerator();
+
+    @Benchmark
+    public String random() {
+        return random.newId();
+    }
+
+    @Benchmark
+    public String timeOrdered() {
+        return timeOrdered.newId();
+    }
+}
@@ -0,0 +1,98 @@
+package org.limeprotocol.benchmarks;
+
+import org.limeprotocol.Envelope;
+import org.limeprotocol.messaging.Registrator;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the envelope serializer for each envelope type and for the messaging documents of the usual traffic,
+ * like selects, media links, receipts and presences.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EnvelopeTypesBenchmark {
+
+    private final static String HEADER = "\"id\":\"d5b6f2a0-8b1c-4f8e-9a3e-2f1c0b7d4e51\",\"from\":\"5511999990000@0mn.io/android\",\"to\":\"postmaster@msging.net\"";
+    private final static Map<String, String> ENVELOPES_JSON = new HashMap<>();
+
+    static {
+        ENVELOPES_JSON.put("plainText",
+                "{" + HEADER + ",\"type\":\"text/plain\",\"content\":\"Hello, how can I help you?\"}");
+        ENVELOPES_JSON.put("chatState",
+                "{" + HEADER + ",\"type\":\"application/vnd.lime.chatstate+json\",\"content\":{\"state\":\"composing\"}}");
+        ENVELOPES_JSON.put("select",
+                "{" + HEADER + ",\"type\":\"application/vnd.lime.select+json\",\"content\":{\"text\":\"Choose an option\",\"options\":[" +
+                        "{\"order\":1,\"text\":\"First option\"},{\"order\":2,\"text\":\"Second option\",\"type\":\"text/plain\",\"value\":\"second\"}," +
+                        "{\"order\":3,\"text\":\"Third option\",\"type\":\"application/json\",\"value\":{\"key\":\"third\",\"value\":3}}]}}");
+        ENVELOPES_JSON.put("mediaLink",
+                "{" + HEADER + ",\"type\":\"application/vnd.lime.media-link+json\",\"content\":{\"title\":\"Cat\",\"text\":\"Here is a cat image for you!\"," +
+                        "\"type\":\"image/jpeg\",\"uri\":\"https://example.com/cat.jpg\",\"size\":227791,\"previewUri\":\"https://example.com/cat-thumb.jpg\",\"previewType\":\"image/jpeg\"}}");
+        ENVELOPES_JSON.put("webLink",
+                "{" + HEADER + ",\"type\":\"application/vnd.lime.web-link+json\",\"content\":{\"uri\":\"https://limeprotocol.org/\",\"text\":\"The LIME protocol\"," +
+                        "\"previewUri\":\"https://limeprotocol.org/preview.png\",\"previewType\":\"image/png\"}}");
+        ENVELOPES_JSON.put("documentSelect",
+                "{" + HEADER + ",\"type\":\"application/vnd.lime.document-select+json\",\"content\":{\"header\":{\"type\":\"application/vnd.lime.media-link+json\"," +
+                        "\"value\":{\"title\":\"Welcome\",\"text\":\"We've got the right hat for everyone.\",\"type\":\"image/jpeg\",\"uri\":\"https://example.com/hat.png\"}}," +
+                        "\"options\":[{\"label\":{\"type\":\"application/vnd.lime.web-link+json\",\"value\":{\"text\":\"View Website\",\"uri\":\"https://example.com/hat\"}}}," +
+                        "{\"label\":{\"type\":\"text/plain\",\"value\":\"Start Chatting\"},\"value\":{\"type\":\"application/json\",\"value\":{\"key\":\"key1\",\"value\":1}}}]}}");
+        ENVELOPES_JSON.put("collection",
+                "{" + HEADER + ",\"type\":\"application/vnd.lime.collection+json\",\"content\":{\"itemType\":\"application/vnd.lime.container+json\",\"total\":3,\"items\":[" +
+                        "{\"type\":\"text/plain\",\"value\":\"First item\"}," +
+                        "{\"type\":\"application/vnd.lime.media-link+json\",\"value\":{\"type\":\"image/jpeg\",\"uri\":\"https://example.com/cat.jpg\"}}," +
+                        "{\"type\":\"application/vnd.lime.web-link+json\",\"value\":{\"uri\":\"https://limeprotocol.org/\"}}]}}");
+        ENVELOPES_JSON.put("notification",
+                "{" + HEADER + ",\"event\":\"consumed\",\"metadata\":{\"#message.to\":\"postmaster@msging.net\"}}");
+        ENVELOPES_JSON.put("failedNotification",
+                "{" + HEADER + ",\"event\":\"failed\",\"reason\":{\"code\":42,\"description\":\"Destination not found\"}}");
+        ENVELOPES_JSON.put("setPresence",
+                "{" + HEADER + ",\"method\":\"set\",\"uri\":\"/presence\",\"type\":\"application/vnd.lime.presence+json\"," +
+                        "\"resource\":{\"status\":\"available\",\"routingRule\":\"identity\",\"priority\":1}}");
+        ENVELOPES_JSON.put("setReceipt",
+                "{" + HEADER + ",\"method\":\"set\",\"uri\":\"/receipt\",\"type\":\"application/vnd.lime.receipt+json\"," +
+                        "\"resource\":{\"events\":[\"dispatched\",\"received\",\"consumed\",\"failed\"]}}");
+        ENVELOPES_JSON.put("contactsResponse",
+                "{" + HEADER + ",\"method\":\"get\",\"status\":\"success\",\"type\":\"application/vnd.lime.collection+json\"," +
+                        "\"resource\":{\"itemType\":\"application/vnd.lime.contact+json\",\"total\":2,\"items\":[" +
+                        "{\"identity\":\"john@limeprotocol.org\",\"name\":\"John\",\"isPending\":true,\"shareAccountInfo\":false}," +
+                        "{\"identity\":\"mary@limeprotocol.org\",\"name\":\"Mary\",\"sharePresence\":false}]}}");
+        ENVELOPES_JSON.put("pingResponse",
+                "{" + HEADER + ",\"method\":\"get\",\"status\":\"success\",\"type\":\"application/vnd.lime.ping+json\",\"resource\":{}}");
+        ENVELOPES_JSON.put("session",
+                "{" + HEADER + ",\"state\":\"authenticating\",\"scheme\":\"plain\",\"authentication\":{\"password\":\"MTIzNDU2\"}}");
+    }
+
+    @Param({ "plainText", "chatState", "select", "mediaLink", "webLink", "documentSelect", "collection",
+            "notification", "failedNotification", "setPresence", "setReceipt", "contactsResponse", "pingResponse", "session" })
+    public String envelopeType;
+
+    private JacksonEnvelopeSerializer serializer;
+    private String envelopeJson;
+    private Envelope envelope;
+
+    @Setup
+    public void setup() {
+        Registrator.registerDocuments();
+        serializer = new JacksonEnvelopeSerializer();
+        envelopeJson = ENVELOPES_JSON.get(envelopeType);
+        envelope = serializer.deserialize(envelopeJson);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return serializer.serialize(envelope);
+    }
+
+    @Benchmark
+    public Envelope deserialize() {
+        return serializer.deserialize(envelopeJson);
+    }
+}
@@ -0,0 +1,170 @@
+package org.limeprotocol.benchmarks;
+
+import org.limeprotocol.network.JsonBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.Charset;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the framing throughput of the word scanner of the {@link JsonBuffer} against the byte by byte scanner
+ * it replaced, for a stream of envelopes received in segments of different sizes.
+ * Each operation frames the whole stream, so the score times the stream size is the scanned bytes per millisecond.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonBufferBenchmark {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+    private final static int ENVELOPES_COUNT = 32;
+
+    @Param({ "text", "base64", "structured" })
+    public String payload;
+
+    /**
+     * The size of the reads, from small fragments to the size of a TCP packet and of a full socket buffer.
+     */
+    @Param({ "64", "1460", "16384" })
+    public int segmentSize;
+
+    private byte[] stream;
+    private JsonBuffer jsonBuffer;
+    private BytewiseJsonBuffer bytewiseJsonBuffer;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder();
+        Random random = new Random(42);
+        for (int i = 0; i < ENVELOPES_COUNT; i++) {
+            builder.append("{\"id\":\"").append(i).append("\",\"from\":\"5511999990000@0mn.io/android\",\"to\":\"postmaster@msging.net\",");
+            switch (payload) {
+                case "text":
+                    builder.append("\"type\":\"text/plain\",\"content\":\"");
+                    for (int j = 0; j < 40; j++) {
+                        builder.append("Hello, how can I help you? Please say \\\"help\\\" to see the options. ");
+                    }
+                    builder.append('"');
+                    break;
+                case "base64":
+                    byte[] content = new byte[12 * 1024];
+                    random.nextBytes(content);
+                    builder.append("\"type\":\"application/octet-stream\",\"content\":\"")
+                            .append(Base64.getEncoder().encodeToString(content))
+                            .append('"');
+                    break;
+                default:
+                    builder.append("\"type\":\"application/vnd.lime.collection+json\",\"content\":{\"itemType\":\"application/json\",\"items\":[");
+                    for (int j = 0; j < 40; j++) {
+                        if (j > 0) builder.append(',');
+                        builder.append("{\"id\":").append(j).append(",\"name\":\"Item ").append(j).append("\",\"tags\":[\"a\",\"b\"],\"value\":{\"x\":1,\"y\":2}}");
+                    }
+                    builder.append("]}");
+                    break;
+            }
+            builder.append(",\"metadata\":{\"traceId\":\"0af7651916cd43dd8448eb211c80319c\"}}");
+        }
+        stream = builder.toString().getBytes(UTF8);
+        jsonBuffer = new JsonBuffer(64 * 1024, 1024 * 1024);
+        bytewiseJsonBuffer = new BytewiseJsonBuffer(1024 * 1024);
+    }
+
+    @Benchmark
+    public void frame(Blackhole blackhole) {
+        for (int offset = 0; offset < stream.length; offset += segmentSize) {
+            int length = Math.min(segmentSize, stream.length - offset);
+            jsonBuffer.ensureFreeSpace();
+            System.arraycopy(stream, offset, jsonBuffer.getBuffer(), jsonBuffer.getBufferCurPos(), length);
+            jsonBuffer.increaseBufferCurPos(length);
+            JsonBuffer.JsonBufferReadResult result;
+            while ((result = jsonBuffer.tryExtractJsonFromBuffer()).isSuccess()) {
+                blackhole.consume(result.getJsonBytes());
+            }
+        }
+    }
+
+    @Benchmark
+    public void frameBytewise(Blackhole blackhole) {
+        for (int offset = 0; offset < stream.length; offset += segmentSize) {
+            int length = Math.min(segmentSize, stream.length - offset);
+            bytewiseJsonBuffer.write(stream, offset, length);
+            byte[] json;
+            while ((json = bytewiseJsonBuffer.tryExtract()) != null) {
+                blackhole.consume(json);
+            }
+        }
+    }
+
+    /**
+     * The byte by byte scanner of the previous {@link JsonBuffer} implementation.
+     */
+    private static class BytewiseJsonBuffer {
+        private final byte[] buffer;
+        private int bufferCurPos;
+        private int jsonStartPos;
+        private int jsonCurPos;
+        private int jsonStackedBrackets;
+        private boolean jsonStarted;
+        private boolean insideQuotes;
+        private boolean isEscaping;
+
+        BytewiseJsonBuffer(int bufferSize) {
+            buffer = new byte[bufferSize];
+        }
+
+        void write(byte[] bytes, int offset, int length) {
+            System.arraycopy(bytes, offset, buffer, bufferCurPos, length);
+            bufferCurPos += length;
+        }
+
+        byte[] tryExtract() {
+            int jsonLength = 0;
+            for (int i = jsonCurPos; i < bufferCurPos; i++) {
+                jsonCurPos = i + 1;
+                if (buffer[i] == '"' && !isEscaping) {
+                    insideQuotes = !insideQuotes;
+                }
+                if (!insideQuotes) {
+                    if (buffer[i] == '{') {
+                        jsonStackedBrackets++;
+                        if (!jsonStarted) {
+                            jsonStartPos = i;
+                            jsonStarted = true;
+                        }
+                    } else if (buffer[i] == '}') {
+                        jsonStackedBrackets--;
+                    }
+                    if (jsonStarted && jsonStackedBrackets == 0) {
+                        jsonLength = i - jsonStartPos + 1;
+                        break;
+                    }
+                } else {
+                    if (isEscaping) {
+                        isEscaping = false;
+                    } else if (buffer[i] == '\\') {
+                        isEscaping = true;
+                    }
+                }
+            }
+            if (jsonLength > 1) {
+                byte[] json = new byte[jsonLength];
+                System.arraycopy(buffer, jsonStartPos, json, 0, jsonLength);
+                bufferCurPos -= (jsonLength + jsonStartPos);
+                System.arraycopy(buffer, jsonLength + jsonStartPos, buffer, 0, bufferCurPos);
+                jsonCurPos = 0;
+                jsonStartPos = 0;
+                jsonStarted = false;
+                insideQuotes = false;
+                isEscaping = false;
+                return json;
+            }
+            return null;
+        }
+    }
+}
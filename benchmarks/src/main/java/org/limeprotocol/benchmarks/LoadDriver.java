@@ -0,0 +1,193 @@
+package org.limeprotocol.benchmarks;
+
+import org.limeprotocol.*;
+import org.limeprotocol.client.ClientChannel;
+import org.limeprotocol.client.ClientChannelBuilderImpl;
+import org.limeprotocol.client.EstablishedClientChannelBuilderImpl;
+import org.limeprotocol.metrics.LatencyHistogram;
+import org.limeprotocol.metrics.MetricsRegistry;
+import org.limeprotocol.network.tcp.SocketTcpClientFactory;
+import org.limeprotocol.network.tcp.TcpTransport;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load driver for the client channels against the {@link StandInServer}, in a single process over the loopback
+ * interface. It establishes the channels with the {@link EstablishedClientChannelBuilderImpl}, then sends messages
+ * with a bounded window per channel, which are echoed by the server, and finally sends ping commands.
+ * It reports the handshake time, the heap per connection (of both the client and the server sides),
+ * the echoed messages per second and the command round trip percentiles. Run with:
+ * <pre>java -cp benchmarks/target/benchmarks.jar org.limeprotocol.benchmarks.LoadDriver [connections] [seconds] [window]</pre>
+ */
+public class LoadDriver {
+
+    private final static TimeUnit REPORT_UNIT = TimeUnit.MICROSECONDS;
+
+    private final int connectionsCount;
+    private final long phaseDuration;
+    private final int window;
+    private final MetricsRegistry metricsRegistry;
+
+    public LoadDriver(int connectionsCount, long phaseDuration, TimeUnit phaseDurationUnit, int window) {
+        if (connectionsCount <= 0) throw new IllegalArgumentException("connectionsCount");
+        if (window <= 0) throw new IllegalArgumentException("window");
+        this.connectionsCount = connectionsCount;
+        this.phaseDuration = phaseDurationUnit.toNanos(phaseDuration);
+        this.window = window;
+        this.metricsRegistry = new MetricsRegistry();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connectionsCount = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        int window = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        new LoadDriver(connectionsCount, seconds, TimeUnit.SECONDS, window).run();
+    }
+
+    public void run() throws Exception {
+        System.out.printf("Connections: %d, phase duration: %d s, window: %d%n", connectionsCount, TimeUnit.NANOSECONDS.toSeconds(phaseDuration), window);
+        try (StandInServer server = new StandInServer()) {
+            long heapBefore = getUsedHeap();
+            List<ClientChannel> channels = establish(server.getUri());
+            long heapAfter = getUsedHeap();
+            printHistogram("Handshake", metricsRegistry.getHistogram("handshake"));
+            System.out.printf("Heap per connection: %d bytes%n", (heapAfter - heapBefore) / connectionsCount);
+
+            runMessages(channels);
+            runCommands(channels);
+
+            for (ClientChannel channel : channels) {
+                channel.getTransport().close();
+            }
+        }
+        System.out.println();
+        System.out.println("Shared metrics:");
+        for (Map.Entry<String, Long> entry : MetricsRegistry.getShared().snapshot().entrySet()) {
+            if (entry.getValue() != 0) {
+                System.out.printf("  %s = %d%n", entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private List<ClientChannel> establish(URI serverUri) throws Exception {
+        LatencyHistogram handshakeTimes = metricsRegistry.getHistogram("handshake");
+        JacksonEnvelopeSerializer envelopeSerializer = new JacksonEnvelopeSerializer();
+        List<ClientChannel> channels = new ArrayList<>();
+        for (int i = 0; i < connectionsCount; i++) {
+            long startTime = System.nanoTime();
+            ClientChannel channel = new EstablishedClientChannelBuilderImpl(
+                    ClientChannelBuilderImpl.create(
+                            () -> {
+                                TcpTransport transport = new TcpTransport(envelopeSerializer, new SocketTcpClientFactory(), null);
+                                transport.setStateListener(StandInServer.IGNORE_STATE);
+                                return transport;
+                            },
+                            serverUri))
+                    .withIdentity(new Identity("load-" + i, "loopback"))
+                    .withInstance("driver")
+                    .withSessionCompression(SessionCompression.NONE)
+                    .withSessionEncryption(SessionEncryption.NONE)
+                    .buildAndEstablish();
+            handshakeTimes.recordSince(startTime);
+            channels.add(channel);
+        }
+        return channels;
+    }
+
+    private void runMessages(List<ClientChannel> channels) throws Exception {
+        final LongAdder echoedMessages = new LongAdder();
+        final LatencyHistogram echoTimes = metricsRegistry.getHistogram("echo");
+        final long endTime = System.nanoTime() + phaseDuration;
+        ExecutorService executor = Executors.newFixedThreadPool(channels.size());
+        List<Future<?>> futures = new ArrayList<>();
+        for (final ClientChannel channel : channels) {
+            final Semaphore inFlight = new Semaphore(window);
+            final ConcurrentHashMap<String, Long> sentTimes = new ConcurrentHashMap<>();
+            channel.addMessageListener(message -> {
+                Long sentTime = sentTimes.remove(message.getId());
+                if (sentTime != null) {
+                    echoTimes.recordSince(sentTime);
+                    echoedMessages.increment();
+                    inFlight.release();
+                }
+            }, false);
+            futures.add(executor.submit(() -> {
+                PlainDocument content = new PlainDocument("Hello, how can I help you?", MediaType.parse("text/plain"));
+                while (System.nanoTime() < endTime) {
+                    if (!inFlight.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                        continue;
+                    }
+                    Message message = new Message(EnvelopeId.newId());
+                    message.setTo(Node.parse("postmaster@loopback"));
+                    message.setContent(content);
+                    sentTimes.put(message.getId(), System.nanoTime());
+                    channel.sendMessage(message);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        double seconds = phaseDuration / 1e9;
+        System.out.printf("Messages: %.0f echoed/s%n", echoedMessages.sum() / seconds);
+        printHistogram("Message echo", echoTimes);
+    }
+
+    private void runCommands(List<ClientChannel> channels) throws Exception {
+        final LatencyHistogram commandTimes = metricsRegistry.getHistogram("command");
+        final long endTime = System.nanoTime() + phaseDuration;
+        ExecutorService executor = Executors.newFixedThreadPool(channels.size());
+        List<Future<?>> futures = new ArrayList<>();
+        for (final ClientChannel channel : channels) {
+            futures.add(executor.submit(() -> {
+                while (System.nanoTime() < endTime) {
+                    Command command = new Command(EnvelopeId.newId());
+                    command.setMethod(Command.CommandMethod.GET);
+                    command.setUri(LimeUri.parse("/ping"));
+                    long startTime = System.nanoTime();
+                    channel.processCommand(command, 5, TimeUnit.SECONDS);
+                    commandTimes.recordSince(startTime);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        double seconds = phaseDuration / 1e9;
+        System.out.printf("Commands: %.0f/s%n", commandTimes.getCount() / seconds);
+        printHistogram("Command round trip", commandTimes);
+    }
+
+    private static void printHistogram(String name, LatencyHistogram histogram) {
+        System.out.printf("%s (us): count=%d mean=%d p50=%d p90=%d p99=%d p999=%d max=%d%n",
+                name,
+                histogram.getCount(),
+                histogram.getMean(REPORT_UNIT),
+                histogram.getPercentile(50, REPORT_UNIT),
+                histogram.getPercentile(90, REPORT_UNIT),
+                histogram.getPercentile(99, REPORT_UNIT),
+                histogram.getPercentile(99.9, REPORT_UNIT),
+                histogram.getMax(REPORT_UNIT));
+    }
+
+    private static long getUsedHeap() throws InterruptedException {
+        MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memoryMXBean.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,35 @@
+package org.limeprotocol.benchmarks;
+
+import org.limeprotocol.util.RateGate;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the contention of the rate gate between threads, while the rate is not exceeded.
+ * Each iteration runs a batch of calls on a new gate with enough occurrences for all threads, since the gate
+ * blocks for one second after the occurrences are used.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, batchSize = 10000)
+@Measurement(iterations = 20, batchSize = 10000)
+@Threads(4)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateGateBenchmark {
+
+    private RateGate rateGate;
+
+    @Setup(Level.Iteration)
+    public void setup(BenchmarkParams params) {
+        int batchSize = Math.max(params.getWarmup().getBatchSize(), params.getMeasurement().getBatchSize());
+        rateGate = new RateGate(params.getThreads() * batchSize);
+    }
+
+    @Benchmark
+    public void waitToProceed() throws InterruptedException {
+        rateGate.waitToProceed(1, TimeUnit.SECONDS);
+    }
+}
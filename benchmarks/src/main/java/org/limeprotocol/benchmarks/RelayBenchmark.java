@@ -0,0 +1,55 @@
+package org.limeprotocol.benchmarks;
+
+import org.limeprotocol.Envelope;
+import org.limeprotocol.Node;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.serialization.RawEnvelope;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares relaying an envelope with a changed destination through a full deserialization and serialization
+ * against the raw envelope header splicing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RelayBenchmark {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+    private final static String MESSAGE_JSON = "{\"id\":\"d5b6f2a0-8b1c-4f8e-9a3e-2f1c0b7d4e51\",\"from\":\"5511999990000@0mn.io/android\"," +
+            "\"to\":\"postmaster@msging.net\",\"pp\":\"router@msging.net/instance\",\"type\":\"application/json\"," +
+            "\"content\":{\"items\":[{\"sku\":\"A-100\",\"price\":10.10,\"quantity\":2},{\"sku\":\"B-200\",\"price\":25.00,\"quantity\":1}]," +
+            "\"customer\":{\"name\":\"John Doe\",\"address\":\"Av. Paulista, 1000\"},\"total\":45.20}," +
+            "\"metadata\":{\"#tunnel.originator\":\"5511999990000@0mn.io\",\"traceId\":\"0af7651916cd43dd8448eb211c80319c\"}}";
+
+    private final static Node DESTINATION = Node.parse("bot@msging.net/instance");
+
+    private JacksonEnvelopeSerializer serializer;
+    private byte[] messageBytes;
+
+    @Setup
+    public void setup() {
+        serializer = new JacksonEnvelopeSerializer();
+        messageBytes = MESSAGE_JSON.getBytes(UTF8);
+    }
+
+    @Benchmark
+    public byte[] relayWithSerialization() {
+        Envelope envelope = serializer.deserialize(new String(messageBytes, UTF8));
+        envelope.setTo(DESTINATION);
+        return serializer.serialize(envelope).getBytes(UTF8);
+    }
+
+    @Benchmark
+    public byte[] relayRawEnvelope() {
+        RawEnvelope rawEnvelope = RawEnvelope.parse(messageBytes);
+        rawEnvelope.setTo(DESTINATION);
+        return rawEnvelope.toByteArray();
+    }
+}
@@ -0,0 +1,80 @@
+package org.limeprotocol.benchmarks;
+
+import org.limeprotocol.Envelope;
+import org.limeprotocol.Message;
+import org.limeprotocol.Notification;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the envelope serializer direct accessors against the reflection based bean binding of the mapper.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    private final static String MESSAGE_JSON = "{\"id\":\"d5b6f2a0-8b1c-4f8e-9a3e-2f1c0b7d4e51\",\"from\":\"5511999990000@0mn.io/android\"," +
+            "\"to\":\"postmaster@msging.net\",\"pp\":\"router@msging.net/instance\",\"type\":\"text/plain\"," +
+            "\"content\":\"Hello, how can I help you?\"," +
+            "\"metadata\":{\"#tunnel.originator\":\"5511999990000@0mn.io\",\"traceId\":\"0af7651916cd43dd8448eb211c80319c\"}}";
+    private final static String NOTIFICATION_JSON = "{\"id\":\"d5b6f2a0-8b1c-4f8e-9a3e-2f1c0b7d4e51\",\"from\":\"postmaster@msging.net/instance\"," +
+            "\"to\":\"5511999990000@0mn.io/android\",\"event\":\"failed\",\"reason\":{\"code\":42,\"description\":\"Destination not found\"}}";
+
+    private JacksonEnvelopeSerializer serializer;
+    private Message message;
+    private Notification notification;
+
+    @Setup
+    public void setup() {
+        serializer = new JacksonEnvelopeSerializer();
+        message = (Message) serializer.deserialize(MESSAGE_JSON);
+        notification = (Notification) serializer.deserialize(NOTIFICATION_JSON);
+    }
+
+    @Benchmark
+    public String serializeMessage() {
+        return serializer.serialize(message);
+    }
+
+    @Benchmark
+    public String serializeMessageBeanBinding() throws IOException {
+        return JacksonEnvelopeSerializer.getObjectMapper().writeValueAsString(message);
+    }
+
+    @Benchmark
+    public Envelope deserializeMessage() {
+        return serializer.deserialize(MESSAGE_JSON);
+    }
+
+    @Benchmark
+    public Envelope deserializeMessageBeanBinding() throws IOException {
+        return JacksonEnvelopeSerializer.getObjectMapper().readValue(MESSAGE_JSON, Message.class);
+    }
+
+    @Benchmark
+    public String serializeNotification() {
+        return serializer.serialize(notification);
+    }
+
+    @Benchmark
+    public String serializeNotificationBeanBinding() throws IOException {
+        return JacksonEnvelopeSerializer.getObjectMapper().writeValueAsString(notification);
+    }
+
+    @Benchmark
+    public Envelope deserializeNotification() {
+        return serializer.deserialize(NOTIFICATION_JSON);
+    }
+
+    @Benchmark
+    public Envelope deserializeNotificationBeanBinding() throws IOException {
+        return JacksonEnvelopeSerializer.getObjectMapper().readValue(NOTIFICATION_JSON, Notification.class);
+    }
+}
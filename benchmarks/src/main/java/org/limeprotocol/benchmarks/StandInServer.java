@@ -0,0 +1,233 @@
+package org.limeprotocol.benchmarks;
+
+import org.limeprotocol.*;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.network.tcp.TcpClient;
+import org.limeprotocol.network.tcp.TcpTransport;
+import org.limeprotocol.security.Authentication;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.*;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process stand-in of a LIME server, for load tests over the loopback interface.
+ * It accepts TCP connections, runs the session handshake without compression, encryption or credentials checks,
+ * echoes the received messages to their senders, and answers the command requests with a success response.
+ * Each connection uses a {@link TcpTransport} over the accepted socket, so the server shares the framing and
+ * serialization code of the clients.
+ */
+public class StandInServer implements Closeable {
+
+    private final static Node SERVER_NODE = Node.parse("postmaster@loopback/server");
+
+    /**
+     * Ignores the transport states, which are otherwise printed for each closed connection.
+     */
+    final static Transport.TransportStateListener IGNORE_STATE = new Transport.TransportStateListener() {
+        @Override
+        public void onClosing() {
+        }
+
+        @Override
+        public void onClosed() {
+        }
+
+        @Override
+        public void onException(Exception e) {
+        }
+    };
+
+    private final ServerSocket serverSocket;
+    private final JacksonEnvelopeSerializer envelopeSerializer;
+    private final Set<Transport> transports;
+    private volatile boolean isClosed;
+
+    /**
+     * Starts a server listening on a free loopback port.
+     * @throws IOException
+     */
+    public StandInServer() throws IOException {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        this.envelopeSerializer = new JacksonEnvelopeSerializer();
+        this.transports = ConcurrentHashMap.newKeySet();
+        Thread acceptThread = new Thread(this::accept, "StandInServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public URI getUri() {
+        return URI.create(String.format("net.tcp://%s:%d", serverSocket.getInetAddress().getHostAddress(), serverSocket.getLocalPort()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        isClosed = true;
+        serverSocket.close();
+        for (Transport transport : transports) {
+            transport.close();
+        }
+    }
+
+    private void accept() {
+        while (!isClosed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                TcpTransport transport = new TcpTransport(envelopeSerializer, () -> new AcceptedTcpClient(socket), null);
+                transport.setStateListener(IGNORE_STATE);
+                transport.open(getUri());
+                transports.add(transport);
+                transport.setEnvelopeListener(new ServerSession(transport));
+            } catch (IOException e) {
+                if (!isClosed) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the server side of the session of a connection.
+     */
+    private class ServerSession implements Transport.TransportEnvelopeListener {
+        private final Transport transport;
+        private final String sessionId;
+        private Node clientNode;
+
+        ServerSession(Transport transport) {
+            this.transport = transport;
+            this.sessionId = EnvelopeId.newId();
+        }
+
+        @Override
+        public void onReceive(Envelope envelope) {
+            try {
+                if (envelope instanceof Session) {
+                    onReceiveSession((Session) envelope);
+                } else if (envelope instanceof Message) {
+                    Message message = (Message) envelope;
+                    message.setTo(message.getFrom() != null ? message.getFrom() : clientNode);
+                    message.setFrom(SERVER_NODE);
+                    transport.send(message);
+                } else if (envelope instanceof Command) {
+                    Command command = (Command) envelope;
+                    if (command.getStatus() == null) {
+                        Command response = new Command(command.getId());
+                        response.setFrom(SERVER_NODE);
+                        response.setTo(command.getFrom() != null ? command.getFrom() : clientNode);
+                        response.setMethod(command.getMethod());
+                        response.setStatus(Command.CommandStatus.SUCCESS);
+                        transport.send(response);
+                    }
+                }
+            } catch (IOException e) {
+                closeTransport();
+            }
+        }
+
+        private void onReceiveSession(Session session) throws IOException {
+            Session response = new Session();
+            response.setId(sessionId);
+            response.setFrom(SERVER_NODE);
+            switch (session.getState()) {
+                case NEW:
+                    response.setState(Session.SessionState.NEGOTIATING);
+                    response.setCompressionOptions(new SessionCompression[] { SessionCompression.NONE });
+                    response.setEncryptionOptions(new SessionEncryption[] { SessionEncryption.NONE });
+                    transport.send(response);
+                    break;
+                case NEGOTIATING:
+                    response.setState(Session.SessionState.NEGOTIATING);
+                    response.setCompression(SessionCompression.NONE);
+                    response.setEncryption(SessionEncryption.NONE);
+                    transport.send(response);
+                    Session authenticating = new Session();
+                    authenticating.setId(sessionId);
+                    authenticating.setFrom(SERVER_NODE);
+                    authenticating.setState(Session.SessionState.AUTHENTICATING);
+                    authenticating.setSchemeOptions(Authentication.AuthenticationScheme.values());
+                    transport.send(authenticating);
+                    break;
+                case AUTHENTICATING:
+                    clientNode = session.getFrom() != null ? session.getFrom() : new Node(EnvelopeId.newId(), "loopback", null);
+                    response.setState(Session.SessionState.ESTABLISHED);
+                    response.setTo(clientNode);
+                    transport.send(response);
+                    break;
+                case FINISHING:
+                    response.setState(Session.SessionState.FINISHED);
+                    transport.send(response);
+                    closeTransport();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void closeTransport() {
+            transports.remove(transport);
+            try {
+                transport.close();
+            } catch (IOException e) {
+                // The connection is already closed
+            }
+        }
+    }
+
+    /**
+     * Exposes an accepted socket as a connected client.
+     */
+    private static class AcceptedTcpClient implements TcpClient {
+        private final Socket socket;
+
+        AcceptedTcpClient(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void connect(SocketAddress endpoint) {
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return socket.getOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return socket.getInputStream();
+        }
+
+        @Override
+        public boolean isTlsStarted() {
+            return false;
+        }
+
+        @Override
+        public void startTls() throws IOException {
+            throw new IOException("The stand-in server doesn't support TLS");
+        }
+
+        @Override
+        public boolean isInputShutdown() {
+            return socket.isInputShutdown();
+        }
+
+        @Override
+        public boolean isOutputShutdown() {
+            return socket.isOutputShutdown();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
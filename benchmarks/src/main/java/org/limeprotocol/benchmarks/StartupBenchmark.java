@@ -0,0 +1,56 @@
+package org.limeprotocol.benchmarks;
+
+import org.limeprotocol.Envelope;
+import org.limeprotocol.messaging.Registrator;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of the first envelopes deserialized and serialized in a new JVM, with and without the
+ * serializer warm-up. Each fork is a new JVM, so the single shot measures only the first batch of envelopes.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    private final static String[] ENVELOPES_JSON = {
+            "{\"id\":\"1\",\"from\":\"5511999990000@0mn.io/android\",\"to\":\"bot@msging.net\",\"type\":\"text/plain\",\"content\":\"Hello\"}",
+            "{\"id\":\"2\",\"from\":\"5511999990000@0mn.io/android\",\"to\":\"bot@msging.net\",\"type\":\"application/vnd.lime.chatstate+json\",\"content\":{\"state\":\"composing\"}}",
+            "{\"id\":\"3\",\"from\":\"bot@msging.net/instance\",\"to\":\"5511999990000@0mn.io/android\",\"type\":\"application/vnd.lime.web-link+json\",\"content\":{\"uri\":\"http://limeprotocol.org\",\"text\":\"Lime\"}}",
+            "{\"id\":\"4\",\"from\":\"bot@msging.net/instance\",\"to\":\"postmaster@msging.net\",\"method\":\"get\",\"uri\":\"/account\"}",
+            "{\"id\":\"4\",\"from\":\"postmaster@msging.net\",\"to\":\"bot@msging.net/instance\",\"method\":\"get\",\"status\":\"success\",\"type\":\"application/vnd.lime.account+json\",\"resource\":{\"fullName\":\"Bot\",\"isTemporary\":false}}",
+            "{\"id\":\"1\",\"from\":\"bot@msging.net/instance\",\"to\":\"5511999990000@0mn.io/android\",\"event\":\"received\"}"
+    };
+
+    private final static int ENVELOPES_COUNT = 1000;
+
+    private JacksonEnvelopeSerializer serializer;
+
+    @Param({ "false", "true" })
+    public boolean warmUp;
+
+    @Setup
+    public void setup() {
+        Registrator.registerDocuments();
+        if (warmUp) {
+            JacksonEnvelopeSerializer.warmUp(1000);
+        }
+        serializer = new JacksonEnvelopeSerializer();
+    }
+
+    @Benchmark
+    public int firstEnvelopes() {
+        int length = 0;
+        for (int i = 0; i < ENVELOPES_COUNT; i++) {
+            Envelope envelope = serializer.deserialize(ENVELOPES_JSON[i % ENVELOPES_JSON.length]);
+            length += serializer.serialize(envelope).length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,85 @@
+package org.limeprotocol.benchmarks;
+
+import org.limeprotocol.Identity;
+import org.limeprotocol.MediaType;
+import org.limeprotocol.Node;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parse, format and hash operations of the Identity, Node and MediaType value types.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ValueTypesBenchmark {
+
+    private final static String NODE_STRING = "postmaster@msging.net/instance-01";
+    private final static String IDENTITY_STRING = "5511999990000@0mn.io";
+    private final static String MEDIA_TYPE_STRING = "application/vnd.lime.chatstate+json";
+
+    private Node node;
+    private Identity identity;
+    private MediaType mediaType;
+
+    @Setup
+    public void setup() {
+        node = Node.parse(NODE_STRING);
+        identity = Identity.parse(IDENTITY_STRING);
+        mediaType = MediaType.parse(MEDIA_TYPE_STRING);
+    }
+
+    @Benchmark
+    public Node parseNode() {
+        return Node.parse(NODE_STRING);
+    }
+
+    @Benchmark
+    public Identity parseIdentity() {
+        return Identity.parse(IDENTITY_STRING);
+    }
+
+    @Benchmark
+    public MediaType parseMediaType() {
+        return MediaType.parse(MEDIA_TYPE_STRING);
+    }
+
+    @Benchmark
+    public String formatNewNode() {
+        return new Node(node.getName(), node.getDomain(), node.getInstance()).toString();
+    }
+
+    @Benchmark
+    public String formatNewMediaType() {
+        return new MediaType("application", "vnd.lime.chatstate", "json").toString();
+    }
+
+    @Benchmark
+    public String formatNode() {
+        return node.toString();
+    }
+
+    @Benchmark
+    public int hashNode() {
+        return node.hashCode();
+    }
+
+    @Benchmark
+    public int hashIdentity() {
+        return identity.hashCode();
+    }
+
+    @Benchmark
+    public int hashMediaType() {
+        return mediaType.hashCode();
+    }
+
+    @Benchmark
+    public boolean equalsNode() {
+        return node.equals(Node.parse(NODE_STRING));
+    }
+}
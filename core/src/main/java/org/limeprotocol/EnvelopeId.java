@@ -4,13 +4,46 @@ import java.util.UUID;
 
 /**
  * Utility class for generating envelope ids.
+ * The ids are random UUIDs by default, and the strategy can be replaced by calling {@link #setGenerator(EnvelopeIdGenerator)}
+ * at the application startup, like with a {@link TimeOrderedEnvelopeIdGenerator} to avoid the contention
+ * of the shared secure random when many threads create envelopes.
  */
 public class EnvelopeId {
+
+    /**
+     * Generates random (version 4) UUIDs using the shared secure random of {@link UUID#randomUUID()}.
+     */
+    public final static EnvelopeIdGenerator RANDOM = new EnvelopeIdGenerator() {
+        @Override
+        public String newId() {
+            return UUID.randomUUID().toString();
+        }
+    };
+
+    private static volatile EnvelopeIdGenerator generator = RANDOM;
+
     /**
      * Generates a new envelope identifier.
      * @return
      */
     public static String newId() {
-        return UUID.randomUUID().toString();
+        return generator.newId();
+    }
+
+    /**
+     * Gets the current ids generator.
+     * @return
+     */
+    public static EnvelopeIdGenerator getGenerator() {
+        return generator;
+    }
+
+    /**
+     * Changes the ids generator used by {@link #newId()}.
+     * @param generator
+     */
+    public static void setGenerator(EnvelopeIdGenerator generator) {
+        if (generator == null) throw new IllegalArgumentException("generator");
+        EnvelopeId.generator = generator;
     }
 }
@@ -0,0 +1,13 @@
+package org.limeprotocol;
+
+/**
+ * Defines a strategy for generating envelope ids.
+ * The implementations must be thread-safe and generate ids that are unique across the sessions.
+ */
+public interface EnvelopeIdGenerator {
+    /**
+     * Generates a new envelope identifier.
+     * @return
+     */
+    String newId();
+}
@@ -3,29 +3,46 @@ package org.limeprotocol;
 import org.limeprotocol.util.Cast;
 import org.limeprotocol.util.StringUtils;
 
+/**
+ * Represents an identity, in the name@domain format.
+ * The string representation and the case-insensitive hash code are computed once and cached,
+ * so the instances should be treated as immutable after they are used as keys in hash structures.
+ */
 public class Identity {
     private String name;
     private String domain;
+    private String stringValue;
+    private int hashCodeValue;
 
     public Identity(String name, String domain){
-        setName(name);
-        setDomain(domain);
+        this.name = name;
+        this.domain = domain;
     }
 
     public String getName() {
         return name;
     }
 
+    /**
+     * @deprecated Identities are used as keys in hash structures. Create a new instance instead.
+     */
+    @Deprecated
     public void setName(String name) {
         this.name = name;
+        invalidate();
     }
 
     public String getDomain() {
         return domain;
     }
 
+    /**
+     * @deprecated Identities are used as keys in hash structures. Create a new instance instead.
+     */
+    @Deprecated
     public void setDomain(String domain) {
         this.domain = domain;
+        invalidate();
     }
 
     @Override
@@ -51,21 +68,50 @@ public class Identity {
 
     @Override
     public int hashCode() {
-        return this.toString().toLowerCase().hashCode();
+        int hash = hashCodeValue;
+        if (hash == 0) {
+            hash = StringUtils.hashCodeIgnoreCase(this.toString());
+            hashCodeValue = hash;
+        }
+        return hash;
     }
 
     @Override
     public String toString() {
+        String value = stringValue;
+        if (value == null) {
+            value = buildString();
+            stringValue = value;
+        }
+        return value;
+    }
+
+    /**
+     * Builds the string representation of the instance, which is cached by {@link #toString()}.
+     * @return
+     */
+    protected String buildString() {
         if (StringUtils.isNullOrWhiteSpace(this.domain)) {
             return this.name;
         }
         else {
-            return String.format("%1$s@%2$s",
-                                name == null ? "" : name,
-                                domain);
+            String name = this.name == null ? "" : this.name;
+            return new StringBuilder(name.length() + domain.length() + 1)
+                    .append(name)
+                    .append('@')
+                    .append(domain)
+                    .toString();
         }
     }
 
+    /**
+     * Discards the cached string representation and hash code.
+     */
+    protected void invalidate() {
+        stringValue = null;
+        hashCodeValue = 0;
+    }
+
     /**
      * Parses the string to a valid Identity.
      * @param string
@@ -77,11 +123,11 @@ public class Identity {
             throw new IllegalArgumentException("s");
         }
 
-        String[] splittedIdentity = string.split("@");
+        int separatorIndex = string.indexOf('@');
 
-        String name = !StringUtils.isNullOrWhiteSpace(splittedIdentity[0]) ? splittedIdentity[0] : null;
-        String domain = splittedIdentity.length > 1 ? splittedIdentity[1] : null;
+        String name = separatorIndex < 0 ? string : string.substring(0, separatorIndex);
+        String domain = separatorIndex < 0 ? null : StringUtils.segmentAfter(string, separatorIndex, '@');
 
-        return new Identity(name, domain);
+        return new Identity(!StringUtils.isNullOrWhiteSpace(name) ? name : null, domain);
     }
 }
@@ -27,6 +27,10 @@ public class MediaType {
      */
     private boolean isJson;
 
+    private String stringValue;
+
+    private int hashCodeValue;
+
     public MediaType() {
 
     }
@@ -65,20 +69,36 @@ public class MediaType {
      **/
     @Override
     public String toString() {
-        if (StringUtils.isNullOrWhiteSpace(this.suffix)) {
-            return StringUtils.format("{0}/{1}", this.type, this.subtype);
-        } else {
-            return StringUtils.format("{0}/{1}+{2}", this.type, this.subtype, this.suffix);
+        String value = stringValue;
+        if (value == null) {
+            String type = this.type == null ? "" : this.type;
+            String subtype = this.subtype == null ? "" : this.subtype;
+            StringBuilder builder = new StringBuilder(type.length() + subtype.length() + (suffix == null ? 1 : suffix.length() + 2))
+                    .append(type)
+                    .append('/')
+                    .append(subtype);
+            if (!StringUtils.isNullOrWhiteSpace(this.suffix)) {
+                builder.append('+').append(this.suffix);
+            }
+            value = builder.toString();
+            stringValue = value;
         }
+        return value;
     }
 
     /**
      * Returns a hash code for this instance.
+     * The hash code is case-insensitive, as the {@link #equals(Object)} method.
      * @return A hash code for this instance, suitable for use in hashing algorithms and data structures like a hash table.
      */
     @Override
     public int hashCode() {
-        return this.toString().hashCode();
+        int hash = hashCodeValue;
+        if (hash == 0) {
+            hash = StringUtils.hashCodeIgnoreCase(this.toString());
+            hashCodeValue = hash;
+        }
+        return hash;
     }
 
     /**
@@ -109,23 +129,21 @@ public class MediaType {
             throw new IllegalArgumentException("value");
         }
 
-        String[] splittedMediaType = s.split("/");
+        int typeSeparatorIndex = s.indexOf('/');
+        String subtypeAndSuffix = typeSeparatorIndex < 0 ? null : StringUtils.segmentAfter(s, typeSeparatorIndex, '/');
 
-        if (splittedMediaType.length != 2) {
+        if (subtypeAndSuffix == null ||
+                (typeSeparatorIndex + 1 + subtypeAndSuffix.length() < s.length() && StringUtils.segmentAfter(s, typeSeparatorIndex + 1 + subtypeAndSuffix.length(), '/') != null)) {
             throw new IllegalArgumentException("Invalid media type format");
         }
 
-        String type = splittedMediaType[0];
+        String type = s.substring(0, typeSeparatorIndex);
 
-        String[] splittedSubtype = splittedMediaType[1].split("\\+");
+        int suffixSeparatorIndex = subtypeAndSuffix.indexOf('+');
 
-        String subtype = splittedSubtype[0];
+        String subtype = suffixSeparatorIndex < 0 ? subtypeAndSuffix : subtypeAndSuffix.substring(0, suffixSeparatorIndex);
 
-        String suffix = null;
-
-        if (splittedSubtype.length > 1) {
-            suffix = splittedSubtype[1];
-        }
+        String suffix = suffixSeparatorIndex < 0 ? null : StringUtils.segmentAfter(subtypeAndSuffix, suffixSeparatorIndex, '+');
 
         return new MediaType(type, subtype, suffix);
     }
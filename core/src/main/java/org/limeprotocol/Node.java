@@ -8,12 +8,11 @@ public class Node extends Identity {
 
 
     private String instance;
-    private boolean isComplete;
 
 
     public Node(String name, String domain, String instance){
         this(name, domain);
-        setInstance(instance);
+        this.instance = instance;
     }
 
     public Node(String name, String domain){
@@ -32,17 +31,32 @@ public class Node extends Identity {
         return instance;
     }
 
+    /**
+     * @deprecated Nodes are used as keys in hash structures. Create a new instance instead.
+     */
+    @Deprecated
     public void setInstance(String instance) {
         this.instance = instance;
+        invalidate();
     }
 
     @Override
-    public String toString() {
-        //'\0' == '' (Empty character)
-        String nodeString = StringUtils.format("{0}/{1}", super.toString(), instance);
-        nodeString = StringUtils.trimEnd(nodeString, "/");
-
-        return nodeString;
+    protected String buildString() {
+        String identityString = super.buildString();
+        if (identityString == null) {
+            identityString = "";
+        }
+        if (StringUtils.isNullOrEmpty(instance)) {
+            return identityString;
+        }
+        StringBuilder nodeString = new StringBuilder(identityString.length() + instance.length() + 1)
+                .append(identityString)
+                .append('/')
+                .append(instance);
+        if (instance.charAt(instance.length() - 1) == '/') {
+            nodeString.setLength(nodeString.length() - 1);
+        }
+        return nodeString.toString();
     }
 
     @Override
@@ -80,13 +94,17 @@ public class Node extends Identity {
 
         Identity identity = Identity.parse(s);
 
-        String[] splittedDomain = identity.getDomain() != null ? identity.getDomain().split("/") : null;
-
-        String name = identity.getName();
-        String domain = splittedDomain != null ? splittedDomain[0] : null;
-        String instance = splittedDomain != null && splittedDomain.length > 1 ? splittedDomain[1] : null;
+        String domain = identity.getDomain();
+        String instance = null;
+        if (domain != null) {
+            int separatorIndex = domain.indexOf('/');
+            if (separatorIndex >= 0) {
+                instance = StringUtils.segmentAfter(domain, separatorIndex, '/');
+                domain = domain.substring(0, separatorIndex);
+            }
+        }
 
-        return new Node(name, domain, instance);
+        return new Node(identity.getName(), domain, instance);
     }
 
     /**
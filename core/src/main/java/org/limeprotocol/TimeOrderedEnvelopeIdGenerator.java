@@ -0,0 +1,83 @@
+package org.limeprotocol;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates time-ordered UUIDs in the version 7 layout: a 48 bits Unix timestamp in milliseconds, followed by
+ * a 12 bits counter and 62 random bits. The ids have the same string format of the random UUIDs, but are sorted
+ * by creation time, which keeps the structures indexed by id, like the pending commands, appending at the end.
+ * The state is kept per thread and the random bits come from {@link ThreadLocalRandom}, so the generation doesn't
+ * contend between threads. The ids of a thread are strictly increasing, even if the clock goes backwards
+ * or more than 4096 ids are generated in the same millisecond, when the timestamp is advanced.
+ * As the random bits are not from a secure source, the ids must not be used as secrets.
+ */
+public class TimeOrderedEnvelopeIdGenerator implements EnvelopeIdGenerator {
+
+    private final static int COUNTER_BITS = 12;
+    private final static int COUNTER_MAX = (1 << COUNTER_BITS) - 1;
+    private final static long VERSION = 7L << COUNTER_BITS;
+    private final static long VARIANT = 0x8000000000000000L;
+    private final static long RANDOM_MASK = 0x3FFFFFFFFFFFFFFFL;
+    private final static char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final ThreadLocal<State> state = new ThreadLocal<State>() {
+        @Override
+        protected State initialValue() {
+            return new State();
+        }
+    };
+
+    @Override
+    public String newId() {
+        State state = this.state.get();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long timestamp = currentTimeMillis();
+        if (timestamp > state.timestamp) {
+            state.timestamp = timestamp;
+            // Starts the counter at the lower half, so there's room to increment it in the same millisecond
+            state.counter = random.nextInt(COUNTER_MAX / 2);
+        } else if (state.counter < COUNTER_MAX) {
+            state.counter++;
+        } else {
+            state.timestamp++;
+            state.counter = 0;
+        }
+        long mostSignificantBits = (state.timestamp << 16) | VERSION | state.counter;
+        long leastSignificantBits = VARIANT | (random.nextLong() & RANDOM_MASK);
+        return toString(mostSignificantBits, leastSignificantBits);
+    }
+
+    /**
+     * Gets the current time in milliseconds since the Unix epoch.
+     * @return
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private static String toString(long mostSignificantBits, long leastSignificantBits) {
+        char[] chars = new char[36];
+        appendHex(chars, 0, mostSignificantBits >>> 32, 8);
+        chars[8] = '-';
+        appendHex(chars, 9, mostSignificantBits >>> 16, 4);
+        chars[13] = '-';
+        appendHex(chars, 14, mostSignificantBits, 4);
+        chars[18] = '-';
+        appendHex(chars, 19, leastSignificantBits >>> 48, 4);
+        chars[23] = '-';
+        appendHex(chars, 24, leastSignificantBits, 12);
+        return new String(chars);
+    }
+
+    private static void appendHex(char[] chars, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    private static class State {
+        private long timestamp;
+        private int counter;
+    }
+}
@@ -135,11 +135,9 @@ public class ClientChannelImpl extends ChannelBase implements ClientChannel {
             throw new IllegalArgumentException("to");
         }
 
-        Notification notification = new Notification() {{
-            setId(messageId);
-            setTo(to);
-            setEvent(Event.RECEIVED);
-        }};
+        Notification notification = new Notification(messageId);
+        notification.setTo(to);
+        notification.setEvent(Notification.Event.RECEIVED);
 
         sendNotification(notification);
     }
@@ -4,6 +4,9 @@ import org.limeprotocol.Command;
 import org.limeprotocol.Message;
 import org.limeprotocol.Notification;
 import org.limeprotocol.Session;
+import org.limeprotocol.metrics.Counter;
+import org.limeprotocol.metrics.MetricNames;
+import org.limeprotocol.metrics.MetricsRegistry;
 import org.limeprotocol.network.Channel;
 import org.limeprotocol.network.ChannelInformation;
 import org.limeprotocol.network.FailedChannelInformation;
@@ -33,6 +36,8 @@ public class OnDemandClientChannelImpl implements OnDemandClientChannel {
     private final Set<NotificationChannelListener> notificationChannelListeners;
     private final Set<CommandChannelListener> commandChannelListeners;
     private final ChannelStateMonitor channelStateMonitor;
+    private final Counter reconnections;
+    private final Counter creationFailures;
 
     private Semaphore finishedSessionChannelListenerSemaphore;
     private ClientChannel clientChannel;
@@ -56,6 +61,8 @@ public class OnDemandClientChannelImpl implements OnDemandClientChannel {
         this.notificationChannelListeners = new HashSet<>();
         this.commandChannelListeners = new HashSet<>();
         this.channelStateMonitor = new ChannelStateMonitor();
+        this.reconnections = MetricsRegistry.getShared().getCounter(MetricNames.CLIENT_RECONNECTIONS);
+        this.creationFailures = MetricsRegistry.getShared().getCounter(MetricNames.CLIENT_CHANNEL_CREATION_FAILURES);
     }
 
     @Override
@@ -236,6 +243,7 @@ public class OnDemandClientChannelImpl implements OnDemandClientChannel {
                 // Check again if the current channel is valid
                 clientChannel = this.clientChannel;
                 if (shouldCreateChannel(clientChannel)) {
+                    boolean isReconnection = clientChannel != null;
 
                     // Attempts to recreate the channel
                     this.clientChannel = clientChannel = this.establishedClientChannelBuilder.buildAndEstablish();
@@ -257,8 +265,12 @@ public class OnDemandClientChannelImpl implements OnDemandClientChannel {
                     }
 
                     channelCreated = true;
+                    if (isReconnection) {
+                        reconnections.increment();
+                    }
                 }
             } catch (Exception e) {
+                creationFailures.increment();
                 FailedChannelInformation failedChannelInformation = new FailedChannelInformation(
                         null, null, null, null, false, e, operationName);
                 if (!invokeHandlers(channelCreationFailedHandlers, failedChannelInformation)) {
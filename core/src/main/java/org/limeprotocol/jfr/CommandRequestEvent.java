@@ -0,0 +1,26 @@
+package org.limeprotocol.jfr;
+
+import jdk.jfr.*;
+
+@Name("org.limeprotocol.CommandRequest")
+@Label("Command Request")
+@Description("Command request awaiting its response")
+@Category({ "LIME", "Channel" })
+class CommandRequestEvent extends Event {
+
+    @Label("Command Id")
+    String commandId;
+
+    @Label("Method")
+    String method;
+
+    @Label("URI")
+    String uri;
+
+    @Label("Media Type")
+    String mediaType;
+
+    @Label("Status")
+    @Description("The response status, or 'timeout' if there was no response")
+    String status;
+}
@@ -0,0 +1,24 @@
+package org.limeprotocol.jfr;
+
+import jdk.jfr.*;
+
+@Name("org.limeprotocol.EnvelopeDecode")
+@Label("Envelope Decode")
+@Description("Deserialization of a received envelope")
+@Category({ "LIME", "Transport" })
+@StackTrace(false)
+class EnvelopeDecodeEvent extends Event {
+
+    @Label("Envelope Type")
+    String envelopeType;
+
+    @Label("Media Type")
+    String mediaType;
+
+    @Label("Envelope Id")
+    String envelopeId;
+
+    @Label("Size")
+    @DataAmount
+    int size;
+}
@@ -0,0 +1,149 @@
+package org.limeprotocol.jfr;
+
+import org.limeprotocol.*;
+
+/**
+ * Creates and commits the JFR events. This class references the jdk.jfr types, so it must only be loaded
+ * when they are available (see {@link FlightRecorderEvents}).
+ * The events are created only if their type is enabled in a recording, which is checked through a probe instance.
+ */
+final class Events {
+
+    private final static EnvelopeDecodeEvent envelopeDecodeProbe = new EnvelopeDecodeEvent();
+    private final static ModulePipelineEvent modulePipelineProbe = new ModulePipelineEvent();
+    private final static ListenerDispatchEvent listenerDispatchProbe = new ListenerDispatchEvent();
+    private final static TransportWriteEvent transportWriteProbe = new TransportWriteEvent();
+    private final static CommandRequestEvent commandRequestProbe = new CommandRequestEvent();
+    private final static SessionStateEvent sessionStateProbe = new SessionStateEvent();
+
+    private Events() {
+    }
+
+    static Object beginEnvelopeDecode() {
+        if (!envelopeDecodeProbe.isEnabled()) return null;
+        EnvelopeDecodeEvent event = new EnvelopeDecodeEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endEnvelopeDecode(Object event, Envelope envelope, int size) {
+        EnvelopeDecodeEvent decodeEvent = (EnvelopeDecodeEvent) event;
+        decodeEvent.end();
+        if (decodeEvent.shouldCommit()) {
+            decodeEvent.envelopeType = getEnvelopeType(envelope);
+            decodeEvent.mediaType = getMediaType(envelope);
+            decodeEvent.envelopeId = envelope != null ? envelope.getId() : null;
+            decodeEvent.size = size;
+            decodeEvent.commit();
+        }
+    }
+
+    static Object beginModulePipeline() {
+        if (!modulePipelineProbe.isEnabled()) return null;
+        ModulePipelineEvent event = new ModulePipelineEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endModulePipeline(Object event, String direction, Envelope envelope, int modulesCount, boolean discarded) {
+        ModulePipelineEvent pipelineEvent = (ModulePipelineEvent) event;
+        pipelineEvent.end();
+        if (pipelineEvent.shouldCommit()) {
+            pipelineEvent.direction = direction;
+            pipelineEvent.envelopeType = getEnvelopeType(envelope);
+            pipelineEvent.mediaType = getMediaType(envelope);
+            pipelineEvent.modulesCount = modulesCount;
+            pipelineEvent.discarded = discarded;
+            pipelineEvent.commit();
+        }
+    }
+
+    static Object beginListenerDispatch() {
+        if (!listenerDispatchProbe.isEnabled()) return null;
+        ListenerDispatchEvent event = new ListenerDispatchEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endListenerDispatch(Object event, Envelope envelope, Object listener) {
+        ListenerDispatchEvent dispatchEvent = (ListenerDispatchEvent) event;
+        dispatchEvent.end();
+        if (dispatchEvent.shouldCommit()) {
+            dispatchEvent.envelopeType = getEnvelopeType(envelope);
+            dispatchEvent.mediaType = getMediaType(envelope);
+            dispatchEvent.envelopeId = envelope.getId();
+            dispatchEvent.listenerClass = listener.getClass();
+            dispatchEvent.commit();
+        }
+    }
+
+    static Object beginTransportWrite() {
+        if (!transportWriteProbe.isEnabled()) return null;
+        TransportWriteEvent event = new TransportWriteEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endTransportWrite(Object event, String priority, int size, boolean flushed) {
+        TransportWriteEvent writeEvent = (TransportWriteEvent) event;
+        writeEvent.end();
+        if (writeEvent.shouldCommit()) {
+            writeEvent.priority = priority;
+            writeEvent.size = size;
+            writeEvent.flushed = flushed;
+            writeEvent.commit();
+        }
+    }
+
+    static Object beginCommandRequest() {
+        if (!commandRequestProbe.isEnabled()) return null;
+        CommandRequestEvent event = new CommandRequestEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endCommandRequest(Object event, Command requestCommand, Command responseCommand) {
+        CommandRequestEvent requestEvent = (CommandRequestEvent) event;
+        requestEvent.end();
+        if (requestEvent.shouldCommit()) {
+            requestEvent.commandId = requestCommand.getId();
+            requestEvent.method = toString(requestCommand.getMethod());
+            requestEvent.uri = toString(requestCommand.getUri());
+            requestEvent.mediaType = getMediaType(responseCommand != null && responseCommand.getType() != null ? responseCommand : requestCommand);
+            requestEvent.status = responseCommand != null ? toString(responseCommand.getStatus()) : "timeout";
+            requestEvent.commit();
+        }
+    }
+
+    static void sessionStateChanged(String sessionId, Session.SessionState previousState, Session.SessionState state) {
+        if (!sessionStateProbe.isEnabled()) return;
+        SessionStateEvent event = new SessionStateEvent();
+        if (event.shouldCommit()) {
+            event.sessionId = sessionId;
+            event.previousState = toString(previousState);
+            event.state = toString(state);
+            event.commit();
+        }
+    }
+
+    private static String getEnvelopeType(Envelope envelope) {
+        return envelope != null ? envelope.getClass().getSimpleName() : null;
+    }
+
+    private static String getMediaType(Envelope envelope) {
+        if (envelope instanceof Message) {
+            return toString(((Message) envelope).getType());
+        }
+        if (envelope instanceof Command) {
+            return toString(((Command) envelope).getType());
+        }
+        if (envelope instanceof Notification) {
+            return toString(((Notification) envelope).getEvent());
+        }
+        return null;
+    }
+
+    private static String toString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+}
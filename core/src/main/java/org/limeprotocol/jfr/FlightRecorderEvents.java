@@ -0,0 +1,100 @@
+package org.limeprotocol.jfr;
+
+import org.limeprotocol.Command;
+import org.limeprotocol.Envelope;
+import org.limeprotocol.Session;
+
+/**
+ * Emits JDK Flight Recorder events for the envelopes lifecycle, in the 'LIME' category: envelope decode,
+ * module pipeline, listener dispatch, transport write, command request and session state events.
+ * When the JFR API is not available in the runtime, all methods do nothing; when it is available, the events are
+ * created only while a recording has them enabled, so the instrumentation is nearly free otherwise.
+ * The begin methods return the started event, or null, which must be passed to the respective end method.
+ */
+public final class FlightRecorderEvents {
+
+    public final static String SENDING = "sending";
+    public final static String RECEIVING = "receiving";
+
+    private final static boolean isAvailable = checkAvailable();
+
+    private FlightRecorderEvents() {
+    }
+
+    /**
+     * Indicates if the JFR API is available in the runtime.
+     * @return
+     */
+    public static boolean isAvailable() {
+        return isAvailable;
+    }
+
+    public static Object beginEnvelopeDecode() {
+        return isAvailable ? Events.beginEnvelopeDecode() : null;
+    }
+
+    public static void endEnvelopeDecode(Object event, Envelope envelope, int size) {
+        if (event != null) Events.endEnvelopeDecode(event, envelope, size);
+    }
+
+    public static Object beginModulePipeline() {
+        return isAvailable ? Events.beginModulePipeline() : null;
+    }
+
+    /**
+     * Ends a module pipeline event.
+     * @param event
+     * @param direction {@link #SENDING} or {@link #RECEIVING}.
+     * @param envelope The envelope passed to the modules.
+     * @param modulesCount
+     * @param discarded
+     */
+    public static void endModulePipeline(Object event, String direction, Envelope envelope, int modulesCount, boolean discarded) {
+        if (event != null) Events.endModulePipeline(event, direction, envelope, modulesCount, discarded);
+    }
+
+    public static Object beginListenerDispatch() {
+        return isAvailable ? Events.beginListenerDispatch() : null;
+    }
+
+    public static void endListenerDispatch(Object event, Envelope envelope, Object listener) {
+        if (event != null) Events.endListenerDispatch(event, envelope, listener);
+    }
+
+    public static Object beginTransportWrite() {
+        return isAvailable ? Events.beginTransportWrite() : null;
+    }
+
+    public static void endTransportWrite(Object event, String priority, int size, boolean flushed) {
+        if (event != null) Events.endTransportWrite(event, priority, size, flushed);
+    }
+
+    public static Object beginCommandRequest() {
+        return isAvailable ? Events.beginCommandRequest() : null;
+    }
+
+    /**
+     * Ends a command request event.
+     * @param event
+     * @param requestCommand
+     * @param responseCommand The response, or null if the request timed out.
+     */
+    public static void endCommandRequest(Object event, Command requestCommand, Command responseCommand) {
+        if (event != null) Events.endCommandRequest(event, requestCommand, responseCommand);
+    }
+
+    public static void sessionStateChanged(String sessionId, Session.SessionState previousState, Session.SessionState state) {
+        if (isAvailable) Events.sessionStateChanged(sessionId, previousState, state);
+    }
+
+    private static boolean checkAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightRecorderEvents.class.getClassLoader());
+            // Loads the events, which may fail if the API is incomplete
+            Class.forName(Events.class.getName(), true, FlightRecorderEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
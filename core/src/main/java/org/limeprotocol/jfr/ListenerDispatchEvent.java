@@ -0,0 +1,23 @@
+package org.limeprotocol.jfr;
+
+import jdk.jfr.*;
+
+@Name("org.limeprotocol.ListenerDispatch")
+@Label("Listener Dispatch")
+@Description("Invocation of a channel listener with a received envelope")
+@Category({ "LIME", "Channel" })
+@StackTrace(false)
+class ListenerDispatchEvent extends Event {
+
+    @Label("Envelope Type")
+    String envelopeType;
+
+    @Label("Media Type")
+    String mediaType;
+
+    @Label("Envelope Id")
+    String envelopeId;
+
+    @Label("Listener Class")
+    Class<?> listenerClass;
+}
@@ -0,0 +1,27 @@
+package org.limeprotocol.jfr;
+
+import jdk.jfr.*;
+
+@Name("org.limeprotocol.ModulePipeline")
+@Label("Module Pipeline")
+@Description("Execution of the channel modules of a sent or received envelope")
+@Category({ "LIME", "Channel" })
+@StackTrace(false)
+class ModulePipelineEvent extends Event {
+
+    @Label("Direction")
+    String direction;
+
+    @Label("Envelope Type")
+    String envelopeType;
+
+    @Label("Media Type")
+    String mediaType;
+
+    @Label("Modules Count")
+    int modulesCount;
+
+    @Label("Discarded")
+    @Description("If a module discarded the envelope")
+    boolean discarded;
+}
@@ -0,0 +1,19 @@
+package org.limeprotocol.jfr;
+
+import jdk.jfr.*;
+
+@Name("org.limeprotocol.SessionState")
+@Label("Session State")
+@Description("Transition of the session state of a channel")
+@Category({ "LIME", "Channel" })
+class SessionStateEvent extends Event {
+
+    @Label("Session Id")
+    String sessionId;
+
+    @Label("Previous State")
+    String previousState;
+
+    @Label("State")
+    String state;
+}
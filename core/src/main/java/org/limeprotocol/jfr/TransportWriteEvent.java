@@ -0,0 +1,21 @@
+package org.limeprotocol.jfr;
+
+import jdk.jfr.*;
+
+@Name("org.limeprotocol.TransportWrite")
+@Label("Transport Write")
+@Description("Write of an envelope in the transport stream")
+@Category({ "LIME", "Transport" })
+@StackTrace(false)
+class TransportWriteEvent extends Event {
+
+    @Label("Priority")
+    String priority;
+
+    @Label("Size")
+    @DataAmount
+    int size;
+
+    @Label("Flushed")
+    boolean flushed;
+}
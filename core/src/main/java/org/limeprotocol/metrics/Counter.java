@@ -0,0 +1,36 @@
+package org.limeprotocol.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A counter that can be updated concurrently without contention, for the envelopes hot path.
+ * It can also be decremented, to track the number of items in a queue shared by many instances.
+ */
+public final class Counter {
+
+    private final LongAdder value;
+
+    Counter() {
+        this.value = new LongAdder();
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void decrement() {
+        value.decrement();
+    }
+
+    public void add(long delta) {
+        value.add(delta);
+    }
+
+    /**
+     * Gets the current value, which is not an atomic snapshot if there are concurrent updates.
+     * @return
+     */
+    public long get() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,8 @@
+package org.limeprotocol.metrics;
+
+/**
+ * Defines a metric which value is read when a snapshot is taken, like the size of a queue.
+ */
+public interface Gauge {
+    long getValue();
+}
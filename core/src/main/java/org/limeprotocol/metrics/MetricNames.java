@@ -0,0 +1,188 @@
+package org.limeprotocol.metrics;
+
+import org.limeprotocol.Command;
+import org.limeprotocol.Envelope;
+import org.limeprotocol.LimeUri;
+import org.limeprotocol.Message;
+import org.limeprotocol.Notification;
+import org.limeprotocol.Session;
+
+/**
+ * The names of the metrics recorded in the {@link MetricsRegistry}.
+ * The envelope metrics names end with the envelope type: 'message', 'notification', 'command' or 'session'.
+ */
+public final class MetricNames {
+
+    /**
+     * Envelopes sent by the channels, after the modules.
+     */
+    public final static String CHANNEL_ENVELOPES_SENT = "channel.envelopes.sent";
+
+    /**
+     * Envelopes received by the channels, before the modules.
+     */
+    public final static String CHANNEL_ENVELOPES_RECEIVED = "channel.envelopes.received";
+
+    /**
+     * Time to run the receiving modules and the listeners of a received envelope.
+     */
+    public final static String CHANNEL_DISPATCH_TIME = "channel.dispatch.time";
+
+    /**
+     * Time to run a received envelope listener, per listener class, like 'channel.listeners.time.com.example.Bot'.
+     */
+    public final static String CHANNEL_LISTENER_TIME = "channel.listeners.time";
+
+    /**
+     * Time to run a module for a sent or received envelope, per module class.
+     */
+    public final static String CHANNEL_MODULE_TIME = "channel.modules.time";
+
+    /**
+     * Listener and module invocations that exceeded the budget of the {@link org.limeprotocol.network.DispatchWatchdog}.
+     */
+    public final static String CHANNEL_SLOW_CALLBACKS = "channel.callbacks.slow";
+
+    /**
+     * Listeners isolated from the channel thread by the {@link org.limeprotocol.network.DispatchWatchdog}.
+     */
+    public final static String CHANNEL_ISOLATED_CALLBACKS = "channel.callbacks.isolated";
+
+    /**
+     * Envelopes delivered in the channel thread to an isolated listener, because its queue was full.
+     */
+    public final static String CHANNEL_ISOLATED_INLINE_DELIVERIES = "channel.callbacks.isolated.inline";
+
+    /**
+     * Command requests awaiting a response.
+     */
+    public final static String CHANNEL_PENDING_COMMANDS = "channel.commands.pending";
+
+    /**
+     * Time between a command request is sent and its response is received, per method and resource URI template,
+     * like 'channel.commands.latency.get./contacts/*'.
+     */
+    public final static String CHANNEL_COMMAND_LATENCY = "channel.commands.latency";
+
+    /**
+     * Command requests that timed out.
+     */
+    public final static String CHANNEL_COMMAND_TIMEOUTS = "channel.commands.timeouts";
+
+    /**
+     * Messages resent by the {@link org.limeprotocol.network.modules.ResendMessagesChannelModule}.
+     */
+    public final static String CHANNEL_MESSAGES_RESENT = "channel.messages.resent";
+
+    /**
+     * Received receipts discarded by the {@link org.limeprotocol.network.modules.NotifyReceiptChannelModule}
+     * because its queue was full.
+     */
+    public final static String CHANNEL_RECEIPTS_DROPPED = "channel.receipts.dropped";
+
+    /**
+     * Current rate, in envelopes per second, allowed by the
+     * {@link org.limeprotocol.network.modules.AdaptiveThroughputControlChannelModule} instances of the active sessions.
+     */
+    public final static String CHANNEL_ADAPTIVE_THROUGHPUT = "channel.throughput.adaptive";
+
+    /**
+     * Channels recreated by the on demand client channels, after the first one.
+     */
+    public final static String CLIENT_RECONNECTIONS = "client.reconnections";
+
+    /**
+     * Failed channel creations of the on demand client channels.
+     */
+    public final static String CLIENT_CHANNEL_CREATION_FAILURES = "client.channels.creationFailures";
+
+    public final static String TRANSPORT_ENVELOPES_SENT = "transport.envelopes.sent";
+    public final static String TRANSPORT_ENVELOPES_RECEIVED = "transport.envelopes.received";
+    public final static String TRANSPORT_BYTES_SENT = "transport.bytes.sent";
+    public final static String TRANSPORT_BYTES_RECEIVED = "transport.bytes.received";
+
+    /**
+     * Envelopes accepted by the outbound queue of a transport that were not written before it was closed.
+     */
+    public final static String TRANSPORT_ENVELOPES_DROPPED = "transport.envelopes.dropped";
+
+    /**
+     * Time to serialize an envelope to be sent.
+     */
+    public final static String TRANSPORT_SERIALIZATION_TIME = "transport.serialization.time";
+
+    /**
+     * Time to deserialize a received envelope.
+     */
+    public final static String TRANSPORT_DESERIALIZATION_TIME = "transport.deserialization.time";
+
+    /**
+     * Time to write and flush an envelope in the socket.
+     */
+    public final static String TRANSPORT_WRITE_TIME = "transport.write.time";
+
+    /**
+     * Envelopes in the outbound queues of the transports.
+     */
+    public final static String TRANSPORT_OUTBOUND_QUEUE_DEPTH = "transport.outboundQueue.depth";
+
+    /**
+     * Trace records dropped by the {@link org.limeprotocol.network.trace.AsyncTraceWriter} because its buffer was full.
+     */
+    public final static String TRACE_RECORDS_DROPPED = "trace.records.dropped";
+
+    private final static String[] ENVELOPE_TYPES = { "message", "notification", "command", "session" };
+
+    private MetricNames() {
+    }
+
+    /**
+     * Gets the index of the envelope type in the names returned by {@link #forEnvelopeTypes(String)}.
+     * @param envelope
+     * @return
+     */
+    public static int getEnvelopeTypeIndex(Envelope envelope) {
+        if (envelope instanceof Message) return 0;
+        if (envelope instanceof Notification) return 1;
+        if (envelope instanceof Command) return 2;
+        return 3;
+    }
+
+    /**
+     * Gets a metric name for each envelope type, in the message, notification, command and session order.
+     * @param prefix
+     * @return
+     */
+    public static String[] forEnvelopeTypes(String prefix) {
+        String[] names = new String[ENVELOPE_TYPES.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = prefix + "." + ENVELOPE_TYPES[i];
+        }
+        return names;
+    }
+
+    /**
+     * Gets the template of a command resource URI, keeping the first path segment and replacing the
+     * following ones, which are usually identifiers, by '*'; so the number of metrics is bounded.
+     * @param uri
+     * @return
+     */
+    public static String getUriTemplate(LimeUri uri) {
+        if (uri == null) {
+            return "none";
+        }
+        String path = uri.getPath();
+        int queryIndex = path.indexOf('?');
+        if (queryIndex >= 0) {
+            path = path.substring(0, queryIndex);
+        }
+        if (!path.startsWith("/")) {
+            // Absolute URIs, like lime://domain/path, are identified by their path only
+            int schemeIndex = path.indexOf("://");
+            int pathIndex = schemeIndex >= 0 ? path.indexOf('/', schemeIndex + 3) : -1;
+            path = pathIndex >= 0 ? path.substring(pathIndex) : "/";
+        }
+        int secondSegmentIndex = path.indexOf('/', 1);
+        return secondSegmentIndex >= 0 ? path.substring(0, secondSegmentIndex) + "/*" : path;
+    }
+}
@@ -0,0 +1,213 @@
+package org.limeprotocol.metrics;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of the counters, gauges and latency histograms of the channels and transports (see {@link MetricNames}).
+ * The metrics are resolved by name once, when the instrumented objects are created, so the hot path only
+ * updates them. The values are pulled with {@link #snapshot()} or through JMX, after calling {@link #registerMBean()}.
+ */
+public class MetricsRegistry {
+
+    public final static String DEFAULT_OBJECT_NAME = "org.limeprotocol:type=Metrics";
+
+    private final static double[] SNAPSHOT_PERCENTILES = { 50, 90, 99, 99.9 };
+    private final static MetricsRegistry shared = new MetricsRegistry();
+
+    private final ConcurrentMap<String, Counter> counters;
+    private final ConcurrentMap<String, LatencyHistogram> histograms;
+    private final ConcurrentMap<String, List<Gauge>> gauges;
+
+    public MetricsRegistry() {
+        this.counters = new ConcurrentHashMap<>();
+        this.histograms = new ConcurrentHashMap<>();
+        this.gauges = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the registry used by the channels and transports.
+     * @return
+     */
+    public static MetricsRegistry getShared() {
+        return shared;
+    }
+
+    /**
+     * Gets or creates the counter with the specified name.
+     * @param name
+     * @return
+     */
+    public Counter getCounter(String name) {
+        if (name == null) throw new IllegalArgumentException("name");
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    /**
+     * Gets or creates the counters with the specified names.
+     * @param names
+     * @return
+     */
+    public Counter[] getCounters(String... names) {
+        Counter[] counters = new Counter[names.length];
+        for (int i = 0; i < names.length; i++) {
+            counters[i] = getCounter(names[i]);
+        }
+        return counters;
+    }
+
+    /**
+     * Gets or creates the latency histogram with the specified name.
+     * @param name
+     * @return
+     */
+    public LatencyHistogram getHistogram(String name) {
+        if (name == null) throw new IllegalArgumentException("name");
+        return histograms.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    /**
+     * Gets or creates the latency histograms with the specified names.
+     * @param names
+     * @return
+     */
+    public LatencyHistogram[] getHistograms(String... names) {
+        LatencyHistogram[] histograms = new LatencyHistogram[names.length];
+        for (int i = 0; i < names.length; i++) {
+            histograms[i] = getHistogram(names[i]);
+        }
+        return histograms;
+    }
+
+    /**
+     * Adds a gauge to the specified name. If there are many gauges with the same name, like the queues of
+     * each transport, the metric value is the sum of their values.
+     * @param name
+     * @param gauge
+     */
+    public void addGauge(String name, Gauge gauge) {
+        if (name == null) throw new IllegalArgumentException("name");
+        if (gauge == null) throw new IllegalArgumentException("gauge");
+        gauges.computeIfAbsent(name, n -> new CopyOnWriteArrayList<>()).add(gauge);
+    }
+
+    /**
+     * Removes a gauge added with {@link #addGauge(String, Gauge)}.
+     * @param name
+     * @param gauge
+     */
+    public void removeGauge(String name, Gauge gauge) {
+        List<Gauge> nameGauges = gauges.get(name);
+        if (nameGauges != null) {
+            nameGauges.remove(gauge);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the current values, sorted by name. The histograms are expanded in the
+     * count, mean, max and percentiles values, in microseconds, with the suffixes '.count', '.mean', '.max', '.p50',
+     * '.p90', '.p99' and '.p999'.
+     * @return
+     */
+    public SortedMap<String, Long> snapshot() {
+        SortedMap<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        for (Map.Entry<String, List<Gauge>> entry : gauges.entrySet()) {
+            if (entry.getValue().isEmpty()) continue;
+            long value = 0;
+            for (Gauge gauge : entry.getValue()) {
+                value += gauge.getValue();
+            }
+            snapshot.put(entry.getKey(), value);
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            String name = entry.getKey();
+            LatencyHistogram histogram = entry.getValue();
+            snapshot.put(name + ".count", histogram.getCount());
+            snapshot.put(name + ".mean", histogram.getMean(TimeUnit.MICROSECONDS));
+            snapshot.put(name + ".max", histogram.getMax(TimeUnit.MICROSECONDS));
+            for (double percentile : SNAPSHOT_PERCENTILES) {
+                snapshot.put(name + ".p" + String.valueOf(percentile).replace(".0", "").replace(".", ""),
+                        histogram.getPercentile(percentile, TimeUnit.MICROSECONDS));
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Registers the registry in the platform MBean server, with the {@link #DEFAULT_OBJECT_NAME} name.
+     * @return The registered object name.
+     * @throws JMException
+     */
+    public ObjectName registerMBean() throws JMException {
+        return registerMBean(new ObjectName(DEFAULT_OBJECT_NAME));
+    }
+
+    /**
+     * Registers the registry in the platform MBean server, exposing each snapshot value as a read-only attribute.
+     * @param objectName
+     * @return The registered object name.
+     * @throws JMException
+     */
+    public ObjectName registerMBean(ObjectName objectName) throws JMException {
+        return ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), objectName).getObjectName();
+    }
+
+    private final class MetricsMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Long value = snapshot().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            SortedMap<String, Long> snapshot = snapshot();
+            AttributeList attributeList = new AttributeList();
+            for (String attribute : attributes) {
+                Long value = snapshot.get(attribute);
+                if (value != null) {
+                    attributeList.add(new Attribute(attribute, value));
+                }
+            }
+            return attributeList;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("The metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws MBeanException {
+            throw new MBeanException(new UnsupportedOperationException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            Set<String> names = snapshot().keySet();
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[names.size()];
+            int i = 0;
+            for (String name : names) {
+                attributes[i++] = new MBeanAttributeInfo(name, Long.class.getName(), name, true, false, false);
+            }
+            return new MBeanInfo(MetricsRegistry.class.getName(), "LIME channels and transports metrics", attributes, null, null, null);
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package org.limeprotocol.network;
 
 import org.limeprotocol.*;
+import org.limeprotocol.jfr.FlightRecorderEvents;
+import org.limeprotocol.metrics.Counter;
+import org.limeprotocol.metrics.LatencyHistogram;
+import org.limeprotocol.metrics.MetricNames;
+import org.limeprotocol.metrics.MetricsRegistry;
 import org.limeprotocol.network.modules.FillEnvelopeRecipientsChannelModule;
 import org.limeprotocol.network.modules.RemotePingChannelModule;
 import org.limeprotocol.network.modules.ReplyPingChannelModule;
@@ -8,11 +13,19 @@ import org.limeprotocol.network.modules.ReplyPingChannelModule;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.BiConsumer;
 
 import static org.limeprotocol.Session.SessionState.*;
 
 public abstract class ChannelBase implements Channel {
 
+    private final static int MESSAGE_TYPE_INDEX = 0;
+    private final static int NOTIFICATION_TYPE_INDEX = 1;
+    private final static int COMMAND_TYPE_INDEX = 2;
+    private final static int SESSION_TYPE_INDEX = 3;
+
+    private final static ClassValue<LatencyHistogram> LISTENER_TIMES = new CallbackTimes(MetricNames.CHANNEL_LISTENER_TIME);
+    private final static ClassValue<LatencyHistogram> MODULE_TIMES = new CallbackTimes(MetricNames.CHANNEL_MODULE_TIME);
 
     private final Transport transport;
     private final ChannelCommandProcessor channelCommandProcessor;
@@ -34,6 +47,10 @@ public abstract class ChannelBase implements Channel {
     private final Queue<MessageChannelListener> singleReceiveMessageListeners;
     private final Queue<SessionChannelListener> sessionChannelListeners;
     private final Transport.TransportEnvelopeListener transportEnvelopeListener;
+    private final Counter[] sentCounters;
+    private final Counter[] receivedCounters;
+    private final LatencyHistogram[] dispatchTimes;
+    private volatile DispatchWatchdog dispatchWatchdog;
 
     protected ChannelBase(
             Transport transport,
@@ -60,6 +77,10 @@ public abstract class ChannelBase implements Channel {
         singleReceiveMessageListeners = new LinkedBlockingQueue<>();
         sessionChannelListeners = new LinkedBlockingQueue<>();
         transportEnvelopeListener = new ChannelTransportEnvelopeListener();
+        MetricsRegistry metricsRegistry = MetricsRegistry.getShared();
+        sentCounters = metricsRegistry.getCounters(MetricNames.forEnvelopeTypes(MetricNames.CHANNEL_ENVELOPES_SENT));
+        receivedCounters = metricsRegistry.getCounters(MetricNames.forEnvelopeTypes(MetricNames.CHANNEL_ENVELOPES_RECEIVED));
+        dispatchTimes = metricsRegistry.getHistograms(MetricNames.forEnvelopeTypes(MetricNames.CHANNEL_DISPATCH_TIME));
 
         setState(NEW);
 
@@ -143,7 +164,9 @@ public abstract class ChannelBase implements Channel {
         if (state == null) {
             throw new IllegalArgumentException("state");
         }
+        Session.SessionState previousState = this.state;
         this.state = state;
+        FlightRecorderEvents.sessionStateChanged(sessionId, previousState, state);
 
         onStateChanged(messageModules, state);
         onStateChanged(notificationModules, state);
@@ -154,6 +177,25 @@ public abstract class ChannelBase implements Channel {
         }
     }
 
+    /**
+     * Gets the watchdog of the listener and module callbacks of the channel.
+     *
+     * @return
+     */
+    public DispatchWatchdog getDispatchWatchdog() {
+        return dispatchWatchdog;
+    }
+
+    /**
+     * Sets a watchdog for the listener and module callbacks of the channel, which reports the ones that exceed
+     * its budget and may isolate the slow listeners from the channel thread.
+     *
+     * @param dispatchWatchdog the watchdog, or null to stop watching the callbacks.
+     */
+    public void setDispatchWatchdog(DispatchWatchdog dispatchWatchdog) {
+        this.dispatchWatchdog = dispatchWatchdog;
+    }
+
     @Override
     public Collection<ChannelModule<Message>> getMessageModules() {
         return messageModules;
@@ -305,61 +347,104 @@ public abstract class ChannelBase implements Channel {
 
     protected synchronized void raiseOnReceiveMessage(Message message) {
         ensureSessionEstablished();
-
-        message = invokeModulesOnReceiving(message, messageModules);
-        if (message != null) {
-            for (MessageChannelListener listener : snapshot(singleReceiveMessageListeners, messageListeners)) {
-                try {
-                    listener.onReceiveMessage(message);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+        long startTime = startDispatch(MESSAGE_TYPE_INDEX);
+        try {
+            message = invokeModulesOnReceiving(message, messageModules);
+            if (message != null) {
+                raiseOnReceive(message, snapshot(singleReceiveMessageListeners, messageListeners), MessageChannelListener::onReceiveMessage);
             }
+        } finally {
+            endDispatch(MESSAGE_TYPE_INDEX, startTime);
         }
     }
 
     protected synchronized void raiseOnReceiveCommand(Command command) {
         ensureSessionEstablished();
+        long startTime = startDispatch(COMMAND_TYPE_INDEX);
+        try {
+            command = invokeModulesOnReceiving(command, commandModules);
 
-        command = invokeModulesOnReceiving(command, commandModules);
-
-        // Checks it is a command response
-        if (command != null && !this.channelCommandProcessor.trySubmitCommandResult(command)) {
-            for (CommandChannelListener listener : snapshot(singleReceiveCommandListeners, commandListeners)) {
-                try {
-                    listener.onReceiveCommand(command);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+            // Checks it is a command response
+            if (command != null && !this.channelCommandProcessor.trySubmitCommandResult(command)) {
+                raiseOnReceive(command, snapshot(singleReceiveCommandListeners, commandListeners), CommandChannelListener::onReceiveCommand);
             }
+        } finally {
+            endDispatch(COMMAND_TYPE_INDEX, startTime);
         }
     }
 
     protected synchronized void raiseOnReceiveNotification(Notification notification) {
         ensureSessionEstablished();
+        long startTime = startDispatch(NOTIFICATION_TYPE_INDEX);
+        try {
+            notification = invokeModulesOnReceiving(notification, notificationModules);
+            if (notification != null) {
+                raiseOnReceive(notification, snapshot(singleReceiveNotificationListeners, notificationListeners), NotificationChannelListener::onReceiveNotification);
+            }
+        } finally {
+            endDispatch(NOTIFICATION_TYPE_INDEX, startTime);
+        }
+    }
 
-        notification = invokeModulesOnReceiving(notification, notificationModules);
-        if (notification != null) {
-            for (NotificationChannelListener listener : snapshot(singleReceiveNotificationListeners, notificationListeners)) {
-                try {
-                    listener.onReceiveNotification(notification);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+    /**
+     * Invokes the listeners of a received envelope, timing each one and delivering it through the isolation
+     * executor of the watchdog to the listeners that were isolated from the channel thread.
+     */
+    private <T extends Envelope, TListener> void raiseOnReceive(T envelope, Iterable<TListener> listeners, BiConsumer<TListener, T> callback) {
+        DispatchWatchdog watchdog = this.dispatchWatchdog;
+        for (TListener listener : listeners) {
+            Executor isolatedExecutor = watchdog != null ? watchdog.getIsolatedExecutor(listener) : null;
+            if (isolatedExecutor != null) {
+                isolatedExecutor.execute(() -> invokeListener(envelope, listener, callback, watchdog));
+            } else {
+                invokeListener(envelope, listener, callback, watchdog);
             }
         }
     }
 
+    private static <T extends Envelope, TListener> void invokeListener(T envelope, TListener listener, BiConsumer<TListener, T> callback, DispatchWatchdog watchdog) {
+        Object dispatchEvent = FlightRecorderEvents.beginListenerDispatch();
+        Object dispatch = watchdog != null ? watchdog.begin(listener, envelope) : null;
+        long startTime = System.nanoTime();
+        try {
+            callback.accept(listener, envelope);
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            endCallback(LISTENER_TIMES, listener, startTime, watchdog, dispatch);
+            FlightRecorderEvents.endListenerDispatch(dispatchEvent, envelope, listener);
+        }
+    }
+
+    private static void endCallback(ClassValue<LatencyHistogram> callbackTimes, Object callback, long startTime, DispatchWatchdog watchdog, Object dispatch) {
+        callbackTimes.get(callback.getClass()).recordSince(startTime);
+        if (dispatch != null) {
+            watchdog.end(dispatch);
+        }
+    }
+
     private <T extends Envelope> T invokeModulesOnReceiving(T envelope, Collection<ChannelModule<T>> modules) {
-        for (ChannelModule<T> module : new ArrayList<>(modules)) {
+        Object pipelineEvent = FlightRecorderEvents.beginModulePipeline();
+        DispatchWatchdog watchdog = this.dispatchWatchdog;
+        T receivedEnvelope = envelope;
+        List<ChannelModule<T>> modulesSnapshot = new ArrayList<>(modules);
+        for (ChannelModule<T> module : modulesSnapshot) {
             if (envelope == null) break;
-            envelope = module.onReceiving(envelope);
+            Object dispatch = watchdog != null ? watchdog.beginModule(module, envelope) : null;
+            long startTime = System.nanoTime();
+            try {
+                envelope = module.onReceiving(envelope);
+            } finally {
+                endCallback(MODULE_TIMES, module, startTime, watchdog, dispatch);
+            }
         }
+        FlightRecorderEvents.endModulePipeline(pipelineEvent, FlightRecorderEvents.RECEIVING, receivedEnvelope, modulesSnapshot.size(), envelope == null);
 
         return envelope;
     }
 
     protected synchronized void raiseOnReceiveSession(Session session) {
+        receivedCounters[SESSION_TYPE_INDEX].increment();
         if (getState() != ESTABLISHED) {
             // Remove the envelope listener to signal the transport
             // that we are not expecting another envelope for now.
@@ -413,10 +498,21 @@ public abstract class ChannelBase implements Channel {
             throw new IllegalStateException(String.format("Cannot send in the '%s' session state", state));
         }
 
-        for (ChannelModule<T> module : new ArrayList<>(modules)) {
+        Object pipelineEvent = FlightRecorderEvents.beginModulePipeline();
+        DispatchWatchdog watchdog = this.dispatchWatchdog;
+        T sendingEnvelope = envelope;
+        List<ChannelModule<T>> modulesSnapshot = new ArrayList<>(modules);
+        for (ChannelModule<T> module : modulesSnapshot) {
             if (envelope == null) break;
-            envelope = module.onSending(envelope);
+            Object dispatch = watchdog != null ? watchdog.beginModule(module, envelope) : null;
+            long startTime = System.nanoTime();
+            try {
+                envelope = module.onSending(envelope);
+            } finally {
+                endCallback(MODULE_TIMES, module, startTime, watchdog, dispatch);
+            }
         }
+        FlightRecorderEvents.endModulePipeline(pipelineEvent, FlightRecorderEvents.SENDING, sendingEnvelope, modulesSnapshot.size(), envelope == null);
 
         if (envelope != null) {
             send(envelope);
@@ -429,6 +525,16 @@ public abstract class ChannelBase implements Channel {
         }
 
         transport.send(envelope);
+        sentCounters[MetricNames.getEnvelopeTypeIndex(envelope)].increment();
+    }
+
+    private long startDispatch(int envelopeTypeIndex) {
+        receivedCounters[envelopeTypeIndex].increment();
+        return System.nanoTime();
+    }
+
+    private void endDispatch(int envelopeTypeIndex, long startTime) {
+        dispatchTimes[envelopeTypeIndex].recordSince(startTime);
     }
 
     /**
@@ -460,6 +566,22 @@ public abstract class ChannelBase implements Channel {
         }
     }
 
+    /**
+     * Gets the histogram of the invocation times of a listener or module class, once per class.
+     */
+    private final static class CallbackTimes extends ClassValue<LatencyHistogram> {
+        private final String prefix;
+
+        CallbackTimes(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        protected LatencyHistogram computeValue(Class<?> type) {
+            return MetricsRegistry.getShared().getHistogram(prefix + "." + type.getName());
+        }
+    }
+
     private class ChannelTransportEnvelopeListener implements Transport.TransportEnvelopeListener {
 
         /**
@@ -1,6 +1,11 @@
 package org.limeprotocol.network;
 
 import org.limeprotocol.Command;
+import org.limeprotocol.jfr.FlightRecorderEvents;
+import org.limeprotocol.metrics.Counter;
+import org.limeprotocol.metrics.LatencyHistogram;
+import org.limeprotocol.metrics.MetricNames;
+import org.limeprotocol.metrics.MetricsRegistry;
 
 import java.io.IOException;
 import java.util.Iterator;
@@ -10,10 +15,21 @@ import java.util.concurrent.*;
 
 public class ChannelCommandProcessorImpl implements ChannelCommandProcessor {
 
+    /**
+     * The maximum number of method and URI template latency histograms; the commands of other URIs
+     * are recorded in the 'other' histogram.
+     */
+    private final static int MAX_LATENCY_HISTOGRAMS = 256;
+    private final static ConcurrentMap<String, LatencyHistogram> latencyHistograms = new ConcurrentHashMap<>();
+
     private final ConcurrentHashMap<String, CompletableFuture<Command>> pendingCommandsMap;
+    private final Counter pendingCommands;
+    private final Counter timeouts;
 
     public ChannelCommandProcessorImpl() {
         pendingCommandsMap = new ConcurrentHashMap<>();
+        pendingCommands = MetricsRegistry.getShared().getCounter(MetricNames.CHANNEL_PENDING_COMMANDS);
+        timeouts = MetricsRegistry.getShared().getCounter(MetricNames.CHANNEL_COMMAND_TIMEOUTS);
     }
 
     @Override
@@ -39,12 +55,26 @@ public class ChannelCommandProcessorImpl implements ChannelCommandProcessor {
 
         CompletableFuture<Command> commandFuture = new CompletableFuture<>();
         pendingCommandsMap.put(requestCommand.getId(), commandFuture);
+        pendingCommands.increment();
 
-        commandChannel.sendCommand(requestCommand);
+        Object requestEvent = FlightRecorderEvents.beginCommandRequest();
+        long startTime = System.nanoTime();
         try {
-            return commandFuture.get(timeout, timeoutTimeUnit);
+            commandChannel.sendCommand(requestCommand);
+            Command responseCommand = commandFuture.get(timeout, timeoutTimeUnit);
+            getLatencyHistogram(requestCommand).recordSince(startTime);
+            FlightRecorderEvents.endCommandRequest(requestEvent, requestCommand, responseCommand);
+            return responseCommand;
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            FlightRecorderEvents.endCommandRequest(requestEvent, requestCommand, null);
+            throw e;
         } catch (ExecutionException e) {
             throw new RuntimeException(e);
+        } finally {
+            if (pendingCommandsMap.remove(requestCommand.getId(), commandFuture)) {
+                pendingCommands.decrement();
+            }
         }
     }
 
@@ -69,7 +99,22 @@ public class ChannelCommandProcessorImpl implements ChannelCommandProcessor {
         for (Iterator<Map.Entry<String, CompletableFuture<Command>>> it = pendingCommandsMap.entrySet().iterator(); it.hasNext(); ) {
             Map.Entry<String, CompletableFuture<Command>> entry = it.next();
             entry.getValue().cancel(true);
-            it.remove();
+            if (pendingCommandsMap.remove(entry.getKey(), entry.getValue())) {
+                pendingCommands.decrement();
+            }
+        }
+    }
+
+    private static LatencyHistogram getLatencyHistogram(Command requestCommand) {
+        String key = requestCommand.getMethod().toString().toLowerCase() + "." + MetricNames.getUriTemplate(requestCommand.getUri());
+        LatencyHistogram histogram = latencyHistograms.get(key);
+        if (histogram == null) {
+            if (latencyHistograms.size() >= MAX_LATENCY_HISTOGRAMS) {
+                key = "other";
+            }
+            histogram = MetricsRegistry.getShared().getHistogram(MetricNames.CHANNEL_COMMAND_LATENCY + "." + key);
+            latencyHistograms.putIfAbsent(key, histogram);
         }
+        return histogram;
     }
 }
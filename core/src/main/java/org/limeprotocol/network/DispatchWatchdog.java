@@ -0,0 +1,437 @@
+package org.limeprotocol.network;
+
+import org.limeprotocol.Envelope;
+import org.limeprotocol.metrics.Counter;
+import org.limeprotocol.metrics.MetricNames;
+import org.limeprotocol.metrics.MetricsRegistry;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Watches the listener and module callbacks invoked by the channels while dispatching the received envelopes,
+ * counting the callbacks that run for longer than a time budget in the {@link MetricNames#CHANNEL_SLOW_CALLBACKS}
+ * metric. When a {@link SlowCallbackListener} is set, the slow callbacks are reported to it together with a stack
+ * sample of the blocked thread.
+ * Optionally, the listeners that exceed the budget repeatedly are isolated: their next envelopes are delivered
+ * by an isolation executor, in the receiving order, instead of stalling the channel thread. The envelopes of each
+ * isolated listener are queued up to a capacity; when its queue is full, the envelope is delivered in the channel
+ * thread instead, ahead of the queued ones, which slows down the channel as if the listener was not isolated.
+ * A single watchdog can be shared by many channels, through {@link ChannelBase#setDispatchWatchdog(DispatchWatchdog)}.
+ */
+public class DispatchWatchdog implements Closeable {
+
+    /**
+     * Prints the slow callbacks to the standard error output, for the diagnostics during development.
+     */
+    public final static SlowCallbackListener PRINT_SLOW_CALLBACKS = new SlowCallbackListener() {
+        @Override
+        public void onSlowCallback(SlowCallback slowCallback) {
+            System.err.println(slowCallback);
+        }
+    };
+
+    public final static int DEFAULT_ISOLATION_THRESHOLD = 3;
+    public final static int DEFAULT_ISOLATION_QUEUE_CAPACITY = 1024;
+
+    private final long budgetNanos;
+    private final List<DispatchSlot> slots;
+    private final ThreadLocal<DispatchSlot> threadSlot;
+    private final Map<Object, Integer> strikes;
+    private final Map<Object, Executor> isolatedExecutors;
+    private final ScheduledExecutorService scheduler;
+    private final Counter slowCallbacks;
+    private final Counter isolatedCallbacks;
+    private final Counter isolatedInlineDeliveries;
+    private volatile SlowCallbackListener slowCallbackListener;
+    private volatile Executor isolationExecutor;
+    private volatile int isolationThreshold;
+    private volatile int isolationQueueCapacity;
+    private volatile boolean hasIsolatedCallbacks;
+
+    /**
+     * Creates a watchdog that counts the callbacks that exceed the budget, without reporting nor isolating them.
+     * @param budget
+     * @param budgetTimeUnit
+     */
+    public DispatchWatchdog(long budget, TimeUnit budgetTimeUnit) {
+        if (budget <= 0) throw new IllegalArgumentException("budget");
+        if (budgetTimeUnit == null) throw new IllegalArgumentException("budgetTimeUnit");
+        this.budgetNanos = budgetTimeUnit.toNanos(budget);
+        this.slots = new CopyOnWriteArrayList<>();
+        this.threadSlot = new ThreadLocal<DispatchSlot>() {
+            @Override
+            protected DispatchSlot initialValue() {
+                DispatchSlot slot = new DispatchSlot(Thread.currentThread());
+                slots.add(slot);
+                return slot;
+            }
+        };
+        this.strikes = Collections.synchronizedMap(new WeakHashMap<Object, Integer>());
+        this.isolatedExecutors = Collections.synchronizedMap(new WeakHashMap<Object, Executor>());
+        this.isolationThreshold = DEFAULT_ISOLATION_THRESHOLD;
+        this.isolationQueueCapacity = DEFAULT_ISOLATION_QUEUE_CAPACITY;
+        MetricsRegistry metricsRegistry = MetricsRegistry.getShared();
+        this.slowCallbacks = metricsRegistry.getCounter(MetricNames.CHANNEL_SLOW_CALLBACKS);
+        this.isolatedCallbacks = metricsRegistry.getCounter(MetricNames.CHANNEL_ISOLATED_CALLBACKS);
+        this.isolatedInlineDeliveries = metricsRegistry.getCounter(MetricNames.CHANNEL_ISOLATED_INLINE_DELIVERIES);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "lime-dispatch-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        long scanIntervalNanos = Math.max(budgetNanos / 4, TimeUnit.MILLISECONDS.toNanos(1));
+        this.scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                scan();
+            }
+        }, scanIntervalNanos, scanIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getBudget(TimeUnit timeUnit) {
+        return timeUnit.convert(budgetNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public SlowCallbackListener getSlowCallbackListener() {
+        return slowCallbackListener;
+    }
+
+    /**
+     * Sets the listener for the slow callbacks, like {@link #PRINT_SLOW_CALLBACKS}.
+     * @param slowCallbackListener the listener, or null to only count the slow callbacks.
+     */
+    public void setSlowCallbackListener(SlowCallbackListener slowCallbackListener) {
+        this.slowCallbackListener = slowCallbackListener;
+    }
+
+    /**
+     * Enables the isolation of the listeners that exceed the budget in the specified number of dispatches.
+     * Each isolated listener receives its envelopes in order, through the executor, and outside the channel lock.
+     * Modules are never isolated, since the channel needs their result to continue the dispatch.
+     * @param isolationExecutor the executor for the isolated listeners, or null to disable the isolation.
+     * @param isolationThreshold
+     */
+    public void setIsolationExecutor(Executor isolationExecutor, int isolationThreshold) {
+        setIsolationExecutor(isolationExecutor, isolationThreshold, DEFAULT_ISOLATION_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Enables the isolation of the listeners that exceed the budget in the specified number of dispatches.
+     * Each isolated listener receives its envelopes in order, through the executor, and outside the channel lock.
+     * When an isolated listener has the specified number of queued envelopes, the next one is delivered in the
+     * channel thread, which is counted in the {@link MetricNames#CHANNEL_ISOLATED_INLINE_DELIVERIES} metric.
+     * @param isolationExecutor the executor for the isolated listeners, or null to disable the isolation.
+     * @param isolationThreshold
+     * @param isolationQueueCapacity the maximum number of queued envelopes of each isolated listener.
+     */
+    public void setIsolationExecutor(Executor isolationExecutor, int isolationThreshold, int isolationQueueCapacity) {
+        if (isolationThreshold <= 0) throw new IllegalArgumentException("isolationThreshold");
+        if (isolationQueueCapacity <= 0) throw new IllegalArgumentException("isolationQueueCapacity");
+        this.isolationThreshold = isolationThreshold;
+        this.isolationQueueCapacity = isolationQueueCapacity;
+        this.isolationExecutor = isolationExecutor;
+        if (isolationExecutor == null) {
+            isolatedExecutors.clear();
+            hasIsolatedCallbacks = false;
+        }
+    }
+
+    /**
+     * Indicates if the callback was isolated from the channel thread.
+     * @param callback
+     * @return
+     */
+    public boolean isIsolated(Object callback) {
+        return getIsolatedExecutor(callback) != null;
+    }
+
+    /**
+     * Gets the executor that must deliver the envelopes to an isolated callback, or null if the callback
+     * was not isolated.
+     * @param callback
+     * @return
+     */
+    public Executor getIsolatedExecutor(Object callback) {
+        if (!hasIsolatedCallbacks) {
+            return null;
+        }
+        return isolatedExecutors.get(callback);
+    }
+
+    /**
+     * Starts watching a listener invocation in the current thread.
+     * @param listener the listener being invoked.
+     * @param envelope the envelope being dispatched.
+     * @return the dispatch to be passed to {@link #end(Object)}.
+     */
+    public Object begin(Object listener, Envelope envelope) {
+        return begin(listener, envelope, false);
+    }
+
+    /**
+     * Starts watching a module invocation in the current thread. The module is reported if it exceeds
+     * the budget, but it is never isolated.
+     * @param module the module being invoked.
+     * @param envelope the envelope being dispatched.
+     * @return the dispatch to be passed to {@link #end(Object)}.
+     */
+    public Object beginModule(Object module, Envelope envelope) {
+        return begin(module, envelope, true);
+    }
+
+    private Object begin(Object callback, Envelope envelope, boolean isModule) {
+        DispatchSlot slot = threadSlot.get();
+        Dispatch dispatch = new Dispatch(callback, envelope, isModule, System.nanoTime(), slot.current);
+        slot.current = dispatch;
+        return dispatch;
+    }
+
+    /**
+     * Stops watching a callback invocation started by {@link #begin(Object, Envelope)} or {@link #beginModule(Object, Envelope)}.
+     * @param dispatch
+     */
+    public void end(Object dispatch) {
+        Dispatch endedDispatch = (Dispatch) dispatch;
+        threadSlot.get().current = endedDispatch.parent;
+        long elapsedNanos = System.nanoTime() - endedDispatch.startTime;
+        if (elapsedNanos > budgetNanos) {
+            slowCallbacks.increment();
+            if (!endedDispatch.isModule) {
+                addStrike(endedDispatch, elapsedNanos);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void addStrike(Dispatch dispatch, long elapsedNanos) {
+        Executor executor = isolationExecutor;
+        if (executor == null) {
+            return;
+        }
+        boolean isolated = false;
+        synchronized (strikes) {
+            Integer callbackStrikes = strikes.get(dispatch.callback);
+            callbackStrikes = callbackStrikes == null ? 1 : callbackStrikes + 1;
+            strikes.put(dispatch.callback, callbackStrikes);
+            if (callbackStrikes >= isolationThreshold && !isolatedExecutors.containsKey(dispatch.callback)) {
+                isolatedExecutors.put(dispatch.callback, new SerialExecutor(executor, isolationQueueCapacity, isolatedInlineDeliveries));
+                hasIsolatedCallbacks = true;
+                isolated = true;
+            }
+        }
+        if (isolated) {
+            isolatedCallbacks.increment();
+            report(new SlowCallback(dispatch.callback, dispatch.envelope, Thread.currentThread(), elapsedNanos, null, true));
+        }
+    }
+
+    private void scan() {
+        if (slowCallbackListener == null) {
+            // The stacks are sampled only to be reported
+            return;
+        }
+        long now = System.nanoTime();
+        for (DispatchSlot slot : slots) {
+            if (!slot.thread.isAlive()) {
+                slots.remove(slot);
+                continue;
+            }
+            for (Dispatch dispatch = slot.current; dispatch != null; dispatch = dispatch.parent) {
+                long elapsedNanos = now - dispatch.startTime;
+                if (!dispatch.reported && elapsedNanos > budgetNanos) {
+                    dispatch.reported = true;
+                    report(new SlowCallback(dispatch.callback, dispatch.envelope, slot.thread, elapsedNanos, slot.thread.getStackTrace(), false));
+                }
+            }
+        }
+    }
+
+    private void report(SlowCallback slowCallback) {
+        SlowCallbackListener slowCallbackListener = this.slowCallbackListener;
+        if (slowCallbackListener == null) {
+            return;
+        }
+        try {
+            slowCallbackListener.onSlowCallback(slowCallback);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Defines a listener for the callbacks that exceed the budget.
+     */
+    public interface SlowCallbackListener {
+        /**
+         * Occurs when a callback is running for longer than the budget or when a listener is isolated.
+         * It is invoked by the watchdog thread and must not block.
+         * @param slowCallback
+         */
+        void onSlowCallback(SlowCallback slowCallback);
+    }
+
+    /**
+     * Represents a callback that exceeded the budget.
+     */
+    public static final class SlowCallback {
+        private final Object callback;
+        private final Envelope envelope;
+        private final Thread thread;
+        private final long elapsedNanos;
+        private final StackTraceElement[] stackTrace;
+        private final boolean isolated;
+
+        SlowCallback(Object callback, Envelope envelope, Thread thread, long elapsedNanos, StackTraceElement[] stackTrace, boolean isolated) {
+            this.callback = callback;
+            this.envelope = envelope;
+            this.thread = thread;
+            this.elapsedNanos = elapsedNanos;
+            this.stackTrace = stackTrace;
+            this.isolated = isolated;
+        }
+
+        /**
+         * Gets the listener or module that exceeded the budget.
+         * @return
+         */
+        public Object getCallback() {
+            return callback;
+        }
+
+        public Envelope getEnvelope() {
+            return envelope;
+        }
+
+        /**
+         * Gets the thread that invoked the callback.
+         * @return
+         */
+        public Thread getThread() {
+            return thread;
+        }
+
+        public long getElapsed(TimeUnit timeUnit) {
+            return timeUnit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Gets a sample of the thread stack while the callback was running, or null if the callback was reported
+         * because it was isolated.
+         * @return
+         */
+        public StackTraceElement[] getStackTrace() {
+            return stackTrace;
+        }
+
+        /**
+         * Indicates if the callback was isolated from the channel thread.
+         * @return
+         */
+        public boolean isIsolated() {
+            return isolated;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(isolated ? "Isolated the callback " : "Slow callback ")
+                    .append(callback.getClass().getName())
+                    .append(isolated ? " after " : " running for ")
+                    .append(getElapsed(TimeUnit.MILLISECONDS))
+                    .append(" ms on thread '")
+                    .append(thread.getName())
+                    .append("' for the envelope ")
+                    .append(envelope != null ? envelope.getId() : null);
+            if (stackTrace != null) {
+                for (StackTraceElement element : stackTrace) {
+                    builder.append(System.lineSeparator()).append("\tat ").append(element);
+                }
+            }
+            return builder.toString();
+        }
+    }
+
+    private final static class DispatchSlot {
+        private final Thread thread;
+        private volatile Dispatch current;
+
+        DispatchSlot(Thread thread) {
+            this.thread = thread;
+        }
+    }
+
+    private final static class Dispatch {
+        private final Object callback;
+        private final Envelope envelope;
+        private final boolean isModule;
+        private final long startTime;
+        private final Dispatch parent;
+        private volatile boolean reported;
+
+        Dispatch(Object callback, Envelope envelope, boolean isModule, long startTime, Dispatch parent) {
+            this.callback = callback;
+            this.envelope = envelope;
+            this.isModule = isModule;
+            this.startTime = startTime;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * Runs the tasks of a single callback in order, one at a time, over a shared executor.
+     * When the queue is full, the task is run in the calling thread instead, as a backpressure.
+     */
+    private final static class SerialExecutor implements Executor {
+        private final Queue<Runnable> tasks;
+        private final Executor executor;
+        private final int capacity;
+        private final Counter inlineTasks;
+        private Runnable active;
+
+        SerialExecutor(Executor executor, int capacity, Counter inlineTasks) {
+            this.tasks = new ArrayDeque<>();
+            this.executor = executor;
+            this.capacity = capacity;
+            this.inlineTasks = inlineTasks;
+        }
+
+        @Override
+        public void execute(final Runnable task) {
+            synchronized (this) {
+                if (tasks.size() < capacity) {
+                    tasks.add(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                task.run();
+                            } finally {
+                                scheduleNext();
+                            }
+                        }
+                    });
+                    if (active == null) {
+                        scheduleNext();
+                    }
+                    return;
+                }
+            }
+            inlineTasks.increment();
+            task.run();
+        }
+
+        private synchronized void scheduleNext() {
+            if ((active = tasks.poll()) != null) {
+                executor.execute(active);
+            }
+        }
+    }
+}
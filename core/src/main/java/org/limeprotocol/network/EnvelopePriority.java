@@ -0,0 +1,71 @@
+package org.limeprotocol.network;
+
+import org.limeprotocol.*;
+import org.limeprotocol.serialization.RawEnvelope;
+
+/**
+ * Defines the outbound priority lanes of envelopes, from the most to the least urgent.
+ */
+public enum EnvelopePriority {
+    /**
+     * Session envelopes and ping requests and responses, which keeps the session alive.
+     */
+    CONTROL,
+    /**
+     * Commands requests and responses.
+     */
+    COMMAND,
+    /**
+     * Notifications.
+     */
+    NOTIFICATION,
+    /**
+     * Messages.
+     */
+    MESSAGE;
+
+    private final static String PING_URI = "/ping";
+    private final static MediaType PING_MEDIA_TYPE = MediaType.parse("application/vnd.lime.ping+json");
+
+    /**
+     * Gets the priority lane of the envelope.
+     * @param envelope
+     * @return
+     */
+    public static EnvelopePriority of(Envelope envelope) {
+        if (envelope instanceof Message) {
+            return MESSAGE;
+        }
+        if (envelope instanceof Notification) {
+            return NOTIFICATION;
+        }
+        if (envelope instanceof Command) {
+            Command command = (Command) envelope;
+            if ((command.getUri() != null && command.getUri().toString().equalsIgnoreCase(PING_URI)) ||
+                    (command.getResource() != null && PING_MEDIA_TYPE.equals(command.getResource().getMediaType()))) {
+                return CONTROL;
+            }
+            return COMMAND;
+        }
+        return CONTROL;
+    }
+
+    /**
+     * Gets the priority lane of the raw envelope, by its type.
+     * @param rawEnvelope
+     * @return
+     */
+    public static EnvelopePriority of(RawEnvelope rawEnvelope) {
+        Class<? extends Envelope> envelopeType = rawEnvelope.getEnvelopeType();
+        if (envelopeType == Message.class) {
+            return MESSAGE;
+        }
+        if (envelopeType == Notification.class) {
+            return NOTIFICATION;
+        }
+        if (envelopeType == Command.class) {
+            return COMMAND;
+        }
+        return CONTROL;
+    }
+}
@@ -0,0 +1,25 @@
+package org.limeprotocol.network;
+
+import org.limeprotocol.Envelope;
+import org.limeprotocol.serialization.RawEnvelope;
+
+/**
+ * Enable structured request tracing for network transports. The transports that support it pass the envelopes
+ * and their encoded bytes instead of a string, so the trace doesn't need to decode the bytes in the I/O threads.
+ */
+public interface EnvelopeTraceWriter extends TraceWriter {
+    /**
+     * Trace an envelope.
+     * @param envelope The sent or received envelope.
+     * @param envelopeBytes The UTF-8 JSON of the envelope, which must not be modified.
+     * @param operation
+     */
+    void trace(Envelope envelope, byte[] envelopeBytes, DataOperation operation);
+
+    /**
+     * Trace an envelope that was relayed in the raw format.
+     * @param rawEnvelope
+     * @param operation
+     */
+    void trace(RawEnvelope rawEnvelope, DataOperation operation);
+}
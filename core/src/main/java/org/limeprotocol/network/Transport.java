@@ -3,6 +3,7 @@ package org.limeprotocol.network;
 import org.limeprotocol.Envelope;
 import org.limeprotocol.SessionCompression;
 import org.limeprotocol.SessionEncryption;
+import org.limeprotocol.serialization.RawEnvelope;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -19,6 +20,13 @@ public interface Transport extends Closeable {
      */
     void send(Envelope envelope) throws IOException;
 
+    /**
+     * Sends a pre-encoded envelope to the remote node.
+     * The transports that write the envelopes as bytes should write the raw bytes directly.
+     * @param rawEnvelope
+     */
+    void send(RawEnvelope rawEnvelope) throws IOException;
+
     /**
      *  Register the specified listener for receiving envelopes.
      * @param transportEnvelopeListener
@@ -90,6 +98,18 @@ public interface Transport extends Closeable {
         void onReceive(Envelope envelope);
     }
     
+    /**
+     * Defines a listener for received envelopes in the raw format, used to relay envelopes without deserialization.
+     */
+    public interface RawEnvelopeListener {
+        /**
+         * Occurs when a envelope is received by the transport, before its deserialization.
+         * @param rawEnvelope
+         * @return true if the envelope was handled; false to deserialize it and raise the envelope listener.
+         */
+        boolean onReceive(RawEnvelope rawEnvelope);
+    }
+
     /**
      * Defines a envelope transport state listener.
      */
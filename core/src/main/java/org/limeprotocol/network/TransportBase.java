@@ -3,6 +3,8 @@ package org.limeprotocol.network;
 import org.limeprotocol.Envelope;
 import org.limeprotocol.SessionCompression;
 import org.limeprotocol.SessionEncryption;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.RawEnvelope;
 
 import java.io.IOException;
 import java.net.URI;
@@ -25,6 +27,28 @@ public abstract class TransportBase implements Transport {
         encryption = SessionEncryption.NONE;
     }
 
+    /**
+     * Sends a pre-encoded envelope to the remote node, deserializing it with the serializer of the transport
+     * (see {@link #getEnvelopeSerializer()}).
+     * @param rawEnvelope
+     */
+    @Override
+    public void send(RawEnvelope rawEnvelope) throws IOException {
+        if (rawEnvelope == null) {
+            throw new IllegalArgumentException("rawEnvelope");
+        }
+        send(rawEnvelope.toEnvelope(getEnvelopeSerializer()));
+    }
+
+    /**
+     * Gets the serializer that reads the pre-encoded envelopes sent by the transport.
+     * The transports that don't serialize the envelopes must override it or {@link #send(RawEnvelope)}.
+     * @return
+     */
+    protected EnvelopeSerializer getEnvelopeSerializer() {
+        throw new UnsupportedOperationException("The transport doesn't support pre-encoded envelopes");
+    }
+
     @Override
     public void setEnvelopeListener(TransportEnvelopeListener listener) {
         this.transportEnvelopeListener = listener;
@@ -0,0 +1,90 @@
+package org.limeprotocol.network.inprocess;
+
+import org.limeprotocol.Envelope;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue of envelopes, with multiple producers and a single consumer.
+ * Each slot has a sequence, which indicates if it is free for the producer that claims it or published for the
+ * consumer, so the producers only contend on the tail.
+ */
+final class EnvelopePipe {
+
+    private final Envelope[] envelopes;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail;
+    private long head;
+
+    /**
+     * Creates a pipe.
+     * @param capacity The number of envelopes that can wait to be consumed, which is rounded up to a power of two.
+     */
+    EnvelopePipe(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) throw new IllegalArgumentException("capacity");
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.envelopes = new Envelope[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.tail = new AtomicLong();
+    }
+
+    int getCapacity() {
+        return envelopes.length;
+    }
+
+    /**
+     * Adds an envelope, if the pipe is not full.
+     * @param envelope
+     * @return false if the pipe is full.
+     */
+    boolean offer(Envelope envelope) {
+        long sequence = tail.get();
+        while (true) {
+            int index = (int) sequence & mask;
+            long available = sequences.get(index) - sequence;
+            if (available == 0) {
+                if (tail.compareAndSet(sequence, sequence + 1)) {
+                    envelopes[index] = envelope;
+                    // The volatile write orders the publication before the check of a waiting consumer
+                    sequences.set(index, sequence + 1);
+                    return true;
+                }
+                sequence = tail.get();
+            } else if (available < 0) {
+                return false;
+            } else {
+                sequence = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the next envelope. Must be called only by the consumer.
+     * @return the envelope, or null if the pipe is empty.
+     */
+    Envelope poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        Envelope envelope = envelopes[index];
+        envelopes[index] = null;
+        sequences.lazySet(index, head + envelopes.length);
+        head++;
+        return envelope;
+    }
+
+    /**
+     * Indicates if there's no published envelope. Must be called only by the consumer.
+     * @return
+     */
+    boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+}
@@ -0,0 +1,259 @@
+package org.limeprotocol.network.inprocess;
+
+import org.limeprotocol.Envelope;
+import org.limeprotocol.metrics.Counter;
+import org.limeprotocol.metrics.MetricNames;
+import org.limeprotocol.metrics.MetricsRegistry;
+import org.limeprotocol.network.TransportBase;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Transport between two components in the same process, which hands the envelope objects to the remote transport
+ * without serialization or sockets. The transports are created in pairs (see {@link #createPair()}), and the
+ * envelopes sent by one side are queued in a bounded lock-free pipe of the other side, which delivers them to its
+ * envelope listener in a dedicated thread. The session envelopes are handed over like any other, so a
+ * {@link org.limeprotocol.client.ClientChannelImpl} over one side runs the session handshake with the component
+ * that listens to the other side.
+ * <p>
+ * By default the envelopes are shared between the sides, so they must not be changed after being sent.
+ * When the sides don't trust each other, the pair can copy the sent envelopes with a serializer.
+ * When the pipe of the remote side is full, the send blocks until the remote listener consumes an envelope.
+ * Closing one side closes the other after it delivers the pending envelopes, like the end of a TCP stream.
+ */
+public class InProcessTransport extends TransportBase {
+
+    public final static String URI_SCHEME = "net.inproc";
+    public final static int DEFAULT_CAPACITY = 1024;
+
+    private final static long RECEIVE_WAIT_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+    private final static long SEND_WAIT_INTERVAL = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * Reads the pre-encoded envelopes sent by the transports that share the envelopes, which have no serializer.
+     */
+    private final static EnvelopeSerializer rawEnvelopeSerializer = new JacksonEnvelopeSerializer();
+
+    private final EnvelopePipe inboundPipe;
+    private final EnvelopeSerializer copySerializer;
+    private final Counter envelopesSent;
+    private final Counter envelopesReceived;
+    private InProcessTransport remoteTransport;
+    private volatile TransportEnvelopeListener envelopeListener;
+    private volatile Thread receiverThread;
+    private volatile boolean isReceiverWaiting;
+    private volatile boolean isOpen;
+    private volatile boolean isClosed;
+
+    private InProcessTransport(int capacity, EnvelopeSerializer copySerializer) {
+        this.inboundPipe = new EnvelopePipe(capacity);
+        this.copySerializer = copySerializer;
+        MetricsRegistry metricsRegistry = MetricsRegistry.getShared();
+        this.envelopesSent = metricsRegistry.getCounter(MetricNames.TRANSPORT_ENVELOPES_SENT);
+        this.envelopesReceived = metricsRegistry.getCounter(MetricNames.TRANSPORT_ENVELOPES_RECEIVED);
+    }
+
+    /**
+     * Creates a pair of connected transports, which share the sent envelopes.
+     * @return
+     */
+    public static Pair createPair() {
+        return createPair(DEFAULT_CAPACITY, null);
+    }
+
+    /**
+     * Creates a pair of connected transports.
+     * @param capacity The number of envelopes that can wait to be received by each side, which is rounded up to a power of two.
+     * @param copySerializer The serializer for the defensive copies of the sent envelopes, or null to share the envelopes.
+     * @return
+     */
+    public static Pair createPair(int capacity, EnvelopeSerializer copySerializer) {
+        InProcessTransport clientTransport = new InProcessTransport(capacity, copySerializer);
+        InProcessTransport serverTransport = new InProcessTransport(capacity, copySerializer);
+        clientTransport.remoteTransport = serverTransport;
+        serverTransport.remoteTransport = clientTransport;
+        return new Pair(clientTransport, serverTransport);
+    }
+
+    /**
+     * Gets the other side of the pair.
+     * @return
+     */
+    public InProcessTransport getRemoteTransport() {
+        return remoteTransport;
+    }
+
+    /**
+     * Gets the number of envelopes that can wait to be received.
+     * @return
+     */
+    public int getCapacity() {
+        return inboundPipe.getCapacity();
+    }
+
+    @Override
+    protected EnvelopeSerializer getEnvelopeSerializer() {
+        return copySerializer != null ? copySerializer : rawEnvelopeSerializer;
+    }
+
+    @Override
+    public void send(Envelope envelope) throws IOException {
+        if (envelope == null) {
+            throw new IllegalArgumentException("envelope");
+        }
+        if (!isOpen) {
+            throw new IllegalStateException("The transport is not open");
+        }
+        if (!isConnected()) {
+            throw new IOException("The transport is not connected");
+        }
+        if (copySerializer != null) {
+            envelope = copySerializer.deserialize(copySerializer.serialize(envelope));
+        }
+        remoteTransport.enqueue(envelope);
+        envelopesSent.increment();
+    }
+
+    @Override
+    public void setEnvelopeListener(TransportEnvelopeListener listener) {
+        super.setEnvelopeListener(listener);
+        this.envelopeListener = listener;
+        signalReceiver();
+    }
+
+    @Override
+    protected TransportEnvelopeListener getEnvelopeListener() {
+        return envelopeListener;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return isOpen && !isClosed && !remoteTransport.isClosed;
+    }
+
+    @Override
+    protected void performOpen(URI uri) throws IOException {
+        if (uri == null) {
+            throw new IllegalArgumentException("uri");
+        }
+        if (!URI_SCHEME.equals(uri.getScheme())) {
+            throw new IllegalArgumentException(String.format("Invalid URI scheme. Expected is '%s'", URI_SCHEME));
+        }
+        if (isClosed) {
+            throw new IllegalStateException("The transport was closed");
+        }
+        if (isOpen) {
+            throw new IllegalStateException("The transport is already open");
+        }
+        isOpen = true;
+        Thread thread = new Thread(new Receiver(), "InProcessTransport Receiver");
+        thread.setDaemon(true);
+        receiverThread = thread;
+        thread.start();
+    }
+
+    @Override
+    protected void performClose() throws IOException {
+        if (isClosed) return;
+        isClosed = true;
+        isOpen = false;
+        signalReceiver();
+        // Lets the remote side deliver its pending envelopes and close
+        remoteTransport.signalReceiver();
+    }
+
+    /**
+     * Adds an envelope sent by the remote side, waiting while the pipe is full.
+     */
+    private void enqueue(Envelope envelope) throws IOException {
+        while (!inboundPipe.offer(envelope)) {
+            if (isClosed) {
+                throw new IOException("The remote transport is closed");
+            }
+            LockSupport.parkNanos(this, SEND_WAIT_INTERVAL);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("The envelope enqueue was interrupted");
+            }
+        }
+        signalReceiver();
+    }
+
+    private void signalReceiver() {
+        if (isReceiverWaiting) {
+            Thread thread = receiverThread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    /**
+     * Delivers the received envelopes while there's a listener registered, like the TCP transport
+     * that stops reading while the channel doesn't expect another envelope.
+     */
+    private class Receiver implements Runnable {
+        @Override
+        public void run() {
+            while (!isClosed) {
+                if (getEnvelopeListener() != null) {
+                    Envelope envelope = inboundPipe.poll();
+                    if (envelope != null) {
+                        envelopesReceived.increment();
+                        try {
+                            raiseOnReceive(envelope);
+                        } catch (RuntimeException e) {
+                            raiseOnException(e);
+                        }
+                        continue;
+                    }
+                }
+                if (remoteTransport.isClosed && inboundPipe.isEmpty()) {
+                    closeOnRemoteClosed();
+                    break;
+                }
+                isReceiverWaiting = true;
+                // Checks again after the flag is visible to the senders, so a signal is not lost
+                if (!isClosed && (getEnvelopeListener() == null || (inboundPipe.isEmpty() && !remoteTransport.isClosed))) {
+                    LockSupport.parkNanos(this, RECEIVE_WAIT_INTERVAL);
+                }
+                isReceiverWaiting = false;
+            }
+        }
+
+        private void closeOnRemoteClosed() {
+            try {
+                close();
+            } catch (IOException e) {
+                raiseOnException(e);
+            }
+        }
+    }
+
+    /**
+     * The two sides of an in-process connection.
+     */
+    public static final class Pair {
+        private final InProcessTransport clientTransport;
+        private final InProcessTransport serverTransport;
+
+        private Pair(InProcessTransport clientTransport, InProcessTransport serverTransport) {
+            this.clientTransport = clientTransport;
+            this.serverTransport = serverTransport;
+        }
+
+        public InProcessTransport getClientTransport() {
+            return clientTransport;
+        }
+
+        public InProcessTransport getServerTransport() {
+            return serverTransport;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package org.limeprotocol.network.modules;
+
+import org.limeprotocol.*;
+import org.limeprotocol.metrics.Gauge;
+import org.limeprotocol.metrics.MetricNames;
+import org.limeprotocol.metrics.MetricsRegistry;
+import org.limeprotocol.network.Channel;
+import org.limeprotocol.network.ChannelModule;
+import org.limeprotocol.util.TokenBucket;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Defines a module that adapts the rate of the sent envelopes to the remote node capacity,
+ * using an additive increase / multiplicative decrease (AIMD) algorithm.
+ * The rate is increased while the sent messages are accepted and the command responses are fast,
+ * and is cut when a failed notification with a throttling reason is received or the command latency rises.
+ * The current rate is reported by the {@link MetricNames#CHANNEL_ADAPTIVE_THROUGHPUT} gauge from the module registration
+ * in a channel until the session ends.
+ */
+public final class AdaptiveThroughputControlChannelModule implements ChannelModule {
+
+    /**
+     * The reason codes that are considered a signal of the remote node overload, by default.
+     * The generic codes, like {@link ReasonCodes#GENERAL_ERROR}, are not included, since they are used for any failure.
+     */
+    public final static Set<Integer> DEFAULT_THROTTLING_REASON_CODES = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList(ReasonCodes.DISPATCH_ERROR)));
+
+    private final static int MAX_PENDING_COMMANDS = 10000;
+    private final static long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private final static long SEND_TIMEOUT_SECONDS = 10;
+
+    private final int minThroughput;
+    private final int maxThroughput;
+    private final double additiveIncrease;
+    private final double decreaseFactor;
+    private final long latencyThresholdNanos;
+    private final Set<Integer> throttlingReasonCodes;
+    private final TokenBucket bucket;
+    private final ConcurrentMap<String, Long> pendingCommandsMap;
+    private final Gauge throughputGauge;
+    private final AtomicBoolean isGaugeAdded;
+
+    private double currentThroughput;
+    private long lastDecreaseTime;
+
+    public AdaptiveThroughputControlChannelModule(int minThroughput, int initialThroughput, int maxThroughput) {
+        this(minThroughput, initialThroughput, maxThroughput, 1, 0.5, 1000, DEFAULT_THROTTLING_REASON_CODES);
+    }
+
+    /**
+     * Creates a new instance of the module.
+     * @param minThroughput The minimum rate, in envelopes per second.
+     * @param initialThroughput The rate used until the first feedback is received.
+     * @param maxThroughput The maximum rate, usually the session quota throughput.
+     * @param additiveIncrease The number of envelopes per second added to the rate for each second of successful sending.
+     * @param decreaseFactor The factor applied to the rate when an overload signal is received.
+     * @param latencyThreshold The command round-trip time, in milliseconds, above which the rate is decreased. Zero disables the latency signal.
+     * @param throttlingReasonCodes The failed notification reason codes that signal an overload.
+     */
+    public AdaptiveThroughputControlChannelModule(int minThroughput, int initialThroughput, int maxThroughput,
+                                                  double additiveIncrease, double decreaseFactor, long latencyThreshold,
+                                                  Set<Integer> throttlingReasonCodes) {
+        if (minThroughput <= 0) throw new IllegalArgumentException("Invalid min throughput");
+        if (maxThroughput < minThroughput) throw new IllegalArgumentException("Invalid max throughput");
+        if (initialThroughput < minThroughput || initialThroughput > maxThroughput) throw new IllegalArgumentException("Invalid initial throughput");
+        if (additiveIncrease <= 0) throw new IllegalArgumentException("Invalid additive increase");
+        if (decreaseFactor <= 0 || decreaseFactor >= 1) throw new IllegalArgumentException("Invalid decrease factor");
+        if (latencyThreshold < 0) throw new IllegalArgumentException("Invalid latency threshold");
+        if (throttlingReasonCodes == null) throw new IllegalArgumentException("throttlingReasonCodes");
+
+        this.minThroughput = minThroughput;
+        this.maxThroughput = maxThroughput;
+        this.additiveIncrease = additiveIncrease;
+        this.decreaseFactor = decreaseFactor;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThreshold);
+        this.throttlingReasonCodes = throttlingReasonCodes;
+        this.currentThroughput = initialThroughput;
+        this.bucket = new TokenBucket(initialThroughput);
+        this.pendingCommandsMap = new ConcurrentHashMap<>();
+        this.lastDecreaseTime = System.nanoTime() - DECREASE_INTERVAL_NANOS;
+        this.throughputGauge = new Gauge() {
+            @Override
+            public long getValue() {
+                return Math.round(getCurrentThroughput());
+            }
+        };
+        this.isGaugeAdded = new AtomicBoolean();
+    }
+
+    /**
+     * Gets the current allowed rate, in envelopes per second.
+     * @return
+     */
+    public synchronized double getCurrentThroughput() {
+        return currentThroughput;
+    }
+
+    @Override
+    public void onStateChanged(Session.SessionState state) {
+        if (state == Session.SessionState.FINISHED || state == Session.SessionState.FAILED) {
+            pendingCommandsMap.clear();
+            if (isGaugeAdded.compareAndSet(true, false)) {
+                MetricsRegistry.getShared().removeGauge(MetricNames.CHANNEL_ADAPTIVE_THROUGHPUT, throughputGauge);
+            }
+        }
+    }
+
+    @Override
+    public Envelope onSending(Envelope envelope) {
+        try {
+            if (!bucket.tryAcquire(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException(String.format("The envelope throughput limit was not released in %d seconds", SEND_TIMEOUT_SECONDS));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The thread was interrupted while waiting for the envelope throughput limit", e);
+        }
+
+        if (latencyThresholdNanos > 0 && envelope instanceof Command) {
+            Command command = (Command) envelope;
+            if (command.getId() != null && command.getStatus() == null && command.getMethod() != Command.CommandMethod.OBSERVE) {
+                if (pendingCommandsMap.size() >= MAX_PENDING_COMMANDS) {
+                    // The responses for these commands are not coming; start over.
+                    pendingCommandsMap.clear();
+                }
+                pendingCommandsMap.put(command.getId(), System.nanoTime());
+            }
+        }
+        return envelope;
+    }
+
+    @Override
+    public Envelope onReceiving(Envelope envelope) {
+        if (envelope instanceof Notification) {
+            Notification notification = (Notification) envelope;
+            if (notification.getEvent() == Notification.Event.FAILED) {
+                if (isThrottlingReason(notification.getReason())) {
+                    decrease();
+                }
+            } else if (notification.getEvent() == Notification.Event.ACCEPTED) {
+                increase();
+            }
+        } else if (envelope instanceof Command) {
+            Command command = (Command) envelope;
+            if (command.getId() != null && command.getStatus() != null) {
+                Long sentTime = pendingCommandsMap.remove(command.getId());
+                if (command.getStatus() == Command.CommandStatus.FAILURE && isThrottlingReason(command.getReason())) {
+                    decrease();
+                } else if (sentTime != null) {
+                    if (System.nanoTime() - sentTime > latencyThresholdNanos) {
+                        decrease();
+                    } else {
+                        increase();
+                    }
+                }
+            }
+        }
+        return envelope;
+    }
+
+    public static AdaptiveThroughputControlChannelModule createAndRegister(Channel channel, int minThroughput, int initialThroughput, int maxThroughput) {
+        return register(channel, new AdaptiveThroughputControlChannelModule(minThroughput, initialThroughput, maxThroughput));
+    }
+
+    public static AdaptiveThroughputControlChannelModule register(Channel channel, AdaptiveThroughputControlChannelModule module) {
+        channel.getMessageModules().add(module);
+        channel.getNotificationModules().add(module);
+        channel.getCommandModules().add(module);
+        if (module.isGaugeAdded.compareAndSet(false, true)) {
+            MetricsRegistry.getShared().addGauge(MetricNames.CHANNEL_ADAPTIVE_THROUGHPUT, module.throughputGauge);
+        }
+        return module;
+    }
+
+    private boolean isThrottlingReason(Reason reason) {
+        return reason != null && throttlingReasonCodes.contains(reason.getCode());
+    }
+
+    private synchronized void increase() {
+        if (currentThroughput >= maxThroughput) return;
+        // Adds the configured increase for each second worth of successful envelopes at the current rate.
+        currentThroughput = Math.min(maxThroughput, currentThroughput + additiveIncrease / currentThroughput);
+        updateBucket();
+    }
+
+    private synchronized void decrease() {
+        long now = System.nanoTime();
+        // Avoid multiple cuts for the failures caused by the same burst
+        if (now - lastDecreaseTime < DECREASE_INTERVAL_NANOS) return;
+        lastDecreaseTime = now;
+        currentThroughput = Math.max(minThroughput, currentThroughput * decreaseFactor);
+        updateBucket();
+    }
+
+    private void updateBucket() {
+        int throughput = (int) Math.round(currentThroughput);
+        if (throughput != bucket.getTokensPerSecond()) {
+            bucket.setRate(throughput, throughput);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.limeprotocol.network.modules;
+
+import org.limeprotocol.Message;
+import org.limeprotocol.Node;
+import org.limeprotocol.network.Channel;
+import org.limeprotocol.util.RotatingBloomFilter;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Defines a channel module that discards received messages that were already received in a time window,
+ * identified by the message id and sender. Messages can be received twice when they are resent by the
+ * originator (see {@link ResendMessagesChannelModule}) or redelivered by the server after a reconnection.
+ * The received keys are kept in an exact set, bounded by the capacity and by the window, and are tracked by a
+ * rotating Bloom filter too, so the common case of a new message is added to the set without looking it up.
+ * Only the possible hits of the filter are looked up in the set, and a message is discarded only when the set
+ * confirms that its key was received in the window, so a false positive of the filter never discards a new message.
+ * When more distinct messages than the capacity are received in the window, the oldest keys are forgotten first.
+ */
+public final class DiscardDuplicatesChannelModule extends ChannelModuleBase<Message> {
+
+    public final static int DEFAULT_CAPACITY = 100000;
+    public final static long DEFAULT_WINDOW_MILLISECONDS = TimeUnit.MINUTES.toMillis(5);
+
+    private final static double BLOOM_FILTER_FALSE_POSITIVE_PROBABILITY = 0.001;
+
+    private final static ThreadLocal<StringBuilder> keyBuilders = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(128);
+        }
+    };
+
+    private final int capacity;
+    private final long windowNanos;
+    private final RotatingBloomFilter bloomFilter;
+    private final ConcurrentMap<String, Long> receivedKeys;
+    private final Queue<ReceivedKey> receivedKeysOrder;
+
+    public DiscardDuplicatesChannelModule() {
+        this(DEFAULT_CAPACITY, DEFAULT_WINDOW_MILLISECONDS);
+    }
+
+    /**
+     * Creates a new instance of the module.
+     * @param capacity The maximum number of distinct messages remembered in the window.
+     * @param window The time, in milliseconds, that a received message is remembered.
+     */
+    public DiscardDuplicatesChannelModule(int capacity, long window) {
+        this(capacity, window, createBloomFilter(capacity, window));
+    }
+
+    DiscardDuplicatesChannelModule(int capacity, long window, RotatingBloomFilter bloomFilter) {
+        if (capacity <= 0) throw new IllegalArgumentException("Invalid capacity");
+        if (window <= 0) throw new IllegalArgumentException("Invalid window");
+        if (bloomFilter == null) throw new IllegalArgumentException("bloomFilter");
+        this.capacity = capacity;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(window);
+        this.bloomFilter = bloomFilter;
+        this.receivedKeys = new ConcurrentHashMap<>();
+        this.receivedKeysOrder = new ConcurrentLinkedQueue<>();
+    }
+
+    private static RotatingBloomFilter createBloomFilter(int capacity, long window) {
+        if (capacity <= 0) throw new IllegalArgumentException("Invalid capacity");
+        if (window <= 0) throw new IllegalArgumentException("Invalid window");
+        return new RotatingBloomFilter(capacity, BLOOM_FILTER_FALSE_POSITIVE_PROBABILITY, window, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Message onReceiving(Message envelope) {
+        if (envelope.getId() == null) {
+            return super.onReceiving(envelope);
+        }
+
+        StringBuilder keyBuilder = buildKey(envelope);
+        boolean isNew = bloomFilter.put(keyBuilder);
+        String key = keyBuilder.toString();
+        long now = System.nanoTime();
+        if (isNew) {
+            // Definitely new
+            receivedKeys.put(key, now);
+        } else {
+            // Possibly received before, which is confirmed by the exact set
+            Long receivedTime = receivedKeys.putIfAbsent(key, now);
+            if (receivedTime != null) {
+                if (now - receivedTime <= windowNanos || !receivedKeys.replace(key, receivedTime, now)) {
+                    return null;
+                }
+                // The same id was reused after the window
+            }
+        }
+        receivedKeysOrder.add(new ReceivedKey(key, now));
+        removeExpiredKeys(now);
+        return super.onReceiving(envelope);
+    }
+
+    /**
+     * Removes the oldest keys while they are older than the window or the set is over the capacity.
+     */
+    private void removeExpiredKeys(long now) {
+        ReceivedKey oldest;
+        while ((oldest = receivedKeysOrder.peek()) != null &&
+                (now - oldest.time > windowNanos || receivedKeys.size() > capacity)) {
+            oldest = receivedKeysOrder.poll();
+            if (oldest != null) {
+                // The key is kept if it was received again after the window
+                receivedKeys.remove(oldest.key, oldest.time);
+            }
+        }
+    }
+
+    public static DiscardDuplicatesChannelModule createAndRegister(Channel channel) {
+        return createAndRegister(channel, DEFAULT_CAPACITY, DEFAULT_WINDOW_MILLISECONDS);
+    }
+
+    public static DiscardDuplicatesChannelModule createAndRegister(Channel channel, int capacity, long window) {
+        DiscardDuplicatesChannelModule module = new DiscardDuplicatesChannelModule(capacity, window);
+        channel.getMessageModules().add(module);
+        return module;
+    }
+
+    /**
+     * Builds the key of the message id and the case-insensitive sender in a buffer of the thread.
+     */
+    private static StringBuilder buildKey(Message message) {
+        StringBuilder key = keyBuilders.get();
+        key.setLength(0);
+        key.append(message.getId());
+        Node from = message.getFrom();
+        if (from != null) {
+            key.append('|');
+            appendLowerCase(key, from.getName());
+            key.append('@');
+            appendLowerCase(key, from.getDomain());
+            key.append('/');
+            appendLowerCase(key, from.getInstance());
+        }
+        return key;
+    }
+
+    private static void appendLowerCase(StringBuilder builder, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            builder.append(Character.toLowerCase(value.charAt(i)));
+        }
+    }
+
+    private final static class ReceivedKey {
+        private final String key;
+        private final long time;
+
+        private ReceivedKey(String key, long time) {
+            this.key = key;
+            this.time = time;
+        }
+    }
+}
@@ -22,10 +22,10 @@ public final class FillEnvelopeRecipientsChannelModule<T extends Envelope> exten
         if (channel instanceof ClientChannel && channel.getLocalNode() != null) {
             if (envelope.getPp() == null) {
                 if (envelope.getFrom() != null && !envelope.getFrom().equals(channel.getLocalNode())) {
-                    envelope.setPp(channel.getLocalNode().copy());
+                    envelope.setPp(channel.getLocalNode());
                 }
             } else if (StringUtils.isNullOrWhiteSpace(envelope.getPp().getDomain())) {
-                envelope.getPp().setDomain(channel.getLocalNode().getDomain());
+                envelope.setPp(withDomain(envelope.getPp(), channel.getLocalNode().getDomain()));
             }
         }
 
@@ -39,23 +39,27 @@ public final class FillEnvelopeRecipientsChannelModule<T extends Envelope> exten
 
         if (from != null) {
             if (envelope.getFrom() == null) {
-                envelope.setFrom(from.copy());
+                envelope.setFrom(from);
             } else if (StringUtils.isNullOrEmpty(envelope.getFrom().getDomain())) {
-                envelope.getFrom().setDomain(from.getDomain());
+                envelope.setFrom(withDomain(envelope.getFrom(), from.getDomain()));
             }
         }
 
         if (to != null) {
             if (envelope.getTo() == null) {
-                envelope.setTo(to.copy());
+                envelope.setTo(to);
             } else if (StringUtils.isNullOrEmpty(envelope.getTo().getDomain())) {
-                envelope.getTo().setDomain(to.getDomain());
+                envelope.setTo(withDomain(envelope.getTo(), to.getDomain()));
             }
         }
 
         return super.onReceiving(envelope);
     }
 
+    private static Node withDomain(Node node, String domain) {
+        return new Node(node.getName(), domain, node.getInstance());
+    }
+
     public static void createAndRegister(Channel channel) {
         FillEnvelopeRecipientsChannelModule<Message> messageModule = new FillEnvelopeRecipientsChannelModule<>(channel);
         FillEnvelopeRecipientsChannelModule<Notification> notificationModule = new FillEnvelopeRecipientsChannelModule<>(channel);
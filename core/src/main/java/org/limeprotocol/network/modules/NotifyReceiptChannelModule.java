@@ -3,19 +3,74 @@ package org.limeprotocol.network.modules;
 import org.limeprotocol.Message;
 import org.limeprotocol.Node;
 import org.limeprotocol.Notification;
+import org.limeprotocol.Session;
+import org.limeprotocol.metrics.Counter;
+import org.limeprotocol.metrics.MetricNames;
+import org.limeprotocol.metrics.MetricsRegistry;
 import org.limeprotocol.network.Channel;
 
 import java.io.IOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Defines a channel module that automatically send a received notification for each received message.
+ * The notifications are queued and sent asynchronously, in the order the messages were received,
+ * so the receive path is not blocked by the outbound write.
+ * The queue is bounded; when it is full, the receipts of the next messages are discarded and counted
+ * in the {@link MetricNames#CHANNEL_RECEIPTS_DROPPED} metric.
  */
 public final class NotifyReceiptChannelModule extends ChannelModuleBase<Message> {
 
+    public final static int DEFAULT_MAX_PENDING_RECEIPTS = 10000;
+
+    private final static Executor defaultExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "NotifyReceiptChannelModule");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     private final Channel channel;
+    private final Executor executor;
+    private final BlockingQueue<Notification> pendingReceipts;
+    private final Counter droppedReceipts;
+    private final AtomicBoolean isSending;
+    private final Runnable sendReceiptsRunnable;
 
     public NotifyReceiptChannelModule(Channel channel) {
+        this(channel, defaultExecutor);
+    }
+
+    public NotifyReceiptChannelModule(Channel channel, Executor executor) {
+        this(channel, executor, DEFAULT_MAX_PENDING_RECEIPTS);
+    }
+
+    /**
+     * Creates a new instance of the module.
+     * @param channel
+     * @param executor The executor that sends the receipts.
+     * @param maxPendingReceipts The maximum number of receipts waiting to be sent.
+     */
+    public NotifyReceiptChannelModule(Channel channel, Executor executor, int maxPendingReceipts) {
+        if (channel == null) throw new IllegalArgumentException("channel");
+        if (executor == null) throw new IllegalArgumentException("executor");
+        if (maxPendingReceipts <= 0) throw new IllegalArgumentException("maxPendingReceipts");
         this.channel = channel;
+        this.executor = executor;
+        this.pendingReceipts = new LinkedBlockingQueue<>(maxPendingReceipts);
+        this.droppedReceipts = MetricsRegistry.getShared().getCounter(MetricNames.CHANNEL_RECEIPTS_DROPPED);
+        this.isSending = new AtomicBoolean();
+        this.sendReceiptsRunnable = new SendReceiptsRunnable();
+    }
+
+    @Override
+    public void onStateChanged(Session.SessionState state) {
+        if (state == Session.SessionState.FINISHED || state == Session.SessionState.FAILED) {
+            pendingReceipts.clear();
+        }
     }
 
     @Override
@@ -25,19 +80,65 @@ public final class NotifyReceiptChannelModule extends ChannelModuleBase<Message>
         if (envelope.getId() != null &&
                 envelope.getFrom() != null &&
                 (destination == null || destination.equals(channel.getLocalNode()) || (destination.getInstance() == null && destination.toIdentity().equals(channel.getLocalNode().toIdentity())))) {
-            try {
-                Notification notification = new Notification() {{
-                    setId(envelope.getId());
-                    setTo(envelope.getSender());
-                    setEvent(Event.RECEIVED);
-                }};
-
-                channel.sendNotification(notification);
-            } catch (IOException e) {
-                throw new RuntimeException("An error occurred while sending a message receipt", e);
+            Notification notification = new Notification(envelope.getId());
+            notification.setTo(envelope.getSender());
+            notification.setEvent(Notification.Event.RECEIVED);
+
+            if (pendingReceipts.offer(notification)) {
+                scheduleSend();
+            } else {
+                droppedReceipts.increment();
             }
         }
 
         return super.onReceiving(envelope);
     }
+
+    /**
+     * Gets the number of receipts waiting to be sent.
+     * @return
+     */
+    public int getPendingReceiptsCount() {
+        return pendingReceipts.size();
+    }
+
+    private void scheduleSend() {
+        // Only one sender runs at a time, which keeps the receipts order.
+        if (isSending.compareAndSet(false, true)) {
+            try {
+                executor.execute(sendReceiptsRunnable);
+            } catch (RejectedExecutionException e) {
+                isSending.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private final class SendReceiptsRunnable implements Runnable {
+        @Override
+        public void run() {
+            try {
+                Notification notification;
+                while ((notification = pendingReceipts.poll()) != null) {
+                    try {
+                        channel.sendNotification(notification);
+                    } catch (IOException | IllegalStateException e) {
+                        // The channel is not available anymore, so the remaining receipts cannot be sent.
+                        pendingReceipts.clear();
+                        e.printStackTrace();
+                    } catch (RuntimeException e) {
+                        // Only this receipt failed, like on a module error, so the next ones are still sent.
+                        e.printStackTrace();
+                    }
+                }
+            } finally {
+                isSending.set(false);
+            }
+
+            // Checks for receipts enqueued after the last poll
+            if (!pendingReceipts.isEmpty()) {
+                scheduleSend();
+            }
+        }
+    }
 }
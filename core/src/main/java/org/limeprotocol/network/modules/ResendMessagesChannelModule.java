@@ -4,6 +4,9 @@ import org.limeprotocol.Envelope;
 import org.limeprotocol.Message;
 import org.limeprotocol.Notification;
 import org.limeprotocol.Session;
+import org.limeprotocol.metrics.Counter;
+import org.limeprotocol.metrics.MetricNames;
+import org.limeprotocol.metrics.MetricsRegistry;
 import org.limeprotocol.network.Channel;
 import org.limeprotocol.network.ChannelModule;
 
@@ -25,6 +28,7 @@ public final class ResendMessagesChannelModule implements ChannelModule {
     private final Notification.Event expectedEvent;
     private final ConcurrentMap<String, SentMessage> sentMessageMap;
     private final BlockingQueue<SentMessage> sentMessageQueue;
+    private final Counter resentMessages;
 
     private Channel channel;
     private boolean unbindWhenClosed;
@@ -41,6 +45,7 @@ public final class ResendMessagesChannelModule implements ChannelModule {
         this.expectedEvent = expectedEvent;
         this.sentMessageMap = new ConcurrentHashMap<>();
         this.sentMessageQueue = new ArrayBlockingQueue<>(100);
+        this.resentMessages = MetricsRegistry.getShared().getCounter(MetricNames.CHANNEL_MESSAGES_RESENT);
     }
 
     public boolean isBound() {
@@ -198,6 +203,7 @@ public final class ResendMessagesChannelModule implements ChannelModule {
                             continue;
                         }
                         channel.sendMessage(sentMessage.getMessage());
+                        resentMessages.increment();
                     }
                 } catch (InterruptedException | IOException | IllegalStateException e) {
                     e.printStackTrace();
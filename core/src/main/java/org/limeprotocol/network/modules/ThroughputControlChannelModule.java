@@ -1,28 +1,160 @@
 package org.limeprotocol.network.modules;
 
-import org.limeprotocol.Envelope;
+import org.limeprotocol.*;
 import org.limeprotocol.network.Channel;
-import org.limeprotocol.util.RateGate;
+import org.limeprotocol.util.StringUtils;
+import org.limeprotocol.util.TokenBucket;
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Defines a module that limits the rate of the envelopes sent by the channel.
+ * Besides the global limit, it supports limits per envelope type and per destination,
+ * so a slow destination does not throttle unrelated traffic.
+ * The limits follow the semantic of the server quota throughput value: a null or zero value means unbounded.
+ * The buckets of the destinations are bounded: the idle ones are removed when they accumulate, and when there are
+ * too many active destinations, an arbitrary bucket is removed, so that destination restarts with a full bucket.
+ */
 public class ThroughputControlChannelModule extends ChannelModuleBase {
 
-    private RateGate rateGate;
+    private final static int MAX_IDLE_DESTINATION_BUCKETS = 1024;
+    private final static int MAX_DESTINATION_BUCKETS = 65536;
+
+    private final ConcurrentMap<Class<? extends Envelope>, TokenBucket> envelopeTypeBuckets;
+    private final static ThreadLocal<BucketKey> lookupKeys = new ThreadLocal<BucketKey>() {
+        @Override
+        protected BucketKey initialValue() {
+            return new BucketKey();
+        }
+    };
+
+    private final ConcurrentMap<BucketKey, TokenBucket> domainBuckets;
+    private final ConcurrentMap<BucketKey, TokenBucket> destinationBuckets;
+    private volatile TokenBucket globalBucket;
+    private volatile int destinationThroughput;
+    private volatile int destinationBucketsCleanupSize = MAX_IDLE_DESTINATION_BUCKETS;
     private long timeoutSec = 10;
 
-    private ThroughputControlChannelModule(int throughput) {
-        rateGate = new RateGate(throughput);
+    private ThroughputControlChannelModule(Integer throughput) {
+        envelopeTypeBuckets = new ConcurrentHashMap<>();
+        domainBuckets = new ConcurrentHashMap<>();
+        destinationBuckets = new ConcurrentHashMap<>();
+        setThroughput(throughput);
     }
 
     @Override
     public Envelope onSending(Envelope envelope) {
-        try {
-            rateGate.waitToProceed(timeoutSec, TimeUnit.SECONDS);
-        }catch (InterruptedException e){ }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSec);
+        long wait;
+        while ((wait = tryAcquire(envelope)) > 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new IllegalStateException(String.format("The envelope throughput limit was not released in %d seconds", timeoutSec));
+            }
+            LockSupport.parkNanos(this, Math.min(wait, remaining));
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IllegalStateException("The thread was interrupted while waiting for the envelope throughput limit");
+            }
+        }
         return envelope;
     }
 
+    /**
+     * Tries to reserve the throughput for sending the specified envelope, without blocking.
+     * @param envelope
+     * @return 0 if the envelope can be sent now; otherwise, the time in nanoseconds after which the caller should try again.
+     */
+    public long tryAcquire(Envelope envelope) {
+        if (envelope == null) {
+            throw new IllegalArgumentException("envelope");
+        }
+
+        TokenBucket global = globalBucket;
+        TokenBucket typeBucket = envelopeTypeBuckets.get(getEnvelopeType(envelope));
+        TokenBucket domainBucket = null;
+        TokenBucket destinationBucket = null;
+
+        Node to = envelope.getTo();
+        if (to != null) {
+            // The lookups use a reusable key, so the sent envelopes don't allocate
+            BucketKey lookupKey = lookupKeys.get();
+            if (to.getDomain() != null && !domainBuckets.isEmpty()) {
+                domainBucket = domainBuckets.get(lookupKey.set(null, to.getDomain()));
+            }
+            if (destinationThroughput > 0) {
+                destinationBucket = getDestinationBucket(lookupKey.set(to.getName(), to.getDomain()));
+            }
+        }
+
+        long wait = 0;
+        if (global != null && (wait = global.tryAcquireOrGetWait()) > 0) {
+            return wait;
+        }
+        if (typeBucket != null && (wait = typeBucket.tryAcquireOrGetWait()) > 0) {
+            release(global);
+            return wait;
+        }
+        if (domainBucket != null && (wait = domainBucket.tryAcquireOrGetWait()) > 0) {
+            release(global);
+            release(typeBucket);
+            return wait;
+        }
+        if (destinationBucket != null && (wait = destinationBucket.tryAcquireOrGetWait()) > 0) {
+            release(global);
+            release(typeBucket);
+            release(domainBucket);
+            return wait;
+        }
+        return 0;
+    }
+
+    /**
+     * Sets the limit of envelopes per second for all the sent envelopes, usually the value of the session quota.
+     * @param throughput The limit. Null or zero means unbounded.
+     */
+    public void setThroughput(Integer throughput) {
+        globalBucket = createBucket(throughput);
+    }
+
+    /**
+     * Sets the limit of envelopes per second for a specific envelope type (Message, Notification or Command).
+     * @param envelopeType
+     * @param throughput The limit. Null or zero means unbounded.
+     */
+    public void setEnvelopeTypeThroughput(Class<? extends Envelope> envelopeType, Integer throughput) {
+        if (envelopeType == null) {
+            throw new IllegalArgumentException("envelopeType");
+        }
+        setOrRemove(envelopeTypeBuckets, envelopeType, throughput);
+    }
+
+    /**
+     * Sets the limit of envelopes per second for all destinations in the specified domain.
+     * @param domain
+     * @param throughput The limit. Null or zero means unbounded.
+     */
+    public void setDomainThroughput(String domain, Integer throughput) {
+        if (domain == null) {
+            throw new IllegalArgumentException("domain");
+        }
+        setOrRemove(domainBuckets, BucketKey.normalized(null, domain), throughput);
+    }
+
+    /**
+     * Sets the limit of envelopes per second for each destination identity, individually.
+     * @param throughput The limit. Null or zero means unbounded.
+     */
+    public void setDestinationThroughput(Integer throughput) {
+        destinationThroughput = throughput != null && throughput > 0 ? throughput : 0;
+        destinationBuckets.clear();
+        destinationBucketsCleanupSize = MAX_IDLE_DESTINATION_BUCKETS;
+    }
+
     public static ThroughputControlChannelModule createAndRegister(Channel channel) {
         return createAndRegister(channel, 10);
     }
@@ -34,4 +166,111 @@ public class ThroughputControlChannelModule extends ChannelModuleBase {
         channel.getNotificationModules().add(throughputControlChannelModule);
         return throughputControlChannelModule;
     }
+
+    private TokenBucket getDestinationBucket(BucketKey lookupKey) {
+        TokenBucket bucket = destinationBuckets.get(lookupKey);
+        if (bucket == null) {
+            if (destinationBuckets.size() >= destinationBucketsCleanupSize) {
+                removeIdleDestinationBuckets();
+            }
+            bucket = new TokenBucket(destinationThroughput);
+            TokenBucket existingBucket = destinationBuckets.putIfAbsent(BucketKey.normalized(lookupKey.name, lookupKey.domain), bucket);
+            if (existingBucket != null) {
+                bucket = existingBucket;
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * Removes the idle destination buckets, and arbitrary ones when the maximum is reached. The next cleanup happens
+     * only when the remaining buckets double or reach the maximum, so the scans are amortized over the created buckets.
+     */
+    private void removeIdleDestinationBuckets() {
+        for (Iterator<Map.Entry<BucketKey, TokenBucket>> iterator = destinationBuckets.entrySet().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().getValue().isFull()) {
+                iterator.remove();
+            }
+        }
+        if (destinationBuckets.size() >= MAX_DESTINATION_BUCKETS) {
+            // Removes a quarter of the buckets at once, so the next cleanup is not in the next miss
+            int targetSize = MAX_DESTINATION_BUCKETS - MAX_DESTINATION_BUCKETS / 4;
+            for (Iterator<BucketKey> iterator = destinationBuckets.keySet().iterator(); iterator.hasNext() && destinationBuckets.size() > targetSize; ) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        destinationBucketsCleanupSize = Math.min(MAX_DESTINATION_BUCKETS,
+                Math.max(MAX_IDLE_DESTINATION_BUCKETS, destinationBuckets.size() * 2));
+    }
+
+    private static <K> void setOrRemove(ConcurrentMap<K, TokenBucket> buckets, K key, Integer throughput) {
+        TokenBucket bucket = createBucket(throughput);
+        if (bucket == null) {
+            buckets.remove(key);
+        } else {
+            buckets.put(key, bucket);
+        }
+    }
+
+    private static TokenBucket createBucket(Integer throughput) {
+        if (throughput == null || throughput <= 0) {
+            return null;
+        }
+        return new TokenBucket(throughput);
+    }
+
+    private static void release(TokenBucket bucket) {
+        if (bucket != null) {
+            bucket.release();
+        }
+    }
+
+    private static Class<? extends Envelope> getEnvelopeType(Envelope envelope) {
+        if (envelope instanceof Message) return Message.class;
+        if (envelope instanceof Notification) return Notification.class;
+        if (envelope instanceof Command) return Command.class;
+        return envelope.getClass();
+    }
+
+    /**
+     * Case-insensitive key of a domain or a destination identity. The registered keys are normalized once,
+     * and the lookups reuse a mutable key per thread.
+     */
+    private static final class BucketKey {
+        private String name;
+        private String domain;
+        private int hash;
+
+        static BucketKey normalized(String name, String domain) {
+            return new BucketKey().set(
+                    name != null ? name.toLowerCase() : null,
+                    domain != null ? domain.toLowerCase() : null);
+        }
+
+        BucketKey set(String name, String domain) {
+            this.name = name;
+            this.domain = domain;
+            this.hash = 31 * StringUtils.hashCodeIgnoreCase(name) + StringUtils.hashCodeIgnoreCase(domain);
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BucketKey)) {
+                return false;
+            }
+            BucketKey key = (BucketKey) obj;
+            return hash == key.hash && equalsIgnoreCase(name, key.name) && equalsIgnoreCase(domain, key.domain);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        private static boolean equalsIgnoreCase(String s1, String s2) {
+            return s1 == null ? s2 == null : s1.equalsIgnoreCase(s2);
+        }
+    }
 }
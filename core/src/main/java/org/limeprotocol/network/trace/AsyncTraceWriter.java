@@ -0,0 +1,333 @@
+package org.limeprotocol.network.trace;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.limeprotocol.*;
+import org.limeprotocol.metrics.Counter;
+import org.limeprotocol.metrics.MetricNames;
+import org.limeprotocol.metrics.MetricsRegistry;
+import org.limeprotocol.network.EnvelopeTraceWriter;
+import org.limeprotocol.serialization.RawEnvelope;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Trace writer that records the traces in a bounded lock-free ring buffer, which is drained to an output stream by
+ * a background thread, as JSON lines with the structured envelope fields:
+ * <pre>{"timestamp":1700000000000,"operation":"send","type":"message","id":"...","from":"...","to":"...","mediaType":"text/plain","size":42,"envelope":{...}}</pre>
+ * The transport threads only copy the references of the envelope fields and bytes to a preallocated slot,
+ * and the records are formatted by the drain thread. When the buffer is full, like when the disk is slow,
+ * the records are dropped instead of blocking the transport (see {@link #getDroppedCount()}).
+ * The envelopes and bytes must not be changed after they are traced.
+ */
+public class AsyncTraceWriter implements EnvelopeTraceWriter, Closeable {
+
+    public final static int DEFAULT_CAPACITY = 8192;
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+    private final static long DRAIN_INTERVAL = TimeUnit.MILLISECONDS.toNanos(1);
+    private final static JsonFactory jsonFactory = new JsonFactory();
+
+    private final TraceRecord[] records;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail;
+    private long head;
+    private final TraceSampler sampler;
+    private final boolean includeEnvelope;
+    private final OutputStream outputStream;
+    private final ByteArrayOutputStream lineBuffer;
+    private final AtomicLong writtenCount;
+    private final AtomicLong droppedCount;
+    private final Counter droppedRecords;
+    private final Thread drainThread;
+    private volatile boolean isEnabled;
+    private volatile boolean isClosed;
+
+    /**
+     * Creates a writer that traces all envelopes, including their JSON.
+     * @param outputStream
+     * @throws IOException
+     */
+    public AsyncTraceWriter(OutputStream outputStream) throws IOException {
+        this(outputStream, DEFAULT_CAPACITY, TraceSamplers.all(), true);
+    }
+
+    /**
+     * Creates a writer.
+     * @param outputStream The stream of the JSON lines, which is closed with the writer.
+     * @param capacity The number of records that can wait to be written, which is rounded up to a power of two.
+     * @param sampler The sampler of the traced envelopes.
+     * @param includeEnvelope Indicates if the envelope JSON is written with the structured fields.
+     * @throws IOException
+     */
+    public AsyncTraceWriter(OutputStream outputStream, int capacity, TraceSampler sampler, boolean includeEnvelope) throws IOException {
+        if (outputStream == null) throw new IllegalArgumentException("outputStream");
+        if (capacity <= 0 || capacity > (1 << 30)) throw new IllegalArgumentException("capacity");
+        if (sampler == null) throw new IllegalArgumentException("sampler");
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.records = new TraceRecord[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            records[i] = new TraceRecord();
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.tail = new AtomicLong();
+        this.sampler = sampler;
+        this.includeEnvelope = includeEnvelope;
+        this.outputStream = outputStream;
+        this.lineBuffer = new ByteArrayOutputStream(1024);
+        this.writtenCount = new AtomicLong();
+        this.droppedCount = new AtomicLong();
+        this.droppedRecords = MetricsRegistry.getShared().getCounter(MetricNames.TRACE_RECORDS_DROPPED);
+        this.isEnabled = true;
+        this.drainThread = new Thread(new Drainer(), "AsyncTraceWriter Drainer");
+        this.drainThread.setDaemon(true);
+        this.drainThread.start();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return isEnabled && !isClosed;
+    }
+
+    /**
+     * Enables or disables the tracing, without stopping the writer.
+     * @param isEnabled
+     */
+    public void setEnabled(boolean isEnabled) {
+        this.isEnabled = isEnabled;
+    }
+
+    @Override
+    public void trace(String data, DataOperation operation) {
+        if (!isEnabled()) return;
+        long sequence = claim();
+        if (sequence < 0) return;
+        TraceRecord record = getRecord(sequence, operation);
+        record.data = data;
+        publish(sequence);
+    }
+
+    @Override
+    public void trace(Envelope envelope, byte[] envelopeBytes, DataOperation operation) {
+        if (!isEnabled() || envelope == null) return;
+        MediaType mediaType = null;
+        if (envelope instanceof Message) {
+            mediaType = ((Message) envelope).getType();
+        } else if (envelope instanceof Command) {
+            mediaType = ((Command) envelope).getType();
+        }
+        if (!sampler.sample(operation, envelope.getClass(), envelope.getFrom(), envelope.getTo(), mediaType)) return;
+        long sequence = claim();
+        if (sequence < 0) return;
+        TraceRecord record = getRecord(sequence, operation);
+        record.envelopeType = envelope.getClass();
+        record.id = envelope.getId();
+        record.from = envelope.getFrom();
+        record.to = envelope.getTo();
+        record.mediaType = mediaType;
+        record.detail = envelope instanceof Notification ? ((Notification) envelope).getEvent() : envelope instanceof Command ? ((Command) envelope).getMethod() : null;
+        record.bytes = envelopeBytes;
+        publish(sequence);
+    }
+
+    @Override
+    public void trace(RawEnvelope rawEnvelope, DataOperation operation) {
+        if (!isEnabled() || rawEnvelope == null) return;
+        if (!sampler.sample(operation, rawEnvelope.getEnvelopeType(), rawEnvelope.getFrom(), rawEnvelope.getTo(), null)) return;
+        long sequence = claim();
+        if (sequence < 0) return;
+        TraceRecord record = getRecord(sequence, operation);
+        record.envelopeType = rawEnvelope.getEnvelopeType();
+        record.id = rawEnvelope.getId();
+        record.from = rawEnvelope.getFrom();
+        record.to = rawEnvelope.getTo();
+        record.bytes = rawEnvelope.toByteArray();
+        publish(sequence);
+    }
+
+    /**
+     * Gets the number of records written to the stream.
+     * @return
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * Gets the number of records dropped because the buffer was full.
+     * @return
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Stops the writer, writing the pending records and closing the stream.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (isClosed) return;
+        isClosed = true;
+        LockSupport.unpark(drainThread);
+        try {
+            drainThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        outputStream.close();
+    }
+
+    /**
+     * Claims a slot, returning its sequence or -1 if the buffer is full.
+     */
+    private long claim() {
+        long sequence = tail.get();
+        while (true) {
+            long available = sequences.get((int) sequence & mask) - sequence;
+            if (available == 0) {
+                if (tail.compareAndSet(sequence, sequence + 1)) {
+                    return sequence;
+                }
+                sequence = tail.get();
+            } else if (available < 0) {
+                droppedCount.incrementAndGet();
+                droppedRecords.increment();
+                return -1;
+            } else {
+                sequence = tail.get();
+            }
+        }
+    }
+
+    private TraceRecord getRecord(long sequence, DataOperation operation) {
+        TraceRecord record = records[(int) sequence & mask];
+        record.timestamp = System.currentTimeMillis();
+        record.operation = operation;
+        return record;
+    }
+
+    private void publish(long sequence) {
+        sequences.lazySet((int) sequence & mask, sequence + 1);
+    }
+
+    /**
+     * Drains the published records in order, returning the number of written records.
+     */
+    private int drain() throws IOException {
+        int count = 0;
+        while (true) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            TraceRecord record = records[index];
+            try {
+                write(record);
+                lineBuffer.writeTo(outputStream);
+            } finally {
+                lineBuffer.reset();
+                record.clear();
+                sequences.lazySet(index, head + records.length);
+                head++;
+            }
+            count++;
+        }
+        if (count > 0) {
+            outputStream.flush();
+            writtenCount.addAndGet(count);
+        }
+        return count;
+    }
+
+    private void write(TraceRecord record) throws IOException {
+        JsonGenerator generator = jsonFactory.createGenerator(lineBuffer);
+        generator.writeStartObject();
+        generator.writeNumberField("timestamp", record.timestamp);
+        generator.writeStringField("operation", record.operation == DataOperation.SEND ? "send" : "receive");
+        if (record.data != null) {
+            generator.writeStringField("data", record.data);
+        } else {
+            generator.writeStringField("type", record.envelopeType.getSimpleName().toLowerCase());
+            writeField(generator, "id", record.id);
+            writeField(generator, "from", record.from);
+            writeField(generator, "to", record.to);
+            writeField(generator, "mediaType", record.mediaType);
+            if (record.detail != null) {
+                writeField(generator, record.envelopeType == Notification.class ? "event" : "method", record.detail.toString().toLowerCase());
+            }
+            generator.writeNumberField("size", record.bytes != null ? record.bytes.length : 0);
+            if (includeEnvelope && record.bytes != null) {
+                generator.writeFieldName("envelope");
+                generator.writeRawValue(new String(record.bytes, UTF8));
+            }
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        generator.close();
+    }
+
+    private static void writeField(JsonGenerator generator, String name, Object value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(name, value.toString());
+        }
+    }
+
+    private final class Drainer implements Runnable {
+
+        @Override
+        public void run() {
+            while (true) {
+                boolean isClosing = isClosed;
+                try {
+                    if (drain() == 0) {
+                        if (isClosing) break;
+                        LockSupport.parkNanos(DRAIN_INTERVAL);
+                    }
+                } catch (IOException e) {
+                    // The record is discarded
+                    e.printStackTrace();
+                    LockSupport.parkNanos(DRAIN_INTERVAL);
+                }
+            }
+        }
+    }
+
+    /**
+     * A ring buffer slot, which holds the references of the traced fields until they are written.
+     */
+    private final static class TraceRecord {
+        private long timestamp;
+        private DataOperation operation;
+        private String data;
+        private Class<? extends Envelope> envelopeType;
+        private String id;
+        private Node from;
+        private Node to;
+        private MediaType mediaType;
+        private Object detail;
+        private byte[] bytes;
+
+        private void clear() {
+            data = null;
+            envelopeType = null;
+            id = null;
+            from = null;
+            to = null;
+            mediaType = null;
+            detail = null;
+            bytes = null;
+        }
+    }
+}
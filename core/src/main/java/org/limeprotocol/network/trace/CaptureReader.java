@@ -0,0 +1,118 @@
+package org.limeprotocol.network.trace;
+
+import org.limeprotocol.network.TraceWriter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads the records of a capture file written by the {@link CaptureTraceWriter}, in the capture order.
+ * The file is mapped in memory, in regions of up to 1 GB.
+ */
+public class CaptureReader implements Closeable {
+
+    private final static long MAX_REGION_SIZE = 1 << 30;
+    private final static TraceWriter.DataOperation[] OPERATIONS = TraceWriter.DataOperation.values();
+
+    private final RandomAccessFile file;
+    private final FileChannel fileChannel;
+    private final long startTimeMillis;
+    private final long dataEnd;
+    private MappedByteBuffer region;
+    private long regionPosition;
+
+    public CaptureReader(File file) throws IOException {
+        if (file == null) throw new IllegalArgumentException("file");
+        this.file = new RandomAccessFile(file, "r");
+        this.fileChannel = this.file.getChannel();
+        try {
+            if (fileChannel.size() < CaptureTraceWriter.HEADER_SIZE) {
+                throw new IOException("The file is not a capture");
+            }
+            MappedByteBuffer header = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, CaptureTraceWriter.HEADER_SIZE);
+            header.order(ByteOrder.BIG_ENDIAN);
+            byte[] magic = new byte[CaptureTraceWriter.MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, CaptureTraceWriter.MAGIC)) {
+                throw new IOException("The file is not a capture");
+            }
+            this.startTimeMillis = header.getLong();
+            this.dataEnd = Math.min(CaptureTraceWriter.HEADER_SIZE + header.getLong(), fileChannel.size());
+            this.regionPosition = CaptureTraceWriter.HEADER_SIZE;
+            this.region = map(regionPosition, 0);
+        } catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the time of the capture start, in milliseconds since the epoch.
+     * @return
+     */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    /**
+     * Reads the next record.
+     * @return the record, or null if there are no more records.
+     * @throws IOException
+     */
+    public CaptureRecord read() throws IOException {
+        if (region.remaining() < CaptureTraceWriter.RECORD_HEADER_SIZE) {
+            if (!remap(CaptureTraceWriter.RECORD_HEADER_SIZE)) {
+                return null;
+            }
+        }
+        int recordStart = region.position();
+        int operation = region.get();
+        long timestamp = region.getLong();
+        int length = region.getInt();
+        if (operation < 0 || operation >= OPERATIONS.length || length < 0) {
+            throw new IOException("Invalid capture record");
+        }
+        if (region.remaining() < length) {
+            region.position(recordStart);
+            if (!remap(CaptureTraceWriter.RECORD_HEADER_SIZE + length)) {
+                throw new IOException("Truncated capture record");
+            }
+            region.position(CaptureTraceWriter.RECORD_HEADER_SIZE);
+        }
+        byte[] envelopeBytes = new byte[length];
+        region.get(envelopeBytes);
+        return new CaptureRecord(OPERATIONS[operation], timestamp, envelopeBytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        region = null;
+        file.close();
+    }
+
+    /**
+     * Maps a new region from the current position, with at least the required bytes.
+     */
+    private boolean remap(int requiredBytes) throws IOException {
+        long position = regionPosition + region.position();
+        if (dataEnd - position < requiredBytes) {
+            return false;
+        }
+        regionPosition = position;
+        region = map(position, requiredBytes);
+        return true;
+    }
+
+    private MappedByteBuffer map(long position, int requiredBytes) throws IOException {
+        long size = Math.min(dataEnd - position, Math.max(MAX_REGION_SIZE, requiredBytes));
+        MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        return buffer;
+    }
+}
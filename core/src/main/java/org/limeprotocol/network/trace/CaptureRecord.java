@@ -0,0 +1,45 @@
+package org.limeprotocol.network.trace;
+
+import org.limeprotocol.network.TraceWriter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents an envelope captured by the {@link CaptureTraceWriter}.
+ */
+public final class CaptureRecord {
+    private final TraceWriter.DataOperation operation;
+    private final long timestamp;
+    private final byte[] envelopeBytes;
+
+    public CaptureRecord(TraceWriter.DataOperation operation, long timestamp, byte[] envelopeBytes) {
+        this.operation = operation;
+        this.timestamp = timestamp;
+        this.envelopeBytes = envelopeBytes;
+    }
+
+    /**
+     * Indicates if the envelope was sent or received by the captured transport.
+     * @return
+     */
+    public TraceWriter.DataOperation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Gets the time elapsed since the capture start.
+     * @param timeUnit
+     * @return
+     */
+    public long getTimestamp(TimeUnit timeUnit) {
+        return timeUnit.convert(timestamp, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the UTF-8 JSON of the envelope, as it was framed by the transport.
+     * @return
+     */
+    public byte[] getEnvelopeBytes() {
+        return envelopeBytes;
+    }
+}
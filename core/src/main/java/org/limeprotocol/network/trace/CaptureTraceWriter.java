@@ -0,0 +1,160 @@
+package org.limeprotocol.network.trace;
+
+import org.limeprotocol.Envelope;
+import org.limeprotocol.network.EnvelopeTraceWriter;
+import org.limeprotocol.serialization.RawEnvelope;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Trace writer that captures the exact bytes and the timing of the envelopes sent and received by a transport
+ * into a memory-mapped capture file, which can be read by the {@link CaptureReader} to replay the traffic.
+ * The file has a header with a magic, the capture start time and the data length, followed by the records:
+ * <pre>operation (1 byte) | nanoseconds since the capture start (8 bytes) | length (4 bytes) | envelope bytes</pre>
+ * The file is mapped in regions of the mapping size, and truncated to the data length when the writer is closed.
+ * The string traces are ignored, since they are not envelopes.
+ */
+public class CaptureTraceWriter implements EnvelopeTraceWriter, Closeable {
+
+    public final static int DEFAULT_MAPPING_SIZE = 16 * 1024 * 1024;
+
+    final static byte[] MAGIC = "LIMECAP1".getBytes(Charset.forName("US-ASCII"));
+    final static int DATA_LENGTH_POSITION = 16;
+    final static int HEADER_SIZE = 24;
+    final static int RECORD_HEADER_SIZE = 13;
+
+    private final RandomAccessFile file;
+    private final FileChannel fileChannel;
+    private final int mappingSize;
+    private final long startTime;
+    private MappedByteBuffer header;
+    private MappedByteBuffer region;
+    private long regionPosition;
+    private long recordsCount;
+    private volatile boolean isEnabled;
+    private boolean isClosed;
+
+    public CaptureTraceWriter(File file) throws IOException {
+        this(file, DEFAULT_MAPPING_SIZE);
+    }
+
+    /**
+     * Creates a writer, overwriting the file.
+     * @param file The capture file.
+     * @param mappingSize The size of the file regions that are mapped in memory.
+     * @throws IOException
+     */
+    public CaptureTraceWriter(File file, int mappingSize) throws IOException {
+        if (file == null) throw new IllegalArgumentException("file");
+        if (mappingSize < HEADER_SIZE) throw new IllegalArgumentException("mappingSize");
+        this.file = new RandomAccessFile(file, "rw");
+        this.file.setLength(0);
+        this.fileChannel = this.file.getChannel();
+        this.mappingSize = mappingSize;
+        this.startTime = System.nanoTime();
+        this.header = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        this.header.order(ByteOrder.BIG_ENDIAN);
+        this.header.put(MAGIC);
+        this.header.putLong(System.currentTimeMillis());
+        this.header.putLong(0);
+        this.regionPosition = HEADER_SIZE;
+        this.region = map(regionPosition, mappingSize);
+        this.isEnabled = true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Enables or disables the capture, without closing the file.
+     * @param isEnabled
+     */
+    public void setEnabled(boolean isEnabled) {
+        this.isEnabled = isEnabled;
+    }
+
+    @Override
+    public void trace(String data, DataOperation operation) {
+    }
+
+    @Override
+    public void trace(Envelope envelope, byte[] envelopeBytes, DataOperation operation) {
+        write(envelopeBytes, operation);
+    }
+
+    @Override
+    public void trace(RawEnvelope rawEnvelope, DataOperation operation) {
+        write(rawEnvelope.toByteArray(), operation);
+    }
+
+    /**
+     * Gets the number of captured envelopes.
+     * @return
+     */
+    public synchronized long getRecordsCount() {
+        return recordsCount;
+    }
+
+    private synchronized void write(byte[] envelopeBytes, DataOperation operation) {
+        if (isClosed || !isEnabled) {
+            return;
+        }
+        long timestamp = System.nanoTime() - startTime;
+        int recordSize = RECORD_HEADER_SIZE + envelopeBytes.length;
+        try {
+            if (region.remaining() < recordSize) {
+                regionPosition += region.position();
+                region = map(regionPosition, Math.max(mappingSize, recordSize));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            isEnabled = false;
+            return;
+        }
+        region.put((byte) operation.ordinal());
+        region.putLong(timestamp);
+        region.putInt(envelopeBytes.length);
+        region.put(envelopeBytes);
+        recordsCount++;
+        // The data length is updated after the record, so a reader never sees a partial record
+        header.putLong(DATA_LENGTH_POSITION, regionPosition + region.position() - HEADER_SIZE);
+    }
+
+    /**
+     * Closes the file, truncating it to the captured data.
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        long fileLength = regionPosition + region.position();
+        region.force();
+        header.force();
+        region = null;
+        header = null;
+        try {
+            fileChannel.truncate(fileLength);
+        } catch (IOException e) {
+            // Some platforms don't truncate mapped files; the readers use the data length of the header
+        }
+        file.close();
+    }
+
+    private MappedByteBuffer map(long position, long size) throws IOException {
+        MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        return buffer;
+    }
+}
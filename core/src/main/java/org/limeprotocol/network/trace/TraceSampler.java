@@ -0,0 +1,23 @@
+package org.limeprotocol.network.trace;
+
+import org.limeprotocol.Envelope;
+import org.limeprotocol.MediaType;
+import org.limeprotocol.Node;
+import org.limeprotocol.network.TraceWriter;
+
+/**
+ * Decides which envelopes are traced. The implementations must be thread-safe and fast,
+ * since they are called in the transport I/O threads (see {@link TraceSamplers}).
+ */
+public interface TraceSampler {
+    /**
+     * Indicates if an envelope should be traced.
+     * @param operation
+     * @param envelopeType
+     * @param from The envelope sender, if any.
+     * @param to The envelope destination, if any.
+     * @param mediaType The content or resource media type, or null if it is not known, like for the relayed envelopes.
+     * @return
+     */
+    boolean sample(TraceWriter.DataOperation operation, Class<? extends Envelope> envelopeType, Node from, Node to, MediaType mediaType);
+}
@@ -0,0 +1,141 @@
+package org.limeprotocol.network.trace;
+
+import org.limeprotocol.Envelope;
+import org.limeprotocol.Identity;
+import org.limeprotocol.MediaType;
+import org.limeprotocol.Node;
+import org.limeprotocol.network.TraceWriter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Factory of the built-in trace samplers.
+ */
+public final class TraceSamplers {
+
+    private final static TraceSampler ALL = new TraceSampler() {
+        @Override
+        public boolean sample(TraceWriter.DataOperation operation, Class<? extends Envelope> envelopeType, Node from, Node to, MediaType mediaType) {
+            return true;
+        }
+    };
+
+    private TraceSamplers() {
+    }
+
+    /**
+     * Gets a sampler that traces all envelopes.
+     * @return
+     */
+    public static TraceSampler all() {
+        return ALL;
+    }
+
+    /**
+     * Gets a sampler that traces one of each n envelopes.
+     * @param n
+     * @return
+     */
+    public static TraceSampler oneIn(final int n) {
+        if (n <= 0) throw new IllegalArgumentException("n");
+        final AtomicLong count = new AtomicLong();
+        return new TraceSampler() {
+            @Override
+            public boolean sample(TraceWriter.DataOperation operation, Class<? extends Envelope> envelopeType, Node from, Node to, MediaType mediaType) {
+                return count.getAndIncrement() % n == 0;
+            }
+        };
+    }
+
+    /**
+     * Gets a sampler that traces all envelopes of one of each n remote identities, chosen by the identity hash;
+     * so the traced conversations are complete. The remote identity is the destination of the sent envelopes and
+     * the sender of the received ones.
+     * @param n
+     * @return
+     */
+    public static TraceSampler oneInIdentities(final int n) {
+        if (n <= 0) throw new IllegalArgumentException("n");
+        return new TraceSampler() {
+            @Override
+            public boolean sample(TraceWriter.DataOperation operation, Class<? extends Envelope> envelopeType, Node from, Node to, MediaType mediaType) {
+                Identity identity = getRemoteIdentity(operation, from, to);
+                if (identity == null) {
+                    return false;
+                }
+                // Spreads the hash bits, since the identity hashes of a domain may be similar
+                int hash = identity.hashCode() * 0x9E3779B9;
+                return ((hash ^ (hash >>> 16)) & 0x7FFFFFFF) % n == 0;
+            }
+        };
+    }
+
+    /**
+     * Gets a sampler that traces the envelopes from or to the specified identities.
+     * @param identities
+     * @return
+     */
+    public static TraceSampler identities(Identity... identities) {
+        final Set<Identity> identitySet = toSet(identities);
+        return new TraceSampler() {
+            @Override
+            public boolean sample(TraceWriter.DataOperation operation, Class<? extends Envelope> envelopeType, Node from, Node to, MediaType mediaType) {
+                return (from != null && identitySet.contains(from.toIdentity()))
+                        || (to != null && identitySet.contains(to.toIdentity()));
+            }
+        };
+    }
+
+    /**
+     * Gets a sampler that traces the envelopes with the specified media types.
+     * @param mediaTypes
+     * @return
+     */
+    public static TraceSampler mediaTypes(MediaType... mediaTypes) {
+        final Set<MediaType> mediaTypeSet = toSet(mediaTypes);
+        return new TraceSampler() {
+            @Override
+            public boolean sample(TraceWriter.DataOperation operation, Class<? extends Envelope> envelopeType, Node from, Node to, MediaType mediaType) {
+                return mediaType != null && mediaTypeSet.contains(mediaType);
+            }
+        };
+    }
+
+    /**
+     * Gets a sampler that traces the envelopes traced by any of the specified samplers.
+     * @param samplers
+     * @return
+     */
+    public static TraceSampler anyOf(final TraceSampler... samplers) {
+        final TraceSampler[] samplersCopy = samplers.clone();
+        return new TraceSampler() {
+            @Override
+            public boolean sample(TraceWriter.DataOperation operation, Class<? extends Envelope> envelopeType, Node from, Node to, MediaType mediaType) {
+                for (TraceSampler sampler : samplersCopy) {
+                    if (sampler.sample(operation, envelopeType, from, to, mediaType)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    private static Identity getRemoteIdentity(TraceWriter.DataOperation operation, Node from, Node to) {
+        Node remote = operation == TraceWriter.DataOperation.SEND ? to : from;
+        if (remote == null) {
+            remote = operation == TraceWriter.DataOperation.SEND ? from : to;
+        }
+        return remote != null ? remote.toIdentity() : null;
+    }
+
+    @SafeVarargs
+    private static <T> Set<T> toSet(T... values) {
+        if (values == null || values.length == 0) throw new IllegalArgumentException("values");
+        return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(values)));
+    }
+}
@@ -1,20 +1,27 @@
 package org.limeprotocol.serialization;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SegmentedStringWriter;
 import com.fasterxml.jackson.databind.*;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.limeprotocol.*;
-import org.limeprotocol.security.*;
 import org.limeprotocol.serialization.jackson.CustomSerializerModule;
+import org.limeprotocol.serialization.jackson.EnvelopeCodec;
+import org.limeprotocol.serialization.jackson.LazyDocument;
 
 import java.io.IOException;
-
-import static org.limeprotocol.security.Authentication.AuthenticationScheme;
+import java.util.ArrayList;
+import java.util.List;
 
 public class JacksonEnvelopeSerializer implements EnvelopeSerializer {
 
     private final static ObjectMapper templateObjectMapper;
     private final static ObjectMapper objectMapper;
+    private final static EnvelopeCodec envelopeCodec;
+    private final static JacksonEnvelopeSerializer eagerSerializer = new JacksonEnvelopeSerializer(false);
+    private final static JacksonEnvelopeSerializer lazySerializer = new JacksonEnvelopeSerializer(true);
+
+    private final boolean lazyDocuments;
 
     static {
         templateObjectMapper = new ObjectMapper()
@@ -23,6 +30,7 @@ public class JacksonEnvelopeSerializer implements EnvelopeSerializer {
                 .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
         objectMapper = createObjectMapper().registerModule(new CustomSerializerModule());
+        envelopeCodec = new EnvelopeCodec(objectMapper);
     }
 
     public static ObjectMapper createObjectMapper() {
@@ -31,10 +39,93 @@ public class JacksonEnvelopeSerializer implements EnvelopeSerializer {
 
     public static ObjectMapper getObjectMapper() { return objectMapper; }
 
+    /**
+     * Builds the serializers and deserializers of the envelope types and of the registered document types
+     * ahead of time, which otherwise are built by the first envelope of each type. Should be called after
+     * the document types are registered and before the first envelopes are received.
+     * @param iterations The number of times that a sample envelope of each type is serialized and deserialized,
+     *                   so the serialization paths are compiled by the JIT before the first envelopes are received.
+     *                   Zero only builds the serializers.
+     * @return The number of registered document types that were warmed up.
+     */
+    public static int warmUp(int iterations) {
+        if (iterations < 0) throw new IllegalArgumentException("iterations");
+
+        List<Envelope> samples = new ArrayList<>();
+        Node from = Node.parse("warmup@limeprotocol.org/from");
+        Node to = Node.parse("warmup@limeprotocol.org/to");
+        int documentTypesCount = 0;
+        for (Class<? extends Document> documentClass : SerializationUtil.getDocumentClasses()) {
+            try {
+                Message message = new Message(EnvelopeId.newId());
+                message.setContent(documentClass.getConstructor().newInstance());
+                Command command = new Command(EnvelopeId.newId());
+                command.setMethod(Command.CommandMethod.GET);
+                command.setStatus(Command.CommandStatus.SUCCESS);
+                command.setResource(documentClass.getConstructor().newInstance());
+                // Builds the document serializers, skipping the types which default instances cannot be serialized
+                warmUp(message);
+                warmUp(command);
+                samples.add(message);
+                samples.add(command);
+                documentTypesCount++;
+            } catch (Exception e) {
+                // The document type is built in its first use
+            }
+        }
+        Notification notification = new Notification(EnvelopeId.newId());
+        notification.setEvent(Notification.Event.FAILED);
+        notification.setReason(new Reason(1, "Warm up"));
+        samples.add(notification);
+        Session session = new Session();
+        session.setState(Session.SessionState.NEGOTIATING);
+        session.setEncryptionOptions(new SessionEncryption[] { SessionEncryption.NONE });
+        samples.add(session);
+        for (Envelope sample : samples) {
+            sample.setFrom(from);
+            sample.setTo(to);
+        }
+
+        for (int i = 0; i <= iterations; i++) {
+            for (Envelope sample : samples) {
+                warmUp(sample);
+            }
+        }
+        return documentTypesCount;
+    }
+
+    private static void warmUp(Envelope envelope) {
+        String json = eagerSerializer.serialize(envelope);
+        eagerSerializer.deserialize(json);
+        Envelope lazyEnvelope = lazySerializer.deserialize(json);
+        lazySerializer.serialize(lazyEnvelope);
+        Document lazyDocument = lazyEnvelope instanceof Message ? ((Message) lazyEnvelope).getContent() :
+                lazyEnvelope instanceof Command ? ((Command) lazyEnvelope).getResource() : null;
+        LazyDocument.materialize(lazyDocument);
+    }
+
+    public JacksonEnvelopeSerializer() {
+        this(false);
+    }
+
+    /**
+     * Creates a new instance of the serializer.
+     * @param lazyDocuments Indicates if the messages contents and commands resources should be deserialized
+     *                      as {@link LazyDocument} instances, which are bound to their types only when accessed
+     *                      and are serialized back from the received JSON unchanged.
+     */
+    public JacksonEnvelopeSerializer(boolean lazyDocuments) {
+        this.lazyDocuments = lazyDocuments;
+    }
+
     @Override
     public String serialize(Envelope envelope) {
         try {
-            return getObjectMapper().writeValueAsString(envelope);
+            SegmentedStringWriter writer = new SegmentedStringWriter(objectMapper.getFactory()._getBufferRecycler());
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)) {
+                envelopeCodec.write(envelope, generator);
+            }
+            return writer.getAndClear();
         } catch (IOException e) {
             throw new IllegalArgumentException(e);
         }
@@ -43,57 +134,9 @@ public class JacksonEnvelopeSerializer implements EnvelopeSerializer {
     @Override
     public Envelope deserialize(String envelopeString) {
         try {
-            ObjectNode node;
-            node = (ObjectNode) getObjectMapper().readTree(envelopeString);
-
-            if (node.has("content")) {
-                return  getObjectMapper().convertValue(node, Message.class);
-            } else if (node.has("event")) {
-                return getObjectMapper().convertValue(node, Notification.class);
-            } else if (node.has("method")) {
-                return  getObjectMapper().convertValue(node, Command.class);
-            } else if (node.has("state")) {
-                return deserializeSession(node);
-            } else {
-                throw new IllegalArgumentException("Envelope deserialization not implemented for this value");
-            }
+            return envelopeCodec.read(envelopeString, lazyDocuments);
         } catch (IOException e) {
             throw new IllegalArgumentException("JSON string is not a valid envelope", e);
         }
     }
-
-    private Session deserializeSession(ObjectNode node) {
-        JsonNode schemeNode = node.get("scheme");
-        JsonNode authenticationNode = node.get("authentication");
-
-        node.remove("scheme");
-        node.remove("authentication");
-
-        Session session = getObjectMapper().convertValue(node, Session.class);
-        Authentication authentication = deserializeAuthentication(schemeNode, authenticationNode);
-        session.setAuthentication(authentication);
-
-        return session;
-    }
-
-    private Authentication deserializeAuthentication(JsonNode schemeNode, JsonNode authenticationNode) {
-        AuthenticationScheme scheme = getObjectMapper().convertValue(schemeNode, AuthenticationScheme.class);
-        if (scheme == null) {
-            return null;
-        }
-        switch (scheme) {
-            case GUEST:
-                return new GuestAuthentication();
-            case PLAIN:
-                return getObjectMapper().convertValue(authenticationNode, PlainAuthentication.class);
-            case TRANSPORT:
-                return new TransportAuthentication();
-            case KEY:
-                return new KeyAuthentication();
-            case EXTERNAL:
-                return new ExternalAuthentication();
-            default:
-                throw new IllegalArgumentException("JSON string is not a valid session envelope");
-        }
-    }
 }
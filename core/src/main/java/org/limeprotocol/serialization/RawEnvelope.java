@@ -0,0 +1,394 @@
+package org.limeprotocol.serialization;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import org.limeprotocol.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Represents a serialized envelope where only the header fields (id, from, to, pp and metadata) are parsed,
+ * while the remaining fields are kept as the original UTF-8 bytes. The changed header fields are spliced
+ * into the original bytes when the envelope is written, so an envelope can be relayed without being
+ * deserialized and serialized again.
+ */
+public final class RawEnvelope {
+
+    private final static JsonFactory jsonFactory = new JsonFactory();
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+    // The fields that identify the envelope type, in the same precedence of the JacksonEnvelopeSerializer
+    private final static String[] TYPE_FIELDS = { "content", "event", "method", "state" };
+    @SuppressWarnings("unchecked")
+    private final static Class<? extends Envelope>[] TYPES = new Class[] { Message.class, Notification.class, Command.class, Session.class };
+
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+    private final Class<? extends Envelope> envelopeType;
+    private final List<FieldRange> fields;
+    private final EnumMap<HeaderField, Object> values;
+    private final EnumSet<HeaderField> changedFields;
+
+    private RawEnvelope(byte[] bytes, int offset, int length) throws IOException {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.fields = new ArrayList<>();
+        this.values = new EnumMap<>(HeaderField.class);
+        this.changedFields = EnumSet.noneOf(HeaderField.class);
+        this.envelopeType = parseHeader();
+    }
+
+    /**
+     * Parses the header fields of a serialized envelope.
+     * @param bytes The UTF-8 JSON envelope, which must not be changed after the parse.
+     * @return
+     */
+    public static RawEnvelope parse(byte[] bytes) {
+        return parse(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Parses the header fields of a serialized envelope.
+     * @param bytes The buffer with the UTF-8 JSON envelope, which must not be changed after the parse.
+     * @param offset The envelope start in the buffer.
+     * @param length The envelope length.
+     * @return
+     */
+    public static RawEnvelope parse(byte[] bytes, int offset, int length) {
+        if (bytes == null) throw new IllegalArgumentException("bytes");
+        try {
+            return new RawEnvelope(bytes, offset, length);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("JSON string is not a valid envelope", e);
+        }
+    }
+
+    /**
+     * Gets the type of the envelope, identified by its fields.
+     * @return
+     */
+    public Class<? extends Envelope> getEnvelopeType() {
+        return envelopeType;
+    }
+
+    public String getId() {
+        return (String) values.get(HeaderField.ID);
+    }
+
+    public void setId(String id) {
+        setValue(HeaderField.ID, id);
+    }
+
+    public Node getFrom() {
+        return (Node) values.get(HeaderField.FROM);
+    }
+
+    public void setFrom(Node from) {
+        setValue(HeaderField.FROM, from);
+    }
+
+    public Node getTo() {
+        return (Node) values.get(HeaderField.TO);
+    }
+
+    public void setTo(Node to) {
+        setValue(HeaderField.TO, to);
+    }
+
+    public Node getPp() {
+        return (Node) values.get(HeaderField.PP);
+    }
+
+    public void setPp(Node pp) {
+        setValue(HeaderField.PP, pp);
+    }
+
+    /**
+     * Gets the envelope metadata. Changes in the returned map are written only if the metadata is set again.
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, String> getMetadata() {
+        return (Map<String, String>) values.get(HeaderField.METADATA);
+    }
+
+    public void setMetadata(Map<String, String> metadata) {
+        setValue(HeaderField.METADATA, metadata == null ? null : new LinkedHashMap<>(metadata));
+    }
+
+    /**
+     * Indicates if any header field was changed since the parse.
+     * @return
+     */
+    public boolean isChanged() {
+        return !changedFields.isEmpty();
+    }
+
+    /**
+     * Writes the envelope, splicing the changed header fields into the original bytes.
+     * @param outputStream
+     * @throws IOException
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        if (changedFields.isEmpty()) {
+            outputStream.write(bytes, offset, length);
+            return;
+        }
+
+        // The original fields are copied as they are, except the changed header fields.
+        // The changed fields that were not in the original envelope are written first.
+        boolean isFirst = true;
+        outputStream.write('{');
+        for (HeaderField field : changedFields) {
+            Object value = values.get(field);
+            if (value != null && !contains(field)) {
+                StringBuilder builder = new StringBuilder();
+                if (!isFirst) builder.append(',');
+                builder.append('"').append(field.fieldName).append("\":");
+                appendValue(builder, value);
+                outputStream.write(builder.toString().getBytes(UTF8));
+                isFirst = false;
+            }
+        }
+        for (FieldRange range : fields) {
+            if (range.field == null || !changedFields.contains(range.field)) {
+                if (!isFirst) outputStream.write(',');
+                outputStream.write(bytes, range.fieldStart, range.valueEnd - range.fieldStart);
+                isFirst = false;
+            } else {
+                Object value = values.get(range.field);
+                if (value != null) {
+                    StringBuilder builder = new StringBuilder();
+                    appendValue(builder, value);
+                    if (!isFirst) outputStream.write(',');
+                    outputStream.write(bytes, range.fieldStart, range.valueStart - range.fieldStart);
+                    outputStream.write(builder.toString().getBytes(UTF8));
+                    isFirst = false;
+                }
+            }
+        }
+        outputStream.write('}');
+    }
+
+    /**
+     * Gets the envelope bytes, with the changed header fields.
+     * @return
+     */
+    public byte[] toByteArray() {
+        if (changedFields.isEmpty() && offset == 0 && length == bytes.length) {
+            return bytes;
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(length + 64);
+        try {
+            writeTo(outputStream);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Deserializes the envelope, with the changed header fields.
+     * @param envelopeSerializer
+     * @return
+     */
+    public Envelope toEnvelope(EnvelopeSerializer envelopeSerializer) {
+        return envelopeSerializer.deserialize(toString());
+    }
+
+    @Override
+    public String toString() {
+        if (changedFields.isEmpty()) {
+            return new String(bytes, offset, length, UTF8);
+        }
+        return new String(toByteArray(), UTF8);
+    }
+
+    private void setValue(HeaderField field, Object value) {
+        values.put(field, value);
+        changedFields.add(field);
+    }
+
+    private boolean contains(HeaderField field) {
+        for (FieldRange range : fields) {
+            if (range.field == field) return true;
+        }
+        return false;
+    }
+
+    private Class<? extends Envelope> parseHeader() throws IOException {
+        int typePriority = Integer.MAX_VALUE;
+        try (JsonParser parser = jsonFactory.createParser(bytes, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("The envelope must be a JSON object");
+            }
+            int position = getTokenStart(parser) + 1;
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                // The field and value starts are found by scanning the bytes, since the parser doesn't keep their locations.
+                int fieldStart = skipSeparators(position);
+                int valueStart = findValueStart(fieldStart);
+                String fieldName = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+                HeaderField field = HeaderField.fromName(fieldName);
+                if (field != null) {
+                    values.put(field, field.read(parser, valueToken));
+                } else {
+                    if (valueToken == JsonToken.VALUE_STRING) {
+                        // Completes the string token without decoding it to a String
+                        parser.getTextLength();
+                    }
+                    parser.skipChildren();
+                    typePriority = Math.min(typePriority, getTypePriority(fieldName));
+                }
+                position = offset + (int) parser.getCurrentLocation().getByteOffset();
+                fields.add(new FieldRange(field, fieldStart, valueStart, position));
+            }
+            if (token != JsonToken.END_OBJECT) {
+                throw new IOException("Invalid envelope JSON");
+            }
+        }
+        if (typePriority >= TYPE_FIELDS.length) {
+            throw new IOException("Envelope deserialization not implemented for this value");
+        }
+        return TYPES[typePriority];
+    }
+
+    private int getTokenStart(JsonParser parser) {
+        return offset + (int) parser.getTokenLocation().getByteOffset();
+    }
+
+    private int skipSeparators(int position) {
+        while (position < offset + length && (isWhitespace(bytes[position]) || bytes[position] == ',')) position++;
+        return position;
+    }
+
+    private int findValueStart(int fieldStart) throws IOException {
+        int end = offset + length;
+        int position = fieldStart + 1;
+        while (position < end && bytes[position] != '"') {
+            position += bytes[position] == '\\' ? 2 : 1;
+        }
+        position++;
+        while (position < end && isWhitespace(bytes[position])) position++;
+        if (position >= end || bytes[position] != ':') {
+            throw new IOException("Invalid envelope JSON");
+        }
+        position++;
+        while (position < end && isWhitespace(bytes[position])) position++;
+        return position;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static int getTypePriority(String fieldName) {
+        for (int i = 0; i < TYPE_FIELDS.length; i++) {
+            if (TYPE_FIELDS[i].equals(fieldName)) return i;
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void appendValue(StringBuilder builder, Object value) {
+        if (value instanceof Map) {
+            builder.append('{');
+            boolean first = true;
+            for (Map.Entry<String, String> entry : ((Map<String, String>) value).entrySet()) {
+                if (!first) builder.append(',');
+                first = false;
+                appendString(builder, entry.getKey());
+                builder.append(':');
+                if (entry.getValue() == null) {
+                    builder.append("null");
+                } else {
+                    appendString(builder, entry.getValue());
+                }
+            }
+            builder.append('}');
+        } else {
+            appendString(builder, value.toString());
+        }
+    }
+
+    private static void appendString(StringBuilder builder, String value) {
+        builder.append('"').append(JsonStringEncoder.getInstance().quoteAsString(value)).append('"');
+    }
+
+    private enum HeaderField {
+        ID("id"),
+        FROM("from"),
+        TO("to"),
+        PP("pp"),
+        METADATA("metadata");
+
+        private final String fieldName;
+
+        HeaderField(String fieldName) {
+            this.fieldName = fieldName;
+        }
+
+        static HeaderField fromName(String fieldName) {
+            switch (fieldName) {
+                case "id":
+                    return ID;
+                case "from":
+                    return FROM;
+                case "to":
+                    return TO;
+                case "pp":
+                    return PP;
+                case "metadata":
+                    return METADATA;
+                default:
+                    return null;
+            }
+        }
+
+        Object read(JsonParser parser, JsonToken token) throws IOException {
+            if (token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            switch (this) {
+                case ID:
+                    return parser.getText();
+                case METADATA:
+                    if (token != JsonToken.START_OBJECT) {
+                        throw new IOException("Invalid metadata");
+                    }
+                    Map<String, String> metadata = new LinkedHashMap<>();
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String key = parser.getCurrentName();
+                        JsonToken valueToken = parser.nextToken();
+                        metadata.put(key, valueToken == JsonToken.VALUE_NULL ? null : parser.getText());
+                        parser.skipChildren();
+                    }
+                    return metadata;
+                default:
+                    return SerializationUtil.parseNode(parser.getText());
+            }
+        }
+    }
+
+    private final static class FieldRange {
+        private final HeaderField field;
+        private final int fieldStart;
+        private final int valueStart;
+        private final int valueEnd;
+
+        private FieldRange(HeaderField field, int fieldStart, int valueStart, int valueEnd) {
+            this.field = field;
+            this.fieldStart = fieldStart;
+            this.valueStart = valueStart;
+            this.valueEnd = valueEnd;
+        }
+    }
+}
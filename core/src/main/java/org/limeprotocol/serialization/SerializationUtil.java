@@ -1,9 +1,14 @@
 package org.limeprotocol.serialization;
 
 import org.limeprotocol.Document;
+import org.limeprotocol.Identity;
 import org.limeprotocol.MediaType;
+import org.limeprotocol.Node;
+import org.limeprotocol.util.InternCache;
 
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -12,6 +17,9 @@ import java.util.Map;
  */
 public class SerializationUtil {
     private static final Map<MediaType, Class<? extends Document>> documentTypesMap = new HashMap<>();
+    private static volatile InternCache<Node> nodeCache;
+    private static volatile InternCache<Identity> identityCache;
+    private static volatile InternCache<MediaType> mediaTypeCache;
 
     /**
      * Registers a document type for deserialization support.
@@ -45,4 +53,73 @@ public class SerializationUtil {
     public static Class<? extends Document> findDocumentClassFor(MediaType mediaType) {
         return documentTypesMap.get(mediaType);
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the registered document types.
+     * @return
+     */
+    public static Collection<Class<? extends Document>> getDocumentClasses() {
+        synchronized (documentTypesMap) {
+            return new ArrayList<Class<? extends Document>>(documentTypesMap.values());
+        }
+    }
+
+    /**
+     * Enables the interning of the deserialized nodes, identities and media types, so equal values
+     * share a single canonical instance. The deserialized values must not be mutated while the
+     * interning is enabled.
+     * @param capacity The maximum number of cached instances of each type.
+     */
+    public static void enableInterning(int capacity) {
+        nodeCache = new InternCache<>(capacity, Node::parse);
+        identityCache = new InternCache<>(capacity, Identity::parse);
+        mediaTypeCache = new InternCache<>(capacity, MediaType::parse);
+    }
+
+    /**
+     * Disables the interning of the deserialized values.
+     */
+    public static void disableInterning() {
+        nodeCache = null;
+        identityCache = null;
+        mediaTypeCache = null;
+    }
+
+    /**
+     * Indicates if the interning of the deserialized values is enabled.
+     * @return
+     */
+    public static boolean isInterningEnabled() {
+        return nodeCache != null;
+    }
+
+    /**
+     * Parses the node, returning the canonical instance if the interning is enabled.
+     * @param s
+     * @return
+     */
+    public static Node parseNode(String s) {
+        InternCache<Node> cache = nodeCache;
+        return cache != null ? cache.get(s) : Node.parse(s);
+    }
+
+    /**
+     * Parses the identity, returning the canonical instance if the interning is enabled.
+     * @param s
+     * @return
+     */
+    public static Identity parseIdentity(String s) {
+        InternCache<Identity> cache = identityCache;
+        return cache != null ? cache.get(s) : Identity.parse(s);
+    }
+
+    /**
+     * Parses the media type, returning the canonical instance if the interning is enabled.
+     * @param s
+     * @return
+     */
+    public static MediaType parseMediaType(String s) {
+        InternCache<MediaType> cache = mediaTypeCache;
+        return cache != null ? cache.get(s) : MediaType.parse(s);
+    }
+}
@@ -13,11 +13,16 @@ import org.limeprotocol.security.Authentication;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.limeprotocol.security.Authentication.AuthenticationScheme;
 
 public class CustomSerializerModule extends SimpleModule {
 
+    private final static String NOT_A_CONTAINER = new String();
+    private final static ConcurrentMap<Class<?>, String> documentNodeNameMap = new ConcurrentHashMap<>();
+
     private final Class<?> ignoreDocumentContainerClass;
 
     public CustomSerializerModule() {
@@ -60,30 +65,13 @@ public class CustomSerializerModule extends SimpleModule {
         context.addBeanDeserializerModifier(new BeanDeserializerModifier() {
             @Override
             public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config, BeanDescription beanDesc, JsonDeserializer<?> deserializer) {
-                try {
-                    // Check for custom document container deserializers.
-                    // DocumentContainers are classes that have a 'MediaType' and a 'Document' properties, like Message, Command, and other contained objects.
-                    Class documentContainerClass = beanDesc.getBeanClass();
-                    if (!documentContainerClass.equals(ignoreDocumentContainerClass) &&
-                            !Modifier.isAbstract(documentContainerClass.getModifiers())) {
-                        Method method = documentContainerClass.getMethod("getType");
-                        if (method.getReturnType().equals(MediaType.class)) {
-                            for (Method setDocumentMethod : documentContainerClass.getMethods()) {
-                                String methodName = setDocumentMethod.getName();
-                                if (methodName.startsWith("set") &&
-                                        setDocumentMethod.getParameterTypes().length == 1 &&
-                                        setDocumentMethod.getParameterTypes()[0] == Document.class) {
-
-                                    String documentNodeName = methodName.substring(3, methodName.length()).toLowerCase();
-                                    return new DocumentContainerDeserializer<>(documentContainerClass, documentNodeName);
-                                }
-                            }
-                        }
+                // Check for custom document container deserializers.
+                Class documentContainerClass = beanDesc.getBeanClass();
+                if (!documentContainerClass.equals(ignoreDocumentContainerClass)) {
+                    String documentNodeName = findDocumentNodeName(documentContainerClass);
+                    if (documentNodeName != null) {
+                        return new DocumentContainerDeserializer<>(documentContainerClass, documentNodeName);
                     }
-                } catch (NoSuchMethodException e) {
-
-                } catch (Exception e) {
-                    e.printStackTrace();
                 }
 
                 return super.modifyDeserializer(config, beanDesc, deserializer);
@@ -124,6 +112,42 @@ public class CustomSerializerModule extends SimpleModule {
         });
     }
 
+    /**
+     * Gets the name of the document property of a document container type, or null if the type is not a container.
+     * DocumentContainers are classes that have a 'MediaType' and a 'Document' properties, like Message, Command, and other contained objects.
+     * The result is cached, since the lookup is done by every mapper for each bean type.
+     */
+    static String findDocumentNodeName(Class<?> type) {
+        String documentNodeName = documentNodeNameMap.get(type);
+        if (documentNodeName == null) {
+            documentNodeName = NOT_A_CONTAINER;
+            try {
+                if (type == Message.class) {
+                    documentNodeName = "content";
+                } else if (type == Command.class) {
+                    documentNodeName = "resource";
+                } else if (!Modifier.isAbstract(type.getModifiers()) &&
+                        type.getMethod("getType").getReturnType().equals(MediaType.class)) {
+                    for (Method setDocumentMethod : type.getMethods()) {
+                        String methodName = setDocumentMethod.getName();
+                        if (methodName.startsWith("set") &&
+                                setDocumentMethod.getParameterTypes().length == 1 &&
+                                setDocumentMethod.getParameterTypes()[0] == Document.class) {
+                            documentNodeName = methodName.substring(3, methodName.length()).toLowerCase();
+                            break;
+                        }
+                    }
+                }
+            } catch (NoSuchMethodException e) {
+
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            documentNodeNameMap.putIfAbsent(type, documentNodeName);
+        }
+        return documentNodeName == NOT_A_CONTAINER ? null : documentNodeName;
+    }
+
     private <T> SimpleModule addDocumentContainerDeserializer(Class<T> type, String documentNodeName) {
         // This is needed to avoid StackOverflow inside the DocumentContainerDeserializer class, since it uses the mapper to deserialize the object.
         if (!type.equals(ignoreDocumentContainerClass)) {
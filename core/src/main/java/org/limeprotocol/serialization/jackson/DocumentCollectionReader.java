@@ -0,0 +1,255 @@
+package org.limeprotocol.serialization.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.limeprotocol.Document;
+import org.limeprotocol.MediaType;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.serialization.SerializationUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the items of a document collection one at a time, instead of binding the whole {@link org.limeprotocol.DocumentCollection}
+ * items array, so the items of large collections are never materialized together.
+ * When the source is a stream, each item is parsed as soon as its bytes are available; note that the TCP transport
+ * frames the whole envelope in its receive buffer before it is handed to a listener, so the items of a received
+ * envelope are read from its complete bytes (see {@link org.limeprotocol.network.Transport.RawEnvelopeListener}).
+ * The collection item type must precede the items in the JSON, as it is written by the LIME serializers;
+ * otherwise, the items are buffered as a JSON tree until the item type is read.
+ */
+public final class DocumentCollectionReader implements Iterator<Document>, Closeable {
+
+    private final JsonParser parser;
+    private final ObjectMapper mapper;
+    private MediaType itemType;
+    private int total;
+    private Iterator<JsonNode> bufferedItems;
+    private Document next;
+    private boolean isFinished;
+
+    private DocumentCollectionReader(JsonParser parser, ObjectMapper mapper) throws IOException {
+        this.parser = parser;
+        this.mapper = mapper;
+        readUntilItems();
+    }
+
+    /**
+     * Creates a reader for the document collection in the resource of a command or the content of a message.
+     * @param inputStream The UTF-8 JSON envelope.
+     * @return
+     * @throws IOException
+     */
+    public static DocumentCollectionReader fromEnvelope(InputStream inputStream) throws IOException {
+        return fromEnvelope(createParser(inputStream));
+    }
+
+    /**
+     * Creates a reader for the document collection in the resource of a command or the content of a message.
+     * @param bytes The UTF-8 JSON envelope.
+     * @param offset
+     * @param length
+     * @return
+     * @throws IOException
+     */
+    public static DocumentCollectionReader fromEnvelope(byte[] bytes, int offset, int length) throws IOException {
+        return fromEnvelope(JacksonEnvelopeSerializer.getObjectMapper().getFactory().createParser(bytes, offset, length));
+    }
+
+    /**
+     * Creates a reader for a document collection JSON.
+     * @param inputStream The UTF-8 JSON document collection.
+     * @return
+     * @throws IOException
+     */
+    public static DocumentCollectionReader fromCollection(InputStream inputStream) throws IOException {
+        JsonParser parser = createParser(inputStream);
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            parser.close();
+            throw new IllegalArgumentException("JSON string is not a valid document collection");
+        }
+        return new DocumentCollectionReader(parser, JacksonEnvelopeSerializer.getObjectMapper());
+    }
+
+    /**
+     * Creates a reader for a document collection that was deserialized as a {@link LazyDocument}, which binds
+     * the items from the received JSON.
+     * @param document
+     * @return
+     * @throws IOException
+     */
+    public static DocumentCollectionReader fromDocument(LazyDocument document) throws IOException {
+        JsonParser parser = JacksonEnvelopeSerializer.getObjectMapper().getFactory().createParser(document.getJson());
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            parser.close();
+            throw new IllegalArgumentException("The document is not a document collection");
+        }
+        return new DocumentCollectionReader(parser, JacksonEnvelopeSerializer.getObjectMapper());
+    }
+
+    /**
+     * Gets the media type of the collection items.
+     * @return
+     */
+    public MediaType getItemType() {
+        return itemType;
+    }
+
+    /**
+     * Gets the total of items in the source collection. If the total follows the items in the JSON,
+     * it is known only after all items are read.
+     * @return
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !isFinished) {
+            try {
+                next = readNext();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read the next collection item", e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Document next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Document document = next;
+        next = null;
+        return document;
+    }
+
+    /**
+     * Gets a sequential stream of the remaining items, which closes the reader when closed.
+     * @return
+     */
+    public Stream<Document> stream() {
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        close();
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+    }
+
+    @Override
+    public void close() throws IOException {
+        isFinished = true;
+        next = null;
+        parser.close();
+    }
+
+    private static JsonParser createParser(InputStream inputStream) throws IOException {
+        if (inputStream == null) throw new IllegalArgumentException("inputStream");
+        return JacksonEnvelopeSerializer.getObjectMapper().getFactory().createParser(inputStream);
+    }
+
+    private static DocumentCollectionReader fromEnvelope(JsonParser parser) throws IOException {
+        if (parser.nextToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_OBJECT && (fieldName.equals("resource") || fieldName.equals("content"))) {
+                    return new DocumentCollectionReader(parser, JacksonEnvelopeSerializer.getObjectMapper());
+                }
+                parser.skipChildren();
+            }
+        }
+        parser.close();
+        throw new IllegalArgumentException("The envelope does not have a document collection");
+    }
+
+    /**
+     * Reads the collection fields until the start of the items array, with the parser at the collection start.
+     */
+    private void readUntilItems() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            token = parser.nextToken();
+            if (fieldName.equals("items") && token == JsonToken.START_ARRAY) {
+                if (itemType != null) {
+                    return;
+                }
+                JsonNode itemsNode = parser.readValueAsTree();
+                bufferedItems = itemsNode.elements();
+            } else {
+                readCollectionField(fieldName, token);
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new IllegalArgumentException("JSON string is not a valid document collection");
+        }
+        finish();
+    }
+
+    private void readCollectionField(String fieldName, JsonToken token) throws IOException {
+        if (fieldName.equals("itemType") && token == JsonToken.VALUE_STRING) {
+            itemType = SerializationUtil.parseMediaType(parser.getText());
+        } else if (fieldName.equals("total")) {
+            total = parser.getValueAsInt();
+        } else {
+            parser.skipChildren();
+        }
+    }
+
+    private Document readNext() throws IOException {
+        if (bufferedItems != null) {
+            if (bufferedItems.hasNext()) {
+                return DocumentContainerDeserializer.getDocument(bufferedItems.next(), getRequiredItemType(), mapper);
+            }
+            close();
+            return null;
+        }
+
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            close();
+            throw new IOException("Unexpected end of the document collection");
+        }
+        if (token == JsonToken.END_ARRAY) {
+            // Reads the collection fields after the items
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                readCollectionField(fieldName, parser.nextToken());
+            }
+            close();
+            return null;
+        }
+        JsonNode itemNode = parser.readValueAsTree();
+        return DocumentContainerDeserializer.getDocument(itemNode, itemType, mapper);
+    }
+
+    private MediaType getRequiredItemType() {
+        if (itemType == null) {
+            throw new IllegalArgumentException("The document collection item type is missing");
+        }
+        return itemType;
+    }
+
+    private void finish() throws IOException {
+        // The buffered items, if any, are read after the parser is closed
+        parser.close();
+        isFinished = bufferedItems == null;
+    }
+}
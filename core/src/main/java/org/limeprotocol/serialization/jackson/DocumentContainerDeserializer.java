@@ -8,32 +8,31 @@ import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import org.limeprotocol.Document;
-import org.limeprotocol.JsonDocument;
-import org.limeprotocol.MediaType;
-import org.limeprotocol.PlainDocument;
+import org.limeprotocol.*;
 import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.serialization.SerializationUtil;
 import org.limeprotocol.util.StringUtils;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.limeprotocol.serialization.SerializationUtil.findDocumentClassFor;
 
 public class DocumentContainerDeserializer<T> extends JsonDeserializer<T> {
 
-    private static final Map<Class, ObjectMapper> documentContainerObjectMapperMap = new HashMap<>();
-    private static final Object syncRoot = new Object();
+    private static final ConcurrentMap<Class<?>, ObjectMapper> documentContainerObjectMapperMap = new ConcurrentHashMap<>();
 
     private final Class<T> type;
     private final String documentNodeName;
+    private final DocumentSetter<T> documentSetter;
 
     public DocumentContainerDeserializer(Class<T> type, String documentNodeName) {
         this.type = type;
         this.documentNodeName = documentNodeName;
+        this.documentSetter = createDocumentSetter(type, documentNodeName);
     }
 
     @Override
@@ -41,49 +40,94 @@ public class DocumentContainerDeserializer<T> extends JsonDeserializer<T> {
         ObjectCodec objectCodec = jsonParser.getCodec();
         ObjectNode objectNode = objectCodec.readTree(jsonParser);
 
+        return deserialize(objectNode);
+    }
+
+    /**
+     * Deserializes the document container from a JSON tree.
+     * @param objectNode The container JSON tree, which is changed by the deserialization.
+     * @return
+     */
+    public T deserialize(ObjectNode objectNode) {
         ObjectMapper mapper = getObjectMapper();
         Document document = deserializeDocument(objectNode, documentNodeName, mapper);
         T value = mapper.convertValue(objectNode, type);
 
-        if (document != null) {
-            try {
-                Method method = type.getMethod("set" + StringUtils.toProperCase(documentNodeName), Document.class);
-                method.invoke(value, document);
-            } catch (NoSuchMethodException e) {
-                e.printStackTrace();
-            } catch (InvocationTargetException e) {
-                e.printStackTrace();
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-            }
+        if (document != null && documentSetter != null) {
+            documentSetter.set(value, document);
         }
 
         return value;
     }
 
+    /**
+     * Resolves the document setter once, with direct calls for the envelope types.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> DocumentSetter<T> createDocumentSetter(Class<T> type, String documentNodeName) {
+        if (type == Message.class) {
+            return (DocumentSetter<T>) new DocumentSetter<Message>() {
+                @Override
+                public void set(Message container, Document document) {
+                    container.setContent(document);
+                }
+            };
+        }
+        if (type == Command.class) {
+            return (DocumentSetter<T>) new DocumentSetter<Command>() {
+                @Override
+                public void set(Command container, Document document) {
+                    container.setResource(document);
+                }
+            };
+        }
+        final Method method;
+        try {
+            method = type.getMethod("set" + StringUtils.toProperCase(documentNodeName), Document.class);
+        } catch (NoSuchMethodException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return new DocumentSetter<T>() {
+            @Override
+            public void set(T container, Document document) {
+                try {
+                    method.invoke(container, document);
+                } catch (InvocationTargetException e) {
+                    e.printStackTrace();
+                } catch (IllegalAccessException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+    }
+
     private ObjectMapper getObjectMapper() {
         ObjectMapper mapper = documentContainerObjectMapperMap.get(type);
         if (mapper == null) {
-            synchronized (syncRoot) {
-                mapper = documentContainerObjectMapperMap.get(type);
-                if (mapper == null) {
-                    // Creates a new mapper that excludes the current type in the custom serialization registration
-                    // to avoid stackoverflow exceptions in the convertValue call bellow.
-                    mapper = JacksonEnvelopeSerializer.createObjectMapper().registerModule(new CustomSerializerModule(type));
-                    documentContainerObjectMapperMap.put(type, mapper);
-                }
-            }
+            // Creates a new mapper that excludes the current type in the custom serialization registration
+            // to avoid stackoverflow exceptions in the convertValue call bellow.
+            mapper = documentContainerObjectMapperMap.computeIfAbsent(type, containerType ->
+                    JacksonEnvelopeSerializer.createObjectMapper().registerModule(new CustomSerializerModule(containerType)));
         }
         return mapper;
     }
 
     private static Document deserializeDocument(ObjectNode node, String documentNodeName, ObjectMapper mapper) {
         JsonNode typeNode = node.get("type");
-        if (typeNode == null) return null;
-        MediaType mediaType = mapper.convertValue(typeNode, MediaType.class);
-        if (mediaType == null) return null;
+        if (typeNode == null || typeNode.isNull()) return null;
+        MediaType mediaType = SerializationUtil.parseMediaType(typeNode.asText());
 
         JsonNode documentNode = node.get(documentNodeName);
+        if (documentNode != null) {
+            node.remove(documentNodeName);
+            node.remove("type");
+        }
+
+        return createDocument(documentNode, mediaType, mapper);
+    }
+
+    static Document createDocument(JsonNode documentNode, MediaType mediaType, ObjectMapper mapper) {
         if (documentNode == null) {
             if (mediaType.isJson()) {
                 return new JsonDocument(mediaType);
@@ -91,10 +135,6 @@ public class DocumentContainerDeserializer<T> extends JsonDeserializer<T> {
                 return new PlainDocument(mediaType);
             }
         }
-
-        node.remove(documentNodeName);
-        node.remove("type");
-
         return getDocument(documentNode, mediaType, mapper);
     }
 
@@ -112,4 +152,8 @@ public class DocumentContainerDeserializer<T> extends JsonDeserializer<T> {
         }
         return (Document) mapper.convertValue(documentNode, documentClass);
     }
+
+    private interface DocumentSetter<T> {
+        void set(T container, Document document);
+    }
 }
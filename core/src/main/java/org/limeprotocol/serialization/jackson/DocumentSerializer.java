@@ -20,6 +20,10 @@ public class DocumentSerializer extends StdSerializer<Document> {
 
     @Override
     public void serialize(Document document, JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException, JsonProcessingException {
+        if (document instanceof LazyDocument) {
+            jsonGenerator.writeRawValue(((LazyDocument) document).getJson());
+            return;
+        }
         MediaType mediaType = document.getMediaType();
         if (mediaType.isJson()) {
             defaultSerializer.serialize(document, jsonGenerator, serializerProvider);
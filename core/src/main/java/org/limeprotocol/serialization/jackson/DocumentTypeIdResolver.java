@@ -29,7 +29,7 @@ public class DocumentTypeIdResolver extends TypeIdResolverBase {
     @Override
     public JavaType typeFromId(DatabindContext context, String id) {
 
-        MediaType mediaType = MediaType.parse(id);
+        MediaType mediaType = SerializationUtil.parseMediaType(id);
         Class documentClass = SerializationUtil.findDocumentClassFor(mediaType);
 
         if (documentClass == null) {
@@ -0,0 +1,548 @@
+package org.limeprotocol.serialization.jackson;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.limeprotocol.*;
+import org.limeprotocol.security.*;
+import org.limeprotocol.serialization.SerializationUtil;
+import org.limeprotocol.util.StringUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.limeprotocol.security.Authentication.AuthenticationScheme;
+
+/**
+ * Reads and writes the envelope types with direct calls to their accessors, instead of the reflection based bean
+ * binding of the mapper. The accessors of each envelope type and the enum names lookups are built once, when the
+ * class is loaded; the mapper is used only for the documents and authentications, whose types are open.
+ * The documents that follow their type in the envelope are bound to their registered types while read, and the
+ * others are read as JSON trees and bound when the type is known.
+ */
+public final class EnvelopeCodec {
+
+    private final static EnumNames<Notification.Event> eventNames = new EnumNames<>(Notification.Event.class);
+    private final static EnumNames<Command.CommandMethod> commandMethodNames = new EnumNames<>(Command.CommandMethod.class);
+    private final static EnumNames<Command.CommandStatus> commandStatusNames = new EnumNames<>(Command.CommandStatus.class);
+    private final static EnumNames<Session.SessionState> sessionStateNames = new EnumNames<>(Session.SessionState.class);
+    private final static EnumNames<SessionEncryption> sessionEncryptionNames = new EnumNames<>(SessionEncryption.class);
+    private final static EnumNames<SessionCompression> sessionCompressionNames = new EnumNames<>(SessionCompression.class);
+    private final static EnumNames<AuthenticationScheme> authenticationSchemeNames = new EnumNames<>(AuthenticationScheme.class);
+
+    private final ObjectMapper mapper;
+    private final ObjectWriter valueWriter;
+    private final ObjectReader treeReader;
+    private final ObjectReader exactTreeReader;
+    private final ConcurrentMap<Class<?>, ObjectReader> documentReaders;
+
+    public EnvelopeCodec(ObjectMapper mapper) {
+        if (mapper == null) throw new IllegalArgumentException("mapper");
+        this.mapper = mapper;
+        // The envelope generator is flushed only once, after the whole envelope is written
+        this.valueWriter = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.treeReader = mapper.reader();
+        // The trees of the lazy documents keep the floating point numbers as decimals, like the received JSON
+        this.exactTreeReader = mapper.reader()
+                .with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+                .with(JsonNodeFactory.withExactBigDecimals(true));
+        this.documentReaders = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Writes the envelope as a JSON object, omitting the null properties.
+     * @param envelope
+     * @param generator
+     * @throws IOException
+     */
+    public void write(Envelope envelope, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        writeString(generator, "id", envelope.getId());
+        writeString(generator, "from", envelope.getFrom());
+        writeString(generator, "to", envelope.getTo());
+        writeString(generator, "pp", envelope.getPp());
+        if (envelope instanceof Message) {
+            Message message = (Message) envelope;
+            writeString(generator, "type", message.getType());
+            writeObject(generator, "content", message.getContent());
+        } else if (envelope instanceof Notification) {
+            Notification notification = (Notification) envelope;
+            writeEnum(generator, "event", notification.getEvent());
+            writeReason(generator, notification.getReason());
+        } else if (envelope instanceof Command) {
+            Command command = (Command) envelope;
+            writeString(generator, "uri", command.getUri());
+            writeString(generator, "type", command.getType());
+            writeObject(generator, "resource", command.getResource());
+            writeEnum(generator, "method", command.getMethod());
+            writeEnum(generator, "status", command.getStatus());
+            writeReason(generator, command.getReason());
+        } else if (envelope instanceof Session) {
+            Session session = (Session) envelope;
+            writeEnum(generator, "state", session.getState());
+            writeEnums(generator, "encryptionOptions", session.getEncryptionOptions());
+            writeEnum(generator, "encryption", session.getEncryption());
+            writeEnums(generator, "compressionOptions", session.getCompressionOptions());
+            writeEnum(generator, "compression", session.getCompression());
+            writeEnums(generator, "schemeOptions", session.getSchemeOptions());
+            writeEnum(generator, "scheme", session.getScheme());
+            writeObject(generator, "authentication", session.getAuthentication());
+            writeReason(generator, session.getReason());
+        } else {
+            throw new IllegalArgumentException("Envelope serialization not implemented for this type");
+        }
+        Map<String, String> metadata = envelope.getMetadata();
+        if (metadata != null) {
+            generator.writeObjectFieldStart("metadata");
+            for (Map.Entry<String, String> entry : metadata.entrySet()) {
+                generator.writeStringField(entry.getKey(), entry.getValue());
+            }
+            generator.writeEndObject();
+        }
+        // Written by the bean binding of the mapper from the getter, and ignored when read
+        writeString(generator, "sender", envelope.getSender());
+        generator.writeEndObject();
+    }
+
+    /**
+     * Reads an envelope from a JSON object, identifying its type by the fields.
+     * The fields are read in a single pass, and only the documents and authentications are read as JSON trees,
+     * since their types are known only by the other fields.
+     * @param json The JSON envelope.
+     * @param lazyDocuments Indicates if the messages contents and commands resources should be read as {@link LazyDocument} instances,
+     *                      which keep their slices of the envelope JSON and are not parsed.
+     * @return
+     * @throws IOException
+     */
+    public Envelope read(String json, boolean lazyDocuments) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(json)) {
+            return read(parser, lazyDocuments ? json : null);
+        }
+    }
+
+    /**
+     * Reads an envelope from a JSON object, identifying its type by the fields.
+     * @param parser A parser positioned before or at the start of the envelope object.
+     * @return
+     * @throws IOException
+     */
+    public Envelope read(JsonParser parser) throws IOException {
+        return read(parser, null);
+    }
+
+    private Envelope read(JsonParser parser, String lazyDocumentsSource) throws IOException {
+        JsonToken token = parser.getCurrentToken() == null ? parser.nextToken() : parser.getCurrentToken();
+        if (token != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("JSON string is not a valid envelope");
+        }
+
+        EnvelopeFields fields = new EnvelopeFields();
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            // The value location is not reported by all parsers, so the lazy documents are sliced from the field location
+            long fieldOffset = lazyDocumentsSource != null ? parser.getTokenLocation().getCharOffset() : -1;
+            token = parser.nextToken();
+            switch (fieldName) {
+                case "id":
+                    fields.id = readString(parser, token);
+                    break;
+                case "from":
+                    fields.from = readNode(parser, token);
+                    break;
+                case "to":
+                    fields.to = readNode(parser, token);
+                    break;
+                case "pp":
+                    fields.pp = readNode(parser, token);
+                    break;
+                case "metadata":
+                    fields.metadata = readMetadata(parser, token);
+                    break;
+                case "type":
+                    fields.type = readString(parser, token);
+                    break;
+                case "content":
+                case "resource":
+                    fields.hasContent |= fieldName.equals("content");
+                    fields.document = null;
+                    fields.documentJson = null;
+                    fields.boundDocument = null;
+                    if (token == JsonToken.VALUE_NULL) {
+                        break;
+                    }
+                    if (lazyDocumentsSource != null) {
+                        fields.documentJson = readJson(parser, token, lazyDocumentsSource, (int) fieldOffset);
+                    } else if (fields.type != null) {
+                        fields.boundDocument = readDocument(parser, token, SerializationUtil.parseMediaType(fields.type));
+                    } else {
+                        // The type follows the document, so it is bound only after the envelope is read
+                        fields.document = (JsonNode) treeReader.readTree(parser);
+                    }
+                    break;
+                case "event":
+                    fields.hasEvent = true;
+                    fields.event = eventNames.read(readString(parser, token));
+                    break;
+                case "reason":
+                    fields.reason = readReason(parser, token);
+                    break;
+                case "method":
+                    fields.hasMethod = true;
+                    fields.method = commandMethodNames.read(readString(parser, token));
+                    break;
+                case "status":
+                    fields.status = commandStatusNames.read(readString(parser, token));
+                    break;
+                case "uri":
+                    String uri = readString(parser, token);
+                    fields.uri = uri == null ? null : LimeUri.parse(uri);
+                    break;
+                case "state":
+                    fields.hasState = true;
+                    fields.state = sessionStateNames.read(readString(parser, token));
+                    break;
+                case "encryptionOptions":
+                    fields.encryptionOptions = sessionEncryptionNames.readArray(parser, token);
+                    break;
+                case "encryption":
+                    fields.encryption = sessionEncryptionNames.read(readString(parser, token));
+                    break;
+                case "compressionOptions":
+                    fields.compressionOptions = sessionCompressionNames.readArray(parser, token);
+                    break;
+                case "compression":
+                    fields.compression = sessionCompressionNames.read(readString(parser, token));
+                    break;
+                case "schemeOptions":
+                    fields.schemeOptions = authenticationSchemeNames.readArray(parser, token);
+                    break;
+                case "scheme":
+                    fields.scheme = authenticationSchemeNames.read(readString(parser, token));
+                    break;
+                case "authentication":
+                    fields.authentication = token == JsonToken.VALUE_NULL ? null : (JsonNode) treeReader.readTree(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new IllegalArgumentException("JSON string is not a valid envelope");
+        }
+
+        return fields.toEnvelope();
+    }
+
+    /**
+     * Gets the slice of the source JSON with the current value, skipping it. The value is not parsed,
+     * so the slice is the received JSON unchanged.
+     * @param fieldOffset The offset of the value field name in the source, which can include the preceding comma.
+     */
+    private static String readJson(JsonParser parser, JsonToken token, String source, int fieldOffset) throws IOException {
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+        } else if (token == JsonToken.VALUE_STRING) {
+            // The string is read only when requested, so its end is not known before
+            parser.getText();
+        }
+        int end = (int) parser.getCurrentLocation().getCharOffset();
+        // Skips the comma, the field name and the colon
+        int start = skipWhitespace(source, fieldOffset);
+        if (source.charAt(start) == ',') {
+            start = skipWhitespace(source, start + 1);
+        }
+        start++;
+        while (source.charAt(start) != '"') {
+            start += source.charAt(start) == '\\' ? 2 : 1;
+        }
+        int colon = skipWhitespace(source, start + 1);
+        start = skipWhitespace(source, colon + 1);
+        return source.substring(start, end);
+    }
+
+    private static int skipWhitespace(String source, int index) {
+        while (index < source.length() && source.charAt(index) <= ' ') {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Binds the current value to the document type registered for the media type, without reading it as a tree.
+     * The same types of {@link DocumentContainerDeserializer#getDocument} are returned.
+     */
+    private Document readDocument(JsonParser parser, JsonToken token, MediaType mediaType) throws IOException {
+        Class<?> documentClass = SerializationUtil.findDocumentClassFor(mediaType);
+        if (documentClass != null) {
+            return (Document) getDocumentReader(documentClass).readValue(parser);
+        }
+        if (mediaType.isJson()) {
+            JsonDocument jsonDocument = getDocumentReader(JsonDocument.class).readValue(parser);
+            jsonDocument.setMediaType(mediaType);
+            return jsonDocument;
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            return new PlainDocument(parser.getText(), mediaType);
+        }
+        return DocumentContainerDeserializer.getDocument((JsonNode) treeReader.readTree(parser), mediaType, mapper);
+    }
+
+    private ObjectReader getDocumentReader(Class<?> documentClass) {
+        ObjectReader documentReader = documentReaders.get(documentClass);
+        if (documentReader == null) {
+            documentReader = mapper.reader(documentClass);
+            ObjectReader existingDocumentReader = documentReaders.putIfAbsent(documentClass, documentReader);
+            if (existingDocumentReader != null) {
+                documentReader = existingDocumentReader;
+            }
+        }
+        return documentReader;
+    }
+
+    private Authentication readAuthentication(AuthenticationScheme scheme, JsonNode authenticationNode) {
+        if (scheme == null) {
+            return null;
+        }
+        switch (scheme) {
+            case GUEST:
+                return new GuestAuthentication();
+            case PLAIN:
+                return mapper.convertValue(authenticationNode, PlainAuthentication.class);
+            case TRANSPORT:
+                return new TransportAuthentication();
+            case KEY:
+                return new KeyAuthentication();
+            case EXTERNAL:
+                return new ExternalAuthentication();
+            default:
+                throw new IllegalArgumentException("JSON string is not a valid session envelope");
+        }
+    }
+
+    private static Reason readReason(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        int code = 0;
+        String description = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken valueToken = parser.nextToken();
+            if (fieldName.equals("code")) {
+                code = parser.getValueAsInt();
+            } else if (fieldName.equals("description")) {
+                description = readString(parser, valueToken);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new Reason(code, description);
+    }
+
+    private static Map<String, String> readMetadata(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("JSON string is not a valid envelope metadata");
+        }
+        Map<String, String> metadata = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.getCurrentName();
+            metadata.put(key, readString(parser, parser.nextToken()));
+        }
+        return metadata;
+    }
+
+    private static Node readNode(JsonParser parser, JsonToken token) throws IOException {
+        String value = readString(parser, token);
+        return value == null ? null : SerializationUtil.parseNode(value);
+    }
+
+    private static String readString(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("Unexpected JSON structure, expecting a string value");
+        }
+        return parser.getText();
+    }
+
+    private void writeObject(JsonGenerator generator, String fieldName, Object value) throws IOException {
+        if (value != null) {
+            generator.writeFieldName(fieldName);
+            valueWriter.writeValue(generator, value);
+        }
+    }
+
+    private static void writeString(JsonGenerator generator, String fieldName, Object value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(fieldName, value.toString());
+        }
+    }
+
+    private static void writeEnum(JsonGenerator generator, String fieldName, Enum<?> value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(fieldName, StringUtils.toCamelCase(value.name()));
+        }
+    }
+
+    private static void writeEnums(JsonGenerator generator, String fieldName, Enum<?>[] values) throws IOException {
+        if (values != null) {
+            generator.writeArrayFieldStart(fieldName);
+            for (Enum<?> value : values) {
+                if (value == null) {
+                    generator.writeNull();
+                } else {
+                    generator.writeString(StringUtils.toCamelCase(value.name()));
+                }
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private static void writeReason(JsonGenerator generator, Reason reason) throws IOException {
+        if (reason != null) {
+            generator.writeObjectFieldStart("reason");
+            generator.writeNumberField("code", reason.getCode());
+            writeString(generator, "description", reason.getDescription());
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Lookup of the enum constants by their camel case JSON names.
+     */
+    private final static class EnumNames<E extends Enum<E>> {
+        private final Class<E> type;
+        private final Map<String, E> constants;
+
+        private EnumNames(Class<E> type) {
+            this.type = type;
+            this.constants = new HashMap<>();
+            for (E constant : type.getEnumConstants()) {
+                constants.put(StringUtils.toCamelCase(constant.name()), constant);
+            }
+        }
+
+        private E read(String name) {
+            if (name == null) {
+                return null;
+            }
+            E constant = constants.get(name);
+            if (constant == null) {
+                throw new IllegalArgumentException("Cannot deserialize enum " + type.getName() + " from " + name);
+            }
+            return constant;
+        }
+
+        @SuppressWarnings("unchecked")
+        private E[] readArray(JsonParser parser, JsonToken token) throws IOException {
+            if (token != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                return null;
+            }
+            List<E> values = new ArrayList<>();
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                values.add(read(readString(parser, token)));
+            }
+            return values.toArray((E[]) Array.newInstance(type, values.size()));
+        }
+    }
+
+    /**
+     * The fields of any envelope type, which are read before the type is known.
+     */
+    private final class EnvelopeFields {
+        private String id;
+        private Node from;
+        private Node to;
+        private Node pp;
+        private Map<String, String> metadata;
+        private String type;
+        private JsonNode document;
+        private String documentJson;
+        private Document boundDocument;
+        private boolean hasContent;
+        private boolean hasEvent;
+        private boolean hasMethod;
+        private boolean hasState;
+        private Notification.Event event;
+        private Reason reason;
+        private Command.CommandMethod method;
+        private Command.CommandStatus status;
+        private LimeUri uri;
+        private Session.SessionState state;
+        private SessionEncryption[] encryptionOptions;
+        private SessionEncryption encryption;
+        private SessionCompression[] compressionOptions;
+        private SessionCompression compression;
+        private AuthenticationScheme[] schemeOptions;
+        private AuthenticationScheme scheme;
+        private JsonNode authentication;
+
+        private Envelope toEnvelope() {
+            Envelope envelope;
+            if (hasContent) {
+                Message message = new Message();
+                message.setContent(readDocument());
+                envelope = message;
+            } else if (hasEvent) {
+                Notification notification = new Notification();
+                notification.setEvent(event);
+                notification.setReason(reason);
+                envelope = notification;
+            } else if (hasMethod) {
+                Command command = new Command();
+                command.setMethod(method);
+                command.setStatus(status);
+                command.setReason(reason);
+                command.setUri(uri);
+                command.setResource(readDocument());
+                envelope = command;
+            } else if (hasState) {
+                Session session = new Session();
+                session.setState(state);
+                session.setEncryptionOptions(encryptionOptions);
+                session.setEncryption(encryption);
+                session.setCompressionOptions(compressionOptions);
+                session.setCompression(compression);
+                session.setSchemeOptions(schemeOptions);
+                session.setAuthentication(readAuthentication(scheme, authentication));
+                session.setReason(reason);
+                envelope = session;
+            } else {
+                throw new IllegalArgumentException("Envelope deserialization not implemented for this value");
+            }
+
+            envelope.setId(id);
+            envelope.setFrom(from);
+            envelope.setTo(to);
+            envelope.setPp(pp);
+            envelope.setMetadata(metadata);
+            return envelope;
+        }
+
+        private Document readDocument() {
+            if (type == null) {
+                return null;
+            }
+            MediaType mediaType = SerializationUtil.parseMediaType(type);
+            if (documentJson != null) {
+                return new LazyDocument(documentJson, mediaType, mapper, exactTreeReader);
+            }
+            if (boundDocument != null) {
+                return boundDocument;
+            }
+            return DocumentContainerDeserializer.createDocument(document, mediaType, mapper);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.limeprotocol.serialization.jackson;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.limeprotocol.Document;
+import org.limeprotocol.DocumentBase;
+import org.limeprotocol.MediaType;
+
+import java.io.IOException;
+
+/**
+ * Represents a document that was received but not bound yet to its type, which is done only
+ * in the first call to {@link #getDocument()}. The document keeps the received JSON value as it was in the
+ * envelope and is serialized back from it unchanged, so envelopes that are only forwarded are not parsed
+ * into a tree nor bound at all.
+ */
+public final class LazyDocument extends DocumentBase {
+
+    private final String json;
+    private final ObjectMapper mapper;
+    private final ObjectReader treeReader;
+    private volatile JsonNode jsonNode;
+    private volatile Document document;
+
+    /**
+     * Creates a new instance of the document.
+     * @param json The received JSON value of the document.
+     * @param mediaType
+     * @param mapper The mapper that binds the document to its type.
+     * @param treeReader The reader that parses the JSON value into a tree.
+     */
+    LazyDocument(String json, MediaType mediaType, ObjectMapper mapper, ObjectReader treeReader) {
+        super(mediaType);
+        if (json == null || json.isEmpty()) {
+            throw new IllegalArgumentException("json");
+        }
+        this.json = json;
+        this.mapper = mapper;
+        this.treeReader = treeReader;
+    }
+
+    /**
+     * Gets the received JSON value of the document, as it was in the envelope.
+     * @return
+     */
+    public String getJson() {
+        return json;
+    }
+
+    /**
+     * Gets the JSON tree of the document, parsing the received JSON value in the first call.
+     * @return
+     */
+    public JsonNode getJsonNode() {
+        JsonNode jsonNode = this.jsonNode;
+        if (jsonNode == null) {
+            try {
+                jsonNode = treeReader.readTree(json);
+            } catch (IOException e) {
+                throw new IllegalStateException("The document is not a valid JSON value", e);
+            }
+            this.jsonNode = jsonNode;
+        }
+        return jsonNode;
+    }
+
+    /**
+     * Indicates if the document was already bound to its type.
+     * @return
+     */
+    public boolean isMaterialized() {
+        return document != null;
+    }
+
+    /**
+     * Gets the document bound to the type registered for the media type, binding it in the first call.
+     * @return
+     */
+    public Document getDocument() {
+        Document document = this.document;
+        if (document == null) {
+            synchronized (this) {
+                document = this.document;
+                if (document == null) {
+                    document = DocumentContainerDeserializer.getDocument(getJsonNode(), getMediaType(), mapper);
+                    this.document = document;
+                }
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Gets the bound document if the specified document is lazy, or the document itself otherwise.
+     * @param document
+     * @return
+     */
+    public static Document materialize(Document document) {
+        if (document instanceof LazyDocument) {
+            return ((LazyDocument) document).getDocument();
+        }
+        return document;
+    }
+
+    @Override
+    public String toString() {
+        // The plain documents are JSON strings, which are unescaped
+        return json.charAt(0) == '"' ? getJsonNode().asText() : json;
+    }
+}
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import org.limeprotocol.MediaType;
+import org.limeprotocol.serialization.SerializationUtil;
 
 import java.io.IOException;
 
@@ -14,6 +15,6 @@ public class MediaTypeDeserializer extends JsonDeserializer<MediaType> {
     public MediaType deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException, JsonProcessingException {
         String mediaTypeString = jsonParser.getText();
 
-        return MediaType.parse(mediaTypeString);
+        return SerializationUtil.parseMediaType(mediaTypeString);
     }
 }
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import org.limeprotocol.Node;
+import org.limeprotocol.serialization.SerializationUtil;
 
 import java.io.IOException;
 
@@ -11,6 +12,6 @@ public class NodeDeserializer extends JsonDeserializer<Node> {
 
     @Override
     public Node deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
-        return Node.parse(jsonParser.getText());
+        return SerializationUtil.parseNode(jsonParser.getText());
     }
 }
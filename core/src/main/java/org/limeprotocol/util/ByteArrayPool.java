@@ -0,0 +1,116 @@
+package org.limeprotocol.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of byte arrays in power of two size classes, shared by buffers that grow on demand and are released when idle.
+ * The arrays are kept in lock-free queues, one per size class, up to a maximum of retained bytes; the released arrays
+ * above this limit, or larger than the largest size class, are left to the garbage collector.
+ */
+public class ByteArrayPool {
+
+    public final static int DEFAULT_MIN_ARRAY_SIZE = 4096;
+    public final static int DEFAULT_MAX_ARRAY_SIZE = 1024 * 1024;
+    public final static long DEFAULT_MAX_RETAINED_BYTES = 32L * 1024 * 1024;
+
+    private final static ByteArrayPool shared = new ByteArrayPool(DEFAULT_MIN_ARRAY_SIZE, DEFAULT_MAX_ARRAY_SIZE, DEFAULT_MAX_RETAINED_BYTES);
+
+    private final int minArraySize;
+    private final int maxArraySize;
+    private final long maxRetainedBytes;
+    private final ConcurrentLinkedQueue<byte[]>[] sizeClasses;
+    private final AtomicLong retainedBytes;
+
+    /**
+     * Creates a new pool.
+     * @param minArraySize The size of the smallest size class, which is rounded up to a power of two.
+     * @param maxArraySize The size of the largest size class.
+     * @param maxRetainedBytes The maximum number of bytes kept by the pool.
+     */
+    @SuppressWarnings("unchecked")
+    public ByteArrayPool(int minArraySize, int maxArraySize, long maxRetainedBytes) {
+        if (minArraySize <= 0) throw new IllegalArgumentException("minArraySize");
+        if (maxArraySize < minArraySize || maxArraySize > (1 << 30)) throw new IllegalArgumentException("maxArraySize");
+        if (maxRetainedBytes < 0) throw new IllegalArgumentException("maxRetainedBytes");
+        this.minArraySize = roundUpToPowerOfTwo(minArraySize);
+        this.maxArraySize = maxArraySize;
+        this.maxRetainedBytes = maxRetainedBytes;
+        int count = 1;
+        while (count < 31 && (this.minArraySize << (count - 1)) < maxArraySize) {
+            count++;
+        }
+        this.sizeClasses = new ConcurrentLinkedQueue[count];
+        for (int i = 0; i < count; i++) {
+            sizeClasses[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.retainedBytes = new AtomicLong();
+    }
+
+    /**
+     * Gets the pool shared by the transports.
+     * @return
+     */
+    public static ByteArrayPool getShared() {
+        return shared;
+    }
+
+    /**
+     * Gets an array with at least the specified size, which is a pooled array if available.
+     * @param minSize
+     * @return An array with the size of the size class of the specified size, or with the exact size if it is larger than the largest class.
+     */
+    public byte[] acquire(int minSize) {
+        if (minSize < 0) throw new IllegalArgumentException("minSize");
+        int sizeClass = getSizeClass(minSize);
+        if (sizeClass < 0) {
+            return new byte[minSize];
+        }
+        byte[] array = sizeClasses[sizeClass].poll();
+        if (array != null) {
+            retainedBytes.addAndGet(-array.length);
+            return array;
+        }
+        return new byte[minArraySize << sizeClass];
+    }
+
+    /**
+     * Returns an array to the pool. The array must not be used after the release.
+     * @param array
+     */
+    public void release(byte[] array) {
+        if (array == null) return;
+        int sizeClass = getSizeClass(array.length);
+        if (sizeClass < 0 || (minArraySize << sizeClass) != array.length) {
+            return;
+        }
+        if (retainedBytes.addAndGet(array.length) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-array.length);
+            return;
+        }
+        sizeClasses[sizeClass].offer(array);
+    }
+
+    /**
+     * Gets the number of bytes kept by the pool.
+     * @return
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    private int getSizeClass(int size) {
+        int sizeClass = 0;
+        long classSize = minArraySize;
+        while (classSize < size) {
+            classSize <<= 1;
+            sizeClass++;
+        }
+        return sizeClass < sizeClasses.length ? sizeClass : -1;
+    }
+
+    private static int roundUpToPowerOfTwo(int value) {
+        int result = Integer.highestOneBit(value);
+        return result == value ? value : result << 1;
+    }
+}
@@ -0,0 +1,73 @@
+package org.limeprotocol.util;
+
+import java.util.function.Function;
+
+/**
+ * Bounded cache of canonical instances of immutable values, keyed by their string representation.
+ * The cache is direct-mapped: each key is stored in a single slot selected by its hash, and a new
+ * key replaces the slot previous entry; so the lookups are lock-free and the memory footprint is fixed,
+ * while the frequent keys tend to stay cached.
+ * @param <T> The value type, which must not be mutated after being cached.
+ */
+public class InternCache<T> {
+
+    private final Entry<T>[] entries;
+    private final int mask;
+    private final Function<String, T> parser;
+
+    /**
+     * Creates a new cache.
+     * @param capacity The number of cache slots, rounded up to a power of two.
+     * @param parser The function that creates the value from the key, when it is not cached.
+     */
+    @SuppressWarnings("unchecked")
+    public InternCache(int capacity, Function<String, T> parser) {
+        if (capacity <= 0 || capacity > (1 << 30)) throw new IllegalArgumentException("capacity");
+        if (parser == null) throw new IllegalArgumentException("parser");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.entries = new Entry[size];
+        this.mask = size - 1;
+        this.parser = parser;
+    }
+
+    /**
+     * Gets the canonical value for the key, parsing and caching it if needed.
+     * @param key
+     * @return
+     */
+    public T get(String key) {
+        int hash = key.hashCode();
+        int index = (hash ^ (hash >>> 16)) & mask;
+        Entry<T> entry = entries[index];
+        if (entry != null && entry.hash == hash && entry.key.equals(key)) {
+            return entry.value;
+        }
+        T value = parser.apply(key);
+        // The entry fields are final, so it is safely published even without synchronization.
+        entries[index] = new Entry<>(key, hash, value);
+        return value;
+    }
+
+    /**
+     * Gets the number of cache slots.
+     * @return
+     */
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    private final static class Entry<T> {
+        private final String key;
+        private final int hash;
+        private final T value;
+
+        private Entry(String key, int hash, T value) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+}
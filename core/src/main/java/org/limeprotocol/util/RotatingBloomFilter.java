@@ -0,0 +1,142 @@
+package org.limeprotocol.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Time-windowed Bloom filter, built with two generations of bits.
+ * Keys are added to the current generation and looked up in both; every half window the
+ * previous generation is discarded and the current one takes its place, so a key is remembered
+ * for at least half and at most a whole window, with a constant memory footprint.
+ * The bits are set with compare-and-set operations, so the filter is safe for concurrent use.
+ */
+public class RotatingBloomFilter {
+
+    private final int bitMask;
+    private final int hashCount;
+    private final long rotationIntervalNanos;
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    /**
+     * Creates a new filter.
+     * @param expectedInsertions The expected number of distinct keys in a window.
+     * @param falsePositiveProbability The desired false positive probability, when the number of keys is the expected.
+     * @param window The time that a key is remembered.
+     * @param unit
+     */
+    public RotatingBloomFilter(int expectedInsertions, double falsePositiveProbability, long window, TimeUnit unit) {
+        if (expectedInsertions <= 0) throw new IllegalArgumentException("expectedInsertions");
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) throw new IllegalArgumentException("falsePositiveProbability");
+        if (window <= 0) throw new IllegalArgumentException("window");
+
+        // Optimal size for the expected insertions, rounded up to a power of two to allow masking.
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        int bitCount = 64;
+        while (bitCount < optimalBits && bitCount < (1 << 30)) {
+            bitCount <<= 1;
+        }
+        this.bitMask = bitCount - 1;
+        this.hashCount = Math.max(1, (int) Math.round((double) optimalBits / expectedInsertions * Math.log(2)));
+        this.rotationIntervalNanos = unit.toNanos(window) / 2;
+        long now = System.nanoTime();
+        this.current = new Generation(bitCount, now);
+        this.previous = new Generation(bitCount, now);
+    }
+
+    /**
+     * Indicates if the key may have been added in the window.
+     * @param key
+     * @return false if the key was definitely not added; true if it probably was.
+     */
+    public boolean mightContain(CharSequence key) {
+        rotateIfNeeded();
+        long hash = hash(key);
+        return current.mightContain(hash) || previous.mightContain(hash);
+    }
+
+    /**
+     * Adds the key to the filter.
+     * @param key
+     * @return true if the key was definitely not added before in the window; false if it probably was.
+     */
+    public boolean put(CharSequence key) {
+        rotateIfNeeded();
+        long hash = hash(key);
+        Generation previous = this.previous;
+        boolean changed = current.put(hash);
+        return changed && !previous.mightContain(hash);
+    }
+
+    private void rotateIfNeeded() {
+        long now = System.nanoTime();
+        if (now - current.startTime >= rotationIntervalNanos) {
+            synchronized (this) {
+                long elapsed = now - current.startTime;
+                if (elapsed >= rotationIntervalNanos) {
+                    // When the filter was idle for a whole window, the current generation is discarded too
+                    previous = elapsed >= 2 * rotationIntervalNanos ? new Generation(bitMask + 1, now) : current;
+                    current = new Generation(bitMask + 1, now);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes a 64 bits hash of the key (FNV-1a followed by the MurmurHash3 finalizer).
+     */
+    private static long hash(CharSequence key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private final class Generation {
+        private final AtomicLongArray bits;
+        private final long startTime;
+
+        private Generation(int bitCount, long startTime) {
+            this.bits = new AtomicLongArray(bitCount >>> 6);
+            this.startTime = startTime;
+        }
+
+        private boolean mightContain(long hash) {
+            int hash1 = (int) hash;
+            int hash2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = (hash1 + i * hash2) & bitMask;
+                if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean put(long hash) {
+            int hash1 = (int) hash;
+            int hash2 = (int) (hash >>> 32);
+            boolean changed = false;
+            for (int i = 0; i < hashCount; i++) {
+                int bit = (hash1 + i * hash2) & bitMask;
+                int index = bit >>> 6;
+                long mask = 1L << bit;
+                long word;
+                while (((word = bits.get(index)) & mask) == 0) {
+                    if (bits.compareAndSet(index, word, word | mask)) {
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+            return changed;
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package org.limeprotocol.util;
 
 import java.util.Arrays;
-import java.util.LinkedHashMap;
-import java.util.Map;
 
 public class StringUtils {
 
@@ -16,20 +14,86 @@ public class StringUtils {
         return isNullOrEmpty(string) || string.trim().length() == 0;
     }
 
+    /**
+     * Replaces the {index} placeholders of the pattern with the values; null values are replaced by an empty string.
+     * @param pattern
+     * @param values
+     * @return
+     */
     public static String format(String pattern, Object... values){
+        StringBuilder formatted = null;
+        int length = pattern.length();
+        int copyStart = 0;
+        for (int i = 0; i < length; i++) {
+            if (pattern.charAt(i) != '{') {
+                continue;
+            }
+            int index = 0;
+            int j = i + 1;
+            while (j < length && pattern.charAt(j) >= '0' && pattern.charAt(j) <= '9') {
+                index = index * 10 + (pattern.charAt(j) - '0');
+                j++;
+            }
+            if (j == i + 1 || j >= length || pattern.charAt(j) != '}' || index >= values.length) {
+                continue;
+            }
+            if (formatted == null) {
+                formatted = new StringBuilder(length + 16 * values.length);
+            }
+            formatted.append(pattern, copyStart, i);
+            if (values[index] != null) {
+                formatted.append(values[index].toString());
+            }
+            copyStart = j + 1;
+            i = j;
+        }
+        if (formatted == null) {
+            return pattern;
+        }
+        return formatted.append(pattern, copyStart, length).toString();
+    }
 
-        Map<String, Object> tags = new LinkedHashMap<String, Object>();
-
-        for (int i=0; i<values.length; i++){
-            tags.put("\\{" + i + "\\}", values[i]==null ? "" : values[i]);
+    /**
+     * Gets the segment that follows the separator in the specified index, up to the next separator,
+     * with the same result as the {@link String#split(String)} method: trailing empty segments are discarded.
+     * @param string
+     * @param separatorIndex The index of the separator that precedes the segment.
+     * @param separator
+     * @return The segment or null, if there's no segment.
+     */
+    public static String segmentAfter(String string, int separatorIndex, char separator) {
+        int start = separatorIndex + 1;
+        int end = string.indexOf(separator, start);
+        if (end < 0) {
+            end = string.length();
+        }
+        if (end == start) {
+            // Empty segments are only kept if followed by a non-empty segment
+            int i = end;
+            while (i < string.length() && string.charAt(i) == separator) {
+                i++;
+            }
+            if (i == string.length()) {
+                return null;
+            }
         }
+        return string.substring(start, end);
+    }
 
-        String formatted = pattern;
-        for (Map.Entry<String, Object> tag : tags.entrySet()) {
-            // bottleneck, creating temporary String objects!
-            formatted = formatted.replaceAll(tag.getKey(), tag.getValue().toString());
+    /**
+     * Computes a case-insensitive hash code of the string, consistent with the {@link String#equalsIgnoreCase(String)} method.
+     * @param string
+     * @return
+     */
+    public static int hashCodeIgnoreCase(String string) {
+        if (string == null) {
+            return 0;
+        }
+        int hash = 0;
+        for (int i = 0; i < string.length(); i++) {
+            hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(string.charAt(i)));
         }
-        return formatted;
+        return hash;
     }
 
     public static String trimEnd(String string, String finalCharacter){
@@ -0,0 +1,136 @@
+package org.limeprotocol.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free token bucket rate limiter.
+ * The bucket state is kept as a single theoretical arrival time (GCRA), so acquiring a token
+ * is a compare-and-set over an {@link AtomicLong} and does not allocate.
+ */
+public class TokenBucket {
+
+    private final static long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The maximum rate, which is one token per nanosecond.
+     */
+    public final static int MAX_TOKENS_PER_SECOND = (int) NANOS_PER_SECOND;
+
+    private final AtomicLong theoreticalArrivalTime;
+    private volatile long emissionInterval;
+    private volatile long burstTolerance;
+
+    /**
+     * Creates a bucket that allows the specified number of tokens per second,
+     * with a burst capacity of the same size.
+     * @param tokensPerSecond
+     */
+    public TokenBucket(int tokensPerSecond) {
+        this(tokensPerSecond, tokensPerSecond);
+    }
+
+    /**
+     * Creates a bucket that allows the specified number of tokens per second.
+     * @param tokensPerSecond The refill rate.
+     * @param capacity The maximum number of tokens that can be acquired at once after an idle period.
+     */
+    public TokenBucket(int tokensPerSecond, int capacity) {
+        setRate(tokensPerSecond, capacity);
+        this.theoreticalArrivalTime = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Changes the bucket rate, keeping the tokens already consumed.
+     * @param tokensPerSecond The refill rate, up to {@link #MAX_TOKENS_PER_SECOND}.
+     * @param capacity
+     */
+    public void setRate(int tokensPerSecond, int capacity) {
+        if (tokensPerSecond <= 0 || tokensPerSecond > MAX_TOKENS_PER_SECOND) throw new IllegalArgumentException("tokensPerSecond");
+        if (capacity <= 0) throw new IllegalArgumentException("capacity");
+        long interval = NANOS_PER_SECOND / tokensPerSecond;
+        this.emissionInterval = interval;
+        this.burstTolerance = interval * capacity;
+    }
+
+    /**
+     * Gets the number of tokens added to the bucket per second.
+     * @return
+     */
+    public int getTokensPerSecond() {
+        return (int) (NANOS_PER_SECOND / emissionInterval);
+    }
+
+    /**
+     * Tries to acquire a token without blocking.
+     * @return true if the token was acquired.
+     */
+    public boolean tryAcquire() {
+        return tryAcquireOrGetWait() == 0;
+    }
+
+    /**
+     * Tries to acquire a token without blocking.
+     * @return 0 if the token was acquired; otherwise, the time in nanoseconds until a token will be available,
+     * which callers can use to schedule a retry.
+     */
+    public long tryAcquireOrGetWait() {
+        long interval = emissionInterval;
+        long tolerance = burstTolerance;
+        while (true) {
+            long now = System.nanoTime();
+            long tat = theoreticalArrivalTime.get();
+            // The arrival time doesn't go back after an idle period, so the burst is limited to the capacity
+            long newTat = Math.max(tat, now) + interval;
+            long wait = newTat - now - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrivalTime.compareAndSet(tat, newTat)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Tries to acquire a token, waiting up to the specified timeout.
+     * @param timeout
+     * @param unit
+     * @return true if the token was acquired; false if the timeout elapsed.
+     * @throws InterruptedException
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            long wait = tryAcquireOrGetWait();
+            if (wait == 0) {
+                return true;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, Math.min(wait, remaining));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * Indicates if the bucket is at its full capacity, i.e. it was not used recently.
+     * @return
+     */
+    public boolean isFull() {
+        return theoreticalArrivalTime.get() <= System.nanoTime();
+    }
+
+    /**
+     * Returns a previously acquired token to the bucket.
+     * Used to roll back an acquisition when a dependent bucket refused the same operation.
+     */
+    public void release() {
+        theoreticalArrivalTime.addAndGet(-emissionInterval);
+    }
+}
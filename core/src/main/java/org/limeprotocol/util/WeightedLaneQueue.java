@@ -0,0 +1,167 @@
+package org.limeprotocol.util;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Blocking queue with multiple FIFO lanes, dequeued by a weighted round robin scheduler.
+ * Each lane can be dequeued up to its weight times in a round, in the lanes order, and a new round
+ * starts when all non-empty lanes used their weights; so the first lanes jump ahead of the others
+ * while the queue is saturated, but the last lanes are never starved.
+ * The capacity bounds the items in all lanes except the first, which is reserved for small
+ * control items and never blocks the producers.
+ */
+public class WeightedLaneQueue<T> {
+
+    private final ArrayDeque<T>[] lanes;
+    private final int[] weights;
+    private final int[] credits;
+    private final int capacity;
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final Condition notFull;
+    private int boundedCount;
+
+    /**
+     * Creates a new queue.
+     * @param capacity The maximum number of items in the lanes after the first one.
+     * @param weights The weight of each lane, in the lanes order.
+     */
+    @SuppressWarnings("unchecked")
+    public WeightedLaneQueue(int capacity, int... weights) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity");
+        if (weights == null || weights.length == 0) throw new IllegalArgumentException("weights");
+        for (int weight : weights) {
+            if (weight <= 0) throw new IllegalArgumentException("weights");
+        }
+        this.capacity = capacity;
+        this.weights = weights.clone();
+        this.credits = weights.clone();
+        this.lanes = new ArrayDeque[weights.length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ArrayDeque<>();
+        }
+        this.lock = new ReentrantLock();
+        this.notEmpty = lock.newCondition();
+        this.notFull = lock.newCondition();
+    }
+
+    /**
+     * Adds an item to the specified lane, waiting if the queue is full.
+     * @param lane
+     * @param item
+     * @throws InterruptedException
+     */
+    public void put(int lane, T item) throws InterruptedException {
+        if (item == null) throw new IllegalArgumentException("item");
+        ArrayDeque<T> queue = lanes[lane];
+        lock.lockInterruptibly();
+        try {
+            if (lane > 0) {
+                while (boundedCount >= capacity) {
+                    notFull.await();
+                }
+                boundedCount++;
+            }
+            queue.addLast(item);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the next scheduled item, waiting up to the specified time if the queue is empty.
+     * @param timeout
+     * @param unit
+     * @return The item or null, if the time elapsed.
+     * @throws InterruptedException
+     */
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            T item;
+            while ((item = dequeue()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the next scheduled item, if any.
+     * @return The item or null, if the queue is empty.
+     */
+    public T poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            for (ArrayDeque<T> lane : lanes) {
+                if (!lane.isEmpty()) return false;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return boundedCount + lanes[0].size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all items from the queue.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            for (ArrayDeque<T> lane : lanes) {
+                lane.clear();
+            }
+            boundedCount = 0;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private T dequeue() {
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < lanes.length; i++) {
+                if (credits[i] > 0 && !lanes[i].isEmpty()) {
+                    credits[i]--;
+                    T item = lanes[i].pollFirst();
+                    if (i > 0) {
+                        boundedCount--;
+                        notFull.signal();
+                    }
+                    return item;
+                }
+            }
+            // All non-empty lanes used their weights, starts a new round
+            System.arraycopy(weights, 0, credits, 0, weights.length);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,58 @@
+package org.limeprotocol;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MediaTypeTest {
+
+    //region parse method
+    @Test
+    public void parse_TypeWithSuffix_ReturnsValidMediaType() {
+        // Act
+        MediaType mediaType = MediaType.parse("application/vnd.lime.ping+json");
+
+        // Assert
+        assertEquals(new MediaType("application", "vnd.lime.ping", "json"), mediaType);
+        assertEquals("json", mediaType.getSuffix());
+        assertTrue(mediaType.isJson());
+        assertEquals("application/vnd.lime.ping+json", mediaType.toString());
+    }
+
+    @Test
+    public void parse_TypeWithoutSuffix_ReturnsValidMediaType() {
+        // Act
+        MediaType mediaType = MediaType.parse("text/plain");
+
+        // Assert
+        assertEquals(new MediaType("text", "plain"), mediaType);
+        assertNull(mediaType.getSuffix());
+        assertEquals("text/plain", mediaType.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_MissingSubtype_ThrowsIllegalArgumentException() {
+        // Act
+        MediaType.parse("text");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_ExtraSegment_ThrowsIllegalArgumentException() {
+        // Act
+        MediaType.parse("text/plain/other");
+    }
+    //endregion
+
+    //region getHashCode method
+    @Test
+    public void getHashCode_EqualsMediaTypesDifferentCasing_ReturnsSameHash() {
+        // Arrange
+        MediaType mediaType1 = MediaType.parse("application/vnd.lime.ping+json");
+        MediaType mediaType2 = MediaType.parse("APPLICATION/VND.LIME.PING+JSON");
+
+        // Assert
+        assertEquals(mediaType1, mediaType2);
+        assertEquals(mediaType1.hashCode(), mediaType2.hashCode());
+    }
+    //endregion
+}
@@ -0,0 +1,97 @@
+package org.limeprotocol;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NodeTest {
+
+    //region toString method
+    @Test
+    public void toString_CompleteNode_ReturnsValidString() {
+        // Arrange
+        Node node = new Node("thisIsName", "thisIsDomain", "thisIsInstance");
+
+        // Act
+        String nodeString = node.toString();
+
+        // Assert
+        assertEquals("thisIsName@thisIsDomain/thisIsInstance", nodeString);
+    }
+
+    @Test
+    public void toString_NullInstance_ReturnsIdentityString() {
+        // Arrange
+        Node node = new Node("thisIsName", "thisIsDomain", null);
+
+        // Act
+        String nodeString = node.toString();
+
+        // Assert
+        assertEquals("thisIsName@thisIsDomain", nodeString);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void toString_ChangedInstance_ReturnsUpdatedString() {
+        // Arrange
+        Node node = new Node("thisIsName", "thisIsDomain", "thisIsInstance");
+        int hashCode = node.hashCode();
+
+        // Act
+        node.setInstance("otherInstance");
+
+        // Assert
+        assertEquals("thisIsName@thisIsDomain/otherInstance", node.toString());
+        assertNotEquals(hashCode, node.hashCode());
+    }
+    //endregion
+
+    //region getHashCode method
+    @Test
+    public void getHashCode_EqualsNodesDifferentCasing_ReturnsSameHash() {
+        // Arrange
+        Node node1 = new Node("thisIsName", "thisIsDomain", "thisIsInstance");
+        Node node2 = new Node("THISISNAME", "thisisdomain", "THISISINSTANCE");
+
+        // Assert
+        assertEquals(node1, node2);
+        assertEquals(node1.hashCode(), node2.hashCode());
+    }
+    //endregion
+
+    //region parse method
+    @Test
+    public void parse_CompleteString_ReturnsValidNode() {
+        // Act
+        Node node = Node.parse("myName@myDomain/myInstance");
+
+        // Assert
+        assertEquals("myName", node.getName());
+        assertEquals("myDomain", node.getDomain());
+        assertEquals("myInstance", node.getInstance());
+    }
+
+    @Test
+    public void parse_TrailingSeparator_ReturnsNullInstance() {
+        // Act
+        Node node = Node.parse("myName@myDomain/");
+
+        // Assert
+        assertEquals("myName", node.getName());
+        assertEquals("myDomain", node.getDomain());
+        assertNull(node.getInstance());
+    }
+
+    @Test
+    public void parse_OnlyNameString_ReturnsValidNode() {
+        // Act
+        Node node = Node.parse("myName");
+
+        // Assert
+        assertEquals("myName", node.getName());
+        assertNull(node.getDomain());
+        assertNull(node.getInstance());
+    }
+    //endregion
+}
@@ -0,0 +1,116 @@
+package org.limeprotocol;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class TimeOrderedEnvelopeIdGeneratorTest {
+
+    private static class FixedClockGenerator extends TimeOrderedEnvelopeIdGenerator {
+        private volatile long currentTimeMillis;
+
+        @Override
+        protected long currentTimeMillis() {
+            return currentTimeMillis;
+        }
+    }
+
+    @Test
+    public void newId_sameMillisecond_shouldReturnIncreasingVersion7Ids() {
+        // Arrange
+        FixedClockGenerator target = new FixedClockGenerator();
+        target.currentTimeMillis = 1700000000000L;
+
+        // Act
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            ids.add(target.newId());
+        }
+
+        // Assert
+        for (int i = 0; i < ids.size(); i++) {
+            UUID uuid = UUID.fromString(ids.get(i));
+            assertEquals(ids.get(i), uuid.toString());
+            assertEquals(7, uuid.version());
+            assertEquals(2, uuid.variant());
+            assertTrue(uuid.getMostSignificantBits() >>> 16 >= target.currentTimeMillis);
+            if (i > 0) {
+                assertTrue(ids.get(i - 1).compareTo(ids.get(i)) < 0);
+            }
+        }
+    }
+
+    @Test
+    public void newId_clockGoesBackwards_shouldReturnIncreasingIds() {
+        // Arrange
+        FixedClockGenerator target = new FixedClockGenerator();
+        target.currentTimeMillis = 1700000000000L;
+        String first = target.newId();
+        target.currentTimeMillis -= 1000;
+
+        // Act
+        String second = target.newId();
+        target.currentTimeMillis += 2000;
+        String third = target.newId();
+
+        // Assert
+        assertTrue(first.compareTo(second) < 0);
+        assertTrue(second.compareTo(third) < 0);
+        assertEquals(target.currentTimeMillis, UUID.fromString(third).getMostSignificantBits() >>> 16);
+    }
+
+    @Test
+    public void newId_concurrentThreads_shouldReturnUniqueIds() throws Exception {
+        // Arrange
+        final TimeOrderedEnvelopeIdGenerator target = new TimeOrderedEnvelopeIdGenerator();
+        final int threadsCount = 8;
+        final int idsPerThread = 20000;
+        final Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < threadsCount; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < idsPerThread; j++) {
+                    ids.add(target.newId());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(threadsCount * idsPerThread, ids.size());
+    }
+
+    @Test
+    public void setGenerator_timeOrderedGenerator_shouldBeUsedByNewId() {
+        // Arrange
+        EnvelopeIdGenerator previous = EnvelopeId.getGenerator();
+        EnvelopeId.setGenerator(new TimeOrderedEnvelopeIdGenerator());
+
+        try {
+            // Act
+            String id = EnvelopeId.newId();
+
+            // Assert
+            assertEquals(7, UUID.fromString(id).version());
+        } finally {
+            EnvelopeId.setGenerator(previous);
+        }
+        assertEquals(4, UUID.fromString(EnvelopeId.newId()).version());
+    }
+}
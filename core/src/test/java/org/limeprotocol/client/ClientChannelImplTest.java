@@ -364,8 +364,7 @@ public class ClientChannelImplTest {
 
         message.setFrom(senderNode.copy());
         message.setTo(destinationNode.copy());
-        message.setPp(localNode.copy());
-        message.getPp().setDomain(null);
+        message.setPp(new Node(localNode.getName(), null, localNode.getInstance()));
 
         TestClientChannel target = getTarget(SessionState.ESTABLISHED, true, remoteNode, localNode);
 
@@ -392,7 +391,7 @@ public class ClientChannelImplTest {
     //region receiveMessage
 
     @Test
-    public void receiveMessage_MessageReceivedAndAutoNotifyReceiptTrue_SendsNotificationToTransport()
+    public void receiveMessage_MessageReceivedAndAutoNotifyReceiptTrue_SendsNotificationToTransport() throws InterruptedException
     {
         PlainDocument content = createTextContent();
         Message message = createMessage(content);
@@ -400,8 +399,9 @@ public class ClientChannelImplTest {
         TestClientChannel target = getTarget(SessionState.ESTABLISHED, true, message.getTo());
         target.raiseOnReceiveMessage(message);
 
-        assertThat(transport.getSentEnvelopes()).hasSize(1);
-        Notification notification = (Notification) transport.getSentEnvelopes()[0];
+        Envelope[] sentEnvelopes = transport.waitForSentEnvelopes(1, 1000);
+        assertThat(sentEnvelopes).hasSize(1);
+        Notification notification = (Notification) sentEnvelopes[0];
         assertThat(notification != null);
         assertThat(notification.getId()).isEqualTo(message.getId());
         assertThat(notification.getTo()).isEqualTo(message.getFrom());
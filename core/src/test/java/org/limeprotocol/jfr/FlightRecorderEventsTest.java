@@ -0,0 +1,90 @@
+package org.limeprotocol.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.Command;
+import org.limeprotocol.LimeUri;
+import org.limeprotocol.Message;
+import org.limeprotocol.MediaType;
+import org.limeprotocol.PlainDocument;
+import org.limeprotocol.Session;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class FlightRecorderEventsTest {
+
+    @Before
+    public void setUp() {
+        assumeTrue(FlightRecorderEvents.isAvailable());
+    }
+
+    @Test
+    public void beginModulePipeline_noRecording_returnsNull() {
+        // Act
+        Object event = FlightRecorderEvents.beginModulePipeline();
+
+        // Assert
+        assertNull(event);
+    }
+
+    @Test
+    public void endEvents_enabledRecording_recordsEnvelopeData() throws Exception {
+        // Arrange
+        Message message = new Message("message-1");
+        message.setContent(new PlainDocument("hello", MediaType.parse("text/plain")));
+        Command requestCommand = new Command("command-1");
+        requestCommand.setMethod(Command.CommandMethod.GET);
+        requestCommand.setUri(LimeUri.parse("/presence"));
+        Command responseCommand = new Command("command-1");
+        responseCommand.setStatus(Command.CommandStatus.SUCCESS);
+        File file = File.createTempFile("lime", ".jfr");
+        file.deleteOnExit();
+        Map<String, RecordedEvent> events = new HashMap<>();
+
+        // Act
+        try (Recording recording = new Recording()) {
+            recording.enable("org.limeprotocol.ModulePipeline");
+            recording.enable("org.limeprotocol.CommandRequest");
+            recording.enable("org.limeprotocol.SessionState");
+            recording.start();
+            Object pipelineEvent = FlightRecorderEvents.beginModulePipeline();
+            FlightRecorderEvents.endModulePipeline(pipelineEvent, FlightRecorderEvents.RECEIVING, message, 3, true);
+            Object requestEvent = FlightRecorderEvents.beginCommandRequest();
+            FlightRecorderEvents.endCommandRequest(requestEvent, requestCommand, responseCommand);
+            FlightRecorderEvents.sessionStateChanged("session-1", Session.SessionState.AUTHENTICATING, Session.SessionState.ESTABLISHED);
+            recording.stop();
+            recording.dump(file.toPath());
+        }
+        List<RecordedEvent> recordedEvents = RecordingFile.readAllEvents(file.toPath());
+        for (RecordedEvent recordedEvent : recordedEvents) {
+            events.put(recordedEvent.getEventType().getName(), recordedEvent);
+        }
+
+        // Assert
+        RecordedEvent pipeline = events.get("org.limeprotocol.ModulePipeline");
+        assertNotNull(pipeline);
+        assertEquals("receiving", pipeline.getString("direction"));
+        assertEquals("Message", pipeline.getString("envelopeType"));
+        assertEquals("text/plain", pipeline.getString("mediaType"));
+        assertEquals(3, pipeline.getInt("modulesCount"));
+        assertTrue(pipeline.getBoolean("discarded"));
+        RecordedEvent request = events.get("org.limeprotocol.CommandRequest");
+        assertNotNull(request);
+        assertEquals("command-1", request.getString("commandId"));
+        assertEquals("/presence", request.getString("uri"));
+        assertEquals("success", request.getString("status").toLowerCase());
+        RecordedEvent state = events.get("org.limeprotocol.SessionState");
+        assertNotNull(state);
+        assertEquals("session-1", state.getString("sessionId"));
+        assertEquals(Session.SessionState.ESTABLISHED.toString(), state.getString("state"));
+    }
+}
@@ -0,0 +1,89 @@
+package org.limeprotocol.metrics;
+
+import org.junit.Test;
+import org.limeprotocol.LimeUri;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void snapshot_countersGaugesAndHistograms_returnsCurrentValues() {
+        // Arrange
+        MetricsRegistry target = new MetricsRegistry();
+        target.getCounter("envelopes").add(5);
+        target.getCounter("envelopes").increment();
+        target.addGauge("queue.depth", () -> 3);
+        target.addGauge("queue.depth", () -> 4);
+        LatencyHistogram histogram = target.getHistogram("latency");
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        // Act
+        SortedMap<String, Long> snapshot = target.snapshot();
+
+        // Assert
+        assertEquals(6L, (long) snapshot.get("envelopes"));
+        assertEquals(7L, (long) snapshot.get("queue.depth"));
+        assertEquals(1000L, (long) snapshot.get("latency.count"));
+        assertEquals(1000L, (long) snapshot.get("latency.max"));
+        assertEquals(500L, snapshot.get("latency.mean"), 1);
+        assertEquals(500L, snapshot.get("latency.p50"), 500 * 0.125);
+        assertEquals(990L, snapshot.get("latency.p99"), 990 * 0.125);
+        assertTrue(snapshot.get("latency.p999") <= 1000L);
+    }
+
+    @Test
+    public void getPercentile_singleValue_returnsValueBucketWithinPrecision() {
+        // Arrange
+        LatencyHistogram target = new LatencyHistogram();
+        long value = 123456789;
+
+        // Act
+        target.record(value);
+
+        // Assert
+        for (double percentile : new double[] { 0, 50, 100 }) {
+            long actual = target.getPercentile(percentile, TimeUnit.NANOSECONDS);
+            assertTrue(actual <= value);
+            assertTrue(actual >= value - value / 8);
+        }
+        for (long v = 0; v < 100000; v += 7) {
+            int bucket = LatencyHistogram.getBucket(v);
+            assertTrue(LatencyHistogram.getBucketUpperBound(bucket) >= v);
+            assertTrue(bucket == 0 || LatencyHistogram.getBucketUpperBound(bucket - 1) < v);
+        }
+    }
+
+    @Test
+    public void registerMBean_registeredRegistry_exposesSnapshotAsAttributes() throws Exception {
+        // Arrange
+        MetricsRegistry target = new MetricsRegistry();
+        target.getCounter("transport.bytes.sent").add(42);
+        ObjectName objectName = new ObjectName("org.limeprotocol:type=Metrics,name=" + getClass().getSimpleName());
+
+        // Act
+        target.registerMBean(objectName);
+
+        // Assert
+        try {
+            assertEquals(42L, ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "transport.bytes.sent"));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        }
+    }
+
+    @Test
+    public void getUriTemplate_resourceUris_replacesIdentifierSegments() {
+        assertEquals("/contacts/*", MetricNames.getUriTemplate(LimeUri.parse("/contacts/john@limeprotocol.org")));
+        assertEquals("/presence", MetricNames.getUriTemplate(LimeUri.parse("/presence")));
+        assertEquals("/buckets/*", MetricNames.getUriTemplate(LimeUri.parse("/buckets/key?expiration=100")));
+        assertEquals("/ping", MetricNames.getUriTemplate(LimeUri.parse("lime://postmaster@limeprotocol.org/ping")));
+    }
+}
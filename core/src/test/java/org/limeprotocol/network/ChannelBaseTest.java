@@ -2,13 +2,16 @@ package org.limeprotocol.network;
 
 import org.junit.Test;
 import org.limeprotocol.*;
+import org.limeprotocol.metrics.Counter;
+import org.limeprotocol.metrics.LatencyHistogram;
+import org.limeprotocol.metrics.MetricNames;
+import org.limeprotocol.metrics.MetricsRegistry;
+import org.limeprotocol.network.modules.ChannelModuleBase;
 
 import java.io.IOException;
 import java.net.URI;
 import java.util.*;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
 import static org.junit.Assert.*;
 import static org.junit.Assert.assertEquals;
@@ -308,6 +311,21 @@ public class ChannelBaseTest {
         assertEquals(message, transport.sentEnvelopes.remove());
     }
 
+    @Test
+    public void sendMessage_establishedState_incrementsSentMessagesCounter() throws IOException {
+        // Arrange
+        Message message = createMessage(createPlainDocument());
+        ChannelBase target = getTarget(Session.SessionState.ESTABLISHED);
+        String counterName = MetricNames.CHANNEL_ENVELOPES_SENT + ".message";
+        long sentMessages = MetricsRegistry.getShared().getCounter(counterName).get();
+
+        // Act
+        target.sendMessage(message);
+
+        // Assert
+        assertEquals(sentMessages + 1, (long) MetricsRegistry.getShared().snapshot().get(counterName));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void sendMessage_nullMessage_throwsIllegalArgumentException() throws IOException {
         // Arrange
@@ -429,6 +447,228 @@ public class ChannelBaseTest {
         }
     }
 
+    @Test
+    public void onReceiveMessage_registeredListener_recordsListenerTime() {
+        // Arrange
+        MessageChannel.MessageChannelListener listener = mock(MessageChannel.MessageChannelListener.class);
+        Message message = createMessage(createPlainDocument());
+        ChannelBase target = getTarget(Session.SessionState.ESTABLISHED);
+        target.addMessageListener(listener, false);
+        LatencyHistogram listenerTime = MetricsRegistry.getShared().getHistogram(MetricNames.CHANNEL_LISTENER_TIME + "." + listener.getClass().getName());
+        long count = listenerTime.getCount();
+
+        // Act
+        transport.raiseOnReceive(message);
+
+        // Assert
+        assertEquals(count + 1, listenerTime.getCount());
+    }
+
+    @Test
+    public void onReceiveMessage_moduleThrowsException_recordsDispatchTime() {
+        // Arrange
+        Message message = createMessage(createPlainDocument());
+        ChannelBase target = getTarget(Session.SessionState.ESTABLISHED);
+        ChannelModule<Message> module = mock(ChannelModule.class);
+        when(module.onReceiving(message)).thenThrow(new IllegalStateException("Module failure"));
+        target.getMessageModules().add(module);
+        LatencyHistogram dispatchTime = MetricsRegistry.getShared().getHistogram(MetricNames.CHANNEL_DISPATCH_TIME + ".message");
+        long count = dispatchTime.getCount();
+
+        // Act
+        try {
+            transport.raiseOnReceive(message);
+        } catch (IllegalStateException e) {
+            // The exception is raised to the transport
+        }
+
+        // Assert
+        assertEquals(count + 1, dispatchTime.getCount());
+    }
+
+    @Test
+    public void onReceiveMessage_slowListenerWithWatchdog_reportsListenerWithStackSample() throws InterruptedException {
+        // Arrange
+        final Semaphore releaseListener = new Semaphore(0);
+        MessageChannel.MessageChannelListener slowListener = new MessageChannel.MessageChannelListener() {
+            @Override
+            public void onReceiveMessage(Message message) {
+                releaseListener.acquireUninterruptibly();
+            }
+        };
+        final BlockingQueue<DispatchWatchdog.SlowCallback> slowCallbacks = new LinkedBlockingQueue<>();
+        DispatchWatchdog watchdog = new DispatchWatchdog(20, TimeUnit.MILLISECONDS);
+        watchdog.setSlowCallbackListener(new DispatchWatchdog.SlowCallbackListener() {
+            @Override
+            public void onSlowCallback(DispatchWatchdog.SlowCallback slowCallback) {
+                slowCallbacks.add(slowCallback);
+                releaseListener.release();
+            }
+        });
+        Message message = createMessage(createPlainDocument());
+        ChannelBase target = getTarget(Session.SessionState.ESTABLISHED);
+        target.setDispatchWatchdog(watchdog);
+        target.addMessageListener(slowListener, false);
+
+        // Act
+        transport.raiseOnReceive(message);
+        watchdog.close();
+
+        // Assert
+        DispatchWatchdog.SlowCallback slowCallback = slowCallbacks.poll(1, TimeUnit.SECONDS);
+        assertNotNull(slowCallback);
+        assertSame(slowListener, slowCallback.getCallback());
+        assertSame(message, slowCallback.getEnvelope());
+        assertSame(Thread.currentThread(), slowCallback.getThread());
+        assertFalse(slowCallback.isIsolated());
+        assertTrue(slowCallback.getElapsed(TimeUnit.MILLISECONDS) >= 20);
+        boolean listenerInStack = false;
+        for (StackTraceElement element : slowCallback.getStackTrace()) {
+            listenerInStack |= element.getClassName().equals(slowListener.getClass().getName());
+        }
+        assertTrue(listenerInStack);
+    }
+
+    @Test
+    public void onReceiveMessage_listenerExceedsBudgetRepeatedly_isolatesListener() throws InterruptedException {
+        // Arrange
+        final BlockingQueue<Thread> slowListenerThreads = new LinkedBlockingQueue<>();
+        MessageChannel.MessageChannelListener slowListener = new MessageChannel.MessageChannelListener() {
+            @Override
+            public void onReceiveMessage(Message message) {
+                slowListenerThreads.add(Thread.currentThread());
+                try {
+                    Thread.sleep(15);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        MessageChannel.MessageChannelListener fastListener = mock(MessageChannel.MessageChannelListener.class);
+        DispatchWatchdog watchdog = new DispatchWatchdog(5, TimeUnit.MILLISECONDS);
+        watchdog.setSlowCallbackListener(mock(DispatchWatchdog.SlowCallbackListener.class));
+        ExecutorService isolationExecutor = Executors.newCachedThreadPool();
+        watchdog.setIsolationExecutor(isolationExecutor, 2);
+        Message message = createMessage(createPlainDocument());
+        ChannelBase target = getTarget(Session.SessionState.ESTABLISHED);
+        target.setDispatchWatchdog(watchdog);
+        target.addMessageListener(slowListener, false);
+        target.addMessageListener(fastListener, false);
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            transport.raiseOnReceive(message);
+        }
+
+        // Assert
+        verify(fastListener, times(4)).onReceiveMessage(message);
+        assertTrue(watchdog.isIsolated(slowListener));
+        assertFalse(watchdog.isIsolated(fastListener));
+        for (int i = 0; i < 4; i++) {
+            Thread thread = slowListenerThreads.poll(1, TimeUnit.SECONDS);
+            assertNotNull(thread);
+            assertEquals(i < 2, thread == Thread.currentThread());
+        }
+        watchdog.close();
+        isolationExecutor.shutdown();
+    }
+
+    @Test
+    public void onReceiveMessage_isolatedListenerQueueFull_deliversInChannelThread() throws InterruptedException {
+        // Arrange
+        final Thread channelThread = Thread.currentThread();
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        final BlockingQueue<Thread> slowListenerThreads = new LinkedBlockingQueue<>();
+        MessageChannel.MessageChannelListener slowListener = new MessageChannel.MessageChannelListener() {
+            @Override
+            public void onReceiveMessage(Message message) {
+                slowListenerThreads.add(Thread.currentThread());
+                try {
+                    if (Thread.currentThread() != channelThread) {
+                        releaseLatch.await(1, TimeUnit.SECONDS);
+                    } else if (slowListenerThreads.size() == 1) {
+                        Thread.sleep(15);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        DispatchWatchdog watchdog = new DispatchWatchdog(5, TimeUnit.MILLISECONDS);
+        ExecutorService isolationExecutor = Executors.newCachedThreadPool();
+        watchdog.setIsolationExecutor(isolationExecutor, 1, 1);
+        Counter inlineDeliveries = MetricsRegistry.getShared().getCounter(MetricNames.CHANNEL_ISOLATED_INLINE_DELIVERIES);
+        long inlineCount = inlineDeliveries.get();
+        Message message = createMessage(createPlainDocument());
+        ChannelBase target = getTarget(Session.SessionState.ESTABLISHED);
+        target.setDispatchWatchdog(watchdog);
+        target.addMessageListener(slowListener, false);
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            transport.raiseOnReceive(message);
+        }
+        releaseLatch.countDown();
+
+        // Assert
+        assertTrue(watchdog.isIsolated(slowListener));
+        assertEquals(inlineCount + 1, inlineDeliveries.get());
+        int channelThreadDeliveries = 0;
+        for (int i = 0; i < 4; i++) {
+            Thread thread = slowListenerThreads.poll(1, TimeUnit.SECONDS);
+            assertNotNull(thread);
+            if (thread == channelThread) {
+                channelThreadDeliveries++;
+            }
+        }
+        assertEquals(2, channelThreadDeliveries);
+        watchdog.close();
+        isolationExecutor.shutdown();
+    }
+
+    @Test
+    public void onReceiveMessage_moduleExceedsBudgetRepeatedly_countsButDoesNotIsolateModule() throws InterruptedException {
+        // Arrange
+        ChannelModule<Message> slowModule = new ChannelModuleBase<Message>() {
+            @Override
+            public Message onReceiving(Message envelope) {
+                try {
+                    Thread.sleep(15);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return envelope;
+            }
+        };
+        MessageChannel.MessageChannelListener listener = mock(MessageChannel.MessageChannelListener.class);
+        DispatchWatchdog watchdog = new DispatchWatchdog(5, TimeUnit.MILLISECONDS);
+        ExecutorService isolationExecutor = Executors.newCachedThreadPool();
+        watchdog.setIsolationExecutor(isolationExecutor, 2);
+        Counter slowCallbacks = MetricsRegistry.getShared().getCounter(MetricNames.CHANNEL_SLOW_CALLBACKS);
+        Counter isolatedCallbacks = MetricsRegistry.getShared().getCounter(MetricNames.CHANNEL_ISOLATED_CALLBACKS);
+        long slowCount = slowCallbacks.get();
+        long isolatedCount = isolatedCallbacks.get();
+        Message message = createMessage(createPlainDocument());
+        ChannelBase target = getTarget(Session.SessionState.ESTABLISHED);
+        target.setDispatchWatchdog(watchdog);
+        target.getMessageModules().add(slowModule);
+        target.addMessageListener(listener, false);
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            transport.raiseOnReceive(message);
+        }
+
+        // Assert
+        assertNull(watchdog.getSlowCallbackListener());
+        assertFalse(watchdog.isIsolated(slowModule));
+        assertTrue(slowCallbacks.get() >= slowCount + 4);
+        assertEquals(isolatedCount, isolatedCallbacks.get());
+        verify(listener, times(4)).onReceiveMessage(message);
+        watchdog.close();
+        isolationExecutor.shutdown();
+    }
+
     @Test
     public void onReceiveMessage_noRecipients_fillsFromTheSession() throws InterruptedException {
         // Arrange
@@ -472,12 +712,8 @@ public class ChannelBaseTest {
         Node remoteNode = createNode();
         Node localNode = createNode();
         Message message = createMessage(createPlainDocument());
-        message.setFrom(remoteNode.copy());
-        message.setTo(localNode.copy());
-        message.getFrom().setDomain(null);
-        message.getTo().setDomain(null);
-        message.getFrom().setInstance(null);
-        message.getTo().setInstance(null);
+        message.setFrom(new Node(remoteNode.getName(), null, null));
+        message.setTo(new Node(localNode.getName(), null, null));
 
         ChannelBase target = getTarget(Session.SessionState.ESTABLISHED, true, remoteNode, localNode);
         final Semaphore semaphore = new Semaphore(1);
@@ -0,0 +1,227 @@
+package org.limeprotocol.network.inprocess;
+
+import org.junit.Test;
+import org.limeprotocol.*;
+import org.limeprotocol.client.ClientChannel;
+import org.limeprotocol.client.ClientChannelBuilderImpl;
+import org.limeprotocol.client.EstablishedClientChannelBuilderImpl;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.security.Authentication;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.serialization.RawEnvelope;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.limeprotocol.testHelpers.Dummy.*;
+
+public class InProcessTransportTest {
+
+    private final static URI TRANSPORT_URI = URI.create("net.inproc://localhost");
+
+    @Test
+    public void buildAndEstablish_inProcessPair_establishesSessionAndReceivesEcho() throws Exception {
+        // Arrange
+        final InProcessTransport.Pair pair = InProcessTransport.createPair();
+        final InProcessTransport serverTransport = pair.getServerTransport();
+        serverTransport.open(TRANSPORT_URI);
+        serverTransport.setEnvelopeListener(new EchoServer(serverTransport));
+        BlockingQueue<Message> receivedMessages = new ArrayBlockingQueue<>(1);
+        Message message = createMessage(createPlainDocument());
+        message.setTo(createNode());
+
+        // Act
+        ClientChannel channel = new EstablishedClientChannelBuilderImpl(
+                ClientChannelBuilderImpl.create(pair::getClientTransport, TRANSPORT_URI))
+                .withIdentity(new Identity("client", "inproc"))
+                .withInstance("test")
+                .withSessionCompression(SessionCompression.NONE)
+                .withSessionEncryption(SessionEncryption.NONE)
+                .buildAndEstablish();
+        channel.addMessageListener(receivedMessages::add, true);
+        channel.sendMessage(message);
+
+        // Assert
+        assertEquals(Session.SessionState.ESTABLISHED, channel.getState());
+        Message receivedMessage = receivedMessages.poll(5, TimeUnit.SECONDS);
+        assertNotNull(receivedMessage);
+        assertEquals(message.getId(), receivedMessage.getId());
+        assertSame(message.getContent(), receivedMessage.getContent());
+    }
+
+    @Test
+    public void send_rawEnvelope_receivesDeserializedEnvelope() throws Exception {
+        // Arrange
+        InProcessTransport.Pair pair = InProcessTransport.createPair();
+        InProcessTransport target = pair.getClientTransport();
+        target.open(TRANSPORT_URI);
+        pair.getServerTransport().open(TRANSPORT_URI);
+        final BlockingQueue<Envelope> receivedEnvelopes = new ArrayBlockingQueue<>(1);
+        pair.getServerTransport().setEnvelopeListener(receivedEnvelopes::add);
+        Message message = createMessage(createPlainDocument());
+        message.setTo(createNode());
+        byte[] messageBytes = new JacksonEnvelopeSerializer().serialize(message).getBytes("UTF-8");
+
+        // Act
+        target.send(RawEnvelope.parse(messageBytes));
+
+        // Assert
+        Envelope receivedEnvelope = receivedEnvelopes.poll(5, TimeUnit.SECONDS);
+        assertTrue(receivedEnvelope instanceof Message);
+        assertEquals(message.getId(), receivedEnvelope.getId());
+        assertEquals(message.getTo(), receivedEnvelope.getTo());
+    }
+
+    @Test
+    public void send_copySerializer_receivesCopyOfEnvelope() throws Exception {
+        // Arrange
+        InProcessTransport.Pair pair = InProcessTransport.createPair(16, new JacksonEnvelopeSerializer());
+        InProcessTransport target = pair.getClientTransport();
+        target.open(TRANSPORT_URI);
+        pair.getServerTransport().open(TRANSPORT_URI);
+        final BlockingQueue<Envelope> receivedEnvelopes = new ArrayBlockingQueue<>(1);
+        pair.getServerTransport().setEnvelopeListener(receivedEnvelopes::add);
+        Message message = createMessage(createPlainDocument());
+        message.setTo(createNode());
+
+        // Act
+        target.send(message);
+        message.setTo(null);
+
+        // Assert
+        Envelope receivedEnvelope = receivedEnvelopes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(receivedEnvelope);
+        assertNotSame(message, receivedEnvelope);
+        assertEquals(message.getId(), receivedEnvelope.getId());
+        assertNotNull(receivedEnvelope.getTo());
+        assertEquals(message.getContent().toString(), ((Message) receivedEnvelope).getContent().toString());
+    }
+
+    @Test
+    public void send_fullPipe_waitsUntilRemoteReceives() throws Exception {
+        // Arrange
+        InProcessTransport.Pair pair = InProcessTransport.createPair(2, null);
+        final InProcessTransport target = pair.getClientTransport();
+        target.open(TRANSPORT_URI);
+        InProcessTransport serverTransport = pair.getServerTransport();
+        serverTransport.open(TRANSPORT_URI);
+        target.send(createNotification(Notification.Event.RECEIVED));
+        target.send(createNotification(Notification.Event.RECEIVED));
+        final CountDownLatch sent = new CountDownLatch(1);
+        Thread sender = new Thread(() -> {
+            try {
+                target.send(createNotification(Notification.Event.CONSUMED));
+                sent.countDown();
+            } catch (IOException e) {
+                fail(e.toString());
+            }
+        });
+        final CountDownLatch received = new CountDownLatch(3);
+
+        // Act
+        sender.start();
+        boolean isSentBeforeReceive = sent.await(100, TimeUnit.MILLISECONDS);
+        serverTransport.setEnvelopeListener(envelope -> received.countDown());
+
+        // Assert
+        assertFalse(isSentBeforeReceive);
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void close_clientTransport_closesServerAfterPendingEnvelopes() throws Exception {
+        // Arrange
+        InProcessTransport.Pair pair = InProcessTransport.createPair();
+        InProcessTransport target = pair.getClientTransport();
+        target.open(TRANSPORT_URI);
+        InProcessTransport serverTransport = pair.getServerTransport();
+        serverTransport.open(TRANSPORT_URI);
+        final CountDownLatch closed = new CountDownLatch(1);
+        serverTransport.setStateListener(new Transport.TransportStateListener() {
+            @Override
+            public void onClosing() {
+            }
+
+            @Override
+            public void onClosed() {
+                closed.countDown();
+            }
+
+            @Override
+            public void onException(Exception e) {
+            }
+        });
+        final BlockingQueue<Envelope> receivedEnvelopes = new ArrayBlockingQueue<>(1);
+        Message message = createMessage(createPlainDocument());
+        target.send(message);
+
+        // Act
+        target.close();
+        serverTransport.setEnvelopeListener(receivedEnvelopes::add);
+
+        // Assert
+        assertSame(message, receivedEnvelopes.poll(5, TimeUnit.SECONDS));
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        assertFalse(serverTransport.isConnected());
+        assertFalse(target.isConnected());
+    }
+
+    /**
+     * Runs the server side of the session handshake without options or authentication, and echoes the messages.
+     */
+    private static class EchoServer implements Transport.TransportEnvelopeListener {
+        private final static Node SERVER_NODE = Node.parse("postmaster@inproc/server");
+        private final Transport transport;
+        private final String sessionId = EnvelopeId.newId();
+
+        EchoServer(Transport transport) {
+            this.transport = transport;
+        }
+
+        @Override
+        public void onReceive(Envelope envelope) {
+            try {
+                if (envelope instanceof Session) {
+                    onReceiveSession((Session) envelope);
+                } else if (envelope instanceof Message) {
+                    envelope.setTo(envelope.getFrom());
+                    envelope.setFrom(SERVER_NODE);
+                    transport.send(envelope);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void onReceiveSession(Session session) throws IOException {
+            Session response = new Session();
+            response.setId(sessionId);
+            response.setFrom(SERVER_NODE);
+            switch (session.getState()) {
+                case NEW:
+                    response.setState(Session.SessionState.NEGOTIATING);
+                    response.setCompressionOptions(new SessionCompression[] { SessionCompression.NONE });
+                    response.setEncryptionOptions(new SessionEncryption[] { SessionEncryption.NONE });
+                    break;
+                case NEGOTIATING:
+                    response.setState(Session.SessionState.AUTHENTICATING);
+                    response.setSchemeOptions(new Authentication.AuthenticationScheme[] { Authentication.AuthenticationScheme.GUEST });
+                    break;
+                case AUTHENTICATING:
+                    response.setState(Session.SessionState.ESTABLISHED);
+                    response.setTo(session.getFrom());
+                    break;
+                default:
+                    response.setState(Session.SessionState.FINISHED);
+                    break;
+            }
+            transport.send(response);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.limeprotocol.network.modules;
+
+import org.junit.Test;
+import org.limeprotocol.*;
+import org.limeprotocol.metrics.MetricNames;
+import org.limeprotocol.metrics.MetricsRegistry;
+import org.limeprotocol.network.Channel;
+import org.limeprotocol.testHelpers.Dummy;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+public class AdaptiveThroughputControlChannelModuleTest {
+
+    private AdaptiveThroughputControlChannelModule getTarget(long latencyThreshold) {
+        return new AdaptiveThroughputControlChannelModule(10, 100, 1000, 10, 0.5, latencyThreshold,
+                Collections.singleton(ReasonCodes.DISPATCH_ERROR));
+    }
+
+    private static Notification createFailedNotification(int reasonCode) {
+        Notification notification = Dummy.createNotification(Notification.Event.FAILED);
+        notification.setId(EnvelopeId.newId());
+        notification.setReason(new Reason(reasonCode, "Failure"));
+        return notification;
+    }
+
+    @Test
+    public void onReceiving_acceptedNotification_shouldIncreaseThroughput() {
+        // Arrange
+        AdaptiveThroughputControlChannelModule target = getTarget(0);
+        Notification notification = Dummy.createNotification(Notification.Event.ACCEPTED);
+        notification.setId(EnvelopeId.newId());
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            target.onReceiving(notification);
+        }
+
+        // Assert
+        assertTrue(target.getCurrentThroughput() > 100);
+    }
+
+    @Test
+    public void onReceiving_failedNotificationWithThrottlingReason_shouldDecreaseThroughput() {
+        // Arrange
+        AdaptiveThroughputControlChannelModule target = getTarget(0);
+
+        // Act
+        target.onReceiving(createFailedNotification(ReasonCodes.DISPATCH_ERROR));
+        target.onReceiving(createFailedNotification(ReasonCodes.DISPATCH_ERROR));
+
+        // Assert
+        assertEquals(50, target.getCurrentThroughput(), 0.001);
+    }
+
+    @Test
+    public void onReceiving_failedNotificationWithOtherReason_shouldKeepThroughput() {
+        // Arrange
+        AdaptiveThroughputControlChannelModule target = getTarget(0);
+
+        // Act
+        target.onReceiving(createFailedNotification(ReasonCodes.ROUTING_DESTINATION_NOT_FOUND));
+
+        // Assert
+        assertEquals(100, target.getCurrentThroughput(), 0.001);
+    }
+
+    @Test
+    public void onReceiving_slowCommandResponse_shouldDecreaseThroughput() throws InterruptedException {
+        // Arrange
+        AdaptiveThroughputControlChannelModule target = getTarget(10);
+        Command request = Dummy.createCommand();
+        Command response = new Command(request.getId());
+        response.setMethod(request.getMethod());
+        response.setStatus(Command.CommandStatus.SUCCESS);
+
+        // Act
+        target.onSending(request);
+        Thread.sleep(50);
+        target.onReceiving(response);
+
+        // Assert
+        assertEquals(50, target.getCurrentThroughput(), 0.001);
+    }
+
+    @Test
+    public void onReceiving_fastCommandResponse_shouldIncreaseThroughput() {
+        // Arrange
+        AdaptiveThroughputControlChannelModule target = getTarget(1000);
+        Command request = Dummy.createCommand();
+        Command response = new Command(request.getId());
+        response.setMethod(request.getMethod());
+        response.setStatus(Command.CommandStatus.SUCCESS);
+
+        // Act
+        target.onSending(request);
+        target.onReceiving(response);
+
+        // Assert
+        assertTrue(target.getCurrentThroughput() > 100);
+    }
+
+    @Test
+    public void register_channel_shouldReportThroughputGauge() {
+        // Arrange
+        AdaptiveThroughputControlChannelModule target = getTarget(0);
+        long reportedThroughput = getReportedThroughput();
+
+        // Act
+        AdaptiveThroughputControlChannelModule.register(mock(Channel.class), target);
+
+        // Assert
+        assertEquals(100, getReportedThroughput() - reportedThroughput);
+        target.onStateChanged(Session.SessionState.FINISHED);
+        assertEquals(reportedThroughput, getReportedThroughput());
+    }
+
+    @Test
+    public void onReceiving_failedNotificationWithGeneralError_shouldNotDecreaseThroughputByDefault() {
+        // Arrange
+        AdaptiveThroughputControlChannelModule target = new AdaptiveThroughputControlChannelModule(10, 100, 1000);
+
+        // Act
+        target.onReceiving(createFailedNotification(ReasonCodes.GENERAL_ERROR));
+
+        // Assert
+        assertEquals(100, target.getCurrentThroughput(), 0);
+    }
+
+    @Test
+    public void onStateChanged_finished_shouldStopReportingThroughputGauge() {
+        // Arrange
+        AdaptiveThroughputControlChannelModule target = getTarget(0);
+        AdaptiveThroughputControlChannelModule.register(mock(Channel.class), target);
+        long reportedThroughput = getReportedThroughput();
+        target.onReceiving(createFailedNotification(ReasonCodes.DISPATCH_ERROR));
+        long decreasedThroughput = getReportedThroughput();
+
+        // Act
+        target.onStateChanged(Session.SessionState.FINISHED);
+
+        // Assert
+        assertEquals(50, reportedThroughput - decreasedThroughput);
+        assertEquals(50, decreasedThroughput - getReportedThroughput());
+    }
+
+    private static long getReportedThroughput() {
+        Long value = MetricsRegistry.getShared().snapshot().get(MetricNames.CHANNEL_ADAPTIVE_THROUGHPUT);
+        return value != null ? value : 0;
+    }
+}
@@ -0,0 +1,128 @@
+package org.limeprotocol.network.modules;
+
+import org.junit.Test;
+import org.limeprotocol.EnvelopeId;
+import org.limeprotocol.Message;
+import org.limeprotocol.Node;
+import org.limeprotocol.testHelpers.Dummy;
+import org.limeprotocol.util.RotatingBloomFilter;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DiscardDuplicatesChannelModuleTest {
+
+    private static Message copyOf(Message message) {
+        Message copy = new Message(message.getId());
+        copy.setFrom(message.getFrom().copy());
+        copy.setTo(message.getTo());
+        copy.setContent(message.getContent());
+        return copy;
+    }
+
+    @Test
+    public void onReceiving_sameIdAndSender_shouldDiscardDuplicate() {
+        // Arrange
+        DiscardDuplicatesChannelModule target = new DiscardDuplicatesChannelModule();
+        Message message = Dummy.createMessage(Dummy.createTextContent());
+
+        // Act
+        Message first = target.onReceiving(message);
+        Message second = target.onReceiving(copyOf(message));
+
+        // Assert
+        assertSame(message, first);
+        assertNull(second);
+    }
+
+    @Test
+    public void onReceiving_repeatedDuplicatesFromSenderInOtherCase_shouldDiscardAll() {
+        // Arrange
+        DiscardDuplicatesChannelModule target = new DiscardDuplicatesChannelModule();
+        Message message = Dummy.createMessage(Dummy.createTextContent());
+        message.setFrom(Node.parse("john@limeprotocol.org/home"));
+        Message duplicate = copyOf(message);
+        duplicate.setFrom(Node.parse("JOHN@LimeProtocol.org/Home"));
+
+        // Act
+        Message first = target.onReceiving(message);
+        Message second = target.onReceiving(duplicate);
+        Message third = target.onReceiving(copyOf(message));
+
+        // Assert
+        assertSame(message, first);
+        assertNull(second);
+        assertNull(third);
+    }
+
+    @Test
+    public void onReceiving_sameIdFromOtherSender_shouldDeliver() {
+        // Arrange
+        DiscardDuplicatesChannelModule target = new DiscardDuplicatesChannelModule();
+        Message message = Dummy.createMessage(Dummy.createTextContent());
+        Message otherMessage = copyOf(message);
+        otherMessage.setFrom(Dummy.createNode());
+
+        // Act
+        Message first = target.onReceiving(message);
+        Message second = target.onReceiving(otherMessage);
+
+        // Assert
+        assertSame(message, first);
+        assertSame(otherMessage, second);
+    }
+
+    @Test
+    public void onReceiving_messageWithoutId_shouldDeliver() {
+        // Arrange
+        DiscardDuplicatesChannelModule target = new DiscardDuplicatesChannelModule();
+        Message message = Dummy.createMessage(Dummy.createTextContent());
+        message.setId(null);
+
+        // Act
+        Message first = target.onReceiving(message);
+        Message second = target.onReceiving(message);
+
+        // Assert
+        assertSame(message, first);
+        assertSame(message, second);
+    }
+
+    @Test
+    public void onReceiving_duplicateAfterWindow_shouldDeliver() throws InterruptedException {
+        // Arrange
+        DiscardDuplicatesChannelModule target = new DiscardDuplicatesChannelModule(100, 100);
+        Message message = Dummy.createMessage(Dummy.createTextContent());
+
+        // Act
+        target.onReceiving(message);
+        Thread.sleep(150);
+        Message actual = target.onReceiving(message);
+
+        // Assert
+        assertSame(message, actual);
+    }
+
+    @Test
+    public void onReceiving_newMessagesOnBloomFilterFalsePositives_shouldDeliver() {
+        // Arrange
+        RotatingBloomFilter bloomFilter = new RotatingBloomFilter(1, 0.5, 1, TimeUnit.MINUTES);
+        DiscardDuplicatesChannelModule target = new DiscardDuplicatesChannelModule(1000, 60000, bloomFilter);
+        Message message = Dummy.createMessage(Dummy.createTextContent());
+        int count = 500;
+
+        for (int i = 0; i < count; i++) {
+            message.setId(EnvelopeId.newId());
+
+            // Act
+            Message first = target.onReceiving(message);
+            Message second = target.onReceiving(copyOf(message));
+
+            // Assert
+            assertSame(message, first);
+            assertNull(second);
+        }
+        assertTrue(bloomFilter.mightContain(EnvelopeId.newId()));
+    }
+}
@@ -0,0 +1,146 @@
+package org.limeprotocol.network.modules;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.Message;
+import org.limeprotocol.Node;
+import org.limeprotocol.Notification;
+import org.limeprotocol.metrics.Counter;
+import org.limeprotocol.metrics.MetricNames;
+import org.limeprotocol.metrics.MetricsRegistry;
+import org.limeprotocol.network.Channel;
+import org.limeprotocol.testHelpers.Dummy;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class NotifyReceiptChannelModuleTest {
+
+    @Mock
+    private Channel channel;
+    @Captor
+    private ArgumentCaptor<Notification> notificationCaptor;
+
+    private Node localNode;
+
+    @Before
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        localNode = Dummy.createNode();
+        when(channel.getLocalNode()).thenReturn(localNode);
+    }
+
+    @Test
+    public void onReceiving_multipleMessages_shouldSendReceiptsInOrder() throws Exception {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        NotifyReceiptChannelModule target = new NotifyReceiptChannelModule(channel, executor);
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Message message = Dummy.createMessage(Dummy.createTextContent());
+            message.setTo(localNode);
+            messages.add(message);
+        }
+
+        // Act
+        for (Message message : messages) {
+            target.onReceiving(message);
+        }
+        executor.shutdown();
+        while (target.getPendingReceiptsCount() > 0 || !executor.awaitTermination(10, TimeUnit.MILLISECONDS)) {
+            Thread.sleep(10);
+        }
+
+        // Assert
+        verify(channel, times(messages.size())).sendNotification(notificationCaptor.capture());
+        List<Notification> notifications = notificationCaptor.getAllValues();
+        for (int i = 0; i < messages.size(); i++) {
+            assertEquals(messages.get(i).getId(), notifications.get(i).getId());
+            assertEquals(messages.get(i).getFrom(), notifications.get(i).getTo());
+            assertEquals(Notification.Event.RECEIVED, notifications.get(i).getEvent());
+            assertEquals(Notification.class, notifications.get(i).getClass());
+        }
+    }
+
+    @Test
+    public void onReceiving_messageToOtherNode_shouldNotSendReceipt() throws Exception {
+        // Arrange
+        NotifyReceiptChannelModule target = new NotifyReceiptChannelModule(channel);
+        Message message = Dummy.createMessage(Dummy.createTextContent());
+
+        // Act
+        target.onReceiving(message);
+
+        // Assert
+        assertEquals(0, target.getPendingReceiptsCount());
+        verify(channel, never()).sendNotification(any(Notification.class));
+    }
+
+    @Test
+    public void onReceiving_sendNotificationThrowsRuntimeException_shouldSendNextReceipts() throws Exception {
+        // Arrange
+        doThrow(new IllegalArgumentException("notification")).doNothing().when(channel).sendNotification(any(Notification.class));
+        NotifyReceiptChannelModule target = new NotifyReceiptChannelModule(channel, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        Message message1 = Dummy.createMessage(Dummy.createTextContent());
+        message1.setTo(localNode);
+        Message message2 = Dummy.createMessage(Dummy.createTextContent());
+        message2.setTo(localNode);
+
+        // Act
+        target.onReceiving(message1);
+        target.onReceiving(message2);
+
+        // Assert
+        verify(channel, times(2)).sendNotification(notificationCaptor.capture());
+        assertEquals(message2.getId(), notificationCaptor.getAllValues().get(1).getId());
+        assertEquals(0, target.getPendingReceiptsCount());
+    }
+
+    @Test
+    public void onReceiving_pendingReceiptsFull_shouldDropReceipt() throws Exception {
+        // Arrange
+        final List<Runnable> scheduled = new ArrayList<>();
+        NotifyReceiptChannelModule target = new NotifyReceiptChannelModule(channel, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                scheduled.add(command);
+            }
+        }, 2);
+        Counter droppedReceipts = MetricsRegistry.getShared().getCounter(MetricNames.CHANNEL_RECEIPTS_DROPPED);
+        long droppedCount = droppedReceipts.get();
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Message message = Dummy.createMessage(Dummy.createTextContent());
+            message.setTo(localNode);
+            messages.add(message);
+        }
+
+        // Act
+        for (Message message : messages) {
+            assertSame(message, target.onReceiving(message));
+        }
+        scheduled.get(0).run();
+
+        // Assert
+        assertEquals(droppedCount + 1, droppedReceipts.get());
+        verify(channel, times(2)).sendNotification(notificationCaptor.capture());
+        assertEquals(messages.get(0).getId(), notificationCaptor.getAllValues().get(0).getId());
+        assertEquals(messages.get(1).getId(), notificationCaptor.getAllValues().get(1).getId());
+    }
+}
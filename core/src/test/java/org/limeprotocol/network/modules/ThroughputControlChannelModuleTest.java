@@ -6,6 +6,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.limeprotocol.EnvelopeId;
 import org.limeprotocol.Message;
+import org.limeprotocol.Node;
+import org.limeprotocol.Notification;
 import org.limeprotocol.client.ClientChannel;
 import org.limeprotocol.testHelpers.Dummy;
 import org.mockito.Mock;
@@ -62,4 +64,88 @@ public class ThroughputControlChannelModuleTest {
         Assert.assertTrue(stopwatch.elapsed(TimeUnit.MILLISECONDS) >= 3950);
         Assert.assertTrue(stopwatch.elapsed(TimeUnit.MILLISECONDS) < 4050);
     }
+
+    @Test
+    public void tryAcquire_destinationThroughputExceeded_shouldNotThrottleOtherDestinations() {
+        // Arrange
+        ThroughputControlChannelModule target = getTarget(0);
+        target.setDestinationThroughput(1);
+        Message throttledMessage = Dummy.createMessage(Dummy.createTextContent());
+        Message otherMessage = Dummy.createMessage(Dummy.createTextContent());
+        otherMessage.setTo(Dummy.createNode());
+
+        // Act
+        long firstWait = target.tryAcquire(throttledMessage);
+        long secondWait = target.tryAcquire(throttledMessage);
+        long otherWait = target.tryAcquire(otherMessage);
+
+        // Assert
+        Assert.assertEquals(0, firstWait);
+        Assert.assertTrue(secondWait > 0);
+        Assert.assertEquals(0, otherWait);
+    }
+
+    @Test
+    public void tryAcquire_envelopeTypeThroughputExceeded_shouldNotThrottleOtherTypes() {
+        // Arrange
+        ThroughputControlChannelModule target = getTarget(0);
+        target.setEnvelopeTypeThroughput(Message.class, 1);
+        Message message = Dummy.createMessage(Dummy.createTextContent());
+
+        // Act
+        long firstWait = target.tryAcquire(message);
+        long secondWait = target.tryAcquire(message);
+        long notificationWait = target.tryAcquire(Dummy.createNotification(Notification.Event.RECEIVED));
+
+        // Assert
+        Assert.assertEquals(0, firstWait);
+        Assert.assertTrue(secondWait > 0);
+        Assert.assertEquals(0, notificationWait);
+    }
+
+    @Test
+    public void tryAcquire_domainThroughputExceeded_shouldNotConsumeGlobalThroughput() {
+        // Arrange
+        ThroughputControlChannelModule target = getTarget(2);
+        Message message = Dummy.createMessage(Dummy.createTextContent());
+        target.setDomainThroughput(message.getTo().getDomain(), 1);
+        Message otherMessage = Dummy.createMessage(Dummy.createTextContent());
+        otherMessage.setTo(Dummy.createNode());
+
+        // Act
+        long firstWait = target.tryAcquire(message);
+        long secondWait = target.tryAcquire(message);
+        long otherWait = target.tryAcquire(otherMessage);
+
+        // Assert
+        Assert.assertEquals(0, firstWait);
+        Assert.assertTrue(secondWait > 0);
+        Assert.assertEquals(0, otherWait);
+    }
+
+    @Test
+    public void tryAcquire_differentCaseDestination_shouldShareDomainAndDestinationThroughput() {
+        // Arrange
+        ThroughputControlChannelModule target = getTarget(0);
+        target.setDomainThroughput("Limeprotocol.ORG", 2);
+        target.setDestinationThroughput(1);
+        Message message = Dummy.createMessage(Dummy.createTextContent());
+        message.setTo(Node.parse("john@limeprotocol.org/home"));
+        Message upperCaseMessage = Dummy.createMessage(Dummy.createTextContent());
+        upperCaseMessage.setTo(Node.parse("JOHN@LIMEPROTOCOL.ORG/work"));
+        Message otherMessage = Dummy.createMessage(Dummy.createTextContent());
+        otherMessage.setTo(Node.parse("mary@LimeProtocol.org"));
+
+        // Act
+        long firstWait = target.tryAcquire(message);
+        long upperCaseWait = target.tryAcquire(upperCaseMessage);
+        long otherWait = target.tryAcquire(otherMessage);
+        long domainWait = target.tryAcquire(otherMessage);
+
+        // Assert
+        Assert.assertEquals(0, firstWait);
+        Assert.assertTrue(upperCaseWait > 0);
+        Assert.assertEquals(0, otherWait);
+        Assert.assertTrue(domainWait > 0);
+    }
 }
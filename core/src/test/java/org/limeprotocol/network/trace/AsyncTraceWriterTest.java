@@ -0,0 +1,118 @@
+package org.limeprotocol.network.trace;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.limeprotocol.Message;
+import org.limeprotocol.MediaType;
+import org.limeprotocol.Notification;
+import org.limeprotocol.PlainDocument;
+import org.limeprotocol.network.TraceWriter;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+import static org.limeprotocol.testHelpers.Dummy.*;
+
+public class AsyncTraceWriterTest {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void trace_envelopeWithBytes_writesStructuredJsonLine() throws Exception {
+        // Arrange
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        AsyncTraceWriter target = new AsyncTraceWriter(outputStream);
+        Message message = createMessage(createPlainDocument());
+        message.setFrom(createNode());
+        message.setTo(createNode());
+        byte[] messageBytes = new JacksonEnvelopeSerializer().serialize(message).getBytes(UTF8);
+
+        // Act
+        target.trace(message, messageBytes, TraceWriter.DataOperation.SEND);
+        target.trace("closing", TraceWriter.DataOperation.RECEIVE);
+        target.close();
+
+        // Assert
+        String[] lines = new String(outputStream.toByteArray(), UTF8).split("\n");
+        assertEquals(2, lines.length);
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode record = mapper.readTree(lines[0]);
+        assertEquals("send", record.get("operation").asText());
+        assertEquals("message", record.get("type").asText());
+        assertEquals(message.getId(), record.get("id").asText());
+        assertEquals(message.getFrom().toString(), record.get("from").asText());
+        assertEquals(message.getTo().toString(), record.get("to").asText());
+        assertEquals(message.getType().toString(), record.get("mediaType").asText());
+        assertEquals(messageBytes.length, record.get("size").asInt());
+        assertEquals(mapper.readTree(messageBytes), record.get("envelope"));
+        assertTrue(record.get("timestamp").asLong() > 0);
+        assertEquals("closing", mapper.readTree(lines[1]).get("data").asText());
+        assertEquals(2, target.getWrittenCount());
+    }
+
+    @Test
+    public void trace_samplers_tracesSampledEnvelopesOnly() throws Exception {
+        // Arrange
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        MediaType tracedMediaType = MediaType.parse("text/x-traced");
+        AsyncTraceWriter target = new AsyncTraceWriter(outputStream, 64,
+                TraceSamplers.anyOf(TraceSamplers.oneIn(4), TraceSamplers.mediaTypes(tracedMediaType)), false);
+
+        // Act
+        for (int i = 0; i < 8; i++) {
+            target.trace(createMessage(createPlainDocument()), new byte[10], TraceWriter.DataOperation.RECEIVE);
+        }
+        Message tracedMessage = createMessage(createPlainDocument());
+        tracedMessage.setContent(new PlainDocument("traced", tracedMediaType));
+        target.trace(tracedMessage, new byte[10], TraceWriter.DataOperation.RECEIVE);
+        target.close();
+
+        // Assert
+        assertEquals(3, target.getWrittenCount());
+        assertFalse(new String(outputStream.toByteArray(), UTF8).contains("\"envelope\""));
+    }
+
+    @Test
+    public void trace_slowOutputStream_dropsRecordsWithoutBlocking() throws Exception {
+        // Arrange
+        final CountDownLatch writeLatch = new CountDownLatch(1);
+        OutputStream blockedOutputStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    writeLatch.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+        AsyncTraceWriter target = new AsyncTraceWriter(blockedOutputStream, 8, TraceSamplers.all(), true);
+        int tracesCount = 1000;
+
+        // Act
+        long startTime = System.nanoTime();
+        for (int i = 0; i < tracesCount; i++) {
+            target.trace(createNotification(Notification.Event.RECEIVED), new byte[10], TraceWriter.DataOperation.SEND);
+        }
+        long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+        long droppedCount = target.getDroppedCount();
+        writeLatch.countDown();
+        target.close();
+
+        // Assert
+        assertTrue(elapsedMillis < 1000);
+        assertTrue(droppedCount >= tracesCount - 8 - 1);
+        assertEquals(tracesCount, target.getWrittenCount() + droppedCount);
+    }
+}
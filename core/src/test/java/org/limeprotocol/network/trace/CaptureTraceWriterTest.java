@@ -0,0 +1,63 @@
+package org.limeprotocol.network.trace;
+
+import org.junit.Test;
+import org.limeprotocol.Envelope;
+import org.limeprotocol.Notification;
+import org.limeprotocol.network.TraceWriter;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.serialization.RawEnvelope;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.limeprotocol.testHelpers.Dummy.*;
+
+public class CaptureTraceWriterTest {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void trace_envelopesBeyondMappingSize_readsSameRecordsInOrder() throws Exception {
+        // Arrange
+        File file = File.createTempFile("lime", ".cap");
+        file.deleteOnExit();
+        JacksonEnvelopeSerializer serializer = new JacksonEnvelopeSerializer();
+        List<byte[]> envelopesBytes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Envelope envelope = i % 3 == 0 ? createNotification(Notification.Event.RECEIVED) :
+                    i % 3 == 1 ? createMessage(createPlainDocument()) : createCommand(createPlainDocument());
+            envelopesBytes.add(serializer.serialize(envelope).getBytes(UTF8));
+        }
+        byte[] rawBytes = serializer.serialize(createMessage(createPlainDocument())).getBytes(UTF8);
+        CaptureTraceWriter target = new CaptureTraceWriter(file, 512);
+
+        // Act
+        for (int i = 0; i < envelopesBytes.size(); i++) {
+            target.trace(null, envelopesBytes.get(i), i % 2 == 0 ? TraceWriter.DataOperation.SEND : TraceWriter.DataOperation.RECEIVE);
+        }
+        target.trace(RawEnvelope.parse(rawBytes), TraceWriter.DataOperation.RECEIVE);
+        target.trace("ignored", TraceWriter.DataOperation.RECEIVE);
+        target.close();
+
+        // Assert
+        assertEquals(envelopesBytes.size() + 1, target.getRecordsCount());
+        try (CaptureReader reader = new CaptureReader(file)) {
+            assertTrue(reader.getStartTimeMillis() <= System.currentTimeMillis());
+            long previousTimestamp = 0;
+            for (int i = 0; i < envelopesBytes.size(); i++) {
+                CaptureRecord record = reader.read();
+                assertNotNull(record);
+                assertArrayEquals(envelopesBytes.get(i), record.getEnvelopeBytes());
+                assertEquals(i % 2 == 0 ? TraceWriter.DataOperation.SEND : TraceWriter.DataOperation.RECEIVE, record.getOperation());
+                assertTrue(record.getTimestamp(TimeUnit.NANOSECONDS) >= previousTimestamp);
+                previousTimestamp = record.getTimestamp(TimeUnit.NANOSECONDS);
+            }
+            assertArrayEquals(rawBytes, reader.read().getEnvelopeBytes());
+            assertNull(reader.read());
+        }
+    }
+}
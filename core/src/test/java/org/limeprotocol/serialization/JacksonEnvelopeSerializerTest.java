@@ -8,6 +8,7 @@ import org.limeprotocol.Session.SessionState;
 import org.limeprotocol.security.GuestAuthentication;
 import org.limeprotocol.security.PlainAuthentication;
 import org.limeprotocol.testHelpers.JsonConstants;
+import org.limeprotocol.serialization.jackson.LazyDocument;
 import org.limeprotocol.util.StringUtils;
 
 import java.util.*;
@@ -236,7 +237,28 @@ public class JacksonEnvelopeSerializerTest {
         Envelope envelope = target.deserialize(json);
         assertThat(envelope).isInstanceOf(Session.class);
     }
-    
+
+    @Test
+    public void deserialize_SerializedNegotiatingSession_ReturnsSameOptions() {
+        // Arrange
+        Session session = createSession(SessionState.NEGOTIATING);
+        session.setEncryptionOptions(new SessionEncryption[] { SessionEncryption.NONE, SessionEncryption.TLS });
+        session.setCompressionOptions(new SessionCompression[] { SessionCompression.NONE });
+        session.setSchemeOptions(new AuthenticationScheme[] { AuthenticationScheme.GUEST, AuthenticationScheme.PLAIN });
+
+        // Act
+        Session result = (Session) target.deserialize(target.serialize(session));
+
+        // Assert
+        assertThat(result.getId()).isEqualTo(session.getId());
+        assertThat(result.getFrom()).isEqualTo(session.getFrom());
+        assertThat(result.getState()).isEqualTo(SessionState.NEGOTIATING);
+        assertThat(result.getEncryptionOptions()).containsOnly(SessionEncryption.NONE, SessionEncryption.TLS);
+        assertThat(result.getCompressionOptions()).containsOnly(SessionCompression.NONE);
+        assertThat(result.getSchemeOptions()).containsOnly(AuthenticationScheme.GUEST, AuthenticationScheme.PLAIN);
+        assertThat(result.getAuthentication()).isNull();
+    }
+
     @Test
     public void deserialize_AuthenticatingSession_ReturnsValidInstance() {
         // Arrange
@@ -715,6 +737,103 @@ public class JacksonEnvelopeSerializerTest {
         assertEquals(reasonDescription, notification.getReason().getDescription());
     }
 
+    @Test
+    public void deserialize_LazyDocumentsJsonContent_ReturnsNotMaterializedDocument()
+    {
+        String id = EnvelopeId.newId();
+        Node from = createNode();
+        String json = StringUtils.format(
+                "{\"id\":\"{0}\",\"from\":\"{1}\",\"type\":\"application/vnd.takenet.invoice+json\",\"content\":{\"total\":10.10,\"items\":[{\"price\":1.00}]}}",
+                id,
+                from);
+        JacksonEnvelopeSerializer lazyTarget = new JacksonEnvelopeSerializer(true);
+
+        Envelope envelope = lazyTarget.deserialize(json);
+
+        assertTrue(envelope instanceof Message);
+        Message message = (Message) envelope;
+        assertEquals(id, message.getId());
+        assertEquals(from, message.getFrom());
+        assertEquals(MediaType.parse("application/vnd.takenet.invoice+json"), message.getType());
+        assertTrue(message.getContent() instanceof LazyDocument);
+        LazyDocument content = (LazyDocument) message.getContent();
+        assertFalse(content.isMaterialized());
+
+        String serialized = lazyTarget.serialize(message);
+
+        assertFalse(content.isMaterialized());
+        assertThatJson(serialized).node("content").isEqualTo("{\"total\":10.10,\"items\":[{\"price\":1.00}]}");
+        assertTrue(serialized.contains("10.10"));
+        assertTrue(serialized.contains("1.00"));
+
+        Document document = LazyDocument.materialize(content);
+
+        assertTrue(content.isMaterialized());
+        assertTrue(document instanceof JsonDocument);
+        assertEquals(10.1, ((JsonDocument) document).get("total"));
+    }
+
+    @Test
+    public void deserialize_LazyDocumentsFormattedContent_SerializesReceivedJsonUnchanged()
+    {
+        String content = "{ \"total\" : 1.0E2,\n  \"items\" : [ {\"price\":100.000} ],\"note\":\"caf\\u00e9\" }";
+        String json = StringUtils.format(
+                "{\"id\":\"{0}\",\"type\":\"application/vnd.takenet.invoice+json\",\"content\":{1}}",
+                EnvelopeId.newId(),
+                content);
+        JacksonEnvelopeSerializer lazyTarget = new JacksonEnvelopeSerializer(true);
+
+        Message message = (Message) lazyTarget.deserialize(json);
+        String serialized = lazyTarget.serialize(message);
+
+        LazyDocument document = (LazyDocument) message.getContent();
+        assertEquals(content, document.getJson());
+        assertTrue(serialized.contains("\"content\":" + content));
+        assertFalse(document.isMaterialized());
+        assertEquals("café", document.getJsonNode().get("note").asText());
+    }
+
+    @Test
+    public void deserialize_LazyDocumentsPlainContent_ReturnsPlainDocument()
+    {
+        String json = StringUtils.format(
+                "{\"id\":\"{0}\",\"type\":\"text/plain\",\"content\":\"{1}\"}",
+                EnvelopeId.newId(),
+                "Hello world");
+        JacksonEnvelopeSerializer lazyTarget = new JacksonEnvelopeSerializer(true);
+
+        Message message = (Message) lazyTarget.deserialize(json);
+
+        assertEquals("Hello world", message.getContent().toString());
+        assertThatJson(lazyTarget.serialize(message)).node("content").isEqualTo("Hello world");
+        assertTrue(LazyDocument.materialize(message.getContent()) instanceof PlainDocument);
+    }
+
+    @Test
+    public void deserialize_InterningEnabled_ReturnsSharedNodes()
+    {
+        Node from = createNode();
+        Node to = createNode();
+        String json = StringUtils.format(
+                "{\"event\":\"received\",\"id\":\"{0}\",\"from\":\"{1}\",\"to\":\"{2}\"}",
+                EnvelopeId.newId(),
+                from,
+                to);
+
+        SerializationUtil.enableInterning(1024);
+        try {
+            Notification notification1 = (Notification) target.deserialize(json);
+            Notification notification2 = (Notification) target.deserialize(json);
+
+            assertEquals(from, notification1.getFrom());
+            assertEquals(to, notification1.getTo());
+            assertSame(notification1.getFrom(), notification2.getFrom());
+            assertSame(notification1.getTo(), notification2.getTo());
+        } finally {
+            SerializationUtil.disableInterning();
+        }
+    }
+
     //endregion Notification
 
     //endregion deserialize
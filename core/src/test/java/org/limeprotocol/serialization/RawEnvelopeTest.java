@@ -0,0 +1,89 @@
+package org.limeprotocol.serialization;
+
+import org.junit.Test;
+import org.limeprotocol.*;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import static net.javacrumbs.jsonunit.fluent.JsonFluentAssert.assertThatJson;
+import static org.junit.Assert.*;
+
+public class RawEnvelopeTest {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+    private final static String MESSAGE_JSON = "{\"id\":\"1\",\"from\":\"from@domain.com/home\",\"to\":\"to@domain.com\",\"type\":\"application/json\",\"content\":{\"total\":10.10,\"text\":\"a \\\"quoted\\\" text\"},\"metadata\":{\"key\":\"value\"}}";
+
+    @Test
+    public void parse_message_shouldReadHeaderFields() {
+        // Act
+        RawEnvelope target = RawEnvelope.parse(MESSAGE_JSON.getBytes(UTF8));
+
+        // Assert
+        assertEquals(Message.class, target.getEnvelopeType());
+        assertEquals("1", target.getId());
+        assertEquals(Node.parse("from@domain.com/home"), target.getFrom());
+        assertEquals(Node.parse("to@domain.com"), target.getTo());
+        assertNull(target.getPp());
+        assertEquals("value", target.getMetadata().get("key"));
+        assertFalse(target.isChanged());
+    }
+
+    @Test
+    public void toByteArray_notChanged_shouldReturnOriginalBytes() {
+        // Arrange
+        byte[] bytes = MESSAGE_JSON.getBytes(UTF8);
+        RawEnvelope target = RawEnvelope.parse(bytes);
+
+        // Act
+        byte[] actual = target.toByteArray();
+
+        // Assert
+        assertSame(bytes, actual);
+    }
+
+    @Test
+    public void toString_changedHeaderFields_shouldSpliceFields() {
+        // Arrange
+        String json = "  { \"id\" : \"1\", \"event\":\"received\" , \"from\":\"from@domain.com\",\"to\":\"to@domain.com/instance\" }";
+        byte[] buffer = ("xyz" + json + "xyz").getBytes(UTF8);
+        RawEnvelope target = RawEnvelope.parse(buffer, 3, json.length());
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("\"quoted\" key", "value");
+
+        // Act
+        target.setTo(Node.parse("other@domain.com"));
+        target.setPp(Node.parse("pp@domain.com/instance"));
+        target.setFrom(null);
+        target.setMetadata(metadata);
+        String actual = target.toString();
+
+        // Assert
+        assertThatJson(actual).isEqualTo("{\"id\":\"1\",\"event\":\"received\",\"to\":\"other@domain.com\",\"pp\":\"pp@domain.com/instance\",\"metadata\":{\"\\\"quoted\\\" key\":\"value\"}}");
+    }
+
+    @Test
+    public void toEnvelope_changedTo_shouldKeepDocument() {
+        // Arrange
+        RawEnvelope target = RawEnvelope.parse(MESSAGE_JSON.getBytes(UTF8));
+        target.setTo(Node.parse("other@domain.com/instance"));
+
+        // Act
+        Envelope envelope = target.toEnvelope(new JacksonEnvelopeSerializer());
+
+        // Assert
+        assertTrue(envelope instanceof Message);
+        Message message = (Message) envelope;
+        assertEquals(Node.parse("other@domain.com/instance"), message.getTo());
+        assertEquals(Node.parse("from@domain.com/home"), message.getFrom());
+        assertEquals("a \"quoted\" text", ((JsonDocument) message.getContent()).get("text"));
+        assertTrue(target.toString().contains("\"total\":10.10"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_unknownEnvelope_throwsIllegalArgumentException() {
+        // Act
+        RawEnvelope.parse("{\"id\":\"1\",\"to\":\"to@domain.com\"}".getBytes(UTF8));
+    }
+}
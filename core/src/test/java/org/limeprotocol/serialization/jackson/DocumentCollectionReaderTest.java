@@ -0,0 +1,85 @@
+package org.limeprotocol.serialization.jackson;
+
+import org.junit.Test;
+import org.limeprotocol.Document;
+import org.limeprotocol.JsonDocument;
+import org.limeprotocol.PlainDocument;
+
+import java.io.ByteArrayInputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class DocumentCollectionReaderTest {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void next_commandWithCollection_returnsItemsInOrder() throws Exception {
+        // Arrange
+        StringBuilder json = new StringBuilder("{\"id\":\"1\",\"method\":\"get\",\"status\":\"success\",\"type\":\"application/vnd.lime.collection+json\"," +
+                "\"resource\":{\"itemType\":\"application/x-contact+json\",\"items\":[");
+        int itemsCount = 1000;
+        for (int i = 0; i < itemsCount; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"name\":\"Contact ").append(i).append("\",\"tags\":[\"a\",\"b\"]}");
+        }
+        json.append("],\"total\":").append(itemsCount).append("},\"from\":\"postmaster@limeprotocol.org\"}");
+        DocumentCollectionReader target = DocumentCollectionReader.fromEnvelope(new ByteArrayInputStream(json.toString().getBytes(UTF8)));
+
+        // Act
+        List<Document> items = target.stream().collect(Collectors.toList());
+
+        // Assert
+        assertEquals("application/x-contact+json", target.getItemType().toString());
+        assertEquals(itemsCount, target.getTotal());
+        assertEquals(itemsCount, items.size());
+        for (int i = 0; i < itemsCount; i++) {
+            JsonDocument item = (JsonDocument) items.get(i);
+            assertEquals("Contact " + i, item.get("name"));
+            assertEquals(target.getItemType(), item.getMediaType());
+        }
+    }
+
+    @Test
+    public void next_itemTypeAfterItems_returnsBufferedItems() throws Exception {
+        // Arrange
+        String json = "{\"total\":2,\"items\":[\"first\",\"second\"],\"itemType\":\"text/plain\"}";
+        DocumentCollectionReader target = DocumentCollectionReader.fromCollection(new ByteArrayInputStream(json.getBytes(UTF8)));
+
+        // Act
+        Document first = target.next();
+        Document second = target.next();
+
+        // Assert
+        assertEquals(2, target.getTotal());
+        assertEquals("first", ((PlainDocument) first).getValue());
+        assertEquals("second", ((PlainDocument) second).getValue());
+        assertFalse(target.hasNext());
+    }
+
+    @Test
+    public void next_partiallyReceivedCollection_returnsItemsBeforeTheEnd() throws Exception {
+        // Arrange
+        PipedOutputStream outputStream = new PipedOutputStream();
+        PipedInputStream inputStream = new PipedInputStream(outputStream, 1024);
+        outputStream.write("{\"itemType\":\"text/plain\",\"items\":[\"first\",".getBytes(UTF8));
+        outputStream.flush();
+
+        // Act
+        DocumentCollectionReader target = DocumentCollectionReader.fromCollection(inputStream);
+        Document first = target.next();
+        outputStream.write("\"second\"]}".getBytes(UTF8));
+        outputStream.close();
+        Document second = target.next();
+
+        // Assert
+        assertEquals("first", first.toString());
+        assertEquals("second", second.toString());
+        assertFalse(target.hasNext());
+    }
+}
@@ -0,0 +1,162 @@
+package org.limeprotocol.serialization.jackson;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+import org.limeprotocol.*;
+import org.limeprotocol.security.*;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+import static org.limeprotocol.testHelpers.Dummy.*;
+
+/**
+ * Checks that the codec reads and writes the envelopes like the reflection based binding of the mapper,
+ * so the accessors of the codec don't drift from the envelope types.
+ */
+public class EnvelopeCodecTest {
+
+    @Test
+    public void readAndWrite_messages_shouldMatchMapper() throws Exception {
+        Message plainMessage = createMessage(createPlainDocument());
+        plainMessage.setPp(createNode());
+        plainMessage.setMetadata(createRandomMetadata());
+        assertCodecMatchesMapper(plainMessage);
+        assertCodecMatchesMapper(createMessage(createJsonDocument()));
+        assertCodecMatchesMapper(createMessage(createDocumentCollection(createJsonDocument(), createJsonDocument())));
+        assertCodecMatchesMapper(createMessage(new JsonDocument(createJsonMediaType())));
+    }
+
+    @Test
+    public void readAndWrite_notifications_shouldMatchMapper() throws Exception {
+        for (Notification.Event event : Notification.Event.values()) {
+            Notification notification = createNotification(event);
+            notification.setId(EnvelopeId.newId());
+            notification.setReason(event == Notification.Event.FAILED ? createReason() : null);
+            assertCodecMatchesMapper(notification);
+        }
+    }
+
+    @Test
+    public void readAndWrite_commands_shouldMatchMapper() throws Exception {
+        for (Command.CommandMethod method : Command.CommandMethod.values()) {
+            Command command = createCommand(createJsonDocument());
+            command.setMethod(method);
+            command.setUri(createRelativeLimeUri());
+            assertCodecMatchesMapper(command);
+        }
+        for (Command.CommandStatus status : Command.CommandStatus.values()) {
+            Command command = createCommand();
+            command.setUri(createAbsoluteLimeUri());
+            command.setStatus(status);
+            command.setReason(status == Command.CommandStatus.FAILURE ? createReason() : null);
+            assertCodecMatchesMapper(command);
+        }
+        Command collectionCommand = createCommand(createDocumentCollection(createPlainDocument(), createPlainDocument()));
+        collectionCommand.setStatus(Command.CommandStatus.SUCCESS);
+        assertCodecMatchesMapper(collectionCommand);
+    }
+
+    @Test
+    public void readAndWrite_sessions_shouldMatchMapper() throws Exception {
+        for (Session.SessionState state : Session.SessionState.values()) {
+            Session session = createSession(state);
+            session.setReason(state == Session.SessionState.FAILED ? createReason() : null);
+            assertCodecMatchesMapper(session);
+        }
+        Session negotiatingSession = createSession(Session.SessionState.NEGOTIATING);
+        negotiatingSession.setEncryptionOptions(SessionEncryption.values());
+        negotiatingSession.setCompressionOptions(SessionCompression.values());
+        negotiatingSession.setEncryption(SessionEncryption.TLS);
+        negotiatingSession.setCompression(SessionCompression.GZIP);
+        assertCodecMatchesMapper(negotiatingSession);
+        Authentication[] authentications = { new GuestAuthentication(), createPlainAuthentication(),
+                new TransportAuthentication(), new KeyAuthentication(), new ExternalAuthentication() };
+        for (Authentication authentication : authentications) {
+            Session session = createSession(Session.SessionState.AUTHENTICATING);
+            session.setSchemeOptions(Authentication.AuthenticationScheme.values());
+            session.setAuthentication(authentication);
+            assertCodecMatchesMapper(session);
+        }
+    }
+
+    @Test
+    public void read_typeAfterContent_shouldMatchMapper() throws Exception {
+        // Arrange
+        ObjectMapper mapper = JacksonEnvelopeSerializer.getObjectMapper();
+        EnvelopeCodec target = new EnvelopeCodec(mapper);
+        String json = "{\"id\":\"1\",\"content\":{\"itemType\":\"text/plain\",\"total\":1,\"items\":[\"item\"]},\"type\":\"application/vnd.lime.collection+json\"}";
+
+        // Act
+        Envelope envelope = target.read(json, false);
+
+        // Assert
+        Envelope expected = readWithMapper(mapper, json);
+        assertEquals(getDocumentClass(expected), getDocumentClass(envelope));
+        assertEquals(mapper.readTree(mapper.writeValueAsString(expected)), mapper.readTree(mapper.writeValueAsString(envelope)));
+    }
+
+    /**
+     * Asserts that the codec writes the envelope like the mapper, and that it reads the written JSON like the mapper,
+     * including the document type.
+     * @param envelope
+     * @throws IOException
+     */
+    public static void assertCodecMatchesMapper(Envelope envelope) throws IOException {
+        ObjectMapper mapper = JacksonEnvelopeSerializer.getObjectMapper();
+        EnvelopeCodec codec = new EnvelopeCodec(mapper);
+
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(writer)) {
+            codec.write(envelope, generator);
+        }
+        String json = writer.toString();
+        assertEquals(mapper.readTree(mapper.writeValueAsString(envelope)), mapper.readTree(json));
+
+        Envelope expected = readWithMapper(mapper, json);
+        Envelope actual = codec.read(json, false);
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(getDocumentClass(expected), getDocumentClass(actual));
+        assertEquals(mapper.readTree(mapper.writeValueAsString(expected)), mapper.readTree(mapper.writeValueAsString(actual)));
+    }
+
+    /**
+     * Reads the envelope with the reflection based binding of the mapper.
+     */
+    private static Envelope readWithMapper(ObjectMapper mapper, String json) throws IOException {
+        ObjectNode node = (ObjectNode) mapper.readTree(json);
+        if (node.has("content")) {
+            return mapper.convertValue(node, Message.class);
+        } else if (node.has("event")) {
+            return mapper.convertValue(node, Notification.class);
+        } else if (node.has("method")) {
+            return mapper.convertValue(node, Command.class);
+        }
+        JsonNode schemeNode = node.remove("scheme");
+        JsonNode authenticationNode = node.remove("authentication");
+        Session session = mapper.convertValue(node, Session.class);
+        if (schemeNode != null) {
+            Authentication.AuthenticationScheme scheme = mapper.convertValue(schemeNode, Authentication.AuthenticationScheme.class);
+            Class<? extends Authentication> authenticationClass =
+                    scheme == Authentication.AuthenticationScheme.GUEST ? GuestAuthentication.class :
+                    scheme == Authentication.AuthenticationScheme.PLAIN ? PlainAuthentication.class :
+                    scheme == Authentication.AuthenticationScheme.TRANSPORT ? TransportAuthentication.class :
+                    scheme == Authentication.AuthenticationScheme.KEY ? KeyAuthentication.class : ExternalAuthentication.class;
+            session.setAuthentication(authenticationNode == null ?
+                    mapper.convertValue(mapper.createObjectNode(), authenticationClass) :
+                    mapper.convertValue(authenticationNode, authenticationClass));
+        }
+        return session;
+    }
+
+    private static Class<?> getDocumentClass(Envelope envelope) {
+        Document document = envelope instanceof Message ? ((Message) envelope).getContent() :
+                envelope instanceof Command ? ((Command) envelope).getResource() : null;
+        return document == null ? null : document.getClass();
+    }
+}
@@ -7,6 +7,7 @@ import org.limeprotocol.network.TransportBase;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
@@ -18,7 +19,7 @@ public class TestTransport extends TransportBase {
 
     public TestTransport() {
         outgoingEnvelopes = new LinkedList<>();
-        sentEnvelopes = new ArrayList<>();
+        sentEnvelopes = Collections.synchronizedList(new ArrayList<Envelope>());
     }
 
     @Override
@@ -64,7 +65,17 @@ public class TestTransport extends TransportBase {
     }
 
     public Envelope[] getSentEnvelopes() {
-        return Iterators.toArray(sentEnvelopes.iterator(), Envelope.class);
+        synchronized (sentEnvelopes) {
+            return Iterators.toArray(sentEnvelopes.iterator(), Envelope.class);
+        }
+    }
+
+    public Envelope[] waitForSentEnvelopes(int count, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (sentEnvelopes.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return getSentEnvelopes();
     }
 
     public boolean isClosed() {
@@ -0,0 +1,44 @@
+package org.limeprotocol.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ByteArrayPoolTest {
+
+    @Test
+    public void acquire_releasedArray_shouldReuseArrayOfSameSizeClass() {
+        // Arrange
+        ByteArrayPool target = new ByteArrayPool(1024, 64 * 1024, 1024 * 1024);
+        byte[] array = target.acquire(3000);
+
+        // Act
+        target.release(array);
+        byte[] actual = target.acquire(2049);
+
+        // Assert
+        assertEquals(4096, array.length);
+        assertSame(array, actual);
+        assertEquals(0, target.getRetainedBytes());
+    }
+
+    @Test
+    public void release_moreThanMaxRetainedBytes_shouldDiscardArrays() {
+        // Arrange
+        ByteArrayPool target = new ByteArrayPool(1024, 64 * 1024, 8 * 1024);
+        byte[] largeArray = target.acquire(128 * 1024);
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            target.release(target.acquire(4096 + i));
+        }
+        for (int i = 0; i < 4; i++) {
+            target.release(new byte[4096]);
+        }
+        target.release(largeArray);
+
+        // Assert
+        assertEquals(128 * 1024, largeArray.length);
+        assertEquals(8 * 1024, target.getRetainedBytes());
+    }
+}
@@ -0,0 +1,39 @@
+package org.limeprotocol.util;
+
+import org.junit.Test;
+import org.limeprotocol.Node;
+
+import static org.junit.Assert.*;
+
+public class InternCacheTest {
+
+    @Test
+    public void get_sameKey_shouldReturnSameInstance() {
+        // Arrange
+        InternCache<Node> target = new InternCache<>(16, Node::parse);
+
+        // Act
+        Node node1 = target.get("name@domain.com/instance");
+        Node node2 = target.get(new String("name@domain.com/instance"));
+
+        // Assert
+        assertSame(node1, node2);
+        assertEquals(new Node("name", "domain.com", "instance"), node1);
+    }
+
+    @Test
+    public void get_moreKeysThanCapacity_shouldReturnEqualValues() {
+        // Arrange
+        InternCache<Node> target = new InternCache<>(4, Node::parse);
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            target.get("name" + i + "@domain.com");
+        }
+        Node actual = target.get("name0@domain.com");
+
+        // Assert
+        assertEquals(4, target.getCapacity());
+        assertEquals(new Node("name0", "domain.com"), actual);
+    }
+}
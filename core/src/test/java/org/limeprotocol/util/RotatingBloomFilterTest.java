@@ -0,0 +1,68 @@
+package org.limeprotocol.util;
+
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RotatingBloomFilterTest {
+
+    @Test
+    public void put_addedKeys_shouldBeContained() {
+        // Arrange
+        RotatingBloomFilter target = new RotatingBloomFilter(10000, 0.001, 1, TimeUnit.MINUTES);
+        String[] keys = new String[10000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = UUID.randomUUID().toString();
+        }
+
+        // Act
+        for (String key : keys) {
+            target.put(key);
+        }
+
+        // Assert
+        for (String key : keys) {
+            assertTrue(target.mightContain(key));
+            assertFalse(target.put(key));
+        }
+    }
+
+    @Test
+    public void mightContain_notAddedKeys_shouldRespectFalsePositiveProbability() {
+        // Arrange
+        RotatingBloomFilter target = new RotatingBloomFilter(10000, 0.001, 1, TimeUnit.MINUTES);
+        for (int i = 0; i < 10000; i++) {
+            target.put(UUID.randomUUID().toString());
+        }
+
+        // Act
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (target.mightContain(UUID.randomUUID().toString())) falsePositives++;
+        }
+
+        // Assert
+        assertTrue("False positives: " + falsePositives, falsePositives < 500);
+    }
+
+    @Test
+    public void mightContain_afterWindow_shouldForgetKeys() throws InterruptedException {
+        // Arrange
+        RotatingBloomFilter target = new RotatingBloomFilter(100, 0.001, 100, TimeUnit.MILLISECONDS);
+        String key = UUID.randomUUID().toString();
+        target.put(key);
+
+        // Act
+        Thread.sleep(60);
+        boolean afterHalfWindow = target.mightContain(key);
+        Thread.sleep(60);
+        boolean afterWindow = target.mightContain(key);
+
+        // Assert
+        assertTrue(afterHalfWindow);
+        assertFalse(afterWindow);
+    }
+}
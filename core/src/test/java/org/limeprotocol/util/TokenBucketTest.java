@@ -0,0 +1,131 @@
+package org.limeprotocol.util;
+
+import com.google.common.base.Stopwatch;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+
+    @Test
+    public void tryAcquire_fullBucket_shouldAcquireUpToCapacity() {
+        // Arrange
+        TokenBucket target = new TokenBucket(10, 5);
+
+        // Act
+        int acquired = 0;
+        for (int i = 0; i < 20; i++) {
+            if (target.tryAcquire()) acquired++;
+        }
+
+        // Assert
+        assertEquals(5, acquired);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_rateAboveOneTokenPerNanosecond_throwsIllegalArgumentException() {
+        // Act
+        new TokenBucket(TokenBucket.MAX_TOKENS_PER_SECOND + 1);
+    }
+
+    @Test
+    public void getTokensPerSecond_maxRate_shouldReturnRate() {
+        // Arrange
+        TokenBucket target = new TokenBucket(TokenBucket.MAX_TOKENS_PER_SECOND, 1);
+
+        // Act
+        int tokensPerSecond = target.getTokensPerSecond();
+
+        // Assert
+        assertEquals(TokenBucket.MAX_TOKENS_PER_SECOND, tokensPerSecond);
+        assertTrue(target.tryAcquire());
+    }
+
+    @Test
+    public void tryAcquire_idleBucket_shouldAcquireUpToCapacity() throws InterruptedException {
+        // Arrange
+        TokenBucket target = new TokenBucket(100, 5);
+        while (target.tryAcquire()) { }
+        Thread.sleep(200);
+
+        // Act
+        int acquired = 0;
+        for (int i = 0; i < 20; i++) {
+            if (target.tryAcquire()) acquired++;
+        }
+
+        // Assert
+        assertEquals(5, acquired);
+    }
+
+    @Test
+    public void tryAcquireOrGetWait_emptyBucket_shouldReturnWaitTime() {
+        // Arrange
+        TokenBucket target = new TokenBucket(10, 1);
+        target.tryAcquire();
+
+        // Act
+        long wait = target.tryAcquireOrGetWait();
+
+        // Assert
+        assertTrue(wait > 0);
+        assertTrue(wait <= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void release_acquiredToken_shouldAllowAcquireAgain() {
+        // Arrange
+        TokenBucket target = new TokenBucket(1, 1);
+        assertTrue(target.tryAcquire());
+        assertFalse(target.tryAcquire());
+
+        // Act
+        target.release();
+
+        // Assert
+        assertTrue(target.tryAcquire());
+    }
+
+    @Test
+    public void tryAcquire_multipleThreads_shouldRespectRate() throws InterruptedException {
+        // Arrange
+        final TokenBucket target = new TokenBucket(10);
+        final int totalThreads = 5;
+        final int workPerThread = 10;
+        final AtomicInteger acquired = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(totalThreads);
+
+        // Act
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        for (int i = 0; i < totalThreads; i++) {
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < workPerThread; i++) {
+                            if (target.tryAcquire(10, TimeUnit.SECONDS)) {
+                                acquired.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Assert.fail();
+                    }
+                }
+            });
+        }
+        executorService.shutdown();
+        executorService.awaitTermination(10, TimeUnit.SECONDS);
+        stopwatch.stop();
+
+        // Assert
+        assertEquals(totalThreads * workPerThread, acquired.get());
+        assertTrue(stopwatch.elapsed(TimeUnit.MILLISECONDS) >= 3950);
+        assertTrue(stopwatch.elapsed(TimeUnit.MILLISECONDS) < 4100);
+    }
+}
@@ -0,0 +1,47 @@
+package org.limeprotocol.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WeightedLaneQueueTest {
+
+    @Test
+    public void poll_saturatedLanes_shouldDequeueByWeight() throws InterruptedException {
+        // Arrange
+        WeightedLaneQueue<String> target = new WeightedLaneQueue<>(100, 2, 1);
+        for (int i = 0; i < 4; i++) {
+            target.put(0, "a" + i);
+            target.put(1, "b" + i);
+        }
+
+        // Act
+        StringBuilder actual = new StringBuilder();
+        String item;
+        while ((item = target.poll()) != null) {
+            actual.append(item).append(' ');
+        }
+
+        // Assert
+        assertEquals("a0 a1 b0 a2 a3 b1 b2 b3 ", actual.toString());
+        assertTrue(target.isEmpty());
+    }
+
+    @Test
+    public void put_fullQueue_shouldNotBlockFirstLane() throws InterruptedException {
+        // Arrange
+        WeightedLaneQueue<String> target = new WeightedLaneQueue<>(1, 1, 1);
+        target.put(1, "message");
+
+        // Act
+        target.put(0, "control");
+
+        // Assert
+        assertEquals(2, target.size());
+        assertEquals("control", target.poll(1, TimeUnit.SECONDS));
+        assertEquals("message", target.poll(1, TimeUnit.SECONDS));
+        assertNull(target.poll(10, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,66 @@
+package org.limeprotocol.messaging.serialization;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.Command;
+import org.limeprotocol.Document;
+import org.limeprotocol.MediaType;
+import org.limeprotocol.Message;
+import org.limeprotocol.messaging.Registrator;
+import org.limeprotocol.serialization.SerializationUtil;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.limeprotocol.messaging.testHelpers.MessagingTestDummy.*;
+import static org.limeprotocol.serialization.jackson.EnvelopeCodecTest.assertCodecMatchesMapper;
+import static org.limeprotocol.testHelpers.Dummy.*;
+
+/**
+ * Checks that the envelope codec binds the registered document types like the mapper.
+ */
+public class EnvelopeCodecMessagingTest {
+
+    @Before
+    public void setUp() throws Exception {
+        Registrator.registerDocuments();
+    }
+
+    @Test
+    public void readAndWrite_registeredDocumentTypes_shouldMatchMapper() throws Exception {
+        // Arrange
+        List<Document> documents = new ArrayList<>();
+        documents.add(createPlainText());
+        documents.add(createAccount());
+        documents.add(createCapability());
+        documents.add(createContact());
+        documents.add(createRoster());
+        documents.add(createDocumentContainer(createPlainText()));
+        documents.add(createSelect());
+        documents.add(createDocumentSelect());
+        documents.add(createWebLink(createUri()));
+        Set<MediaType> sampleTypes = new HashSet<>();
+        for (Document document : documents) {
+            sampleTypes.add(document.getMediaType());
+        }
+        // The registered types without a sample are checked with their default instances
+        for (Class<? extends Document> documentClass : SerializationUtil.getDocumentClasses()) {
+            Document document = documentClass.getConstructor().newInstance();
+            if (!sampleTypes.contains(document.getMediaType())) {
+                documents.add(document);
+            }
+        }
+
+        for (Document document : documents) {
+            Message message = createMessage(document);
+            Command command = createCommand(document);
+            command.setStatus(Command.CommandStatus.SUCCESS);
+
+            // Act and Assert
+            assertCodecMatchesMapper(message);
+            assertCodecMatchesMapper(command);
+        }
+    }
+}
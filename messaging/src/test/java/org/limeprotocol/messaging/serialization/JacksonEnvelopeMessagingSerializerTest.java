@@ -13,6 +13,7 @@ import org.limeprotocol.messaging.resources.Contact;
 import org.limeprotocol.messaging.resources.Receipt;
 import org.limeprotocol.messaging.testHelpers.MessagingJsonConstants;
 import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.serialization.SerializationUtil;
 import org.limeprotocol.testHelpers.Dummy;
 import org.limeprotocol.testHelpers.JsonConstants;
 import org.limeprotocol.util.StringUtils;
@@ -846,4 +847,19 @@ public class JacksonEnvelopeMessagingSerializerTest {
     //endregion Command
 
     //endregion deserialize method
-}
\ No newline at end of file
+
+    //region warmUp method
+
+    @Test
+    public void warmUp_RegisteredDocuments_WarmsUpDocumentTypes() {
+        // Act
+        int documentTypesCount = JacksonEnvelopeSerializer.warmUp(1);
+
+        // Assert
+        assertThat(documentTypesCount).isGreaterThan(0).isLessThanOrEqualTo(SerializationUtil.getDocumentClasses().size());
+        Message message = createMessage(createPlainText());
+        assertThat(((Message) target.deserialize(target.serialize(message))).getContent()).isInstanceOf(PlainText.class);
+    }
+
+    //endregion warmUp method
+}
@@ -1,6 +1,22 @@
 package org.limeprotocol.network;
 
+import org.limeprotocol.util.ByteArrayPool;
+
+/**
+ * Accumulates the bytes received from a stream and extracts the JSON documents from it.
+ * The documents boundaries are found by counting the brackets outside of the strings; the bytes are classified
+ * eight at a time, so the strings content and the values between the brackets are skipped a word at a time.
+ * The scanner state is kept between the reads, so each byte is scanned once even if a document is received in parts.
+ */
 public class JsonBuffer {
+    private final static int WORD_SIZE = 8;
+    private final static long LOW_BITS = 0x0101010101010101L;
+    private final static long HIGH_BITS = 0x8080808080808080L;
+    private final static long QUOTES = LOW_BITS * '"';
+    private final static long BACKSLASHES = LOW_BITS * '\\';
+    private final static long OPENING_BRACKETS = LOW_BITS * '{';
+    private final static long CLOSING_BRACKETS = LOW_BITS * '}';
+
     private int jsonStartPos;
     private int jsonCurPos;
     private int jsonStackedBrackets;
@@ -9,11 +25,43 @@ public class JsonBuffer {
     private boolean isEscaping;
     private byte[] buffer;
     private int bufferCurPos;
+    private final int bufferSize;
+    private volatile int maxBufferSize;
+    private final ByteArrayPool pool;
 
     public JsonBuffer(int bufferSize) {
-        buffer = new byte[bufferSize];
+        this(bufferSize, bufferSize);
+    }
+
+    /**
+     * Creates a buffer that grows on demand.
+     * @param bufferSize The initial buffer size.
+     * @param maxBufferSize The maximum buffer size, which limits the size of a JSON document.
+     */
+    public JsonBuffer(int bufferSize, int maxBufferSize) {
+        this(bufferSize, maxBufferSize, null);
     }
 
+    /**
+     * Creates a buffer that grows on demand, with arrays taken from a pool.
+     * While the buffer is released (see {@link #release()}), it doesn't hold an array.
+     * @param bufferSize The initial buffer size.
+     * @param maxBufferSize The maximum buffer size, which limits the size of a JSON document.
+     * @param pool The arrays pool, or null to allocate the arrays.
+     */
+    public JsonBuffer(int bufferSize, int maxBufferSize, ByteArrayPool pool) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("bufferSize");
+        if (maxBufferSize < bufferSize) throw new IllegalArgumentException("maxBufferSize");
+        this.bufferSize = bufferSize;
+        this.maxBufferSize = maxBufferSize;
+        this.pool = pool;
+        this.buffer = allocate(bufferSize);
+    }
+
+    /**
+     * Gets the buffer array, which may be larger than the buffer capacity if it was taken from a pool.
+     * @return The array, or null if the buffer is released.
+     */
     public byte[] getBuffer() {
         return buffer;
     }
@@ -26,49 +74,166 @@ public class JsonBuffer {
         bufferCurPos += bytes;
     }
 
+    /**
+     * Gets the number of bytes that can be written in the buffer array before it needs to grow.
+     * @return
+     */
+    public int getCapacity() {
+        return buffer == null ? 0 : Math.min(buffer.length, Math.max(maxBufferSize, bufferCurPos));
+    }
+
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    /**
+     * Changes the maximum buffer size, like after the maximum envelope size is negotiated with the server.
+     * A buffer larger than the new size is kept until it is released.
+     * @param maxBufferSize
+     */
+    public void setMaxBufferSize(int maxBufferSize) {
+        if (maxBufferSize < bufferSize) throw new IllegalArgumentException("maxBufferSize");
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    /**
+     * Ensures that the buffer has free space after the current position, doubling its size if it is full.
+     * @return false if the buffer is full and reached the maximum size.
+     */
+    public boolean ensureFreeSpace() {
+        if (buffer == null) {
+            buffer = allocate(bufferSize);
+        }
+        int capacity = getCapacity();
+        if (bufferCurPos < capacity) {
+            return true;
+        }
+        if (capacity >= maxBufferSize) {
+            return false;
+        }
+        byte[] newBuffer = allocate((int) Math.min((long) capacity * 2, maxBufferSize));
+        System.arraycopy(buffer, 0, newBuffer, 0, bufferCurPos);
+        free(buffer);
+        buffer = newBuffer;
+        return true;
+    }
+
+    /**
+     * Appends a byte to the buffer, like a byte read while the buffer was released.
+     * @param b
+     * @return false if the buffer is full and reached the maximum size.
+     */
+    public boolean append(byte b) {
+        if (!ensureFreeSpace()) {
+            return false;
+        }
+        buffer[bufferCurPos++] = b;
+        return true;
+    }
+
+    /**
+     * Returns the buffer array to the pool if the buffer is empty, so an idle connection doesn't hold it.
+     * The array is taken again from the pool in the next write.
+     * @return true if the array was released.
+     */
+    public boolean release() {
+        if (pool == null || buffer == null || bufferCurPos > 0) {
+            return false;
+        }
+        free(buffer);
+        buffer = null;
+        resetState();
+        return true;
+    }
+
+    /**
+     * Discards the buffer content and returns the array to the pool.
+     */
+    public void clear() {
+        bufferCurPos = 0;
+        resetState();
+        release();
+    }
+
+    private void resetState() {
+        jsonCurPos = 0;
+        jsonStartPos = 0;
+        jsonStackedBrackets = 0;
+        jsonStarted = false;
+        insideQuotes = false;
+        isEscaping = false;
+    }
+
+    private byte[] allocate(int size) {
+        return pool == null ? new byte[size] : pool.acquire(size);
+    }
+
+    private void free(byte[] array) {
+        if (pool != null) {
+            pool.release(array);
+        }
+    }
+
     public JsonBufferReadResult tryExtractJsonFromBuffer() {
+        if (buffer == null) {
+            return new JsonBufferReadResult(false, null);
+        }
         if (bufferCurPos > buffer.length) {
             throw new IllegalArgumentException("Buffer current pos or length value is invalid", null);
         }
 
         byte[] json = null;
         int jsonLength = 0;
-        for (int i = jsonCurPos; i < bufferCurPos; i++) {
-            jsonCurPos = i + 1;
-
-            if (buffer[i] == '"' && !isEscaping)
-            {
-                insideQuotes = !insideQuotes;
+        final byte[] buffer = this.buffer;
+        final int limit = bufferCurPos;
+        final int wordLimit = limit - WORD_SIZE;
+        int i = jsonCurPos;
+        scan:
+        while (i < limit) {
+            // Skips a whole word if it doesn't have a byte that changes the scanner state
+            if (i <= wordLimit) {
+                long word = getWord(buffer, i);
+                if (insideQuotes ? !hasStringDelimiter(word) : !hasStructuralByte(word)) {
+                    isEscaping = false;
+                    i += WORD_SIZE;
+                    continue;
+                }
             }
 
-            if (!insideQuotes) {
-
-                if (buffer[i] == '{') {
-                    jsonStackedBrackets++;
-                    if (!jsonStarted) {
-                        jsonStartPos = i;
-                        jsonStarted = true;
+            int wordEnd = Math.min(i + WORD_SIZE, limit);
+            for (; i < wordEnd; i++) {
+                byte b = buffer[i];
+                if (insideQuotes) {
+                    if (isEscaping) {
+                        isEscaping = false;
+                    } else if (b == '\\') {
+                        isEscaping = true;
+                    } else if (b == '"') {
+                        insideQuotes = false;
+                    }
+                } else {
+                    if (b == '"') {
+                        insideQuotes = true;
+                    } else if (b == '{') {
+                        jsonStackedBrackets++;
+                        if (!jsonStarted) {
+                            jsonStartPos = i;
+                            jsonStarted = true;
+                        }
+                    } else if (b == '}') {
+                        jsonStackedBrackets--;
                     }
-                } else if (buffer[i] == '}') {
-                    jsonStackedBrackets--;
-                }
 
-                if (jsonStarted &&
-                        jsonStackedBrackets == 0) {
-                    jsonLength = i - jsonStartPos + 1;
-                    break;
-                }
-            } else {
-                if (isEscaping)
-                {
-                    isEscaping = false;
-                }
-                else if (buffer[i] == '\\')
-                {
-                    isEscaping = true;
+                    if (jsonStarted &&
+                            jsonStackedBrackets == 0) {
+                        i++;
+                        jsonLength = i - jsonStartPos;
+                        break scan;
+                    }
                 }
             }
         }
+        jsonCurPos = i;
 
         if (jsonLength > 1) {
             json = new byte[jsonLength];
@@ -79,6 +244,7 @@ public class JsonBuffer {
             System.arraycopy(buffer, jsonLength + jsonStartPos, buffer, 0, bufferCurPos);
             jsonCurPos = 0;
             jsonStartPos = 0;
+            jsonStackedBrackets = 0;
             jsonStarted = false;
             insideQuotes = false;
             isEscaping = false;
@@ -89,6 +255,35 @@ public class JsonBuffer {
         return new JsonBufferReadResult(false, null);
     }
 
+    /**
+     * Reads eight bytes of the array as a little-endian word, to classify them at once.
+     */
+    private static long getWord(byte[] array, int offset) {
+        return (array[offset] & 0xFFL)
+                | (array[offset + 1] & 0xFFL) << 8
+                | (array[offset + 2] & 0xFFL) << 16
+                | (array[offset + 3] & 0xFFL) << 24
+                | (array[offset + 4] & 0xFFL) << 32
+                | (array[offset + 5] & 0xFFL) << 40
+                | (array[offset + 6] & 0xFFL) << 48
+                | (array[offset + 7] & 0xFFL) << 56;
+    }
+
+    private static boolean hasStringDelimiter(long word) {
+        return (hasZeroByte(word ^ QUOTES) | hasZeroByte(word ^ BACKSLASHES)) != 0;
+    }
+
+    private static boolean hasStructuralByte(long word) {
+        return (hasZeroByte(word ^ QUOTES) | hasZeroByte(word ^ OPENING_BRACKETS) | hasZeroByte(word ^ CLOSING_BRACKETS)) != 0;
+    }
+
+    /**
+     * Gets a non-zero value if any byte of the word is zero.
+     */
+    private static long hasZeroByte(long word) {
+        return (word - LOW_BITS) & ~word & HIGH_BITS;
+    }
+
     public class JsonBufferReadResult {
         private final boolean success;
         private final byte[] jsonBytes;
@@ -0,0 +1,215 @@
+package org.limeprotocol.network.tcp;
+
+import org.limeprotocol.network.TraceWriter;
+import org.limeprotocol.network.trace.CaptureReader;
+import org.limeprotocol.network.trace.CaptureRecord;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in peer that replays a capture of the {@link org.limeprotocol.network.trace.CaptureTraceWriter}
+ * to a {@link TcpTransport}, without a live server.
+ * The replayer listens on a loopback port and, when the transport connects, writes the envelopes received by the
+ * captured transport with their original timing, scaled by the speed, while the envelopes sent by the connected
+ * transport are read and discarded. It is intended for load and performance regression tests with real traffic
+ * patterns, and serves a single connection.
+ */
+public class CaptureReplayer implements Closeable {
+
+    /**
+     * Replays the envelopes as fast as the connection allows.
+     */
+    public final static double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+    private final File captureFile;
+    private final double speed;
+    private final TraceWriter.DataOperation replayedOperation;
+    private final ServerSocket serverSocket;
+    private final CountDownLatch completed;
+    private final AtomicLong replayedCount;
+    private final AtomicLong replayedBytes;
+    private final AtomicLong receivedBytes;
+    private volatile Socket socket;
+    private volatile IOException failure;
+    private volatile boolean isClosed;
+
+    /**
+     * Creates a replayer of the envelopes received by the captured transport.
+     * @param captureFile
+     * @param speed The replay speed, where 1 is the original timing, 2 is twice as fast and {@link #MAX_SPEED} doesn't wait.
+     * @throws IOException
+     */
+    public CaptureReplayer(File captureFile, double speed) throws IOException {
+        this(captureFile, speed, TraceWriter.DataOperation.RECEIVE, 0);
+    }
+
+    /**
+     * Creates a replayer.
+     * @param captureFile
+     * @param speed The replay speed, where 1 is the original timing, 2 is twice as fast and {@link #MAX_SPEED} doesn't wait.
+     * @param replayedOperation The operation of the replayed records, which is {@link TraceWriter.DataOperation#SEND}
+     *                          to replay a capture of the other side of the session.
+     * @param port The loopback port to listen, or 0 for any free port.
+     * @throws IOException
+     */
+    public CaptureReplayer(File captureFile, double speed, TraceWriter.DataOperation replayedOperation, int port) throws IOException {
+        if (captureFile == null) throw new IllegalArgumentException("captureFile");
+        if (!(speed > 0)) throw new IllegalArgumentException("speed");
+        if (replayedOperation == null) throw new IllegalArgumentException("replayedOperation");
+        this.captureFile = captureFile;
+        this.speed = speed;
+        this.replayedOperation = replayedOperation;
+        this.completed = new CountDownLatch(1);
+        this.replayedCount = new AtomicLong();
+        this.replayedBytes = new AtomicLong();
+        this.receivedBytes = new AtomicLong();
+        // Checks the capture before listening
+        new CaptureReader(captureFile).close();
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1);
+        Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptAndReplay();
+            }
+        }, "CaptureReplayer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Gets the URI for opening a {@link TcpTransport} to the replayer.
+     * @return
+     */
+    public URI getUri() {
+        return URI.create(String.format("net.tcp://%s:%d", serverSocket.getInetAddress().getHostAddress(), serverSocket.getLocalPort()));
+    }
+
+    /**
+     * Waits until all the envelopes are replayed.
+     * @param timeout
+     * @param timeUnit
+     * @return true if the replay completed, false if the timeout expired.
+     * @throws IOException if the replay failed.
+     * @throws InterruptedException
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit timeUnit) throws IOException, InterruptedException {
+        boolean isCompleted = completed.await(timeout, timeUnit);
+        if (failure != null) {
+            throw failure;
+        }
+        return isCompleted;
+    }
+
+    public long getReplayedCount() {
+        return replayedCount.get();
+    }
+
+    public long getReplayedBytes() {
+        return replayedBytes.get();
+    }
+
+    /**
+     * Gets the number of bytes sent by the connected transport.
+     * @return
+     */
+    public long getReceivedBytes() {
+        return receivedBytes.get();
+    }
+
+    /**
+     * Stops the replay and closes the connection.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        isClosed = true;
+        serverSocket.close();
+        Socket socket = this.socket;
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
+    private void acceptAndReplay() {
+        try (CaptureReader reader = new CaptureReader(captureFile)) {
+            // The connection is kept open after the replay, until the replayer is closed
+            Socket socket = serverSocket.accept();
+            this.socket = socket;
+            if (isClosed) {
+                socket.close();
+                return;
+            }
+            socket.setTcpNoDelay(true);
+            startDiscarding(socket.getInputStream());
+            replay(reader, new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+        } catch (IOException e) {
+            if (!isClosed) {
+                failure = e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            completed.countDown();
+        }
+    }
+
+    private void replay(CaptureReader reader, OutputStream outputStream) throws IOException, InterruptedException {
+        long replayStart = System.nanoTime();
+        long firstTimestamp = -1;
+        CaptureRecord record;
+        while ((record = reader.read()) != null) {
+            if (record.getOperation() != replayedOperation) {
+                continue;
+            }
+            long timestamp = record.getTimestamp(TimeUnit.NANOSECONDS);
+            if (firstTimestamp < 0) {
+                firstTimestamp = timestamp;
+            }
+            if (speed != MAX_SPEED) {
+                long delay = replayStart + (long) ((timestamp - firstTimestamp) / speed) - System.nanoTime();
+                if (delay > 0) {
+                    // Flushes the pending envelopes before waiting for the next one
+                    outputStream.flush();
+                    TimeUnit.NANOSECONDS.sleep(delay);
+                }
+            }
+            outputStream.write(record.getEnvelopeBytes());
+            replayedCount.incrementAndGet();
+            replayedBytes.addAndGet(record.getEnvelopeBytes().length);
+        }
+        outputStream.flush();
+    }
+
+    private void startDiscarding(final InputStream inputStream) {
+        Thread discardThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[8192];
+                try {
+                    int read;
+                    while ((read = inputStream.read(buffer)) >= 0) {
+                        receivedBytes.addAndGet(read);
+                    }
+                } catch (IOException e) {
+                    // The connection was closed
+                }
+            }
+        }, "CaptureReplayer Discarder");
+        discardThread.setDaemon(true);
+        discardThread.start();
+    }
+}
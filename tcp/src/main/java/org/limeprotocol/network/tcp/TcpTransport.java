@@ -2,58 +2,203 @@ package org.limeprotocol.network.tcp;
 
 import org.limeprotocol.Envelope;
 import org.limeprotocol.SessionEncryption;
+import org.limeprotocol.network.EnvelopePriority;
+import org.limeprotocol.network.EnvelopeTraceWriter;
 import org.limeprotocol.network.JsonBuffer;
 import org.limeprotocol.network.TraceWriter;
 import org.limeprotocol.network.Transport;
 import org.limeprotocol.network.TransportBase;
+import org.limeprotocol.jfr.FlightRecorderEvents;
+import org.limeprotocol.metrics.Counter;
+import org.limeprotocol.metrics.Gauge;
+import org.limeprotocol.metrics.LatencyHistogram;
+import org.limeprotocol.metrics.MetricNames;
+import org.limeprotocol.metrics.MetricsRegistry;
 import org.limeprotocol.serialization.EnvelopeSerializer;
 import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.serialization.RawEnvelope;
+import org.limeprotocol.util.ByteArrayPool;
+import org.limeprotocol.util.WeightedLaneQueue;
 
 import java.io.*;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Synchronous TCP transport implementation.
+ * TCP transport implementation.
+ * By default, the envelopes are written synchronously in the caller thread. When an outbound queue
+ * capacity is specified, the envelopes are serialized in the caller thread and queued in priority
+ * lanes (see {@link EnvelopePriority}), which are written by a dedicated thread that flushes the stream
+ * only when the queue is empty; so control envelopes like ping responses are not delayed by a burst
+ * of messages. The envelopes order is kept only in the same lane. When the transport is closed, the queued
+ * envelopes are written before the connection is closed; the envelopes that could not be written are counted
+ * in the {@link MetricNames#TRANSPORT_ENVELOPES_DROPPED} metric and reported to the state listener.
+ * The received envelopes are framed whole in the receive buffer, which limits their size, before they are
+ * deserialized or passed to the {@link RawEnvelopeListener}; a large document collection can be bound one item
+ * at a time from the raw bytes with {@link org.limeprotocol.serialization.jackson.DocumentCollectionReader}.
  */
 public class TcpTransport extends TransportBase implements Transport {
 
     public final static int DEFAULT_BUFFER_SIZE = 8192 * 8;
+
+    /**
+     * The default initial size of the receive buffer, used by the constructors without a buffer size.
+     */
+    public final static int DEFAULT_INITIAL_BUFFER_SIZE = 4096;
+
+    /**
+     * The default maximum size of the receive buffer, which limits the size of a received envelope.
+     * Used by the constructors without a buffer size, which take the buffers from the shared {@link ByteArrayPool};
+     * when only the buffer size is specified, the buffer doesn't grow and is not pooled.
+     * The larger envelopes of a session can be allowed with {@link #setMaxEnvelopeSize(Integer)}.
+     */
+    public final static int DEFAULT_MAX_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * The default weights of the priority lanes, in the {@link EnvelopePriority} order.
+     */
+    private final static int[] DEFAULT_LANE_WEIGHTS = { 32, 8, 4, 1 };
+
+    /**
+     * The maximum time that the close waits for the queued envelopes to be written.
+     */
+    private final static long OUTBOUND_DRAIN_TIMEOUT_MILLISECONDS = 5000;
+
+    /**
+     * Wakes up the outbound writer when it is stopped, through the control lane that never blocks.
+     */
+    private final static byte[] OUTBOUND_STOP_SIGNAL = new byte[0];
+
     private final EnvelopeSerializer envelopeSerializer;
     private final TcpClientFactory tcpClientFactory;
     private final TraceWriter traceWriter;
+    private final TraceWriter stringTraceWriter;
+    private final EnvelopeTraceWriter envelopeTraceWriter;
     private final int bufferSize;
+    private volatile int maxBufferSize;
+    private final ByteArrayPool bufferPool;
+    private final int outboundQueueCapacity;
+    private final Object writeLock;
     private TcpClient tcpClient;
     private BufferedOutputStream outputStream;
     private BufferedInputStream inputStream;
     private JsonListener jsonListener;
     private Thread jsonListenerThread;
+    private WeightedLaneQueue<byte[]> outboundQueue;
+    private OutboundWriter outboundWriter;
+    private Thread outboundWriterThread;
+    private volatile RawEnvelopeListener rawEnvelopeListener;
     private boolean isConnected;
+    private Gauge outboundQueueDepth;
+    private final Counter envelopesSent;
+    private final Counter envelopesReceived;
+    private final Counter envelopesDropped;
+    private final Counter bytesSent;
+    private final Counter bytesReceived;
+    private final LatencyHistogram serializationTime;
+    private final LatencyHistogram deserializationTime;
+    private final LatencyHistogram writeTime;
 
     public TcpTransport() {
-        this(new JacksonEnvelopeSerializer(), new SocketTcpClientFactory(), null, DEFAULT_BUFFER_SIZE);
+        this(new JacksonEnvelopeSerializer(), new SocketTcpClientFactory(), null, DEFAULT_INITIAL_BUFFER_SIZE, DEFAULT_MAX_BUFFER_SIZE, ByteArrayPool.getShared(), 0);
     }
 
     public TcpTransport(EnvelopeSerializer envelopeSerializer) {
-        this(envelopeSerializer, new SocketTcpClientFactory(), null, DEFAULT_BUFFER_SIZE);
+        this(envelopeSerializer, new SocketTcpClientFactory(), null, DEFAULT_INITIAL_BUFFER_SIZE, DEFAULT_MAX_BUFFER_SIZE, ByteArrayPool.getShared(), 0);
     }
 
     public TcpTransport(EnvelopeSerializer envelopeSerializer, TcpClientFactory tcpClientFactory) {
-        this(envelopeSerializer, tcpClientFactory, null, DEFAULT_BUFFER_SIZE);
+        this(envelopeSerializer, tcpClientFactory, null, DEFAULT_INITIAL_BUFFER_SIZE, DEFAULT_MAX_BUFFER_SIZE, ByteArrayPool.getShared(), 0);
     }
 
     public TcpTransport(EnvelopeSerializer envelopeSerializer, TcpClientFactory tcpClientFactory, TraceWriter traceWriter) {
-        this(envelopeSerializer, tcpClientFactory, traceWriter, DEFAULT_BUFFER_SIZE);
+        this(envelopeSerializer, tcpClientFactory, traceWriter, DEFAULT_INITIAL_BUFFER_SIZE, DEFAULT_MAX_BUFFER_SIZE, ByteArrayPool.getShared(), 0);
     }
 
     public TcpTransport(EnvelopeSerializer envelopeSerializer, TcpClientFactory tcpClientFactory, TraceWriter traceWriter, int bufferSize) {
+        this(envelopeSerializer, tcpClientFactory, traceWriter, bufferSize, 0);
+    }
+
+    public TcpTransport(EnvelopeSerializer envelopeSerializer, TcpClientFactory tcpClientFactory, TraceWriter traceWriter, int bufferSize, int outboundQueueCapacity) {
+        this(envelopeSerializer, tcpClientFactory, traceWriter, bufferSize, bufferSize, null, outboundQueueCapacity);
+    }
+
+    /**
+     * Creates a new instance of the transport.
+     * @param envelopeSerializer
+     * @param tcpClientFactory
+     * @param traceWriter
+     * @param bufferSize The initial size of the receive buffer.
+     * @param maxBufferSize The size that the receive buffer can grow to, which limits the size of a received envelope.
+     * @param bufferPool The pool of the receive buffer arrays, which are returned to the pool while the connection is idle;
+     *                   or null to allocate a buffer for the connection.
+     * @param outboundQueueCapacity The maximum number of queued envelopes for the non-control priority lanes, or 0 to write the envelopes synchronously.
+     */
+    public TcpTransport(EnvelopeSerializer envelopeSerializer, TcpClientFactory tcpClientFactory, TraceWriter traceWriter, int bufferSize, int maxBufferSize, ByteArrayPool bufferPool, int outboundQueueCapacity) {
+        if (bufferSize <= 0 || maxBufferSize < bufferSize) {
+            throw new IllegalArgumentException("maxBufferSize");
+        }
+        if (outboundQueueCapacity < 0) {
+            throw new IllegalArgumentException("outboundQueueCapacity");
+        }
         this.envelopeSerializer = envelopeSerializer;
         this.tcpClientFactory = tcpClientFactory;
         this.traceWriter = traceWriter;
+        // The structured trace writers receive the envelopes and their bytes instead of strings
+        this.envelopeTraceWriter = traceWriter instanceof EnvelopeTraceWriter ? (EnvelopeTraceWriter) traceWriter : null;
+        this.stringTraceWriter = envelopeTraceWriter == null ? traceWriter : null;
         this.bufferSize = bufferSize;
+        this.maxBufferSize = maxBufferSize;
+        this.bufferPool = bufferPool;
+        this.outboundQueueCapacity = outboundQueueCapacity;
+        this.writeLock = new Object();
         this.isConnected = false;
+        MetricsRegistry metricsRegistry = MetricsRegistry.getShared();
+        this.envelopesSent = metricsRegistry.getCounter(MetricNames.TRANSPORT_ENVELOPES_SENT);
+        this.envelopesReceived = metricsRegistry.getCounter(MetricNames.TRANSPORT_ENVELOPES_RECEIVED);
+        this.envelopesDropped = metricsRegistry.getCounter(MetricNames.TRANSPORT_ENVELOPES_DROPPED);
+        this.bytesSent = metricsRegistry.getCounter(MetricNames.TRANSPORT_BYTES_SENT);
+        this.bytesReceived = metricsRegistry.getCounter(MetricNames.TRANSPORT_BYTES_RECEIVED);
+        this.serializationTime = metricsRegistry.getHistogram(MetricNames.TRANSPORT_SERIALIZATION_TIME);
+        this.deserializationTime = metricsRegistry.getHistogram(MetricNames.TRANSPORT_DESERIALIZATION_TIME);
+        this.writeTime = metricsRegistry.getHistogram(MetricNames.TRANSPORT_WRITE_TIME);
+    }
+
+    /**
+     * Changes the maximum size of the receive buffer, like after the maximum envelope size of the session is known
+     * (the maxEnvelopeSize of the server quota). Cannot be smaller than the initial buffer size.
+     * @param maxBufferSize
+     */
+    public void setMaxBufferSize(int maxBufferSize) {
+        if (maxBufferSize < bufferSize) {
+            throw new IllegalArgumentException("maxBufferSize");
+        }
+        this.maxBufferSize = maxBufferSize;
+        JsonListener listener = jsonListener;
+        if (listener != null) {
+            listener.jsonBuffer.setMaxBufferSize(maxBufferSize);
+        }
+    }
+
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    /**
+     * Changes the maximum size of the receive buffer to the maximum envelope size of the session,
+     * which is the maxEnvelopeSize of the server quota. A null or zero size, which means that the
+     * size is unbounded in the quota, keeps the current maximum.
+     * @param maxEnvelopeSize
+     */
+    public void setMaxEnvelopeSize(Integer maxEnvelopeSize) {
+        if (maxEnvelopeSize == null || maxEnvelopeSize <= 0) {
+            return;
+        }
+        setMaxBufferSize(Math.max(bufferSize, maxEnvelopeSize));
     }
 
     /**
@@ -70,23 +215,78 @@ public class TcpTransport extends TransportBase implements Transport {
      * @param envelope
      */
     @Override
-    public synchronized void send(Envelope envelope) throws IOException {
+    public void send(Envelope envelope) throws IOException {
         if (envelope == null) {
             throw new IllegalArgumentException("envelope");
         }
         ensureSocketOpen();
+        long startTime = System.nanoTime();
         String envelopeString = envelopeSerializer.serialize(envelope);
+        byte[] envelopeBytes;
+        try {
+            envelopeBytes = envelopeString.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalArgumentException("Could not convert the serialized envelope to a UTF-8 byte array", e);
+        }
+        serializationTime.recordSince(startTime);
+        write(envelopeBytes, envelopeString, EnvelopePriority.of(envelope));
+        if (envelopeTraceWriter != null && envelopeTraceWriter.isEnabled()) {
+            envelopeTraceWriter.trace(envelope, envelopeBytes, TraceWriter.DataOperation.SEND);
+        }
+    }
+
+    /**
+     * Sends a pre-encoded envelope to the remote node, writing its bytes without serialization.
+     *
+     * @param rawEnvelope
+     */
+    @Override
+    public void send(RawEnvelope rawEnvelope) throws IOException {
+        if (rawEnvelope == null) {
+            throw new IllegalArgumentException("rawEnvelope");
+        }
+        ensureSocketOpen();
+        write(rawEnvelope.toByteArray(), null, EnvelopePriority.of(rawEnvelope));
+        if (envelopeTraceWriter != null && envelopeTraceWriter.isEnabled()) {
+            envelopeTraceWriter.trace(rawEnvelope, TraceWriter.DataOperation.SEND);
+        }
+    }
+
+    @Override
+    protected EnvelopeSerializer getEnvelopeSerializer() {
+        return envelopeSerializer;
+    }
+
+    /**
+     * Register the specified listener for receiving envelopes in the raw format, before their deserialization.
+     * The envelopes that are not handled by the listener are deserialized and passed to the envelope listener.
+     * @param rawEnvelopeListener
+     */
+    public void setRawEnvelopeListener(RawEnvelopeListener rawEnvelopeListener) {
+        this.rawEnvelopeListener = rawEnvelopeListener;
+    }
+
+    private void write(byte[] envelopeBytes, String envelopeString, EnvelopePriority priority) throws IOException {
+        if (outboundQueue != null) {
+            enqueue(priority, envelopeBytes);
+            return;
+        }
 
         try {
-            byte[] envelopeBytes = envelopeString.getBytes("UTF-8");
-            outputStream.write(envelopeBytes);
-            outputStream.flush();
+            synchronized (writeLock) {
+                Object writeEvent = FlightRecorderEvents.beginTransportWrite();
+                long startTime = System.nanoTime();
+                outputStream.write(envelopeBytes);
+                outputStream.flush();
+                writeTime.recordSince(startTime);
+                FlightRecorderEvents.endTransportWrite(writeEvent, priority.name(), envelopeBytes.length, true);
+            }
+            envelopesSent.increment();
+            bytesSent.add(envelopeBytes.length);
 
-            if (traceWriter != null && traceWriter.isEnabled()) {
-                traceWriter.trace(envelopeString, TraceWriter.DataOperation.SEND);
+            if (stringTraceWriter != null && stringTraceWriter.isEnabled()) {
+                stringTraceWriter.trace(envelopeString != null ? envelopeString : new String(envelopeBytes, Charset.forName("UTF8")), TraceWriter.DataOperation.SEND);
             }
-        } catch (UnsupportedEncodingException e) {
-            throw new IllegalArgumentException("Could not convert the serialized envelope to a UTF-8 byte array", e);
         } catch (IOException e){
             close();
             throw e;
@@ -108,6 +308,7 @@ public class TcpTransport extends TransportBase implements Transport {
     @Override
     protected void performClose() throws IOException {
         stopListenerThread();
+        stopOutboundWriterThread();
         if (tcpClient != null) {
             tcpClient.close();
         }
@@ -124,26 +325,40 @@ public class TcpTransport extends TransportBase implements Transport {
         if (uri == null) {
             throw new IllegalArgumentException("uri");
         }
-
-        // TODO: This is the best scheme to use?
-        if (!uri.getScheme().equals("net.tcp")) {
-            throw new IllegalArgumentException("Invalid URI scheme. Expected is 'net.tcp'", null);
-        }
+        SocketAddress endpoint = getEndpoint(uri);
 
         if (tcpClient != null) {
             throw new IllegalStateException("The client is already open");
         }
         tcpClient = tcpClientFactory.create();
-        tcpClient.connect(new InetSocketAddress(uri.getHost(), uri.getPort()));
+        tcpClient.connect(endpoint);
         isConnected = true;
 
         initializeStreams();
 
+        if (outboundQueueCapacity > 0) {
+            startOutboundWriterThread();
+        }
+
         if (getStateListener() != null) {
             startListenerThread();
         }
     }
 
+    /**
+     * Gets the address of the remote endpoint of the URI, checking its scheme.
+     *
+     * @param uri
+     * @return
+     */
+    protected SocketAddress getEndpoint(URI uri) {
+        // TODO: This is the best scheme to use?
+        if (!uri.getScheme().equals("net.tcp")) {
+            throw new IllegalArgumentException("Invalid URI scheme. Expected is 'net.tcp'", null);
+        }
+        return new InetSocketAddress(uri.getHost(), uri.getPort());
+    }
+
     /**
      * Enumerates the supported encryption options for the transport.
      *
@@ -166,8 +381,10 @@ public class TcpTransport extends TransportBase implements Transport {
                 if (!tcpClient.isTlsStarted()) {
                     stopListenerThread();
                     try {
-                        tcpClient.startTls();
-                        initializeStreams();
+                        synchronized (writeLock) {
+                            tcpClient.startTls();
+                            initializeStreams();
+                        }
                         if (getStateListener() != null) {
                             startListenerThread();
                         }
@@ -201,6 +418,78 @@ public class TcpTransport extends TransportBase implements Transport {
         inputStream = new BufferedInputStream(tcpClient.getInputStream());
     }
 
+    private void enqueue(EnvelopePriority priority, byte[] envelopeBytes) throws IOException {
+        OutboundWriter writer = outboundWriter;
+        if (writer == null || writer.isStopping()) {
+            IOException exception = writer != null ? writer.getException() : null;
+            throw exception != null ? exception : new IOException("The transport outbound writer is stopped");
+        }
+        try {
+            outboundQueue.put(priority.ordinal(), envelopeBytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The envelope enqueue was interrupted");
+        }
+        if (writer.isStopping()) {
+            throw new IOException("The transport outbound writer was stopped before the envelope was written", writer.getException());
+        }
+    }
+
+    private synchronized void startOutboundWriterThread() {
+        final WeightedLaneQueue<byte[]> queue = new WeightedLaneQueue<>(outboundQueueCapacity, DEFAULT_LANE_WEIGHTS);
+        outboundQueue = queue;
+        outboundQueueDepth = new Gauge() {
+            @Override
+            public long getValue() {
+                return queue.size();
+            }
+        };
+        MetricsRegistry.getShared().addGauge(MetricNames.TRANSPORT_OUTBOUND_QUEUE_DEPTH, outboundQueueDepth);
+        outboundWriter = new OutboundWriter(outboundQueue);
+        outboundWriterThread = new Thread(outboundWriter, "TcpTransport OutboundWriter");
+        outboundWriterThread.setDaemon(true);
+        outboundWriterThread.start();
+    }
+
+    private synchronized void stopOutboundWriterThread() {
+        if (outboundWriter != null) {
+            // The writer writes the queued envelopes before it stops
+            outboundWriter.stop();
+            Thread thread = outboundWriterThread;
+            if (thread != null && thread != Thread.currentThread()) {
+                try {
+                    thread.join(OUTBOUND_DRAIN_TIMEOUT_MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            int droppedCount = dropQueuedEnvelopes(outboundQueue);
+            if (droppedCount > 0) {
+                raiseOnException(new IOException(String.format("%d queued envelopes were not written before the transport was closed", droppedCount)));
+            }
+        }
+        if (outboundQueueDepth != null) {
+            MetricsRegistry.getShared().removeGauge(MetricNames.TRANSPORT_OUTBOUND_QUEUE_DEPTH, outboundQueueDepth);
+            outboundQueueDepth = null;
+        }
+    }
+
+    /**
+     * Discards the envelopes left in the outbound queue, counting them as dropped.
+     * @return The number of discarded envelopes.
+     */
+    private int dropQueuedEnvelopes(WeightedLaneQueue<byte[]> queue) {
+        int droppedCount = 0;
+        byte[] envelopeBytes;
+        while ((envelopeBytes = queue.poll()) != null) {
+            if (envelopeBytes != OUTBOUND_STOP_SIGNAL) {
+                droppedCount++;
+            }
+        }
+        envelopesDropped.add(droppedCount);
+        return droppedCount;
+    }
+
     private boolean isListening() {
         return jsonListener != null && !jsonListener.isStopping();
     }
@@ -213,7 +502,7 @@ public class TcpTransport extends TransportBase implements Transport {
         if (isListening()) {
             throw new IllegalStateException("The input listener is already started");
         }
-        jsonListener = new JsonListener(inputStream, bufferSize);
+        jsonListener = new JsonListener(inputStream);
         jsonListenerThread = new Thread(jsonListener);
         jsonListenerThread.start();
     }
@@ -229,15 +518,99 @@ public class TcpTransport extends TransportBase implements Transport {
         }
     }
 
+    class OutboundWriter implements Runnable {
+
+        private final WeightedLaneQueue<byte[]> queue;
+        volatile private boolean isStopping;
+        volatile private IOException exception;
+
+        OutboundWriter(WeightedLaneQueue<byte[]> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            try {
+                byte[] envelopeBytes;
+                while (!isStopping()) {
+                    envelopeBytes = queue.poll(1, TimeUnit.SECONDS);
+                    if (envelopeBytes == null || envelopeBytes == OUTBOUND_STOP_SIGNAL) continue;
+                    write(envelopeBytes);
+                }
+                // Writes the envelopes queued before the transport was closed
+                while ((envelopeBytes = queue.poll()) != null) {
+                    if (envelopeBytes != OUTBOUND_STOP_SIGNAL) {
+                        write(envelopeBytes);
+                    }
+                }
+                synchronized (writeLock) {
+                    outputStream.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                exception = e;
+                boolean isClosing = isStopping();
+                stop();
+                dropQueuedEnvelopes(queue);
+                if (!isClosing) {
+                    try {
+                        TcpTransport.this.close();
+                    } catch (IOException ex) { }
+                }
+                raiseOnException(e);
+            }
+            this.isStopping = true;
+        }
+
+        private void write(byte[] envelopeBytes) throws IOException {
+            synchronized (writeLock) {
+                Object writeEvent = FlightRecorderEvents.beginTransportWrite();
+                long startTime = System.nanoTime();
+                outputStream.write(envelopeBytes);
+                // Coalesces the writes of queued envelopes in a single flush
+                boolean flushed = queue.isEmpty();
+                if (flushed) {
+                    outputStream.flush();
+                }
+                writeTime.recordSince(startTime);
+                // The lane of a queued envelope is not known by the writer
+                FlightRecorderEvents.endTransportWrite(writeEvent, null, envelopeBytes.length, flushed);
+            }
+            envelopesSent.increment();
+            bytesSent.add(envelopeBytes.length);
+            if (stringTraceWriter != null && stringTraceWriter.isEnabled()) {
+                stringTraceWriter.trace(new String(envelopeBytes, Charset.forName("UTF8")), TraceWriter.DataOperation.SEND);
+            }
+        }
+
+        public boolean isStopping() {
+            return this.isStopping;
+        }
+
+        public IOException getException() {
+            return this.exception;
+        }
+
+        public void stop() {
+            this.isStopping = true;
+            try {
+                queue.put(EnvelopePriority.CONTROL.ordinal(), OUTBOUND_STOP_SIGNAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     class JsonListener implements Runnable {
 
         private final InputStream inputStream;
-        private JsonBuffer jsonBuffer;
+        private final JsonBuffer jsonBuffer;
         volatile private boolean isStopping;
 
-        JsonListener(InputStream inputStream, int bufferSize) {
+        JsonListener(InputStream inputStream) {
             this.inputStream = inputStream;
-            jsonBuffer = new JsonBuffer(bufferSize);
+            jsonBuffer = new JsonBuffer(bufferSize, maxBufferSize, bufferPool);
         }
 
         @Override
@@ -248,25 +621,57 @@ public class TcpTransport extends TransportBase implements Transport {
                     while (envelope == null) {
                         JsonBuffer.JsonBufferReadResult jsonBufferReadResult = jsonBuffer.tryExtractJsonFromBuffer();
                         if (jsonBufferReadResult.isSuccess()) {
-                            String jsonString = new String(jsonBufferReadResult.getJsonBytes(), Charset.forName("UTF8"));
-                            if (traceWriter != null && traceWriter.isEnabled()) {
-                                traceWriter.trace(jsonString, TraceWriter.DataOperation.RECEIVE);
+                            byte[] jsonBytes = jsonBufferReadResult.getJsonBytes();
+                            envelopesReceived.increment();
+                            RawEnvelopeListener rawListener = rawEnvelopeListener;
+                            RawEnvelope rawEnvelope;
+                            if (rawListener != null && rawListener.onReceive(rawEnvelope = RawEnvelope.parse(jsonBytes))) {
+                                // The envelope was relayed without deserialization
+                                if (envelopeTraceWriter != null && envelopeTraceWriter.isEnabled()) {
+                                    envelopeTraceWriter.trace(rawEnvelope, TraceWriter.DataOperation.RECEIVE);
+                                } else if (stringTraceWriter != null && stringTraceWriter.isEnabled()) {
+                                    stringTraceWriter.trace(new String(jsonBytes, Charset.forName("UTF8")), TraceWriter.DataOperation.RECEIVE);
+                                }
+                                continue;
                             }
+                            String jsonString = new String(jsonBytes, Charset.forName("UTF8"));
+                            if (stringTraceWriter != null && stringTraceWriter.isEnabled()) {
+                                stringTraceWriter.trace(jsonString, TraceWriter.DataOperation.RECEIVE);
+                            }
+                            Object decodeEvent = FlightRecorderEvents.beginEnvelopeDecode();
+                            long startTime = System.nanoTime();
                             envelope = envelopeSerializer.deserialize(jsonString);
+                            deserializationTime.recordSince(startTime);
+                            FlightRecorderEvents.endEnvelopeDecode(decodeEvent, envelope, jsonBytes.length);
+                            if (envelopeTraceWriter != null && envelopeTraceWriter.isEnabled()) {
+                                envelopeTraceWriter.trace(envelope, jsonBytes, TraceWriter.DataOperation.RECEIVE);
+                            }
                         }
                         if (envelope == null) {
                             try {
-                                int read = this.inputStream.read(jsonBuffer.getBuffer(), jsonBuffer.getBufferCurPos(), jsonBuffer.getBuffer().length - jsonBuffer.getBufferCurPos());
+                                if (jsonBuffer.getBufferCurPos() == 0 && this.inputStream.available() == 0 && jsonBuffer.release()) {
+                                    // Waits for the next envelope without holding the buffer
+                                    int b = this.inputStream.read();
+                                    if (b == -1) {
+                                        close();
+                                        break;
+                                    }
+                                    jsonBuffer.append((byte) b);
+                                    bytesReceived.increment();
+                                    continue;
+                                }
+                                if (!jsonBuffer.ensureFreeSpace()) {
+                                    TcpTransport.this.close();
+                                    throw new BufferOverflowException("Maximum buffer size reached");
+                                }
+                                int read = this.inputStream.read(jsonBuffer.getBuffer(), jsonBuffer.getBufferCurPos(), jsonBuffer.getCapacity() - jsonBuffer.getBufferCurPos());
                                 if (read == -1) {
                                     // The stream reached EOF, raise closed event.
                                     close();
                                     break;
                                 }
                                 jsonBuffer.increaseBufferCurPos(read);
-                                if (jsonBuffer.getBufferCurPos() >= jsonBuffer.getBuffer().length) {
-                                    TcpTransport.this.close();
-                                    throw new BufferOverflowException("Maximum buffer size reached");
-                                }
+                                bytesReceived.add(read);
                             } catch (SocketTimeoutException e) {
                                 if(!isConnected()){
                                     stop();
@@ -289,8 +694,10 @@ public class TcpTransport extends TransportBase implements Transport {
                     try {
                         bytesAvailable = this.inputStream.available();
                     }catch(Exception e) {}
-                    traceWriter.trace(String.format("TcpTransport JsonListener thread aborted with %d bytes in internal Buffer and %d bytes in input Stream", jsonBuffer.getBuffer().length, bytesAvailable), TraceWriter.DataOperation.RECEIVE);
+                    traceWriter.trace(String.format("TcpTransport JsonListener thread aborted with %d bytes in internal Buffer and %d bytes in input Stream", jsonBuffer.getBufferCurPos(), bytesAvailable), TraceWriter.DataOperation.RECEIVE);
                 }
+                // Returns the buffer array to the pool
+                jsonBuffer.clear();
             }
 
             this.isStopping = true;
@@ -0,0 +1,234 @@
+package org.limeprotocol.network.tcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Client over a Unix domain socket ({@code AF_UNIX}), for the connections with a local node like a sidecar gateway.
+ * The Unix domain socket channels are available since JDK 16, so they are accessed by reflection and the client
+ * can be used only if {@link #isSupported()}. The connections don't support TLS, since they don't leave the host
+ * and the access is controlled by the socket file permissions.
+ */
+public class UnixDomainSocketTcpClient implements TcpClient {
+
+    private final static ProtocolFamily UNIX_PROTOCOL_FAMILY;
+    private final static Method OPEN_METHOD;
+    private final static Method ADDRESS_OF_METHOD;
+
+    static {
+        ProtocolFamily protocolFamily = null;
+        Method openMethod = null;
+        Method addressOfMethod = null;
+        try {
+            protocolFamily = StandardProtocolFamily.valueOf("UNIX");
+            openMethod = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+            addressOfMethod = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+        } catch (IllegalArgumentException | ReflectiveOperationException e) {
+            // Not supported before JDK 16
+            protocolFamily = null;
+        }
+        UNIX_PROTOCOL_FAMILY = protocolFamily;
+        OPEN_METHOD = openMethod;
+        ADDRESS_OF_METHOD = addressOfMethod;
+    }
+
+    private final InputStream inputStream;
+    private final OutputStream outputStream;
+    private volatile boolean isInputShutdown;
+    private volatile boolean isOutputShutdown;
+    private volatile SocketChannel channel;
+
+    public UnixDomainSocketTcpClient() {
+        ensureSupported();
+        this.inputStream = new ChannelInputStream();
+        this.outputStream = new ChannelOutputStream();
+    }
+
+    /**
+     * Indicates if the JVM supports the Unix domain socket channels.
+     * @return
+     */
+    public static boolean isSupported() {
+        return UNIX_PROTOCOL_FAMILY != null;
+    }
+
+    /**
+     * Creates the address of a socket file.
+     * @param path
+     * @return
+     */
+    public static SocketAddress createAddress(String path) {
+        if (path == null || path.isEmpty()) {
+            throw new IllegalArgumentException("path");
+        }
+        ensureSupported();
+        try {
+            return (SocketAddress) invoke(ADDRESS_OF_METHOD, path);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid socket file path", e);
+        }
+    }
+
+    @Override
+    public synchronized void connect(SocketAddress endpoint) throws IOException {
+        if (channel != null) {
+            throw new IllegalStateException("The client is already connected");
+        }
+        SocketChannel channel = (SocketChannel) invoke(OPEN_METHOD, UNIX_PROTOCOL_FAMILY);
+        try {
+            channel.connect(endpoint);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.channel = channel;
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return outputStream;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return inputStream;
+    }
+
+    @Override
+    public boolean isTlsStarted() {
+        return false;
+    }
+
+    @Override
+    public void startTls() throws IOException {
+        throw new IOException("TLS is not supported over Unix domain sockets");
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+        return isInputShutdown || isClosed();
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+        return isOutputShutdown || isClosed();
+    }
+
+    @Override
+    public void close() throws IOException {
+        SocketChannel channel = this.channel;
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private boolean isClosed() {
+        SocketChannel channel = this.channel;
+        return channel != null && !channel.isOpen();
+    }
+
+    private SocketChannel getChannel() throws IOException {
+        SocketChannel channel = this.channel;
+        if (channel == null) {
+            throw new IOException("The client is not connected");
+        }
+        return channel;
+    }
+
+    private static void ensureSupported() {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Unix domain sockets require JDK 16 or later");
+        }
+    }
+
+    private static Object invoke(Method method, Object argument) throws IOException {
+        try {
+            return method.invoke(null, argument);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads from the blocking channel. The streams of {@link java.nio.channels.Channels} are not used since
+     * they lock the channel while reading, which blocks the writes of the other stream.
+     */
+    private class ChannelInputStream extends InputStream {
+        private final byte[] singleByte = new byte[1];
+
+        @Override
+        public int read() throws IOException {
+            return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int read;
+            try {
+                read = getChannel().read(ByteBuffer.wrap(b, off, len));
+            } catch (ClosedByInterruptException e) {
+                throw new InterruptedIOException("The read was interrupted");
+            }
+            if (read < 0) {
+                isInputShutdown = true;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            UnixDomainSocketTcpClient.this.close();
+        }
+    }
+
+    private class ChannelOutputStream extends OutputStream {
+        private final byte[] singleByte = new byte[1];
+
+        @Override
+        public void write(int b) throws IOException {
+            singleByte[0] = (byte) b;
+            write(singleByte, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            SocketChannel channel = getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                isOutputShutdown = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            UnixDomainSocketTcpClient.this.close();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package org.limeprotocol.network.tcp;
+
+public class UnixDomainSocketTcpClientFactory implements TcpClientFactory {
+
+    @Override
+    public TcpClient create() {
+        return new UnixDomainSocketTcpClient();
+    }
+}
@@ -0,0 +1,70 @@
+package org.limeprotocol.network.tcp;
+
+import org.limeprotocol.SessionEncryption;
+import org.limeprotocol.network.TraceWriter;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.util.ByteArrayPool;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.Arrays;
+
+/**
+ * Transport over a Unix domain socket, for the connections with a node in the same host, like a sidecar gateway,
+ * which avoids the overhead of the loopback TCP. The URI scheme is {@code net.unix} and its path is the socket file,
+ * like {@code net.unix:///var/run/lime/gateway.sock}.
+ * It uses the framing and serialization of the {@link TcpTransport}, but doesn't support TLS, so the session
+ * negotiation offers only {@link SessionEncryption#NONE}. Requires JDK 16 or later (see {@link UnixDomainSocketTcpClient#isSupported()}).
+ */
+public class UnixDomainSocketTransport extends TcpTransport {
+
+    public final static String URI_SCHEME = "net.unix";
+
+    public UnixDomainSocketTransport() {
+        this(new JacksonEnvelopeSerializer());
+    }
+
+    public UnixDomainSocketTransport(EnvelopeSerializer envelopeSerializer) {
+        this(envelopeSerializer, null);
+    }
+
+    public UnixDomainSocketTransport(EnvelopeSerializer envelopeSerializer, TraceWriter traceWriter) {
+        this(envelopeSerializer, traceWriter, DEFAULT_INITIAL_BUFFER_SIZE, DEFAULT_MAX_BUFFER_SIZE, ByteArrayPool.getShared(), 0);
+    }
+
+    /**
+     * Creates a new instance of the transport.
+     * @param envelopeSerializer
+     * @param traceWriter
+     * @param bufferSize The initial size of the receive buffer.
+     * @param maxBufferSize The size that the receive buffer can grow to, which limits the size of a received envelope.
+     * @param bufferPool The pool of the receive buffer arrays, or null to allocate a buffer for the connection.
+     * @param outboundQueueCapacity The maximum number of queued envelopes for the non-control priority lanes, or 0 to write the envelopes synchronously.
+     */
+    public UnixDomainSocketTransport(EnvelopeSerializer envelopeSerializer, TraceWriter traceWriter, int bufferSize, int maxBufferSize, ByteArrayPool bufferPool, int outboundQueueCapacity) {
+        super(envelopeSerializer, new UnixDomainSocketTcpClientFactory(), traceWriter, bufferSize, maxBufferSize, bufferPool, outboundQueueCapacity);
+    }
+
+    @Override
+    protected SocketAddress getEndpoint(URI uri) {
+        if (!URI_SCHEME.equals(uri.getScheme())) {
+            throw new IllegalArgumentException(String.format("Invalid URI scheme. Expected is '%s'", URI_SCHEME));
+        }
+        return UnixDomainSocketTcpClient.createAddress(uri.getPath());
+    }
+
+    @Override
+    public SessionEncryption[] getSupportedEncryption() {
+        return new SessionEncryption[]{SessionEncryption.NONE};
+    }
+
+    @Override
+    public void setEncryption(SessionEncryption encryption) throws IOException {
+        if (!Arrays.asList(getSupportedEncryption()).contains(encryption)) {
+            throw new IllegalArgumentException("encryption");
+        }
+        super.setEncryption(encryption);
+    }
+}
@@ -0,0 +1,239 @@
+package org.limeprotocol.network;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class JsonBufferTest {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+    private final static String STRING_CHARS = "abcXYZ019 {}[]:,\"\\/é中😀";
+
+    @Test
+    public void tryExtractJsonFromBuffer_documentReceivedInParts_extractsDocumentOnce() {
+        // Arrange
+        byte[] json = "{\"id\":\"1\",\"content\":\"a \\\"{quoted}\\\" value with a \\\\\",\"metadata\":{\"key\":\"}\"}}".getBytes(UTF8);
+        JsonBuffer target = new JsonBuffer(16, 1024);
+        List<byte[]> extracted = new ArrayList<>();
+
+        // Act
+        for (byte b : json) {
+            write(target, new byte[] { b }, 0, 1);
+            extractAll(target, extracted);
+        }
+
+        // Assert
+        assertEquals(1, extracted.size());
+        assertArrayEquals(json, extracted.get(0));
+    }
+
+    @Test
+    public void tryExtractJsonFromBuffer_randomDocumentsInRandomParts_agreesWithBytewiseScanner() {
+        // Arrange
+        Random random = new Random(7919);
+        int iterations = 500;
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            List<String> documents = new ArrayList<>();
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            int documentsCount = 1 + random.nextInt(8);
+            for (int i = 0; i < documentsCount; i++) {
+                String document = randomObject(random, 0);
+                documents.add(document);
+                byte[] whitespace = randomWhitespace(random).getBytes(UTF8);
+                stream.write(whitespace, 0, whitespace.length);
+                byte[] bytes = document.getBytes(UTF8);
+                stream.write(bytes, 0, bytes.length);
+            }
+            byte[] bytes = stream.toByteArray();
+            JsonBuffer target = new JsonBuffer(16, 1024 * 1024);
+            BytewiseJsonBuffer reference = new BytewiseJsonBuffer(1024 * 1024);
+            List<byte[]> actual = new ArrayList<>();
+            List<byte[]> expected = new ArrayList<>();
+
+            // Act
+            int offset = 0;
+            while (offset < bytes.length) {
+                int length = Math.min(bytes.length - offset, 1 + random.nextInt(random.nextBoolean() ? 8 : 200));
+                write(target, bytes, offset, length);
+                reference.write(bytes, offset, length);
+                extractAll(target, actual);
+                reference.extractAll(expected);
+                offset += length;
+            }
+
+            // Assert
+            assertEquals(documents.size(), expected.size());
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertArrayEquals(expected.get(i), actual.get(i));
+                assertEquals(documents.get(i), new String(actual.get(i), UTF8));
+            }
+        }
+    }
+
+    private static void write(JsonBuffer buffer, byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            assertTrue(buffer.ensureFreeSpace());
+            int count = Math.min(length, buffer.getCapacity() - buffer.getBufferCurPos());
+            System.arraycopy(bytes, offset, buffer.getBuffer(), buffer.getBufferCurPos(), count);
+            buffer.increaseBufferCurPos(count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    private static void extractAll(JsonBuffer buffer, List<byte[]> extracted) {
+        JsonBuffer.JsonBufferReadResult result;
+        while ((result = buffer.tryExtractJsonFromBuffer()).isSuccess()) {
+            extracted.add(result.getJsonBytes());
+        }
+    }
+
+    private static String randomObject(Random random, int depth) {
+        StringBuilder builder = new StringBuilder("{");
+        int fieldsCount = random.nextInt(depth == 0 ? 8 : 4);
+        for (int i = 0; i < fieldsCount; i++) {
+            if (i > 0) builder.append(',').append(randomWhitespace(random));
+            builder.append(randomString(random, 12)).append(':').append(randomValue(random, depth));
+        }
+        return builder.append('}').toString();
+    }
+
+    private static String randomValue(Random random, int depth) {
+        switch (random.nextInt(depth < 3 ? 6 : 4)) {
+            case 0:
+                return Integer.toString(random.nextInt());
+            case 1:
+                return random.nextBoolean() ? "true" : "null";
+            case 2:
+            case 3:
+                return randomString(random, random.nextInt(4) == 0 ? 300 : 30);
+            case 4:
+                return randomObject(random, depth + 1);
+            default:
+                StringBuilder builder = new StringBuilder("[");
+                int itemsCount = random.nextInt(4);
+                for (int i = 0; i < itemsCount; i++) {
+                    if (i > 0) builder.append(',');
+                    builder.append(randomValue(random, depth + 1));
+                }
+                return builder.append(']').toString();
+        }
+    }
+
+    private static String randomString(Random random, int maxLength) {
+        StringBuilder builder = new StringBuilder("\"");
+        int length = random.nextInt(maxLength + 1);
+        for (int i = 0; i < length; i++) {
+            char c = STRING_CHARS.charAt(random.nextInt(STRING_CHARS.length()));
+            if (Character.isHighSurrogate(c)) {
+                builder.append("😀");
+            } else if (Character.isLowSurrogate(c)) {
+                builder.append('x');
+            } else if (c == '"' || c == '\\') {
+                // Runs of escapes, including an escaped backslash before the closing quote
+                int escapes = 1 + random.nextInt(3);
+                for (int j = 0; j < escapes; j++) {
+                    builder.append('\\').append(c);
+                }
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private static String randomWhitespace(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return "";
+            case 1:
+                return " ";
+            case 2:
+                return "\r\n";
+            default:
+                return "\t  \n";
+        }
+    }
+
+    /**
+     * The byte by byte scanner that the word scanner replaced, used as the reference implementation.
+     */
+    private static class BytewiseJsonBuffer {
+        private final byte[] buffer;
+        private int bufferCurPos;
+        private int jsonStartPos;
+        private int jsonCurPos;
+        private int jsonStackedBrackets;
+        private boolean jsonStarted;
+        private boolean insideQuotes;
+        private boolean isEscaping;
+
+        BytewiseJsonBuffer(int bufferSize) {
+            buffer = new byte[bufferSize];
+        }
+
+        void write(byte[] bytes, int offset, int length) {
+            System.arraycopy(bytes, offset, buffer, bufferCurPos, length);
+            bufferCurPos += length;
+        }
+
+        void extractAll(List<byte[]> extracted) {
+            byte[] json;
+            while ((json = tryExtract()) != null) {
+                extracted.add(json);
+            }
+        }
+
+        byte[] tryExtract() {
+            int jsonLength = 0;
+            for (int i = jsonCurPos; i < bufferCurPos; i++) {
+                jsonCurPos = i + 1;
+                if (buffer[i] == '"' && !isEscaping) {
+                    insideQuotes = !insideQuotes;
+                }
+                if (!insideQuotes) {
+                    if (buffer[i] == '{') {
+                        jsonStackedBrackets++;
+                        if (!jsonStarted) {
+                            jsonStartPos = i;
+                            jsonStarted = true;
+                        }
+                    } else if (buffer[i] == '}') {
+                        jsonStackedBrackets--;
+                    }
+                    if (jsonStarted && jsonStackedBrackets == 0) {
+                        jsonLength = i - jsonStartPos + 1;
+                        break;
+                    }
+                } else {
+                    if (isEscaping) {
+                        isEscaping = false;
+                    } else if (buffer[i] == '\\') {
+                        isEscaping = true;
+                    }
+                }
+            }
+            if (jsonLength > 1) {
+                byte[] json = new byte[jsonLength];
+                System.arraycopy(buffer, jsonStartPos, json, 0, jsonLength);
+                bufferCurPos -= (jsonLength + jsonStartPos);
+                System.arraycopy(buffer, jsonLength + jsonStartPos, buffer, 0, bufferCurPos);
+                jsonCurPos = 0;
+                jsonStartPos = 0;
+                jsonStarted = false;
+                insideQuotes = false;
+                isEscaping = false;
+                return json;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package org.limeprotocol.network.tcp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.*;
+import org.limeprotocol.client.ClientChannelImpl;
+import org.limeprotocol.network.MessageChannel;
+import org.limeprotocol.network.NotificationChannel;
+import org.limeprotocol.network.SessionChannel;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Asserts the bytes allocated for each envelope sent and received through a channel with the default modules,
+ * the TCP transport and the Jackson serializer, so the allocation increases fail the build.
+ * Each budget is the allocation measured on the JDK 8 or on the JDK 11 to 21, which have compact strings, plus a fixed
+ * margin for the variation between the runs. When an optimization reduces an allocation, lower its measured value.
+ */
+public class AllocationBudgetTest {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+    private final static int WARMUP_ENVELOPES = 20000;
+    private final static int MEASURED_ENVELOPES = 5000;
+
+    private final static boolean HAS_COMPACT_STRINGS = !System.getProperty("java.specification.version").startsWith("1.");
+    private final static long BUDGET_MARGIN = 256;
+
+    private final static long SEND_MESSAGE_BUDGET = (HAS_COMPACT_STRINGS ? 848 : 1400) + BUDGET_MARGIN;
+    private final static long SEND_NOTIFICATION_BUDGET = (HAS_COMPACT_STRINGS ? 752 : 1320) + BUDGET_MARGIN;
+    private final static long RECEIVE_MESSAGE_BUDGET = (HAS_COMPACT_STRINGS ? 2560 : 3130) + BUDGET_MARGIN;
+    private final static long RECEIVE_NOTIFICATION_BUDGET = (HAS_COMPACT_STRINGS ? 2000 : 2450) + BUDGET_MARGIN;
+
+    private FeedInputStream inputStream;
+    private TcpTransport transport;
+    private ClientChannelImpl channel;
+
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue(AllocationMeter.isSupported());
+        inputStream = new FeedInputStream();
+        final TcpClient tcpClient = new StreamTcpClient(inputStream, new DiscardOutputStream());
+        transport = new TcpTransport(new JacksonEnvelopeSerializer(), new TcpClientFactory() {
+            @Override
+            public TcpClient create() {
+                return tcpClient;
+            }
+        }, null);
+        transport.open(URI.create("net.tcp://localhost:55321"));
+        channel = new EstablishedChannel(transport);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (transport != null) {
+            inputStream.feed(null);
+            transport.close();
+        }
+    }
+
+    @Test
+    public void sendMessage_establishedChannel_allocatesWithinBudget() throws Exception {
+        // Arrange
+        final Message message = new Message(EnvelopeId.newId());
+        message.setTo(Node.parse("postmaster@msging.net"));
+        message.setContent(new PlainDocument("Hello, how can I help you?", MediaType.parse("text/plain")));
+
+        // Act
+        long allocatedBytes = AllocationMeter.measure(WARMUP_ENVELOPES, MEASURED_ENVELOPES, new AllocationMeter.Task() {
+            @Override
+            public void run() throws Exception {
+                message.setFrom(null);
+                channel.sendMessage(message);
+            }
+        });
+
+        // Assert
+        assertWithinBudget(allocatedBytes, SEND_MESSAGE_BUDGET);
+    }
+
+    @Test
+    public void sendNotification_establishedChannel_allocatesWithinBudget() throws Exception {
+        // Arrange
+        final Notification notification = new Notification(EnvelopeId.newId());
+        notification.setTo(Node.parse("5511999990000@0mn.io/android"));
+        notification.setEvent(Notification.Event.RECEIVED);
+
+        // Act
+        long allocatedBytes = AllocationMeter.measure(WARMUP_ENVELOPES, MEASURED_ENVELOPES, new AllocationMeter.Task() {
+            @Override
+            public void run() throws Exception {
+                notification.setFrom(null);
+                channel.sendNotification(notification);
+            }
+        });
+
+        // Assert
+        assertWithinBudget(allocatedBytes, SEND_NOTIFICATION_BUDGET);
+    }
+
+    @Test
+    public void receiveMessage_establishedChannel_allocatesWithinBudget() throws Exception {
+        // Arrange
+        final Semaphore received = new Semaphore(0);
+        channel.addMessageListener(new MessageChannel.MessageChannelListener() {
+            @Override
+            public void onReceiveMessage(Message message) {
+                received.release();
+            }
+        }, false);
+        String json = "{\"id\":\"d5b6f2a0-8b1c-4f8e-9a3e-2f1c0b7d4e51\",\"from\":\"5511999990000@0mn.io/android\"," +
+                "\"to\":\"bot@msging.net/instance\",\"type\":\"text/plain\",\"content\":\"Hello, how can I help you?\"}";
+
+        // Act
+        long allocatedBytes = measureReceive(json, received);
+
+        // Assert
+        assertWithinBudget(allocatedBytes, RECEIVE_MESSAGE_BUDGET);
+    }
+
+    @Test
+    public void receiveNotification_establishedChannel_allocatesWithinBudget() throws Exception {
+        // Arrange
+        final Semaphore received = new Semaphore(0);
+        channel.addNotificationListener(new NotificationChannel.NotificationChannelListener() {
+            @Override
+            public void onReceiveNotification(Notification notification) {
+                received.release();
+            }
+        }, false);
+        String json = "{\"id\":\"d5b6f2a0-8b1c-4f8e-9a3e-2f1c0b7d4e51\",\"from\":\"postmaster@msging.net/instance\"," +
+                "\"to\":\"bot@msging.net/instance\",\"event\":\"received\"}";
+
+        // Act
+        long allocatedBytes = measureReceive(json, received);
+
+        // Assert
+        assertWithinBudget(allocatedBytes, RECEIVE_NOTIFICATION_BUDGET);
+    }
+
+    /**
+     * Feeds the envelopes to the transport listener thread, measuring its allocations.
+     */
+    private long measureReceive(String json, Semaphore received) throws Exception {
+        byte[] envelopeBytes = json.getBytes(UTF8);
+        feed(envelopeBytes, WARMUP_ENVELOPES, received);
+        long listenerThreadId = inputStream.getReaderThreadId();
+        long startBytes = AllocationMeter.getAllocatedBytes(listenerThreadId);
+        feed(envelopeBytes, MEASURED_ENVELOPES, received);
+        return (AllocationMeter.getAllocatedBytes(listenerThreadId) - startBytes) / MEASURED_ENVELOPES;
+    }
+
+    private void feed(byte[] envelopeBytes, int count, Semaphore received) throws InterruptedException {
+        byte[] chunk = new byte[envelopeBytes.length * count];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(envelopeBytes, 0, chunk, i * envelopeBytes.length, envelopeBytes.length);
+        }
+        inputStream.feed(chunk);
+        assertTrue(received.tryAcquire(count, 30, TimeUnit.SECONDS));
+    }
+
+    private static void assertWithinBudget(long allocatedBytes, long budget) {
+        assertTrue(String.format("Allocated %d bytes per envelope, over the budget of %d bytes", allocatedBytes, budget),
+                allocatedBytes <= budget);
+    }
+
+    private static class EstablishedChannel extends ClientChannelImpl {
+        EstablishedChannel(Transport transport) {
+            super(transport, true, true);
+            setRemoteNode(Node.parse("postmaster@msging.net/instance"));
+            setLocalNode(Node.parse("bot@msging.net/instance"));
+            setSessionId(EnvelopeId.newId());
+            setState(Session.SessionState.ESTABLISHED);
+            // Sets the channel as the transport envelope listener, starting the listener thread
+            enqueueSessionListener(new SessionChannel.SessionChannelListener() {
+                @Override
+                public void onReceiveSession(Session session) {
+                }
+            });
+        }
+    }
+
+    /**
+     * An input stream with the chunks fed by the test, which blocks the reader while there are none.
+     */
+    private static class FeedInputStream extends InputStream {
+        private final static byte[] END = new byte[0];
+        private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+        private volatile long readerThreadId;
+        private byte[] chunk;
+        private int position;
+
+        void feed(byte[] chunk) {
+            chunks.add(chunk != null ? chunk : END);
+        }
+
+        long getReaderThreadId() {
+            return readerThreadId;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            readerThreadId = Thread.currentThread().getId();
+            while (chunk == null || position == chunk.length) {
+                try {
+                    chunk = chunks.take();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                position = 0;
+                if (chunk == END) {
+                    return -1;
+                }
+            }
+            int read = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, read);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return chunk == null ? 0 : chunk.length - position;
+        }
+    }
+
+    private static class DiscardOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    private static class StreamTcpClient implements TcpClient {
+        private final InputStream inputStream;
+        private final OutputStream outputStream;
+
+        StreamTcpClient(InputStream inputStream, OutputStream outputStream) {
+            this.inputStream = inputStream;
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public void connect(SocketAddress endpoint) {
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return inputStream;
+        }
+
+        @Override
+        public boolean isTlsStarted() {
+            return false;
+        }
+
+        @Override
+        public void startTls() {
+        }
+
+        @Override
+        public boolean isInputShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isOutputShutdown() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
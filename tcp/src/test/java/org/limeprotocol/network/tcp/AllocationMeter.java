@@ -0,0 +1,74 @@
+package org.limeprotocol.network.tcp;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the bytes allocated by a thread, through the HotSpot extension of the {@link java.lang.management.ThreadMXBean}.
+ */
+public final class AllocationMeter {
+
+    private final static com.sun.management.ThreadMXBean threadMXBean = getThreadMXBean();
+
+    private AllocationMeter() {
+    }
+
+    /**
+     * Indicates if the JVM measures the thread allocations.
+     * @return
+     */
+    public static boolean isSupported() {
+        return threadMXBean != null;
+    }
+
+    /**
+     * Gets the bytes allocated by a thread since it started.
+     * @param threadId
+     * @return
+     */
+    public static long getAllocatedBytes(long threadId) {
+        return threadMXBean.getThreadAllocatedBytes(threadId);
+    }
+
+    public static long getAllocatedBytes() {
+        return getAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Gets the average bytes allocated by the current thread in each run of a task, after warming it up.
+     * @param warmupRuns
+     * @param runs
+     * @param task
+     * @return
+     * @throws Exception
+     */
+    public static long measure(int warmupRuns, int runs, Task task) throws Exception {
+        for (int i = 0; i < warmupRuns; i++) {
+            task.run();
+        }
+        long startBytes = getAllocatedBytes();
+        for (int i = 0; i < runs; i++) {
+            task.run();
+        }
+        return (getAllocatedBytes() - startBytes) / runs;
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        try {
+            java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean hotspotThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+                if (hotspotThreadMXBean.isThreadAllocatedMemorySupported()) {
+                    hotspotThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+                    return hotspotThreadMXBean;
+                }
+            }
+        } catch (LinkageError | UnsupportedOperationException e) {
+            // Not a HotSpot JVM
+        }
+        return null;
+    }
+
+    public interface Task {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,100 @@
+package org.limeprotocol.network.tcp;
+
+import org.junit.Test;
+import org.limeprotocol.Envelope;
+import org.limeprotocol.Message;
+import org.limeprotocol.MediaType;
+import org.limeprotocol.Notification;
+import org.limeprotocol.PlainDocument;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.network.TraceWriter;
+import org.limeprotocol.network.trace.CaptureTraceWriter;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CaptureReplayerTest {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private final EnvelopeSerializer envelopeSerializer = new JacksonEnvelopeSerializer();
+
+    private File createCapture(int envelopesCount, long interval) throws Exception {
+        File file = File.createTempFile("lime", ".cap");
+        file.deleteOnExit();
+        try (CaptureTraceWriter writer = new CaptureTraceWriter(file)) {
+            for (int i = 0; i < envelopesCount; i++) {
+                Message message = new Message("message-" + i);
+                message.setContent(new PlainDocument("Message " + i, MediaType.parse("text/plain")));
+                Notification notification = new Notification("notification-" + i);
+                notification.setEvent(Notification.Event.RECEIVED);
+                writer.trace(message, envelopeSerializer.serialize(message).getBytes(UTF8), TraceWriter.DataOperation.RECEIVE);
+                writer.trace(notification, envelopeSerializer.serialize(notification).getBytes(UTF8), TraceWriter.DataOperation.SEND);
+                Thread.sleep(interval);
+            }
+        }
+        return file;
+    }
+
+    private BlockingQueue<Envelope> openTransport(CaptureReplayer replayer) throws IOException {
+        final BlockingQueue<Envelope> receivedEnvelopes = new LinkedBlockingQueue<>();
+        TcpTransport transport = new TcpTransport(envelopeSerializer, new SocketTcpClientFactory(), null);
+        transport.open(replayer.getUri());
+        transport.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                receivedEnvelopes.add(envelope);
+            }
+        });
+        return receivedEnvelopes;
+    }
+
+    @Test
+    public void replay_maxSpeed_transportReceivesCapturedEnvelopesInOrder() throws Exception {
+        // Arrange
+        int envelopesCount = 50;
+        File capture = createCapture(envelopesCount, 0);
+
+        try (CaptureReplayer target = new CaptureReplayer(capture, CaptureReplayer.MAX_SPEED)) {
+            // Act
+            BlockingQueue<Envelope> receivedEnvelopes = openTransport(target);
+            assertTrue(target.awaitCompletion(5, TimeUnit.SECONDS));
+
+            // Assert
+            assertEquals(envelopesCount, target.getReplayedCount());
+            for (int i = 0; i < envelopesCount; i++) {
+                Envelope envelope = receivedEnvelopes.poll(5, TimeUnit.SECONDS);
+                assertTrue(envelope instanceof Message);
+                assertEquals("message-" + i, envelope.getId());
+            }
+        }
+    }
+
+    @Test
+    public void replay_originalSpeed_keepsCapturedInterval() throws Exception {
+        // Arrange
+        int envelopesCount = 4;
+        long interval = 50;
+        File capture = createCapture(envelopesCount, interval);
+
+        try (CaptureReplayer target = new CaptureReplayer(capture, 1)) {
+            // Act
+            long startTime = System.nanoTime();
+            openTransport(target);
+            assertTrue(target.awaitCompletion(5, TimeUnit.SECONDS));
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+            // Assert
+            assertEquals(envelopesCount, target.getReplayedCount());
+            assertTrue(elapsed >= (envelopesCount - 1) * interval);
+        }
+    }
+}
@@ -5,6 +5,9 @@ import org.junit.Test;
 import org.limeprotocol.*;
 import org.limeprotocol.client.ClientChannel;
 import org.limeprotocol.client.ClientChannelImpl;
+import org.limeprotocol.metrics.Counter;
+import org.limeprotocol.metrics.MetricNames;
+import org.limeprotocol.metrics.MetricsRegistry;
 import org.limeprotocol.network.SessionChannel;
 import org.limeprotocol.network.TraceWriter;
 import org.limeprotocol.network.Transport;
@@ -12,6 +15,8 @@ import org.limeprotocol.security.Authentication;
 import org.limeprotocol.security.GuestAuthentication;
 import org.limeprotocol.serialization.EnvelopeSerializer;
 import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.serialization.RawEnvelope;
+import org.limeprotocol.util.ByteArrayPool;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
@@ -54,6 +59,18 @@ public class TcpTransportTest {
     }
 
     private TcpTransport getTarget(InputStream inputStream, OutputStream outputStream, int bufferSize) throws IOException {
+        return getTarget(inputStream, outputStream, bufferSize, 0);
+    }
+
+    private TcpTransport getTarget(InputStream inputStream, OutputStream outputStream, int bufferSize, int outboundQueueCapacity) throws IOException {
+        return getTarget(inputStream, outputStream, bufferSize, bufferSize, outboundQueueCapacity);
+    }
+
+    private TcpTransport getTarget(InputStream inputStream, OutputStream outputStream, int bufferSize, int maxBufferSize, int outboundQueueCapacity) throws IOException {
+        return getTarget(inputStream, outputStream, bufferSize, maxBufferSize, null, outboundQueueCapacity);
+    }
+
+    private TcpTransport getTarget(InputStream inputStream, OutputStream outputStream, int bufferSize, int maxBufferSize, ByteArrayPool bufferPool, int outboundQueueCapacity) throws IOException {
         envelopeSerializer = mock(EnvelopeSerializer.class);
         tcpClient = mock(TcpClient.class);
         when(tcpClient.getOutputStream()).thenReturn(outputStream);
@@ -61,7 +78,7 @@ public class TcpTransportTest {
         when(tcpClient.isOutputShutdown()).thenReturn(false);
         when(tcpClient.isInputShutdown()).thenReturn(false);
         traceWriter = mock(TraceWriter.class);
-        return new TcpTransport(envelopeSerializer, new MockTcpClientFactory(), traceWriter, bufferSize);
+        return new TcpTransport(envelopeSerializer, new MockTcpClientFactory(), traceWriter, bufferSize, maxBufferSize, bufferPool, outboundQueueCapacity);
     }
 
     private TcpTransport getAndOpenTarget() throws IOException, URISyntaxException {
@@ -136,6 +153,166 @@ public class TcpTransportTest {
         verify(traceWriter, atLeastOnce()).trace(serializedEnvelope, TraceWriter.DataOperation.SEND);
     }
 
+    @Test
+    public void send_rawEnvelope_writesBytesWithoutSerialization() throws IOException, URISyntaxException {
+        // Arrange
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        TcpTransport target = getAndOpenTarget(new ByteArrayInputStream(new byte[0]), outputStream);
+        RawEnvelope rawEnvelope = RawEnvelope.parse("{\"id\":\"1\",\"to\":\"to@domain.com\",\"event\":\"received\"}".getBytes("UTF-8"));
+        rawEnvelope.setTo(Node.parse("other@domain.com"));
+
+        // Act
+        target.send(rawEnvelope);
+
+        // Assert
+        assertEquals("{\"id\":\"1\",\"to\":\"other@domain.com\",\"event\":\"received\"}", outputStream.toString());
+        verify(envelopeSerializer, never()).serialize(any(Envelope.class));
+    }
+
+    @Test
+    public void send_outboundQueueAndSaturatedStream_writesControlEnvelopesFirst() throws Exception {
+        // Arrange
+        final Semaphore writeStarted = new Semaphore(0);
+        final Semaphore writeReleased = new Semaphore(0);
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream() {
+            private boolean isFirstWrite = true;
+
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                if (isFirstWrite) {
+                    isFirstWrite = false;
+                    writeStarted.release();
+                    writeReleased.acquireUninterruptibly();
+                }
+                super.write(b, off, len);
+            }
+        };
+        TcpTransport target = getTarget(new ByteArrayInputStream(new byte[0]), outputStream, TcpTransport.DEFAULT_BUFFER_SIZE, 100);
+        target.open(Dummy.createUri());
+
+        Message[] messages = new Message[5];
+        String[] serializedMessages = new String[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new Message(EnvelopeId.newId());
+            serializedMessages[i] = Dummy.createRandomString(10000);
+            when(envelopeSerializer.serialize(messages[i])).thenReturn(serializedMessages[i]);
+        }
+        Command ping = new Command(EnvelopeId.newId());
+        ping.setMethod(Command.CommandMethod.GET);
+        ping.setUri(new LimeUri("/ping"));
+        String serializedPing = Dummy.createRandomString(100);
+        when(envelopeSerializer.serialize(ping)).thenReturn(serializedPing);
+
+        // Act
+        target.send(messages[0]);
+        assertTrue(writeStarted.tryAcquire(5, TimeUnit.SECONDS));
+        for (int i = 1; i < messages.length; i++) {
+            target.send(messages[i]);
+        }
+        target.send(ping);
+        writeReleased.release();
+        int expectedLength = serializedPing.length();
+        for (String serializedMessage : serializedMessages) {
+            expectedLength += serializedMessage.length();
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (outputStream.size() < expectedLength && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Assert
+        String output = outputStream.toString();
+        assertEquals(expectedLength, output.length());
+        assertTrue(output.startsWith(serializedMessages[0]));
+        assertTrue(output.indexOf(serializedPing) < output.indexOf(serializedMessages[1]));
+        for (int i = 2; i < messages.length; i++) {
+            assertTrue(output.indexOf(serializedMessages[i - 1]) < output.indexOf(serializedMessages[i]));
+        }
+    }
+
+    @Test
+    public void close_outboundQueueWithPendingEnvelopes_writesEnvelopesBeforeClosing() throws Exception {
+        // Arrange
+        final Semaphore writeStarted = new Semaphore(0);
+        final Semaphore writeReleased = new Semaphore(0);
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream() {
+            private boolean isFirstWrite = true;
+
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                if (isFirstWrite) {
+                    isFirstWrite = false;
+                    writeStarted.release();
+                    writeReleased.acquireUninterruptibly();
+                }
+                super.write(b, off, len);
+            }
+        };
+        TcpTransport target = getTarget(new ByteArrayInputStream(new byte[0]), outputStream, TcpTransport.DEFAULT_BUFFER_SIZE, 100);
+        target.open(Dummy.createUri());
+        Message[] messages = new Message[5];
+        int expectedLength = 0;
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new Message(EnvelopeId.newId());
+            String serializedMessage = Dummy.createRandomString(1000);
+            expectedLength += serializedMessage.length();
+            when(envelopeSerializer.serialize(messages[i])).thenReturn(serializedMessage);
+        }
+        for (Message message : messages) {
+            target.send(message);
+        }
+        assertTrue(writeStarted.tryAcquire(5, TimeUnit.SECONDS));
+
+        // Act
+        writeReleased.release();
+        target.close();
+
+        // Assert
+        assertEquals(expectedLength, outputStream.size());
+        verify(tcpClient, times(1)).close();
+    }
+
+    @Test
+    public void close_outboundWriteFailsWhileDraining_countsDroppedEnvelopesAndRaisesException() throws Exception {
+        // Arrange
+        final Semaphore writeStarted = new Semaphore(0);
+        final Semaphore writeReleased = new Semaphore(0);
+        OutputStream outputStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                writeStarted.release();
+                writeReleased.acquireUninterruptibly();
+                throw new IOException("Connection reset");
+            }
+        };
+        TcpTransport target = getTarget(new ByteArrayInputStream(new byte[0]), outputStream, TcpTransport.DEFAULT_BUFFER_SIZE, 100);
+        Transport.TransportStateListener transportStateListener = mock(Transport.TransportStateListener.class);
+        target.setStateListener(transportStateListener);
+        target.open(Dummy.createUri());
+        Counter envelopesDropped = MetricsRegistry.getShared().getCounter(MetricNames.TRANSPORT_ENVELOPES_DROPPED);
+        long droppedCount = envelopesDropped.get();
+        for (int i = 0; i < 3; i++) {
+            // Larger than the stream buffer, so each envelope is written through
+            Message message = new Message(EnvelopeId.newId());
+            when(envelopeSerializer.serialize(message)).thenReturn(Dummy.createRandomString(10000));
+            target.send(message);
+        }
+        assertTrue(writeStarted.tryAcquire(5, TimeUnit.SECONDS));
+
+        // Act
+        writeReleased.release();
+        target.close();
+
+        // Assert
+        assertEquals(droppedCount + 2, envelopesDropped.get());
+        verify(transportStateListener, atLeastOnce()).onException(any(IOException.class));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void send_nullEnvelope_throwsIllegalArgumentException() throws IOException, URISyntaxException {
         // Arrange
@@ -323,6 +500,101 @@ public class TcpTransportTest {
         assertEquals(messageBufferParts.length, inputStream.getReadCount());
     }
 
+    @Test
+    public void onReceive_envelopeLargerThanBuffer_growsBufferAndReadsEnvelope() throws IOException, URISyntaxException, InterruptedException {
+        // Arrange
+        String messageJson = Dummy.createMessageJson();
+        byte[] messageBuffer = messageJson.getBytes("UTF-8");
+        Envelope envelope = mock(Envelope.class);
+        TestInputStream inputStream = new TestInputStream(splitBuffer(messageBuffer, 8));
+        TcpTransport target = getTarget(inputStream, new ByteArrayOutputStream(), 16, messageBuffer.length * 2, 0);
+        when(envelopeSerializer.deserialize(messageJson)).thenReturn(envelope);
+        Transport.TransportEnvelopeListener transportEnvelopeListener = mock(Transport.TransportEnvelopeListener.class);
+        target.setEnvelopeListener(transportEnvelopeListener);
+        Transport.TransportStateListener transportStateListener = mock(Transport.TransportStateListener.class);
+        target.setStateListener(transportStateListener);
+
+        // Act
+        target.open(Dummy.createUri());
+        Thread.sleep(500);
+
+        // Assert
+        verify(transportEnvelopeListener, times(1)).onReceive(envelope);
+        verify(transportStateListener, never()).onException(any(Exception.class));
+    }
+
+    @Test
+    public void onReceive_pooledBufferIdle_returnsBufferToPoolAndReadsNextEnvelope() throws IOException, URISyntaxException, InterruptedException {
+        // Arrange
+        String messageJson1 = Dummy.createMessageJson();
+        String messageJson2 = Dummy.createMessageJson();
+        Envelope envelope1 = mock(Envelope.class);
+        Envelope envelope2 = mock(Envelope.class);
+        PipedOutputStream remoteOutputStream = new PipedOutputStream();
+        PipedInputStream inputStream = new PipedInputStream(remoteOutputStream, 64 * 1024);
+        ByteArrayPool bufferPool = new ByteArrayPool(256, 64 * 1024, 1024 * 1024);
+        TcpTransport target = getTarget(inputStream, new ByteArrayOutputStream(), 256, 64 * 1024, bufferPool, 0);
+        when(envelopeSerializer.deserialize(messageJson1)).thenReturn(envelope1);
+        when(envelopeSerializer.deserialize(messageJson2)).thenReturn(envelope2);
+        Transport.TransportEnvelopeListener transportEnvelopeListener = mock(Transport.TransportEnvelopeListener.class);
+        target.setEnvelopeListener(transportEnvelopeListener);
+        Transport.TransportStateListener transportStateListener = mock(Transport.TransportStateListener.class);
+        target.setStateListener(transportStateListener);
+        target.open(Dummy.createUri());
+
+        // Act
+        remoteOutputStream.write(messageJson1.getBytes("UTF-8"));
+        remoteOutputStream.flush();
+        Thread.sleep(200);
+        long idleRetainedBytes = bufferPool.getRetainedBytes();
+        remoteOutputStream.write(messageJson2.getBytes("UTF-8"));
+        remoteOutputStream.flush();
+        Thread.sleep(200);
+
+        // Assert
+        verify(transportEnvelopeListener, times(1)).onReceive(envelope1);
+        verify(transportEnvelopeListener, times(1)).onReceive(envelope2);
+        verify(transportStateListener, never()).onException(any(Exception.class));
+        assertTrue(idleRetainedBytes >= 256);
+    }
+
+    @Test
+    public void setMaxEnvelopeSize_quotaSizes_changesMaxBufferSize() throws IOException {
+        // Arrange
+        TcpTransport target = new TcpTransport(mock(EnvelopeSerializer.class), new MockTcpClientFactory());
+        int defaultMaxBufferSize = target.getMaxBufferSize();
+
+        // Act
+        target.setMaxEnvelopeSize(null);
+        int unboundedMaxBufferSize = target.getMaxBufferSize();
+        target.setMaxEnvelopeSize(4 * 1024 * 1024);
+
+        // Assert
+        assertEquals(TcpTransport.DEFAULT_MAX_BUFFER_SIZE, defaultMaxBufferSize);
+        assertEquals(TcpTransport.DEFAULT_MAX_BUFFER_SIZE, unboundedMaxBufferSize);
+        assertEquals(4 * 1024 * 1024, target.getMaxBufferSize());
+    }
+
+    @Test
+    public void onReceive_envelopeLargerThanMaxBuffer_raisesBufferOverflow() throws IOException, URISyntaxException, InterruptedException {
+        // Arrange
+        byte[] messageBuffer = Dummy.createMessageJson().getBytes("UTF-8");
+        TestInputStream inputStream = new TestInputStream(splitBuffer(messageBuffer, 8));
+        TcpTransport target = getTarget(inputStream, new ByteArrayOutputStream(), 16, 64, 0);
+        Transport.TransportEnvelopeListener transportEnvelopeListener = mock(Transport.TransportEnvelopeListener.class);
+        target.setEnvelopeListener(transportEnvelopeListener);
+        Transport.TransportStateListener transportStateListener = mock(Transport.TransportStateListener.class);
+        target.setStateListener(transportStateListener);
+
+        // Act
+        target.open(Dummy.createUri());
+        Thread.sleep(500);
+
+        // Assert
+        verify(transportEnvelopeListener, never()).onReceive(any(Envelope.class));
+        verify(transportStateListener, times(1)).onException(any(BufferOverflowException.class));
+    }
+
     @Test
     public void onReceive_multipleReadsMultipleEnvelopes_readEnvelopesJsonFromStream() throws IOException, URISyntaxException, InterruptedException {
         // Arrange
@@ -603,6 +875,14 @@ public class TcpTransportTest {
         return messageBufferParts;
     }
 
+    private byte[][] splitBuffer(byte[] messageBuffer, int partSize) {
+        byte[][] messageBufferParts = new byte[(messageBuffer.length + partSize - 1) / partSize][];
+        for (int i = 0; i < messageBufferParts.length; i++) {
+            messageBufferParts[i] = Arrays.copyOfRange(messageBuffer, i * partSize, Math.min(messageBuffer.length, (i + 1) * partSize));
+        }
+        return messageBufferParts;
+    }
+
     private class TestInputStream extends InputStream {
 
         private final byte[][] buffers;
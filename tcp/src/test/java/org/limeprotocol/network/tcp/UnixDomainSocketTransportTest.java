@@ -0,0 +1,120 @@
+package org.limeprotocol.network.tcp;
+
+import org.junit.Test;
+import org.limeprotocol.Envelope;
+import org.limeprotocol.MediaType;
+import org.limeprotocol.Message;
+import org.limeprotocol.Notification;
+import org.limeprotocol.PlainDocument;
+import org.limeprotocol.SessionEncryption;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.ProtocolFamily;
+import java.net.StandardProtocolFamily;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class UnixDomainSocketTransportTest {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private final EnvelopeSerializer envelopeSerializer = new JacksonEnvelopeSerializer();
+
+    @Test
+    public void getSupportedEncryption_anyJdk_returnsOnlyNone() {
+        // Arrange
+        UnixDomainSocketTransport target = new UnixDomainSocketTransport();
+
+        // Act
+        SessionEncryption[] supportedEncryption = target.getSupportedEncryption();
+
+        // Assert
+        assertArrayEquals(new SessionEncryption[]{SessionEncryption.NONE}, supportedEncryption);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void open_tcpScheme_throwsIllegalArgumentException() throws Exception {
+        // Arrange
+        UnixDomainSocketTransport target = new UnixDomainSocketTransport();
+
+        // Act
+        target.open(URI.create("net.tcp://localhost:55321"));
+    }
+
+    @Test
+    public void sendAndReceive_unixSocketServer_exchangesEnvelopes() throws Exception {
+        // Arrange
+        assumeTrue(UnixDomainSocketTcpClient.isSupported());
+        File socketFile = File.createTempFile("lime", ".sock");
+        socketFile.delete();
+        ProtocolFamily unixProtocolFamily = StandardProtocolFamily.valueOf("UNIX");
+        try (ServerSocketChannel serverChannel = (ServerSocketChannel) ServerSocketChannel.class
+                .getMethod("open", ProtocolFamily.class).invoke(null, unixProtocolFamily)) {
+            serverChannel.bind(UnixDomainSocketTcpClient.createAddress(socketFile.getPath()));
+            UnixDomainSocketTransport target = new UnixDomainSocketTransport(envelopeSerializer);
+            final BlockingQueue<Envelope> receivedEnvelopes = new LinkedBlockingQueue<>();
+            Message message = new Message("message-1");
+            message.setContent(new PlainDocument("Hello over the socket file", MediaType.parse("text/plain")));
+            Notification notification = new Notification("message-1");
+            notification.setEvent(Notification.Event.RECEIVED);
+
+            // Act
+            target.open(URI.create(UnixDomainSocketTransport.URI_SCHEME + "://" + socketFile.toURI().getPath()));
+            target.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+                @Override
+                public void onReceive(Envelope envelope) {
+                    receivedEnvelopes.add(envelope);
+                }
+            });
+            target.send(message);
+            try (SocketChannel serverSide = serverChannel.accept()) {
+                String receivedJson = readJson(serverSide);
+                serverSide.write(ByteBuffer.wrap(envelopeSerializer.serialize(notification).getBytes(UTF8)));
+
+                // Assert
+                assertEquals(envelopeSerializer.serialize(message), receivedJson);
+                Envelope receivedEnvelope = receivedEnvelopes.poll(5, TimeUnit.SECONDS);
+                assertTrue(receivedEnvelope instanceof Notification);
+                assertEquals(notification.getId(), receivedEnvelope.getId());
+                assertTrue(target.isConnected());
+            } finally {
+                target.close();
+            }
+        } finally {
+            socketFile.delete();
+        }
+    }
+
+    /**
+     * Reads a single JSON object, which has no braces in its strings.
+     */
+    private static String readJson(SocketChannel channel) throws Exception {
+        ByteArrayOutputStream jsonBytes = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        int depth = 0;
+        do {
+            buffer.clear();
+            if (channel.read(buffer) < 0) {
+                fail("The connection was closed");
+            }
+            byte b = buffer.get(0);
+            jsonBytes.write(b);
+            if (b == '{') depth++;
+            else if (b == '}') depth--;
+        } while (depth > 0);
+        return new String(jsonBytes.toByteArray(), UTF8);
+    }
+}